@@ -5,6 +5,8 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.nio.charset.Charset;
+import java.util.Formatter;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.SortedMap;
@@ -13,6 +15,10 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * A reporter which creates a comma-separated values file of the measurements for each metric.
+ * <p>
+ * Alternatively, using {@link Builder#writeToSingleFile(String)}, all metrics are appended to a single
+ * long-format file (one {@code t,name,attribute,value,unit} row per measurement) which is kept open
+ * between reports and optionally rolled over by size or age.
  */
 public class CsvReporter extends ScheduledReporter {
     /**
@@ -39,6 +45,9 @@ public class CsvReporter extends ScheduledReporter {
         private ScheduledExecutorService executor;
         private boolean shutdownExecutorOnStop;
         private CsvFileProvider csvFileProvider;
+        private String singleFileName;
+        private long rollOverBytes;
+        private long rollOverMillis;
 
         private Builder(MetricRegistry registry) {
             this.registry = registry;
@@ -50,6 +59,9 @@ public class CsvReporter extends ScheduledReporter {
             this.executor = null;
             this.shutdownExecutorOnStop = true;
             this.csvFileProvider = new FixedNameCsvFileProvider();
+            this.singleFileName = null;
+            this.rollOverBytes = 0;
+            this.rollOverMillis = 0;
         }
 
         /**
@@ -138,6 +150,44 @@ public class CsvReporter extends ScheduledReporter {
             return this;
         }
 
+        /**
+         * Append all metrics to a single long-format file with the given name, instead of one file
+         * per metric. The file is opened once and kept open until the reporter is stopped, and the
+         * {@link CsvFileProvider} is not used.
+         *
+         * @param fileName the name of the file, relative to the reporter's directory
+         * @return {@code this}
+         */
+        public Builder writeToSingleFile(String fileName) {
+            this.singleFileName = fileName;
+            return this;
+        }
+
+        /**
+         * Roll the single file over once it has grown to the given size. Only applies when
+         * writing to a single file.
+         *
+         * @param bytes the maximum size of the file, or {@code 0} for no limit
+         * @return {@code this}
+         */
+        public Builder rollOverAtSize(long bytes) {
+            this.rollOverBytes = bytes;
+            return this;
+        }
+
+        /**
+         * Roll the single file over once it has been written to for the given period. Only applies
+         * when writing to a single file.
+         *
+         * @param period the maximum age of the file, or {@code 0} for no limit
+         * @param unit   the unit for {@code period}
+         * @return {@code this}
+         */
+        public Builder rollOverEvery(long period, TimeUnit unit) {
+            this.rollOverMillis = unit.toMillis(period);
+            return this;
+        }
+
         /**
          * Builds a {@link CsvReporter} with the given properties, writing {@code .csv} files to the
          * given directory.
@@ -155,17 +205,41 @@ public class CsvReporter extends ScheduledReporter {
                                    filter,
                                    executor,
                                    shutdownExecutorOnStop,
-                                   csvFileProvider);
+                                   csvFileProvider,
+                                   singleFileName == null ? null :
+                                           new RollingCsvFile(new File(directory, singleFileName),
+                                                              SINGLE_FILE_HEADER,
+                                                              rollOverBytes,
+                                                              rollOverMillis,
+                                                              clock));
         }
     }
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CsvReporter.class);
     private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String SINGLE_FILE_HEADER = "t,name,attribute,value,unit";
+    private static final String[] GAUGE_ATTRIBUTES = {"value"};
+    private static final String[] COUNTER_ATTRIBUTES = {"count"};
+    private static final String[] HISTOGRAM_ATTRIBUTES = {
+            "count", "max", "mean", "min", "stddev", "p50", "p75", "p95", "p98", "p99", "p999"
+    };
+    private static final String[] METER_ATTRIBUTES = {"count", "mean_rate", "m1_rate", "m5_rate", "m15_rate"};
+    private static final String[] TIMER_ATTRIBUTES = {
+            "count", "max", "mean", "min", "stddev", "p50", "p75", "p95", "p98", "p99", "p999",
+            "mean_rate", "m1_rate", "m5_rate", "m15_rate"
+    };
 
     private final File directory;
     private final Locale locale;
     private final Clock clock;
     private final CsvFileProvider csvFileProvider;
+    private final RollingCsvFile singleFile;
+    private final String lineSeparator;
+    private final String[] meterUnits;
+    private final String[] timerUnits;
+    private final Map<String, String[]> rowPrefixes;
+    private final StringBuilder rows;
+    private final Formatter formatter;
 
     private CsvReporter(MetricRegistry registry,
                         File directory,
@@ -176,12 +250,39 @@ public class CsvReporter extends ScheduledReporter {
                         MetricFilter filter,
                         ScheduledExecutorService executor,
                         boolean shutdownExecutorOnStop,
-                        CsvFileProvider csvFileProvider) {
+                        CsvFileProvider csvFileProvider,
+                        RollingCsvFile singleFile) {
         super(registry, "csv-reporter", filter, rateUnit, durationUnit, executor, shutdownExecutorOnStop);
         this.directory = directory;
         this.locale = locale;
         this.clock = clock;
         this.csvFileProvider = csvFileProvider;
+        this.singleFile = singleFile;
+        this.lineSeparator = String.format("%n");
+        final String events = "events/" + getRateUnit();
+        this.meterUnits = new String[]{"", events, events, events, events};
+        final String calls = "calls/" + getRateUnit();
+        final String duration = getDurationUnit();
+        this.timerUnits = new String[]{
+                "", duration, duration, duration, duration, duration, duration, duration, duration, duration,
+                duration, calls, calls, calls, calls
+        };
+        this.rowPrefixes = new HashMap<String, String[]>();
+        this.rows = new StringBuilder();
+        this.formatter = new Formatter(rows, locale);
+    }
+
+    @Override
+    public void stop() {
+        try {
+            super.stop();
+        } finally {
+            if (singleFile != null) {
+                synchronized (this) {
+                    closeSingleFile();
+                }
+            }
+        }
     }
 
     @Override
@@ -192,6 +293,11 @@ public class CsvReporter extends ScheduledReporter {
                        SortedMap<String, Timer> timers) {
         final long timestamp = TimeUnit.MILLISECONDS.toSeconds(clock.getTime());
 
+        if (singleFile != null) {
+            reportToSingleFile(timestamp, gauges, counters, histograms, meters, timers);
+            return;
+        }
+
         for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
             reportGauge(timestamp, entry.getKey(), entry.getValue());
         }
@@ -300,6 +406,143 @@ public class CsvReporter extends ScheduledReporter {
         }
     }
 
+    private void reportToSingleFile(long timestamp,
+                                    SortedMap<String, Gauge> gauges,
+                                    SortedMap<String, Counter> counters,
+                                    SortedMap<String, Histogram> histograms,
+                                    SortedMap<String, Meter> meters,
+                                    SortedMap<String, Timer> timers) {
+        // forget the rows of metrics which have since been removed
+        if (rowPrefixes.size() > 2 * (gauges.size() + counters.size() + histograms.size() +
+                meters.size() + timers.size())) {
+            rowPrefixes.clear();
+        }
+
+        final String t = Long.toString(timestamp);
+        try {
+            singleFile.prepare();
+
+            for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+                final String[] prefixes = rowPrefixes(entry.getKey(), GAUGE_ATTRIBUTES);
+                final Object value = entry.getValue().getValue();
+                rows.append(t).append(prefixes[0]).append(escape(String.valueOf(value))).append(',');
+                rows.append(lineSeparator);
+                writeRows();
+            }
+
+            for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+                final String[] prefixes = rowPrefixes(entry.getKey(), COUNTER_ATTRIBUTES);
+                rows.append(t).append(prefixes[0]).append(entry.getValue().getCount()).append(',');
+                rows.append(lineSeparator);
+                writeRows();
+            }
+
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                final String[] prefixes = rowPrefixes(entry.getKey(), HISTOGRAM_ATTRIBUTES);
+                final Histogram histogram = entry.getValue();
+                final Snapshot snapshot = histogram.getSnapshot();
+                appendRow(t, prefixes[0], histogram.getCount(), "");
+                appendRow(t, prefixes[1], snapshot.getMax(), "");
+                appendRow(t, prefixes[2], snapshot.getMean(), "");
+                appendRow(t, prefixes[3], snapshot.getMin(), "");
+                appendRow(t, prefixes[4], snapshot.getStdDev(), "");
+                appendRow(t, prefixes[5], snapshot.getMedian(), "");
+                appendRow(t, prefixes[6], snapshot.get75thPercentile(), "");
+                appendRow(t, prefixes[7], snapshot.get95thPercentile(), "");
+                appendRow(t, prefixes[8], snapshot.get98thPercentile(), "");
+                appendRow(t, prefixes[9], snapshot.get99thPercentile(), "");
+                appendRow(t, prefixes[10], snapshot.get999thPercentile(), "");
+                writeRows();
+            }
+
+            for (Map.Entry<String, Meter> entry : meters.entrySet()) {
+                final String[] prefixes = rowPrefixes(entry.getKey(), METER_ATTRIBUTES);
+                final Meter meter = entry.getValue();
+                appendRow(t, prefixes[0], meter.getCount(), meterUnits[0]);
+                appendRow(t, prefixes[1], convertRate(meter.getMeanRate()), meterUnits[1]);
+                appendRow(t, prefixes[2], convertRate(meter.getOneMinuteRate()), meterUnits[2]);
+                appendRow(t, prefixes[3], convertRate(meter.getFiveMinuteRate()), meterUnits[3]);
+                appendRow(t, prefixes[4], convertRate(meter.getFifteenMinuteRate()), meterUnits[4]);
+                writeRows();
+            }
+
+            for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+                final String[] prefixes = rowPrefixes(entry.getKey(), TIMER_ATTRIBUTES);
+                final Timer timer = entry.getValue();
+                final Snapshot snapshot = timer.getSnapshot();
+                appendRow(t, prefixes[0], timer.getCount(), timerUnits[0]);
+                appendRow(t, prefixes[1], convertDuration(snapshot.getMax()), timerUnits[1]);
+                appendRow(t, prefixes[2], convertDuration(snapshot.getMean()), timerUnits[2]);
+                appendRow(t, prefixes[3], convertDuration(snapshot.getMin()), timerUnits[3]);
+                appendRow(t, prefixes[4], convertDuration(snapshot.getStdDev()), timerUnits[4]);
+                appendRow(t, prefixes[5], convertDuration(snapshot.getMedian()), timerUnits[5]);
+                appendRow(t, prefixes[6], convertDuration(snapshot.get75thPercentile()), timerUnits[6]);
+                appendRow(t, prefixes[7], convertDuration(snapshot.get95thPercentile()), timerUnits[7]);
+                appendRow(t, prefixes[8], convertDuration(snapshot.get98thPercentile()), timerUnits[8]);
+                appendRow(t, prefixes[9], convertDuration(snapshot.get99thPercentile()), timerUnits[9]);
+                appendRow(t, prefixes[10], convertDuration(snapshot.get999thPercentile()), timerUnits[10]);
+                appendRow(t, prefixes[11], convertRate(timer.getMeanRate()), timerUnits[11]);
+                appendRow(t, prefixes[12], convertRate(timer.getOneMinuteRate()), timerUnits[12]);
+                appendRow(t, prefixes[13], convertRate(timer.getFiveMinuteRate()), timerUnits[13]);
+                appendRow(t, prefixes[14], convertRate(timer.getFifteenMinuteRate()), timerUnits[14]);
+                writeRows();
+            }
+
+            singleFile.flush();
+        } catch (IOException e) {
+            LOGGER.warn("Error writing to {}", singleFile.getFile(), e);
+            rows.setLength(0);
+            closeSingleFile();
+        }
+    }
+
+    /**
+     * Returns the {@code ,name,attribute,} part of each of the metric's rows, in attribute order.
+     */
+    private String[] rowPrefixes(String name, String[] attributes) {
+        String[] prefixes = rowPrefixes.get(name);
+        if (prefixes == null || prefixes.length != attributes.length) {
+            final String escapedName = escape(name);
+            prefixes = new String[attributes.length];
+            for (int i = 0; i < attributes.length; i++) {
+                prefixes[i] = ',' + escapedName + ',' + attributes[i] + ',';
+            }
+            rowPrefixes.put(name, prefixes);
+        }
+        return prefixes;
+    }
+
+    private void appendRow(String timestamp, String prefix, long value, String unit) {
+        rows.append(timestamp).append(prefix).append(value).append(',').append(unit).append(lineSeparator);
+    }
+
+    private void appendRow(String timestamp, String prefix, double value, String unit) {
+        rows.append(timestamp).append(prefix);
+        formatter.format("%f", value);
+        rows.append(',').append(unit).append(lineSeparator);
+    }
+
+    private void writeRows() throws IOException {
+        singleFile.write(rows);
+        rows.setLength(0);
+    }
+
+    private void closeSingleFile() {
+        try {
+            singleFile.close();
+        } catch (IOException e) {
+            LOGGER.warn("Error closing {}", singleFile.getFile(), e);
+        }
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 &&
+                value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
     protected String sanitize(String name) {
         return name;
     }
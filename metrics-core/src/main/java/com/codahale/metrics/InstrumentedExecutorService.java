@@ -3,28 +3,46 @@ package com.codahale.metrics;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 /**
  * An {@link ExecutorService} that monitors the number of tasks submitted, running,
- * completed and also keeps a {@link Timer} for the task duration.
+ * completed and rejected, and also keeps a {@link Timer} for the time tasks wait to run
+ * ({@code idle}) and one for the task duration.
+ * <p/>
+ * If the delegate is a {@link ThreadPoolExecutor} or a {@code ForkJoinPool}, gauges of its pool
+ * and queue are registered as well, including {@code pool.saturation}, the ratio of its active
+ * threads to its maximum (or to its core size, if the pool never grows past it), and for a
+ * {@code ThreadPoolExecutor} {@code queue.saturation}, the ratio of its queued tasks to its queue's
+ * capacity. If several executors share a name, the gauges report the first one's pool.
  * <p/>
  * It will register the metrics using the given (or auto-generated) name as classifier, e.g:
  * "your-executor-service.submitted", "your-executor-service.running", etc.
  */
 public class InstrumentedExecutorService implements ExecutorService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InstrumentedExecutorService.class);
     private static final AtomicLong nameCounter = new AtomicLong();
 
     private final ExecutorService delegate;
+    private final Clock clock = Clock.defaultClock();
     private final Meter submitted;
     private final Counter running;
     private final Meter completed;
+    private final Meter rejected;
+    private final Timer idle;
     private final Timer duration;
 
     /**
@@ -49,7 +67,142 @@ public class InstrumentedExecutorService implements ExecutorService {
         this.submitted = registry.meter(MetricRegistry.name(name, "submitted"));
         this.running = registry.counter(MetricRegistry.name(name, "running"));
         this.completed = registry.meter(MetricRegistry.name(name, "completed"));
+        this.rejected = registry.meter(MetricRegistry.name(name, "rejected"));
+        this.idle = registry.timer(MetricRegistry.name(name, "idle"));
         this.duration = registry.timer(MetricRegistry.name(name, "duration"));
+        registerGauges(delegate, registry, name);
+    }
+
+    /**
+     * Registers gauges of the pool and queue of a {@link ThreadPoolExecutor} or a
+     * {@code ForkJoinPool}.
+     */
+    static void registerGauges(ExecutorService executor, MetricRegistry registry, String name) {
+        if (executor instanceof ThreadPoolExecutor) {
+            final ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            registerGauge(registry, MetricRegistry.name(name, "pool.size"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return pool.getPoolSize();
+                }
+            });
+            registerGauge(registry, MetricRegistry.name(name, "pool.core"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return pool.getCorePoolSize();
+                }
+            });
+            registerGauge(registry, MetricRegistry.name(name, "pool.max"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return pool.getMaximumPoolSize();
+                }
+            });
+            registerGauge(registry, MetricRegistry.name(name, "tasks.active"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return pool.getActiveCount();
+                }
+            });
+            registerGauge(registry, MetricRegistry.name(name, "tasks.queued"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return pool.getQueue().size();
+                }
+            });
+            registerGauge(registry, MetricRegistry.name(name, "tasks.capacity"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return pool.getQueue().remainingCapacity();
+                }
+            });
+            registerGauge(registry, MetricRegistry.name(name, "pool.saturation"), new RatioGauge() {
+                @Override
+                protected Ratio getRatio() {
+                    return Ratio.of(pool.getActiveCount(), saturationLimit(pool));
+                }
+            });
+            registerGauge(registry, MetricRegistry.name(name, "queue.saturation"), new RatioGauge() {
+                @Override
+                protected Ratio getRatio() {
+                    final int queued = pool.getQueue().size();
+                    // unbounded queues report Integer.MAX_VALUE
+                    return Ratio.of(queued, (double) queued + pool.getQueue().remainingCapacity());
+                }
+            });
+        } else if (isForkJoinPool(executor)) {
+            ForkJoinPoolGauges.register(executor, registry, name);
+        }
+    }
+
+    /**
+     * Returns the number of threads a pool runs under load: its maximum size, unless it never grows
+     * past its core size because its queue is unbounded or it's a {@link ScheduledThreadPoolExecutor}.
+     */
+    private static int saturationLimit(ThreadPoolExecutor pool) {
+        final BlockingQueue<Runnable> queue = pool.getQueue();
+        if (pool instanceof ScheduledThreadPoolExecutor ||
+                (long) queue.size() + queue.remainingCapacity() >= Integer.MAX_VALUE) {
+            return pool.getCorePoolSize();
+        }
+        return pool.getMaximumPoolSize();
+    }
+
+    private static void registerGauge(MetricRegistry registry, String name, Gauge<?> gauge) {
+        try {
+            registry.register(name, gauge);
+        } catch (IllegalArgumentException e) {
+            LOGGER.debug("Not registering {}, which already exists", name);
+        }
+    }
+
+    private static boolean isForkJoinPool(ExecutorService executor) {
+        // ForkJoinPool isn't available on Java 6
+        for (Class<?> c = executor.getClass(); c != null; c = c.getSuperclass()) {
+            if ("java.util.concurrent.ForkJoinPool".equals(c.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * To avoid NoClassDefFoundError during loading {@link InstrumentedExecutorService} on Java 6
+     */
+    private static class ForkJoinPoolGauges {
+        private static void register(ExecutorService executor, MetricRegistry registry, String name) {
+            final java.util.concurrent.ForkJoinPool pool = (java.util.concurrent.ForkJoinPool) executor;
+            registerGauge(registry, MetricRegistry.name(name, "tasks.stolen"), new Gauge<Long>() {
+                @Override
+                public Long getValue() {
+                    return pool.getStealCount();
+                }
+            });
+            registerGauge(registry, MetricRegistry.name(name, "tasks.queued"), new Gauge<Long>() {
+                @Override
+                public Long getValue() {
+                    return pool.getQueuedTaskCount();
+                }
+            });
+            registerGauge(registry, MetricRegistry.name(name, "threads.active"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return pool.getActiveThreadCount();
+                }
+            });
+            registerGauge(registry, MetricRegistry.name(name, "threads.running"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return pool.getRunningThreadCount();
+                }
+            });
+            registerGauge(registry, MetricRegistry.name(name, "pool.saturation"), new RatioGauge() {
+                @Override
+                protected Ratio getRatio() {
+                    return Ratio.of(pool.getActiveThreadCount(), pool.getParallelism());
+                }
+            });
+        }
     }
 
     /**
@@ -58,7 +211,12 @@ public class InstrumentedExecutorService implements ExecutorService {
     @Override
     public void execute(Runnable runnable) {
         submitted.mark();
-        delegate.execute(new InstrumentedRunnable(runnable));
+        try {
+            delegate.execute(new InstrumentedRunnable(runnable));
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            throw e;
+        }
     }
 
     /**
@@ -67,7 +225,12 @@ public class InstrumentedExecutorService implements ExecutorService {
     @Override
     public Future<?> submit(Runnable runnable) {
         submitted.mark();
-        return delegate.submit(new InstrumentedRunnable(runnable));
+        try {
+            return delegate.submit(new InstrumentedRunnable(runnable));
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            throw e;
+        }
     }
 
     /**
@@ -76,7 +239,12 @@ public class InstrumentedExecutorService implements ExecutorService {
     @Override
     public <T> Future<T> submit(Runnable runnable, T result) {
         submitted.mark();
-        return delegate.submit(new InstrumentedRunnable(runnable), result);
+        try {
+            return delegate.submit(new InstrumentedRunnable(runnable), result);
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            throw e;
+        }
     }
 
     /**
@@ -85,7 +253,12 @@ public class InstrumentedExecutorService implements ExecutorService {
     @Override
     public <T> Future<T> submit(Callable<T> task) {
         submitted.mark();
-        return delegate.submit(new InstrumentedCallable<T>(task));
+        try {
+            return delegate.submit(new InstrumentedCallable<T>(task));
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            throw e;
+        }
     }
 
     /**
@@ -95,7 +268,12 @@ public class InstrumentedExecutorService implements ExecutorService {
     public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
         submitted.mark(tasks.size());
         Collection<? extends Callable<T>> instrumented = instrument(tasks);
-        return delegate.invokeAll(instrumented);
+        try {
+            return delegate.invokeAll(instrumented);
+        } catch (RejectedExecutionException e) {
+            rejected.mark(tasks.size());
+            throw e;
+        }
     }
 
     /**
@@ -105,7 +283,12 @@ public class InstrumentedExecutorService implements ExecutorService {
     public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException {
         submitted.mark(tasks.size());
         Collection<? extends Callable<T>> instrumented = instrument(tasks);
-        return delegate.invokeAll(instrumented, timeout, unit);
+        try {
+            return delegate.invokeAll(instrumented, timeout, unit);
+        } catch (RejectedExecutionException e) {
+            rejected.mark(tasks.size());
+            throw e;
+        }
     }
 
     /**
@@ -115,7 +298,12 @@ public class InstrumentedExecutorService implements ExecutorService {
     public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws ExecutionException, InterruptedException {
         submitted.mark(tasks.size());
         Collection<? extends Callable<T>> instrumented = instrument(tasks);
-        return delegate.invokeAny(instrumented);
+        try {
+            return delegate.invokeAny(instrumented);
+        } catch (RejectedExecutionException e) {
+            rejected.mark(tasks.size());
+            throw e;
+        }
     }
 
     /**
@@ -125,7 +313,12 @@ public class InstrumentedExecutorService implements ExecutorService {
     public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws ExecutionException, InterruptedException, TimeoutException {
         submitted.mark(tasks.size());
         Collection<? extends Callable<T>> instrumented = instrument(tasks);
-        return delegate.invokeAny(instrumented, timeout, unit);
+        try {
+            return delegate.invokeAny(instrumented, timeout, unit);
+        } catch (RejectedExecutionException e) {
+            rejected.mark(tasks.size());
+            throw e;
+        }
     }
 
     private <T> Collection<? extends Callable<T>> instrument(Collection<? extends Callable<T>> tasks) {
@@ -161,44 +354,55 @@ public class InstrumentedExecutorService implements ExecutorService {
         return delegate.awaitTermination(l, timeUnit);
     }
 
+    private long started(long submittedAt) {
+        final long start = clock.getTick();
+        idle.update(start - submittedAt, TimeUnit.NANOSECONDS);
+        running.inc();
+        return start;
+    }
+
+    private void finished(long start) {
+        duration.update(clock.getTick() - start, TimeUnit.NANOSECONDS);
+        running.dec();
+        completed.mark();
+    }
+
     private class InstrumentedRunnable implements Runnable {
         private final Runnable task;
+        private final long submittedAt;
 
         InstrumentedRunnable(Runnable task) {
             this.task = task;
+            this.submittedAt = clock.getTick();
         }
 
         @Override
         public void run() {
-            running.inc();
-            final Timer.Context context = duration.time();
+            final long start = started(submittedAt);
             try {
                 task.run();
             } finally {
-                context.stop();
-                running.dec();
-                completed.mark();
+                finished(start);
             }
         }
     }
 
     private class InstrumentedCallable<T> implements Callable<T> {
         private final Callable<T> callable;
+        private final long submittedAt;
 
         InstrumentedCallable(Callable<T> callable) {
             this.callable = callable;
+            this.submittedAt = clock.getTick();
         }
 
         @Override
         public T call() throws Exception {
-            running.inc();
-            final Timer.Context context = duration.time();
+            final long start = started(submittedAt);
             try {
                 return callable.call();
             } finally {
-                context.stop();
-                running.dec();
-                completed.mark();
+                finished(start);
             }
         }
     }
@@ -8,7 +8,13 @@ import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * An {@link ScheduledExecutorService} that monitors the number of tasks submitted, running,
- * completed and also keeps a {@link Timer} for the task duration.
+ * completed and rejected, and also keeps a {@link Timer} for the task duration, one for the time
+ * submitted tasks wait to run ({@code idle}) and one for how late scheduled tasks start
+ * ({@code scheduled.drift}). Each task is wrapped once, so a periodic task's wrapper is reused for
+ * all of its runs.
+ * <p/>
+ * If the delegate is a {@link ScheduledThreadPoolExecutor}, the same pool and queue gauges as
+ * {@link InstrumentedExecutorService}'s are registered as well.
  * <p/>
  * It will register the metrics using the given (or auto-generated) name as classifier, e.g:
  * "your-executor-service.submitted", "your-executor-service.running", etc.
@@ -17,16 +23,20 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
     private static final AtomicLong nameCounter = new AtomicLong();
 
     private final ScheduledExecutorService delegate;
+    private final Clock clock = Clock.defaultClock();
 
     private final Meter submitted;
     private final Counter running;
     private final Meter completed;
+    private final Meter rejected;
+    private final Timer idle;
     private final Timer duration;
 
     private final Meter scheduledOnce;
     private final Meter scheduledRepetitively;
     private final Counter scheduledOverrun;
     private final Histogram percentOfPeriod;
+    private final Timer scheduledDrift;
 
     /**
      * Wraps an {@link ScheduledExecutorService} uses an auto-generated default name.
@@ -52,12 +62,16 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
 
         this.running = registry.counter(MetricRegistry.name(name, "running"));
         this.completed = registry.meter(MetricRegistry.name(name, "completed"));
+        this.rejected = registry.meter(MetricRegistry.name(name, "rejected"));
+        this.idle = registry.timer(MetricRegistry.name(name, "idle"));
         this.duration = registry.timer(MetricRegistry.name(name, "duration"));
 
         this.scheduledOnce = registry.meter(MetricRegistry.name(name, "scheduled.once"));
         this.scheduledRepetitively = registry.meter(MetricRegistry.name(name, "scheduled.repetitively"));
         this.scheduledOverrun = registry.counter(MetricRegistry.name(name, "scheduled.overrun"));
         this.percentOfPeriod = registry.histogram(MetricRegistry.name(name, "scheduled.percent-of-period"));
+        this.scheduledDrift = registry.timer(MetricRegistry.name(name, "scheduled.drift"));
+        InstrumentedExecutorService.registerGauges(delegate, registry, name);
     }
 
     /**
@@ -66,7 +80,13 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
     @Override
     public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
         scheduledOnce.mark();
-        return delegate.schedule(new InstrumentedRunnable(command), delay, unit);
+        try {
+            return delegate.schedule(new InstrumentedRunnable(command, scheduledDrift, clock.getTick() + unit.toNanos(delay)),
+                                     delay, unit);
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            throw e;
+        }
     }
 
     /**
@@ -75,7 +95,13 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
     @Override
     public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
         scheduledOnce.mark();
-        return delegate.schedule(new InstrumentedCallable<V>(callable), delay, unit);
+        try {
+            return delegate.schedule(new InstrumentedCallable<V>(callable, scheduledDrift, clock.getTick() + unit.toNanos(delay)),
+                                     delay, unit);
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            throw e;
+        }
     }
 
     /**
@@ -84,7 +110,13 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
     @Override
     public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
         scheduledRepetitively.mark();
-        return delegate.scheduleAtFixedRate(new InstrumentedPeriodicRunnable(command, period, unit), initialDelay, period, unit);
+        try {
+            return delegate.scheduleAtFixedRate(new InstrumentedPeriodicRunnable(command, initialDelay, period, unit, true),
+                                                initialDelay, period, unit);
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            throw e;
+        }
     }
 
     /**
@@ -93,7 +125,13 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
     @Override
     public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
         scheduledRepetitively.mark();
-        return delegate.scheduleAtFixedRate(new InstrumentedRunnable(command), initialDelay, delay, unit);
+        try {
+            return delegate.scheduleWithFixedDelay(new InstrumentedPeriodicRunnable(command, initialDelay, delay, unit, false),
+                                                   initialDelay, delay, unit);
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            throw e;
+        }
     }
 
     /**
@@ -142,7 +180,12 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
     @Override
     public <T> Future<T> submit(Callable<T> task) {
         submitted.mark();
-        return delegate.submit(new InstrumentedCallable<T>(task));
+        try {
+            return delegate.submit(new InstrumentedCallable<T>(task, idle, clock.getTick()));
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            throw e;
+        }
     }
 
     /**
@@ -151,7 +194,12 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
     @Override
     public <T> Future<T> submit(Runnable task, T result) {
         submitted.mark();
-        return delegate.submit(new InstrumentedRunnable(task), result);
+        try {
+            return delegate.submit(new InstrumentedRunnable(task, idle, clock.getTick()), result);
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            throw e;
+        }
     }
 
     /**
@@ -160,7 +208,12 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
     @Override
     public Future<?> submit(Runnable task) {
         submitted.mark();
-        return delegate.submit(new InstrumentedRunnable(task));
+        try {
+            return delegate.submit(new InstrumentedRunnable(task, idle, clock.getTick()));
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            throw e;
+        }
     }
 
     /**
@@ -170,7 +223,12 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
     public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
         submitted.mark(tasks.size());
         Collection<? extends Callable<T>> instrumented = instrument(tasks);
-        return delegate.invokeAll(instrumented);
+        try {
+            return delegate.invokeAll(instrumented);
+        } catch (RejectedExecutionException e) {
+            rejected.mark(tasks.size());
+            throw e;
+        }
     }
 
     /**
@@ -180,7 +238,12 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
     public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException {
         submitted.mark(tasks.size());
         Collection<? extends Callable<T>> instrumented = instrument(tasks);
-        return delegate.invokeAll(instrumented, timeout, unit);
+        try {
+            return delegate.invokeAll(instrumented, timeout, unit);
+        } catch (RejectedExecutionException e) {
+            rejected.mark(tasks.size());
+            throw e;
+        }
     }
 
     /**
@@ -190,7 +253,12 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
     public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
         submitted.mark(tasks.size());
         Collection<? extends Callable<T>> instrumented = instrument(tasks);
-        return delegate.invokeAny(instrumented);
+        try {
+            return delegate.invokeAny(instrumented);
+        } catch (RejectedExecutionException e) {
+            rejected.mark(tasks.size());
+            throw e;
+        }
     }
 
     /**
@@ -200,13 +268,18 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
     public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
         submitted.mark(tasks.size());
         Collection<? extends Callable<T>> instrumented = instrument(tasks);
-        return delegate.invokeAny(instrumented, timeout, unit);
+        try {
+            return delegate.invokeAny(instrumented, timeout, unit);
+        } catch (RejectedExecutionException e) {
+            rejected.mark(tasks.size());
+            throw e;
+        }
     }
 
     private <T> Collection<? extends Callable<T>> instrument(Collection<? extends Callable<T>> tasks) {
         final List<InstrumentedCallable<T>> instrumented = new ArrayList<InstrumentedCallable<T>>(tasks.size());
         for (Callable<T> task : tasks) {
-            instrumented.add(new InstrumentedCallable(task));
+            instrumented.add(new InstrumentedCallable<T>(task, idle, clock.getTick()));
         }
         return instrumented;
     }
@@ -217,26 +290,48 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
     @Override
     public void execute(Runnable command) {
         submitted.mark();
-        delegate.execute(new InstrumentedRunnable(command));
+        try {
+            delegate.execute(new InstrumentedRunnable(command, idle, clock.getTick()));
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            throw e;
+        }
+    }
+
+    private long started(Timer lateness, long expectedAt) {
+        final long start = clock.getTick();
+        // scheduled executors don't run tasks early, but the delay is converted to nanoseconds
+        lateness.update(Math.max(0, start - expectedAt), TimeUnit.NANOSECONDS);
+        running.inc();
+        return start;
+    }
+
+    private long finished(long start) {
+        final long elapsed = clock.getTick() - start;
+        duration.update(elapsed, TimeUnit.NANOSECONDS);
+        running.dec();
+        completed.mark();
+        return elapsed;
     }
 
     private class InstrumentedRunnable implements Runnable {
         private final Runnable command;
+        private final Timer lateness;
+        private final long expectedAt;
 
-        InstrumentedRunnable(Runnable command) {
+        InstrumentedRunnable(Runnable command, Timer lateness, long expectedAt) {
             this.command = command;
+            this.lateness = lateness;
+            this.expectedAt = expectedAt;
         }
 
         @Override
         public void run() {
-            running.inc();
-            final Timer.Context context = duration.time();
+            final long start = started(lateness, expectedAt);
             try {
                 command.run();
             } finally {
-                context.stop();
-                running.dec();
-                completed.mark();
+                finished(start);
             }
         }
     }
@@ -244,47 +339,56 @@ public class InstrumentedScheduledExecutorService implements ScheduledExecutorSe
     private class InstrumentedPeriodicRunnable implements Runnable {
         private final Runnable command;
         private final long periodInNanos;
+        private final boolean fixedRate;
+        // runs of a periodic task don't overlap, and the executor publishes each run to the next
+        private long expectedAt;
 
-        InstrumentedPeriodicRunnable(Runnable command, long period, TimeUnit unit) {
+        InstrumentedPeriodicRunnable(Runnable command, long initialDelay, long period, TimeUnit unit,
+                                     boolean fixedRate) {
             this.command = command;
             this.periodInNanos = unit.toNanos(period);
+            this.fixedRate = fixedRate;
+            this.expectedAt = clock.getTick() + unit.toNanos(initialDelay);
         }
 
         @Override
         public void run() {
-            running.inc();
-            final Timer.Context context = duration.time();
+            final long start = started(scheduledDrift, expectedAt);
             try {
                 command.run();
             } finally {
-                final long elapsed = context.stop();
-                running.dec();
-                completed.mark();
-                if (elapsed > periodInNanos) {
-                    scheduledOverrun.inc();
+                final long elapsed = finished(start);
+                if (fixedRate) {
+                    if (elapsed > periodInNanos) {
+                        scheduledOverrun.inc();
+                    }
+                    percentOfPeriod.update((100L * elapsed) / periodInNanos);
+                    this.expectedAt += periodInNanos;
+                } else {
+                    this.expectedAt = clock.getTick() + periodInNanos;
                 }
-                percentOfPeriod.update((100L * elapsed) / periodInNanos);
             }
         }
     }
 
     private class InstrumentedCallable<T> implements Callable<T> {
         private final Callable<T> task;
+        private final Timer lateness;
+        private final long expectedAt;
 
-        InstrumentedCallable(Callable<T> task) {
+        InstrumentedCallable(Callable<T> task, Timer lateness, long expectedAt) {
             this.task = task;
+            this.lateness = lateness;
+            this.expectedAt = expectedAt;
         }
 
         @Override
         public T call() throws Exception {
-            running.inc();
-            final Timer.Context context = duration.time();
+            final long start = started(lateness, expectedAt);
             try {
                 return task.call();
             } finally {
-                context.stop();
-                running.dec();
-                completed.mark();
+                finished(start);
             }
         }
     }
@@ -9,6 +9,7 @@ import java.util.Set;
 
 /**
  * A {@link Gauge} implementation which queries an {@link MBeanServerConnection} for an attribute of an object.
+ * To read several attributes of the same object, use a {@link JmxAttributeSampler} instead.
  */
 public class JmxAttributeGauge implements Gauge<Object> {
     private final MBeanServerConnection mBeanServerConn;
@@ -0,0 +1,139 @@
+package com.codahale.metrics;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches a set of attributes of an object from an {@link MBeanServerConnection} in a single
+ * {@code getAttributes} call, at most once per interval, and hands out gauges which read from that
+ * sample. Unlike a {@link JmxAttributeGauge} per attribute, reading all of an object's gauges costs
+ * one round trip.
+ */
+public class JmxAttributeSampler {
+    private final MBeanServerConnection mBeanServerConn;
+    private final ObjectName objectName;
+    private final String[] attributeNames;
+    private final Clock clock;
+    private final long intervalNanos;
+    private volatile Sample sample;
+
+    /**
+     * Creates a new JmxAttributeSampler for the platform {@link javax.management.MBeanServer}.
+     *
+     * @param objectName     the name of the object
+     * @param interval       how long a sample is used for
+     * @param unit           the unit of {@code interval}
+     * @param attributeNames the names of the object's attributes
+     */
+    public JmxAttributeSampler(ObjectName objectName, long interval, TimeUnit unit, String... attributeNames) {
+        this(ManagementFactory.getPlatformMBeanServer(), objectName, Clock.defaultClock(), interval, unit,
+             attributeNames);
+    }
+
+    /**
+     * Creates a new JmxAttributeSampler.
+     *
+     * @param mBeanServerConn the {@link MBeanServerConnection}
+     * @param objectName      the name of the object
+     * @param clock           the clock to measure the interval with
+     * @param interval        how long a sample is used for, or {@code 0} to fetch the attributes
+     *                        on every read
+     * @param unit            the unit of {@code interval}
+     * @param attributeNames  the names of the object's attributes
+     */
+    public JmxAttributeSampler(MBeanServerConnection mBeanServerConn, ObjectName objectName, Clock clock,
+                               long interval, TimeUnit unit, String... attributeNames) {
+        this.mBeanServerConn = mBeanServerConn;
+        this.objectName = objectName;
+        this.attributeNames = attributeNames.clone();
+        this.clock = clock;
+        this.intervalNanos = unit.toNanos(interval);
+    }
+
+    /**
+     * Returns a gauge for the given attribute, which returns {@code null} if the attribute
+     * couldn't be fetched.
+     *
+     * @param attributeName the name of one of the sampled attributes
+     * @return a gauge for the attribute
+     * @throws IllegalArgumentException if the attribute isn't sampled
+     */
+    public Gauge<Object> gauge(final String attributeName) {
+        if (!Arrays.asList(attributeNames).contains(attributeName)) {
+            throw new IllegalArgumentException(attributeName + " is not sampled");
+        }
+        return new Gauge<Object>() {
+            @Override
+            public Object getValue() {
+                return getValues().get(attributeName);
+            }
+        };
+    }
+
+    /**
+     * Returns the latest values of the sampled attributes, fetching them if the last sample is
+     * older than the interval. Attributes which couldn't be fetched are missing.
+     *
+     * @return the attributes' values, by name
+     */
+    public Map<String, Object> getValues() {
+        if (intervalNanos <= 0) {
+            return fetch();
+        }
+        final long now = clock.getTick();
+        Sample current = sample;
+        if (current == null || now - current.takenAt >= intervalNanos) {
+            // concurrent readers may both fetch, which is cheaper than making them wait
+            current = new Sample(fetch(), now);
+            this.sample = current;
+        }
+        return current.values;
+    }
+
+    private Map<String, Object> fetch() {
+        try {
+            final List<Attribute> attributes = mBeanServerConn.getAttributes(getObjectName(), attributeNames)
+                                                              .asList();
+            final Map<String, Object> values = new HashMap<String, Object>(attributes.size() * 2);
+            for (Attribute attribute : attributes) {
+                values.put(attribute.getName(), attribute.getValue());
+            }
+            return values;
+        } catch (IOException e) {
+            return Collections.emptyMap();
+        } catch (JMException e) {
+            return Collections.emptyMap();
+        }
+    }
+
+    private ObjectName getObjectName() throws IOException {
+        if (objectName.isPattern()) {
+            Set<ObjectName> foundNames = mBeanServerConn.queryNames(objectName, null);
+            if (foundNames.size() == 1) {
+                return foundNames.iterator().next();
+            }
+        }
+        return objectName;
+    }
+
+    private static class Sample {
+        private final Map<String, Object> values;
+        private final long takenAt;
+
+        private Sample(Map<String, Object> values, long takenAt) {
+            this.values = values;
+            this.takenAt = takenAt;
+        }
+    }
+}
@@ -38,6 +38,7 @@ public class JmxReporter implements Reporter, Closeable {
         private ObjectNameFactory objectNameFactory;
         private MetricFilter filter = MetricFilter.ALL;
         private String domain;
+        private MetricRegistry instrumentationRegistry;
         private Map<String, TimeUnit> specificDurationUnits;
         private Map<String, TimeUnit> specificRateUnits;
 
@@ -131,6 +132,27 @@ public class JmxReporter implements Reporter, Closeable {
             return this;
         }
 
+        /**
+         * Record what exposing the metrics costs into the given registry, in metrics named
+         * {@code metrics.jmx.<domain>.*}: a timer of MBean registrations ({@code registrations}),
+         * a meter of the MBeans which couldn't be registered ({@code failures}) and a gauge of
+         * the number of registered MBeans ({@code mbeans}), which is registered while the reporter
+         * is started, unless another reporter for the same domain has already registered it. The
+         * given registry must not be the one being reported, and can be reported by any other
+         * reporter.
+         *
+         * @param instrumentationRegistry the registry to record into
+         * @return {@code this}
+         */
+        public Builder instrumentInto(MetricRegistry instrumentationRegistry) {
+            if (instrumentationRegistry == registry) {
+                // every registration would register another MBean
+                throw new IllegalArgumentException("A reporter can't record into the registry it reports");
+            }
+            this.instrumentationRegistry = instrumentationRegistry;
+            return this;
+        }
+
         /**
          * Builds a {@link JmxReporter} with the given properties.
          *
@@ -141,7 +163,8 @@ public class JmxReporter implements Reporter, Closeable {
             if (mBeanServer==null) {
             	mBeanServer = ManagementFactory.getPlatformMBeanServer();
             }
-            return new JmxReporter(mBeanServer, domain, registry, filter, timeUnits, objectNameFactory);
+            return new JmxReporter(mBeanServer, domain, registry, filter, timeUnits, objectNameFactory,
+                                   instrumentationRegistry);
         }
     }
 
@@ -496,17 +519,77 @@ public class JmxReporter implements Reporter, Closeable {
         private final MetricTimeUnits timeUnits;
         private final Map<ObjectName, ObjectName> registered;
         private final ObjectNameFactory objectNameFactory;
-
-        private JmxListener(MBeanServer mBeanServer, String name, MetricFilter filter, MetricTimeUnits timeUnits, ObjectNameFactory objectNameFactory) {
+        private final Timer registrations;
+        private final Meter failures;
+        private final MetricRegistry instrumentationRegistry;
+        private final String mbeansGaugeName;
+        private final Gauge<Integer> mbeansGauge;
+
+        private JmxListener(MBeanServer mBeanServer, String name, MetricFilter filter, MetricTimeUnits timeUnits, ObjectNameFactory objectNameFactory,
+                            MetricRegistry instrumentationRegistry) {
             this.mBeanServer = mBeanServer;
             this.name = name;
             this.filter = filter;
             this.timeUnits = timeUnits;
             this.registered = new ConcurrentHashMap<ObjectName, ObjectName>();
             this.objectNameFactory = objectNameFactory;
+            if (instrumentationRegistry != null) {
+                final String prefix = MetricRegistry.name("metrics", "jmx", name);
+                this.registrations = instrumentationRegistry.timer(MetricRegistry.name(prefix, "registrations"));
+                this.failures = instrumentationRegistry.meter(MetricRegistry.name(prefix, "failures"));
+                this.mbeansGaugeName = MetricRegistry.name(prefix, "mbeans");
+                this.mbeansGauge = new Gauge<Integer>() {
+                    @Override
+                    public Integer getValue() {
+                        return registered.size();
+                    }
+                };
+            } else {
+                this.registrations = null;
+                this.failures = null;
+                this.mbeansGaugeName = null;
+                this.mbeansGauge = null;
+            }
+            this.instrumentationRegistry = instrumentationRegistry;
+        }
+
+        /**
+         * Registers the {@code mbeans} gauge, unless another reporter for the same domain already
+         * has.
+         */
+        void registerGauges() {
+            if (mbeansGauge != null) {
+                try {
+                    instrumentationRegistry.register(mbeansGaugeName, mbeansGauge);
+                } catch (IllegalArgumentException e) {
+                    LOGGER.debug("Not registering {}, which already exists", mbeansGaugeName);
+                }
+            }
+        }
+
+        void removeGauges() {
+            if (mbeansGauge != null && instrumentationRegistry.getMetrics().get(mbeansGaugeName) == mbeansGauge) {
+                instrumentationRegistry.remove(mbeansGaugeName);
+            }
         }
 
         private void registerMBean(Object mBean, ObjectName objectName) throws InstanceAlreadyExistsException, JMException {
+            if (registrations == null) {
+                doRegisterMBean(mBean, objectName);
+                return;
+            }
+            final Timer.Context context = registrations.time();
+            try {
+                doRegisterMBean(mBean, objectName);
+            } catch (JMException e) {
+                failures.mark();
+                throw e;
+            } finally {
+                context.stop();
+            }
+        }
+
+        private void doRegisterMBean(Object mBean, ObjectName objectName) throws JMException {
             ObjectInstance objectInstance = mBeanServer.registerMBean(mBean, objectName);
             if (objectInstance != null) {
                 // the websphere mbeanserver rewrites the objectname to include
@@ -708,15 +791,18 @@ public class JmxReporter implements Reporter, Closeable {
                         MetricRegistry registry,
                         MetricFilter filter,
                         MetricTimeUnits timeUnits, 
-                        ObjectNameFactory objectNameFactory) {
+                        ObjectNameFactory objectNameFactory,
+                        MetricRegistry instrumentationRegistry) {
         this.registry = registry;
-        this.listener = new JmxListener(mBeanServer, domain, filter, timeUnits, objectNameFactory);
+        this.listener = new JmxListener(mBeanServer, domain, filter, timeUnits, objectNameFactory,
+                                        instrumentationRegistry);
     }
 
     /**
      * Starts the reporter.
      */
     public void start() {
+        listener.registerGauges();
         registry.addListener(listener);
     }
 
@@ -726,6 +812,7 @@ public class JmxReporter implements Reporter, Closeable {
     public void stop() {
         registry.removeListener(listener);
         listener.unregisterAll();
+        listener.removeGauges();
     }
 
     /**
@@ -0,0 +1,150 @@
+package com.codahale.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A single, append-only CSV file which is kept open between writes and rolled over once it grows
+ * past a size limit or has been open for longer than a time limit.
+ * <p>
+ * Rolled over files are renamed to {@code <name>.<epoch millis>} (with the time the file was
+ * opened), or {@code <name>.<epoch millis>-<n>} if that file already exists, and a fresh file with
+ * the header row is started in their place. If a file can't be renamed, it's kept and appended to,
+ * and rolling it over is retried before the next write. Instances are not thread-safe;
+ * {@link CsvReporter} only touches them from within its synchronized report cycle.
+ */
+class RollingCsvFile {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RollingCsvFile.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final String header;
+    private final long maxBytes;
+    private final long maxAgeMillis;
+    private final Clock clock;
+    private final CharsetEncoder encoder;
+    private final ByteBuffer buffer;
+
+    private FileChannel channel;
+    private long openedAt;
+    private long size;
+
+    /**
+     * @param file         the file to append to
+     * @param header       the header row, without a line separator
+     * @param maxBytes     the size after which the file is rolled over, or {@code 0} for no limit
+     * @param maxAgeMillis the age after which the file is rolled over, or {@code 0} for no limit
+     * @param clock        the clock used to age the file
+     */
+    RollingCsvFile(File file, String header, long maxBytes, long maxAgeMillis, Clock clock) {
+        this.file = file;
+        this.header = header;
+        this.maxBytes = maxBytes;
+        this.maxAgeMillis = maxAgeMillis;
+        this.clock = clock;
+        this.encoder = UTF_8.newEncoder()
+                            .onMalformedInput(CodingErrorAction.REPLACE)
+                            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    /**
+     * Rolls the file over if it has outgrown its limits, opening it (and writing the header if it
+     * is new) as needed. Should be called once before each batch of {@link #write} calls.
+     */
+    void prepare() throws IOException {
+        if (channel != null && shouldRoll()) {
+            close();
+            final File rolled = rolledFile();
+            if (!file.renameTo(rolled)) {
+                LOGGER.warn("Unable to roll {} over to {}, appending to it instead", file, rolled);
+            }
+        }
+        if (channel == null) {
+            open();
+        }
+    }
+
+    /**
+     * Appends the given characters to the file, going through an internal buffer.
+     */
+    void write(CharSequence chars) throws IOException {
+        final CharBuffer in = CharBuffer.wrap(chars);
+        while (true) {
+            final CoderResult result = encoder.encode(in, buffer, true);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+        encoder.reset();
+    }
+
+    /**
+     * Writes out everything buffered so far.
+     */
+    void flush() throws IOException {
+        drain();
+    }
+
+    void close() throws IOException {
+        if (channel != null) {
+            try {
+                drain();
+            } finally {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    private File rolledFile() {
+        final String name = file.getName() + '.' + openedAt;
+        File rolled = new File(file.getParentFile(), name);
+        for (int i = 1; rolled.exists(); i++) {
+            rolled = new File(file.getParentFile(), name + '-' + i);
+        }
+        return rolled;
+    }
+
+    private boolean shouldRoll() {
+        return (maxBytes > 0 && size >= maxBytes) ||
+                (maxAgeMillis > 0 && clock.getTime() - openedAt >= maxAgeMillis);
+    }
+
+    private void open() throws IOException {
+        final boolean fileAlreadyExists = file.exists();
+        channel = new FileOutputStream(file, true).getChannel();
+        size = channel.size();
+        openedAt = clock.getTime();
+        if (!fileAlreadyExists || size == 0) {
+            write(header);
+            write(String.format("%n"));
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            size += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,191 @@
+package com.codahale.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Timers for the routes of an HTTP server, which are given as path templates like
+ * {@code /users/{id}/orders}. A segment in braces matches any single path segment, and literal
+ * segments take precedence over them, so {@code /users/me} matches {@code /users/me} rather than
+ * {@code /users/{id}}. Empty segments are ignored, and so are path parameters, from a {@code ;} to the
+ * end of their segment (e.g. {@code ;jsessionid=...}), so paths can be matched as requested.
+ * <p>
+ * The templates are compiled into a trie of path segments in which each literal segment also leads
+ * to whatever the parameters beside it match, so a path is matched in a single pass, in time
+ * proportional to its length. Each template has one timer, named
+ * {@code <prefix>.routes.<template>} with its slashes replaced by dots (and {@code root} for
+ * {@code /}). Paths which don't match any template are recorded in {@code <prefix>.other-routes},
+ * so the number of timers is bounded by the number of templates, however many paths are requested.
+ */
+public class RouteTimers {
+    private final Node root;
+    private final Timer otherRoutes;
+
+    /**
+     * Creates a new {@link RouteTimers}.
+     *
+     * @param registry  the registry for the timers
+     * @param prefix    the prefix of the timers' names
+     * @param templates the path templates of the routes
+     * @throws IllegalArgumentException if a template is malformed, or two templates match the same
+     *                                  paths
+     */
+    public RouteTimers(MetricRegistry registry, String prefix, Collection<String> templates) {
+        final Node trie = new Node();
+        for (String template : templates) {
+            Node node = trie;
+            final StringBuilder metricName = new StringBuilder();
+            for (String segment : template.split("/")) {
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                node = node.child(template, segment);
+                metricName.append(metricName.length() == 0 ? "" : ".").append(segment);
+            }
+            if (node.template != null) {
+                throw new IllegalArgumentException("Templates " + node.template + " and " + template +
+                                                           " match the same paths");
+            }
+            node.template = template;
+            node.timer = registry.timer(name(prefix, "routes", metricName.length() == 0 ? "root" : metricName.toString()));
+        }
+        this.root = compile(Collections.singletonList(trie));
+        this.otherRoutes = registry.timer(name(prefix, "other-routes"));
+    }
+
+    /**
+     * Returns the template which matches the given path.
+     *
+     * @param path a request path, without a query string
+     * @return the matching template, or {@code null} if none match
+     */
+    public String match(String path) {
+        final Node node = match(root, path);
+        return node == null ? null : node.template;
+    }
+
+    /**
+     * Returns the timer of the route which matches the given path.
+     *
+     * @param path a request path, without a query string
+     * @return the timer of the matching route, or of the other routes if none match
+     */
+    public Timer timer(String path) {
+        final Node node = match(root, path);
+        return node == null ? otherRoutes : node.timer;
+    }
+
+    private static Node match(Node root, String path) {
+        Node node = root;
+        int from = 0;
+        while (true) {
+            while (from < path.length() && path.charAt(from) == '/') {
+                from++;
+            }
+            if (from == path.length()) {
+                return node.template == null ? null : node;
+            }
+
+            int end = path.indexOf('/', from);
+            if (end < 0) {
+                end = path.length();
+            }
+            final int parameters = path.indexOf(';', from);
+            final String segment = path.substring(from, parameters >= 0 && parameters < end ? parameters : end);
+            Node next = node.literals == null ? null : node.literals.get(segment);
+            if (next == null) {
+                next = node.parameter;
+                if (next == null) {
+                    return null;
+                }
+            }
+            node = next;
+            from = end;
+        }
+    }
+
+    /**
+     * Compiles nodes of the trie, in order of precedence, into a single node which matches
+     * whatever the first of them to match would. A literal child then stands for the literals and
+     * parameters of all the nodes, so matching never has to go back and try a parameter instead.
+     */
+    private static Node compile(List<Node> nodes) {
+        final Node compiled = new Node();
+        final List<Node> parameters = new ArrayList<Node>();
+        for (Node node : nodes) {
+            if (compiled.template == null) {
+                compiled.template = node.template;
+                compiled.timer = node.timer;
+            }
+            if (node.parameter != null && !parameters.contains(node.parameter)) {
+                parameters.add(node.parameter);
+            }
+            if (node.literals != null) {
+                for (String segment : node.literals.keySet()) {
+                    if (compiled.literals == null) {
+                        compiled.literals = new HashMap<String, Node>();
+                    }
+                    if (!compiled.literals.containsKey(segment)) {
+                        compiled.literals.put(segment, compile(alternatives(nodes, segment)));
+                    }
+                }
+            }
+        }
+        if (!parameters.isEmpty()) {
+            compiled.parameter = compile(parameters);
+        }
+        return compiled;
+    }
+
+    /**
+     * Returns the children of the given nodes which match the given segment, in order of
+     * precedence.
+     */
+    private static List<Node> alternatives(List<Node> nodes, String segment) {
+        final List<Node> alternatives = new ArrayList<Node>();
+        for (Node node : nodes) {
+            final Node literal = node.literals == null ? null : node.literals.get(segment);
+            if (literal != null && !alternatives.contains(literal)) {
+                alternatives.add(literal);
+            }
+            if (node.parameter != null && !alternatives.contains(node.parameter)) {
+                alternatives.add(node.parameter);
+            }
+        }
+        return alternatives;
+    }
+
+    private static class Node {
+        private Map<String, Node> literals;
+        private Node parameter;
+        private String template;
+        private Timer timer;
+
+        private Node child(String template, String segment) {
+            if (segment.startsWith("{") && segment.endsWith("}") && segment.length() > 2) {
+                if (parameter == null) {
+                    this.parameter = new Node();
+                }
+                return parameter;
+            }
+            if (segment.indexOf('{') >= 0 || segment.indexOf('}') >= 0) {
+                throw new IllegalArgumentException("Malformed segment " + segment + " in template " + template);
+            }
+            if (literals == null) {
+                this.literals = new HashMap<String, Node>();
+            }
+            Node child = literals.get(segment);
+            if (child == null) {
+                child = new Node();
+                literals.put(segment, child);
+            }
+            return child;
+        }
+    }
+}
@@ -55,9 +55,38 @@ public abstract class ScheduledReporter implements Closeable, Reporter {
         }
     }
 
+    /**
+     * The metrics a reporter records about itself.
+     */
+    private static class Instrumentation {
+        private final Timer collectGauges;
+        private final Timer collectCounters;
+        private final Timer collectHistograms;
+        private final Timer collectMeters;
+        private final Timer collectTimers;
+        private final Timer report;
+        private final Histogram reported;
+        private final Histogram bytes;
+        private final Meter dropped;
+
+        private Instrumentation(MetricRegistry registry, String name) {
+            final String prefix = MetricRegistry.name("metrics", "reporters", name);
+            this.collectGauges = registry.timer(MetricRegistry.name(prefix, "collect", "gauges"));
+            this.collectCounters = registry.timer(MetricRegistry.name(prefix, "collect", "counters"));
+            this.collectHistograms = registry.timer(MetricRegistry.name(prefix, "collect", "histograms"));
+            this.collectMeters = registry.timer(MetricRegistry.name(prefix, "collect", "meters"));
+            this.collectTimers = registry.timer(MetricRegistry.name(prefix, "collect", "timers"));
+            this.report = registry.timer(MetricRegistry.name(prefix, "report"));
+            this.reported = registry.histogram(MetricRegistry.name(prefix, "reported"));
+            this.bytes = registry.histogram(MetricRegistry.name(prefix, "bytes"));
+            this.dropped = registry.meter(MetricRegistry.name(prefix, "dropped"));
+        }
+    }
+
     private static final AtomicInteger FACTORY_ID = new AtomicInteger();
 
     private final MetricRegistry registry;
+    private final String name;
     private final ScheduledExecutorService executor;
     private final boolean shutdownExecutorOnStop;
     private final Set<MetricAttribute> disabledMetricAttributes;
@@ -67,6 +96,7 @@ public abstract class ScheduledReporter implements Closeable, Reporter {
     private final String durationUnit;
     private final long rateFactor;
     private final String rateUnit;
+    private volatile Instrumentation instrumentation;
 
     /**
      * Creates a new {@link ScheduledReporter} instance.
@@ -134,6 +164,7 @@ public abstract class ScheduledReporter implements Closeable, Reporter {
                                 boolean shutdownExecutorOnStop,
                                 Set<MetricAttribute> disabledMetricAttributes) {
         this.registry = registry;
+        this.name = name;
         this.filter = filter;
         this.executor = executor == null? createDefaultExecutor(name) : executor;
         this.shutdownExecutorOnStop = shutdownExecutorOnStop;
@@ -248,6 +279,11 @@ public abstract class ScheduledReporter implements Closeable, Reporter {
      */
     public void report() {
         synchronized (this) {
+            final Instrumentation instrumentation = this.instrumentation;
+            if (instrumentation != null) {
+                instrumentedReport(instrumentation);
+                return;
+            }
             report(registry.getGauges(filter),
                     registry.getCounters(filter),
                     registry.getHistograms(filter),
@@ -256,6 +292,87 @@ public abstract class ScheduledReporter implements Closeable, Reporter {
         }
     }
 
+    /**
+     * Records what reporting costs into the given registry, in metrics named
+     * {@code metrics.reporters.<name>.*}:
+     * <ul>
+     * <li>{@code collect.gauges}, {@code collect.counters}, etc.: timers for collecting each type
+     * of metric from the registry</li>
+     * <li>{@code report}: a timer for {@link #report(SortedMap, SortedMap, SortedMap, SortedMap, SortedMap)},
+     * which reads, serializes and sends the metrics</li>
+     * <li>{@code reported}: a histogram of the number of metrics per report</li>
+     * <li>{@code bytes}: a histogram of the number of bytes sent per report, for reporters which
+     * record it</li>
+     * <li>{@code dropped}: a meter of the metrics which couldn't be sent</li>
+     * </ul>
+     * The given registry is meant to be separate from the one this reporter reports, and can be
+     * reported by any other reporter.
+     *
+     * @param instrumentationRegistry the registry to record into
+     * @throws IllegalArgumentException if the given registry is the one this reporter reports
+     */
+    public void instrumentInto(MetricRegistry instrumentationRegistry) {
+        if (instrumentationRegistry == registry) {
+            // every report would change the registry it is reporting
+            throw new IllegalArgumentException("A reporter can't record into the registry it reports");
+        }
+        this.instrumentation = new Instrumentation(instrumentationRegistry, name);
+    }
+
+    private void instrumentedReport(Instrumentation instrumentation) {
+        Timer.Context context = instrumentation.collectGauges.time();
+        final SortedMap<String, Gauge> gauges = registry.getGauges(filter);
+        context.stop();
+        context = instrumentation.collectCounters.time();
+        final SortedMap<String, Counter> counters = registry.getCounters(filter);
+        context.stop();
+        context = instrumentation.collectHistograms.time();
+        final SortedMap<String, Histogram> histograms = registry.getHistograms(filter);
+        context.stop();
+        context = instrumentation.collectMeters.time();
+        final SortedMap<String, Meter> meters = registry.getMeters(filter);
+        context.stop();
+        context = instrumentation.collectTimers.time();
+        final SortedMap<String, Timer> timers = registry.getTimers(filter);
+        context.stop();
+
+        final int count = gauges.size() + counters.size() + histograms.size() + meters.size() + timers.size();
+        instrumentation.reported.update(count);
+        context = instrumentation.report.time();
+        try {
+            report(gauges, counters, histograms, meters, timers);
+        } catch (RuntimeException e) {
+            instrumentation.dropped.mark(count);
+            throw e;
+        } finally {
+            context.stop();
+        }
+    }
+
+    /**
+     * Records the number of bytes sent by a report, if this reporter is instrumented.
+     *
+     * @param bytes the number of bytes
+     */
+    protected void recordBytes(long bytes) {
+        final Instrumentation instrumentation = this.instrumentation;
+        if (instrumentation != null) {
+            instrumentation.bytes.update(bytes);
+        }
+    }
+
+    /**
+     * Records metrics which couldn't be sent, if this reporter is instrumented.
+     *
+     * @param count the number of metrics
+     */
+    protected void recordDropped(long count) {
+        final Instrumentation instrumentation = this.instrumentation;
+        if (instrumentation != null) {
+            instrumentation.dropped.mark(count);
+        }
+    }
+
     /**
      * Called periodically by the polling thread. Subclasses should report all the given metrics.
      *
@@ -187,6 +187,155 @@ public class CsvReporterTest {
         verify(fileProvider).getFile(dataDirectory, "gauge");
     }
 
+    @Test
+    public void reportsAllMetricsToASingleFile() throws Exception {
+        final CsvReporter reporter = CsvReporter.forRegistry(registry)
+                                                .formatFor(Locale.US)
+                                                .withClock(clock)
+                                                .writeToSingleFile("metrics.csv")
+                                                .build(dataDirectory);
+
+        final Gauge gauge = mock(Gauge.class);
+        when(gauge.getValue()).thenReturn("a,b");
+
+        final Counter counter = mock(Counter.class);
+        when(counter.getCount()).thenReturn(100L);
+
+        final Meter meter = mock(Meter.class);
+        when(meter.getCount()).thenReturn(1L);
+        when(meter.getMeanRate()).thenReturn(2.0);
+        when(meter.getOneMinuteRate()).thenReturn(3.0);
+        when(meter.getFiveMinuteRate()).thenReturn(4.0);
+        when(meter.getFifteenMinuteRate()).thenReturn(5.0);
+
+        reporter.report(map("gauge", gauge),
+                        map("test.counter", counter),
+                        this.<Histogram>map(),
+                        map("test.meter", meter),
+                        this.<Timer>map());
+        reporter.report(this.<Gauge>map(),
+                        map("test.counter", counter),
+                        this.<Histogram>map(),
+                        this.<Meter>map(),
+                        this.<Timer>map());
+        reporter.stop();
+
+        assertThat(fileContents("metrics.csv"))
+                .isEqualTo(csv(
+                        "t,name,attribute,value,unit",
+                        "19910191,gauge,value,\"a,b\",",
+                        "19910191,test.counter,count,100,",
+                        "19910191,test.meter,count,1,",
+                        "19910191,test.meter,mean_rate,2.000000,events/second",
+                        "19910191,test.meter,m1_rate,3.000000,events/second",
+                        "19910191,test.meter,m5_rate,4.000000,events/second",
+                        "19910191,test.meter,m15_rate,5.000000,events/second",
+                        "19910191,test.counter,count,100,"
+                ));
+        assertThat(dataDirectory.list()).containsOnly("metrics.csv");
+    }
+
+    @Test
+    public void rollsTheSingleFileOverByAge() throws Exception {
+        final CsvReporter reporter = CsvReporter.forRegistry(registry)
+                                                .withClock(clock)
+                                                .writeToSingleFile("metrics.csv")
+                                                .rollOverEvery(1, TimeUnit.MINUTES)
+                                                .build(dataDirectory);
+
+        final Counter counter = mock(Counter.class);
+        when(counter.getCount()).thenReturn(100L);
+
+        reporter.report(this.<Gauge>map(),
+                        map("test.counter", counter),
+                        this.<Histogram>map(),
+                        this.<Meter>map(),
+                        this.<Timer>map());
+
+        when(clock.getTime()).thenReturn(19910191000L + TimeUnit.MINUTES.toMillis(1));
+
+        reporter.report(this.<Gauge>map(),
+                        map("test.counter", counter),
+                        this.<Histogram>map(),
+                        this.<Meter>map(),
+                        this.<Timer>map());
+        reporter.stop();
+
+        assertThat(fileContents("metrics.csv.19910191000"))
+                .isEqualTo(csv(
+                        "t,name,attribute,value,unit",
+                        "19910191,test.counter,count,100,"
+                ));
+        assertThat(fileContents("metrics.csv"))
+                .isEqualTo(csv(
+                        "t,name,attribute,value,unit",
+                        "19910251,test.counter,count,100,"
+                ));
+    }
+
+    @Test
+    public void rollsTheSingleFileOverBySize() throws Exception {
+        final CsvReporter reporter = CsvReporter.forRegistry(registry)
+                                                .withClock(clock)
+                                                .writeToSingleFile("metrics.csv")
+                                                .rollOverAtSize(1)
+                                                .build(dataDirectory);
+
+        final Counter counter = mock(Counter.class);
+        when(counter.getCount()).thenReturn(100L);
+
+        reporter.report(this.<Gauge>map(),
+                        map("test.counter", counter),
+                        this.<Histogram>map(),
+                        this.<Meter>map(),
+                        this.<Timer>map());
+
+        when(clock.getTime()).thenReturn(19910192000L);
+
+        reporter.report(this.<Gauge>map(),
+                        map("test.counter", counter),
+                        this.<Histogram>map(),
+                        this.<Meter>map(),
+                        this.<Timer>map());
+        reporter.stop();
+
+        assertThat(dataDirectory.list()).containsOnly("metrics.csv", "metrics.csv.19910191000");
+        assertThat(fileContents("metrics.csv"))
+                .isEqualTo(csv(
+                        "t,name,attribute,value,unit",
+                        "19910192,test.counter,count,100,"
+                ));
+    }
+
+    @Test
+    public void rollsTheSingleFileOverRepeatedlyWithinAMillisecond() throws Exception {
+        final CsvReporter reporter = CsvReporter.forRegistry(registry)
+                                                .withClock(clock)
+                                                .writeToSingleFile("metrics.csv")
+                                                .rollOverAtSize(1)
+                                                .build(dataDirectory);
+
+        final Counter counter = mock(Counter.class);
+        when(counter.getCount()).thenReturn(100L);
+
+        for (int i = 0; i < 3; i++) {
+            reporter.report(this.<Gauge>map(),
+                            map("test.counter", counter),
+                            this.<Histogram>map(),
+                            this.<Meter>map(),
+                            this.<Timer>map());
+        }
+        reporter.stop();
+
+        assertThat(dataDirectory.list())
+                .containsOnly("metrics.csv", "metrics.csv.19910191000", "metrics.csv.19910191000-1");
+        assertThat(fileContents("metrics.csv.19910191000-1"))
+                .isEqualTo(csv(
+                        "t,name,attribute,value,unit",
+                        "19910191,test.counter,count,100,"
+                ));
+    }
+
     private String csv(String... lines) {
         final StringBuilder builder = new StringBuilder();
         for (String line : lines) {
@@ -5,12 +5,22 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class InstrumentedExecutorServiceTest {
 
@@ -48,6 +58,143 @@ public class InstrumentedExecutorServiceTest {
         assertThat(completed.getCount()).isEqualTo(1);
         assertThat(duration.getCount()).isEqualTo(1);
         assertThat(duration.getSnapshot().size()).isEqualTo(1);
+        assertThat(registry.timer("xs.idle").getCount()).isEqualTo(1);
+        assertThat(registry.meter("xs.rejected").getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void reportsRejectionsAndThreadPoolExecutorGauges() throws Exception {
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                                                               new ArrayBlockingQueue<Runnable>(1));
+        final InstrumentedExecutorService instrumented = new InstrumentedExecutorService(pool, registry, "tpe");
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Runnable blocker = new Runnable() {
+            @Override
+            public void run() {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        try {
+            instrumented.execute(blocker);
+            running.await();
+            instrumented.execute(blocker);
+            try {
+                instrumented.execute(blocker);
+                fail("should have been rejected");
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+
+            assertThat(registry.meter("tpe.rejected").getCount()).isEqualTo(1);
+            assertThat(registry.getGauges().get("tpe.pool.max").getValue()).isEqualTo(1);
+            assertThat(registry.getGauges().get("tpe.tasks.active").getValue()).isEqualTo(1);
+            assertThat(registry.getGauges().get("tpe.tasks.queued").getValue()).isEqualTo(1);
+            assertThat(registry.getGauges().get("tpe.tasks.capacity").getValue()).isEqualTo(0);
+            assertThat(registry.getGauges().get("tpe.pool.saturation").getValue()).isEqualTo(1.0);
+            assertThat(registry.getGauges().get("tpe.queue.saturation").getValue()).isEqualTo(1.0);
+        } finally {
+            release.countDown();
+            pool.shutdown();
+            pool.awaitTermination(2, TimeUnit.SECONDS);
+        }
+        assertThat(registry.timer("tpe.idle").getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void reportsForkJoinPoolGauges() throws Exception {
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        final InstrumentedExecutorService instrumented = new InstrumentedExecutorService(pool, registry, "fjp");
+        try {
+            instrumented.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+
+            assertThat(registry.getGauges().keySet())
+                    .contains("fjp.tasks.stolen", "fjp.tasks.queued", "fjp.threads.active",
+                              "fjp.threads.running", "fjp.pool.saturation");
+            assertThat((Long) registry.getGauges().get("fjp.tasks.stolen").getValue()).isGreaterThanOrEqualTo(0L);
+            assertThat(registry.timer("fjp.idle").getCount()).isEqualTo(1);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void sharesTheMetricsOfExecutorsWithTheSameName() throws Exception {
+        final ThreadPoolExecutor first = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                                                                new ArrayBlockingQueue<Runnable>(1));
+        final ThreadPoolExecutor second = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS,
+                                                                 new ArrayBlockingQueue<Runnable>(1));
+        try {
+            new InstrumentedExecutorService(first, registry, "workers");
+            new InstrumentedExecutorService(second, registry, "workers");
+
+            assertThat(registry.getGauges().get("workers.pool.max").getValue())
+                    .isEqualTo(1);
+            assertThat(registry.getMeters()).containsKey("workers.submitted");
+        } finally {
+            first.shutdown();
+            second.shutdown();
+        }
+    }
+
+    @Test
+    public void measuresTheSaturationOfPoolsWithUnboundedQueuesAgainstTheirCoreSize() throws Exception {
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(2, 10, 0, TimeUnit.SECONDS,
+                                                               new LinkedBlockingQueue<Runnable>());
+        final InstrumentedExecutorService instrumented = new InstrumentedExecutorService(pool, registry, "unbounded");
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            instrumented.execute(new Runnable() {
+                @Override
+                public void run() {
+                    running.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            running.await();
+
+            assertThat(registry.getGauges().get("unbounded.pool.saturation").getValue()).isEqualTo(0.5);
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void marksEveryRejectedTaskOfABatch() throws Exception {
+        instrumentedExecutorService.shutdown();
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < 3; i++) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    return null;
+                }
+            });
+        }
+        try {
+            instrumentedExecutorService.invokeAll(tasks);
+            fail("should have been rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        assertThat(registry.meter("xs.submitted").getCount()).isEqualTo(3);
+        assertThat(registry.meter("xs.rejected").getCount()).isEqualTo(3);
     }
 
     @After
@@ -5,9 +5,12 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
 
 public class InstrumentedScheduledExecutorServiceTest {
     private static final Logger LOGGER = LoggerFactory.getLogger(InstrumentedScheduledExecutorServiceTest.class);
@@ -256,6 +259,103 @@ public class InstrumentedScheduledExecutorServiceTest {
         assertThat(percentOfPeriod.getCount()).isNotEqualTo(0);
     }
 
+    @Test
+    public void recordsTheDriftOfScheduledTasks() throws Exception {
+        final Timer drift = registry.timer("xs.scheduled.drift");
+
+        instrumentedScheduledExecutor.schedule(new Runnable() {
+            public void run() {
+            }
+        }, 10L, TimeUnit.MILLISECONDS).get();
+
+        assertThat(drift.getCount()).isEqualTo(1);
+        assertThat(registry.timer("xs.idle").getCount()).isZero();
+    }
+
+    @Test
+    public void recordsTheDriftOfEachRunOfFixedDelayTasks() throws Exception {
+        final Timer drift = registry.timer("xs.scheduled.drift");
+        final CountDownLatch runs = new CountDownLatch(3);
+
+        final ScheduledFuture<?> theFuture = instrumentedScheduledExecutor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                runs.countDown();
+            }
+        }, 0L, 5L, TimeUnit.MILLISECONDS);
+        assertThat(runs.await(2, TimeUnit.SECONDS)).isTrue();
+        theFuture.cancel(true);
+
+        assertThat(drift.getCount()).isGreaterThanOrEqualTo(3);
+        // only fixed-rate tasks have a period to overrun
+        assertThat(percentOfPeriod.getCount()).isZero();
+    }
+
+    @Test
+    public void sharesTheMetricsOfExecutorsWithTheSameName() throws Exception {
+        final ScheduledThreadPoolExecutor first = new ScheduledThreadPoolExecutor(1);
+        final ScheduledThreadPoolExecutor second = new ScheduledThreadPoolExecutor(2);
+        try {
+            new InstrumentedScheduledExecutorService(first, registry, "timers");
+            new InstrumentedScheduledExecutorService(second, registry, "timers");
+
+            assertThat(registry.getGauges().get("timers.pool.core").getValue())
+                    .isEqualTo(1);
+            assertThat(registry.getTimers()).containsKey("timers.scheduled.drift");
+        } finally {
+            first.shutdown();
+            second.shutdown();
+        }
+    }
+
+    @Test
+    public void measuresTheSaturationOfScheduledPoolsAgainstTheirCoreSize() throws Exception {
+        final ScheduledThreadPoolExecutor pool = new ScheduledThreadPoolExecutor(4);
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            new InstrumentedScheduledExecutorService(pool, registry, "scheduled").execute(new Runnable() {
+                @Override
+                public void run() {
+                    running.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            running.await();
+
+            assertThat(registry.getGauges().get("scheduled.pool.saturation").getValue()).isEqualTo(0.25);
+        } finally {
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void marksEveryRejectedTaskOfABatch() throws Exception {
+        instrumentedScheduledExecutor.shutdown();
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int i = 0; i < 3; i++) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    return null;
+                }
+            });
+        }
+        try {
+            instrumentedScheduledExecutor.invokeAll(tasks);
+            failBecauseExceptionWasNotThrown(RejectedExecutionException.class);
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        assertThat(submitted.getCount()).isEqualTo(3);
+        assertThat(registry.meter("xs.rejected").getCount()).isEqualTo(3);
+    }
+
     @After
     public void tearDown() throws Exception {
         instrumentedScheduledExecutor.shutdown();
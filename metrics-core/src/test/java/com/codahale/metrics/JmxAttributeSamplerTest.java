@@ -0,0 +1,71 @@
+package com.codahale.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JmxAttributeSamplerTest {
+    private final MBeanServer mBeanServer = mock(MBeanServer.class);
+    private final Clock clock = mock(Clock.class);
+    private final String[] attributes = { "Count", "MemoryUsed" };
+    private ObjectName objectName;
+    private JmxAttributeSampler sampler;
+
+    @Before
+    public void setUp() throws Exception {
+        objectName = new ObjectName("java.nio:type=BufferPool,name=direct");
+        sampler = new JmxAttributeSampler(mBeanServer, objectName, clock, 10, TimeUnit.SECONDS, attributes);
+
+        final AttributeList values = new AttributeList();
+        values.add(new Attribute("Count", 1L));
+        values.add(new Attribute("MemoryUsed", 2L));
+        when(mBeanServer.getAttributes(objectName, attributes)).thenReturn(values);
+    }
+
+    @Test
+    public void fetchesAllAttributesOnceForAllGauges() throws Exception {
+        when(clock.getTick()).thenReturn(0L, TimeUnit.SECONDS.toNanos(5));
+
+        assertThat(sampler.gauge("Count").getValue())
+                .isEqualTo(1L);
+        assertThat(sampler.gauge("MemoryUsed").getValue())
+                .isEqualTo(2L);
+
+        verify(mBeanServer, times(1)).getAttributes(objectName, attributes);
+    }
+
+    @Test
+    public void fetchesTheAttributesAgainOnceTheIntervalHasPassed() throws Exception {
+        when(clock.getTick()).thenReturn(0L, TimeUnit.SECONDS.toNanos(10));
+
+        sampler.gauge("Count").getValue();
+        sampler.gauge("Count").getValue();
+
+        verify(mBeanServer, times(2)).getAttributes(objectName, attributes);
+    }
+
+    @Test
+    public void returnsNullForAttributesWhichCannotBeFetched() throws Exception {
+        when(mBeanServer.getAttributes(objectName, attributes)).thenThrow(new InstanceNotFoundException());
+
+        assertThat(sampler.gauge("Count").getValue())
+                .isNull();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void doesNotHaveGaugesForOtherAttributes() throws Exception {
+        sampler.gauge("TotalCapacity");
+    }
+}
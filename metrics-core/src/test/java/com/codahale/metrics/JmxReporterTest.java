@@ -270,6 +270,67 @@ public class JmxReporterTest {
     	
     }
 
+    @Test
+    public void recordsItsOwnCostsWhenInstrumented() throws Exception {
+        final MBeanServer mockedMBeanServer = mock(MBeanServer.class);
+        when(mockedMBeanServer.registerMBean(any(Object.class), eq(new ObjectName(name + ":name=dupe"))))
+                .thenThrow(new InstanceAlreadyExistsException());
+        final MetricRegistry testRegistry = new MetricRegistry();
+        final MetricRegistry instrumentation = new MetricRegistry();
+        final JmxReporter testJmxReporter = JmxReporter.forRegistry(testRegistry)
+                                                       .registerWith(mockedMBeanServer)
+                                                       .inDomain(name)
+                                                       .instrumentInto(instrumentation)
+                                                       .build();
+        testJmxReporter.start();
+
+        testRegistry.counter("counter");
+        testRegistry.timer("timer");
+        testRegistry.counter("dupe");
+
+        assertThat(instrumentation.timer("metrics.jmx." + name + ".registrations").getCount())
+                .isEqualTo(3);
+        assertThat(instrumentation.meter("metrics.jmx." + name + ".failures").getCount())
+                .isEqualTo(1);
+        assertThat(instrumentation.getGauges().get("metrics.jmx." + name + ".mbeans").getValue())
+                .isEqualTo(2);
+
+        testJmxReporter.stop();
+    }
+
+    @Test
+    public void sharesItsGaugeWithReportersForTheSameDomainAndRemovesItOnStop() throws Exception {
+        final MetricRegistry instrumentation = new MetricRegistry();
+        final JmxReporter first = JmxReporter.forRegistry(new MetricRegistry())
+                                             .registerWith(mock(MBeanServer.class))
+                                             .inDomain(name)
+                                             .instrumentInto(instrumentation)
+                                             .build();
+        final JmxReporter second = JmxReporter.forRegistry(new MetricRegistry())
+                                              .registerWith(mock(MBeanServer.class))
+                                              .inDomain(name)
+                                              .instrumentInto(instrumentation)
+                                              .build();
+        first.start();
+        second.start();
+
+        assertThat(instrumentation.getGauges().keySet())
+                .containsOnly("metrics.jmx." + name + ".mbeans");
+
+        second.stop();
+        assertThat(instrumentation.getGauges().keySet())
+                .containsOnly("metrics.jmx." + name + ".mbeans");
+
+        first.stop();
+        assertThat(instrumentation.getGauges())
+                .isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void disallowsRecordingIntoTheReportedRegistry() throws Exception {
+        JmxReporter.forRegistry(registry).instrumentInto(registry);
+    }
+
     @Test
     public void testJmxMetricNameWithAsterisk() {
         MetricRegistry metricRegistry = new MetricRegistry();
@@ -0,0 +1,128 @@
+package com.codahale.metrics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class RouteTimersTest {
+    private final MetricRegistry registry = new MetricRegistry();
+    private final RouteTimers routes = new RouteTimers(registry, "app", Arrays.asList(
+            "/",
+            "/users",
+            "/users/{id}",
+            "/users/me/settings",
+            "/users/{id}/orders/{order}"
+    ));
+
+    @Test
+    public void registersATimerPerTemplateAndOneForOtherRoutes() throws Exception {
+        assertThat(registry.getNames())
+                .containsOnly("app.routes.root",
+                              "app.routes.users",
+                              "app.routes.users.{id}",
+                              "app.routes.users.me.settings",
+                              "app.routes.users.{id}.orders.{order}",
+                              "app.other-routes");
+    }
+
+    @Test
+    public void matchesLiteralsAndParameters() throws Exception {
+        assertThat(routes.match("/"))
+                .isEqualTo("/");
+        assertThat(routes.match(""))
+                .isEqualTo("/");
+        assertThat(routes.match("/users/"))
+                .isEqualTo("/users");
+        assertThat(routes.match("/users/42"))
+                .isEqualTo("/users/{id}");
+        assertThat(routes.match("/users/42/orders/7"))
+                .isEqualTo("/users/{id}/orders/{order}");
+        assertThat(routes.match("//users//me/settings"))
+                .isEqualTo("/users/me/settings");
+    }
+
+    @Test
+    public void prefersLiteralsButFallsBackToParameters() throws Exception {
+        assertThat(routes.match("/users/me"))
+                .isEqualTo("/users/{id}");
+        assertThat(routes.match("/users/me/orders/7"))
+                .isEqualTo("/users/{id}/orders/{order}");
+    }
+
+    @Test
+    public void fallsBackToParametersAtAnyDepth() throws Exception {
+        final RouteTimers nested = new RouteTimers(registry, "nested", Arrays.asList(
+                "/a/b/c",
+                "/a/{y}/d",
+                "/{x}/b/e",
+                "/{x}/{y}/f"
+        ));
+
+        assertThat(nested.match("/a/b/c"))
+                .isEqualTo("/a/b/c");
+        assertThat(nested.match("/a/b/d"))
+                .isEqualTo("/a/{y}/d");
+        assertThat(nested.match("/a/b/e"))
+                .isEqualTo("/{x}/b/e");
+        assertThat(nested.match("/a/b/f"))
+                .isEqualTo("/{x}/{y}/f");
+        assertThat(nested.match("/z/b/c"))
+                .isNull();
+        assertThat(nested.match("/a/b"))
+                .isNull();
+    }
+
+    @Test
+    public void ignoresPathParameters() throws Exception {
+        assertThat(routes.match("/users;jsessionid=abc/42"))
+                .isEqualTo("/users/{id}");
+        assertThat(routes.match("/users/me;v=1/settings;jsessionid=abc"))
+                .isEqualTo("/users/me/settings");
+    }
+
+    @Test
+    public void doesNotMatchOtherPaths() throws Exception {
+        assertThat(routes.match("/users/42/orders"))
+                .isNull();
+        assertThat(routes.match("/orders"))
+                .isNull();
+    }
+
+    @Test
+    public void recordsUnmatchedPathsInOtherRoutes() throws Exception {
+        routes.timer("/users/42").time().stop();
+        routes.timer("/users/43").time().stop();
+        routes.timer("/nope").time().stop();
+        routes.timer("/nope/either").time().stop();
+
+        assertThat(registry.timer("app.routes.users.{id}").getCount())
+                .isEqualTo(2);
+        assertThat(registry.timer("app.other-routes").getCount())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void rejectsMalformedTemplates() throws Exception {
+        try {
+            new RouteTimers(registry, "bad", Arrays.asList("/users/{id"));
+            fail("should have thrown");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage())
+                    .contains("{id");
+        }
+    }
+
+    @Test
+    public void rejectsTemplatesWhichMatchTheSamePaths() throws Exception {
+        try {
+            new RouteTimers(registry, "bad", Arrays.asList("/users/{id}", "/users/{name}/"));
+            fail("should have thrown");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage())
+                    .contains("/users/{id}");
+        }
+    }
+}
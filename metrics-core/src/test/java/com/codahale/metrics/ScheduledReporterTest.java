@@ -184,6 +184,47 @@ public class ScheduledReporterTest {
         assertEquals(2.0E-5, reporter.convertDuration(20), 0.0);
     }
 
+    @Test
+    public void recordsItsOwnCostsWhenInstrumented() throws Exception {
+        final MetricRegistry instrumentation = new MetricRegistry();
+        reporter.instrumentInto(instrumentation);
+
+        reporter.report();
+        reporter.report();
+
+        assertEquals(2, instrumentation.timer("metrics.reporters.example.collect.gauges").getCount());
+        assertEquals(2, instrumentation.timer("metrics.reporters.example.collect.timers").getCount());
+        assertEquals(2, instrumentation.timer("metrics.reporters.example.report").getCount());
+        assertEquals(5, instrumentation.histogram("metrics.reporters.example.reported").getSnapshot().getMax());
+        assertEquals(0, instrumentation.meter("metrics.reporters.example.dropped").getCount());
+    }
+
+    @Test
+    public void recordsTheMetricsOfFailedReportsAsDropped() throws Exception {
+        final MetricRegistry instrumentation = new MetricRegistry();
+        reporter.instrumentInto(instrumentation);
+        doThrow(new IllegalStateException("down")).when(reporter).report(
+                map("gauge", gauge),
+                map("counter", counter),
+                map("histogram", histogram),
+                map("meter", meter),
+                map("timer", timer)
+        );
+
+        try {
+            reporter.report();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertEquals(5, instrumentation.meter("metrics.reporters.example.dropped").getCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldDisallowRecordingIntoTheReportedRegistry() throws Exception {
+        reporter.instrumentInto(registry);
+    }
+
     private <T> SortedMap<String, T> map(String name, T value) {
         final SortedMap<String, T> map = new TreeMap<String, T>();
         map.put(name, value);
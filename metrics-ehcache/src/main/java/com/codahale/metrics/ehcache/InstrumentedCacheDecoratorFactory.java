@@ -7,18 +7,29 @@ import net.sf.ehcache.constructs.CacheDecoratorFactory;
 
 import java.util.Properties;
 
+/**
+ * A {@link CacheDecoratorFactory} which instruments caches with the shared registry named by the
+ * {@code metric-registry-name} property, timing one in {@code sampling-interval} operations if
+ * that property is set.
+ */
 public class InstrumentedCacheDecoratorFactory extends CacheDecoratorFactory {
     @Override
     public Ehcache createDecoratedEhcache(Ehcache cache, Properties properties) {
-        final String name = properties.getProperty("metric-registry-name");
-        final MetricRegistry registry = SharedMetricRegistries.getOrCreate(name);
-        return InstrumentedEhcache.instrument(registry, cache);
+        return instrument(cache, properties);
     }
 
     @Override
     public Ehcache createDefaultDecoratedEhcache(Ehcache cache, Properties properties) {
+        return instrument(cache, properties);
+    }
+
+    private static Ehcache instrument(Ehcache cache, Properties properties) {
         final String name = properties.getProperty("metric-registry-name");
         final MetricRegistry registry = SharedMetricRegistries.getOrCreate(name);
-        return InstrumentedEhcache.instrument(registry, cache);
+        final String samplingInterval = properties.getProperty("sampling-interval");
+        if (samplingInterval == null) {
+            return InstrumentedEhcache.instrument(registry, cache);
+        }
+        return InstrumentedEhcache.instrument(registry, cache, Integer.parseInt(samplingInterval.trim()));
     }
 }
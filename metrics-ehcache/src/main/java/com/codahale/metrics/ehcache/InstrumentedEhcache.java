@@ -1,5 +1,8 @@
 package com.codahale.metrics.ehcache;
 
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
@@ -10,6 +13,7 @@ import net.sf.ehcache.constructs.EhcacheDecoratorAdapter;
 import net.sf.ehcache.statistics.StatisticsGateway;
 
 import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
@@ -106,7 +110,14 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
      * "None", "Best Effort" or "Guaranteed".</td>
      * </tr>
      * </table>
-     *
+     * <p/>
+     * The statistics are all read from a single {@link StatisticsGateway}
+     * snapshot, which is kept for a second.
+     * <p/>
+     * Gets are also counted in the {@code get-hits} and {@code get-misses}
+     * counters, and timed in the {@code gets.hits} and {@code gets.misses}
+     * timers as well as {@code gets}.
+     * <p/>
      * <b>N.B.: This enables Ehcache's sampling statistics with an accuracy
      * level of "none."</b>
      *
@@ -116,13 +127,50 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
      * @see StatisticsGateway
      */
     public static Ehcache instrument(MetricRegistry registry, final Ehcache cache) {
+        return instrument(registry, cache, 1);
+    }
+
+    /**
+     * Instruments the given {@link Ehcache} instance like {@link #instrument(MetricRegistry, Ehcache)},
+     * but only times one in {@code samplingInterval} gets and puts on each thread. Hits and misses
+     * are still all counted.
+     *
+     * @param registry         a {@link MetricRegistry}
+     * @param cache            an {@link Ehcache} instance
+     * @param samplingInterval the number of operations per timed operation
+     * @return an instrumented decorator for {@code cache}
+     */
+    public static Ehcache instrument(MetricRegistry registry, Ehcache cache, int samplingInterval) {
+        return instrument(registry, cache, samplingInterval,
+                          DEFAULT_STATISTICS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Instruments the given {@link Ehcache} instance like
+     * {@link #instrument(MetricRegistry, Ehcache, int)}, reading Ehcache's statistics at most once
+     * per {@code statisticsInterval}.
+     *
+     * @param registry           a {@link MetricRegistry}
+     * @param cache              an {@link Ehcache} instance
+     * @param samplingInterval   the number of operations per timed operation
+     * @param statisticsInterval how long the statistics gauges' values are kept
+     * @param statisticsUnit     the unit of {@code statisticsInterval}
+     * @return an instrumented decorator for {@code cache}
+     */
+    public static Ehcache instrument(MetricRegistry registry, final Ehcache cache, int samplingInterval,
+                                     long statisticsInterval, TimeUnit statisticsUnit) {
+        if (samplingInterval < 1) {
+            throw new IllegalArgumentException("samplingInterval must be at least 1: " + samplingInterval);
+        }
 
         final String prefix = name(cache.getClass(), cache.getName());
+        final StatisticsGauge statistics = new StatisticsGauge(cache, statisticsInterval, statisticsUnit);
+
         registry.register(name(prefix, "hits"),
                           new Gauge<Long>() {
                               @Override
                               public Long getValue() {
-                                  return cache.getStatistics().cacheHitCount();
+                                  return statistics.getValue().hits;
                               }
                           });
 
@@ -130,7 +178,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Long>() {
                               @Override
                               public Long getValue() {
-                                  return cache.getStatistics().localHeapHitCount();
+                                  return statistics.getValue().inMemoryHits;
                               }
                           });
 
@@ -138,7 +186,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Long>() {
                               @Override
                               public Long getValue() {
-                                  return cache.getStatistics().localOffHeapHitCount();
+                                  return statistics.getValue().offHeapHits;
                               }
                           });
 
@@ -146,7 +194,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Long>() {
                               @Override
                               public Long getValue() {
-                                  return cache.getStatistics().localDiskHitCount();
+                                  return statistics.getValue().onDiskHits;
                               }
                           });
 
@@ -154,7 +202,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Long>() {
                               @Override
                               public Long getValue() {
-                                  return cache.getStatistics().cacheMissCount();
+                                  return statistics.getValue().misses;
                               }
                           });
 
@@ -162,7 +210,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Long>() {
                               @Override
                               public Long getValue() {
-                                  return cache.getStatistics().localHeapMissCount();
+                                  return statistics.getValue().inMemoryMisses;
                               }
                           });
 
@@ -170,7 +218,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Long>() {
                               @Override
                               public Long getValue() {
-                                  return cache.getStatistics().localOffHeapMissCount();
+                                  return statistics.getValue().offHeapMisses;
                               }
                           });
 
@@ -178,7 +226,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Long>() {
                               @Override
                               public Long getValue() {
-                                  return cache.getStatistics().localDiskMissCount();
+                                  return statistics.getValue().onDiskMisses;
                               }
                           });
 
@@ -186,7 +234,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Long>() {
                               @Override
                               public Long getValue() {
-                                  return cache.getStatistics().getSize();
+                                  return statistics.getValue().objects;
                               }
                           });
 
@@ -194,7 +242,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Long>() {
                               @Override
                               public Long getValue() {
-                                  return cache.getStatistics().getLocalHeapSize();
+                                  return statistics.getValue().inMemoryObjects;
                               }
                           });
 
@@ -202,7 +250,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Long>() {
                               @Override
                               public Long getValue() {
-                                  return cache.getStatistics().getLocalOffHeapSize();
+                                  return statistics.getValue().offHeapObjects;
                               }
                           });
 
@@ -210,7 +258,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Long>() {
                               @Override
                               public Long getValue() {
-                                  return cache.getStatistics().getLocalDiskSize();
+                                  return statistics.getValue().onDiskObjects;
                               }
                           });
 
@@ -218,7 +266,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Double>() {
                               @Override
                               public Double getValue() {
-                                  return cache.getStatistics().cacheGetOperation().latency().average().value();
+                                  return statistics.getValue().meanGetTime;
                               }
                           });
 
@@ -226,7 +274,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Double>() {
                               @Override
                               public Double getValue() {
-                                  return cache.getStatistics().cacheSearchOperation().latency().average().value();
+                                  return statistics.getValue().meanSearchTime;
                               }
                           });
 
@@ -234,7 +282,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Long>() {
                               @Override
                               public Long getValue() {
-                                  return cache.getStatistics().cacheEvictionOperation().count().value();
+                                  return statistics.getValue().evictionCount;
                               }
                           });
 
@@ -242,7 +290,7 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Double>() {
                               @Override
                               public Double getValue() {
-                                  return cache.getStatistics().cacheSearchOperation().rate().value();
+                                  return statistics.getValue().searchesPerSecond;
                               }
                           });
 
@@ -250,43 +298,62 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
                           new Gauge<Long>() {
                               @Override
                               public Long getValue() {
-                                  return cache.getStatistics().getWriterQueueLength();
+                                  return statistics.getValue().writerQueueSize;
                               }
                           });
 
-        return new InstrumentedEhcache(registry, cache);
+        return new InstrumentedEhcache(registry, cache, samplingInterval);
     }
 
-    private final Timer getTimer, putTimer;
+    private static final long DEFAULT_STATISTICS_INTERVAL_SECONDS = 1;
+
+    private final Timer getTimer, putTimer, hitTimer, missTimer;
+    private final Counter hits, misses;
+    private final int samplingInterval;
+    private final ThreadLocal<int[]> operations;
+    private final Clock clock = Clock.defaultClock();
 
-    private InstrumentedEhcache(MetricRegistry registry, Ehcache cache) {
+    private InstrumentedEhcache(MetricRegistry registry, Ehcache cache, int samplingInterval) {
         super(cache);
         this.getTimer = registry.timer(name(cache.getClass(), cache.getName(), "gets"));
         this.putTimer = registry.timer(name(cache.getClass(), cache.getName(), "puts"));
+        this.hitTimer = registry.timer(name(cache.getClass(), cache.getName(), "gets", "hits"));
+        this.missTimer = registry.timer(name(cache.getClass(), cache.getName(), "gets", "misses"));
+        this.hits = registry.counter(name(cache.getClass(), cache.getName(), "get-hits"));
+        this.misses = registry.counter(name(cache.getClass(), cache.getName(), "get-misses"));
+        this.samplingInterval = samplingInterval;
+        this.operations = new ThreadLocal<int[]>() {
+            @Override
+            protected int[] initialValue() {
+                return new int[1];
+            }
+        };
     }
 
     @Override
     public Element get(Object key) throws IllegalStateException, CacheException {
-        final Timer.Context ctx = getTimer.time();
-        try {
-            return underlyingCache.get(key);
-        } finally {
-            ctx.stop();
-        }
+        final boolean sampled = sample();
+        final long start = sampled ? clock.getTick() : 0;
+        final Element element = underlyingCache.get(key);
+        recordGet(sampled, start, element);
+        return element;
     }
 
     @Override
     public Element get(Serializable key) throws IllegalStateException, CacheException {
-        final Timer.Context ctx = getTimer.time();
-        try {
-            return underlyingCache.get(key);
-        } finally {
-            ctx.stop();
-        }
+        final boolean sampled = sample();
+        final long start = sampled ? clock.getTick() : 0;
+        final Element element = underlyingCache.get(key);
+        recordGet(sampled, start, element);
+        return element;
     }
 
     @Override
     public void put(Element element) throws IllegalArgumentException, IllegalStateException, CacheException {
+        if (!sample()) {
+            underlyingCache.put(element);
+            return;
+        }
         final Timer.Context ctx = putTimer.time();
         try {
             underlyingCache.put(element);
@@ -297,6 +364,10 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
 
     @Override
     public void put(Element element, boolean doNotNotifyCacheReplicators) throws IllegalArgumentException, IllegalStateException, CacheException {
+        if (!sample()) {
+            underlyingCache.put(element, doNotNotifyCacheReplicators);
+            return;
+        }
         final Timer.Context ctx = putTimer.time();
         try {
             underlyingCache.put(element, doNotNotifyCacheReplicators);
@@ -307,6 +378,9 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
 
     @Override
     public Element putIfAbsent(Element element) throws NullPointerException {
+        if (!sample()) {
+            return underlyingCache.putIfAbsent(element);
+        }
         final Timer.Context ctx = putTimer.time();
         try {
             return underlyingCache.putIfAbsent(element);
@@ -314,4 +388,101 @@ public class InstrumentedEhcache extends EhcacheDecoratorAdapter {
             ctx.stop();
         }
     }
+
+    /**
+     * Returns whether the current operation should be timed: every operation if the sampling
+     * interval is 1, otherwise every {@code samplingInterval}th operation on each thread, so that
+     * threads don't contend on a shared count.
+     */
+    private boolean sample() {
+        if (samplingInterval == 1) {
+            return true;
+        }
+        final int[] count = operations.get();
+        if (++count[0] < samplingInterval) {
+            return false;
+        }
+        count[0] = 0;
+        return true;
+    }
+
+    private void recordGet(boolean sampled, long start, Element element) {
+        if (element == null) {
+            misses.inc();
+        } else {
+            hits.inc();
+        }
+        if (sampled) {
+            final long elapsed = clock.getTick() - start;
+            getTimer.update(elapsed, TimeUnit.NANOSECONDS);
+            (element == null ? missTimer : hitTimer).update(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Keeps a snapshot of a cache's statistics for the gauges to share.
+     */
+    private static class StatisticsGauge extends CachedGauge<Statistics> {
+        private final Ehcache cache;
+
+        private StatisticsGauge(Ehcache cache, long timeout, TimeUnit timeoutUnit) {
+            super(timeout, timeoutUnit);
+            this.cache = cache;
+        }
+
+        @Override
+        protected Statistics loadValue() {
+            return new Statistics(cache.getStatistics());
+        }
+
+        @Override
+        public Statistics getValue() {
+            final Statistics statistics = super.getValue();
+            // another thread may still be loading the first snapshot
+            return statistics != null ? statistics : loadValue();
+        }
+    }
+
+    /**
+     * Ehcache's statistics, read together.
+     */
+    private static class Statistics {
+        private final long hits;
+        private final long inMemoryHits;
+        private final long offHeapHits;
+        private final long onDiskHits;
+        private final long misses;
+        private final long inMemoryMisses;
+        private final long offHeapMisses;
+        private final long onDiskMisses;
+        private final long objects;
+        private final long inMemoryObjects;
+        private final long offHeapObjects;
+        private final long onDiskObjects;
+        private final double meanGetTime;
+        private final double meanSearchTime;
+        private final long evictionCount;
+        private final double searchesPerSecond;
+        private final long writerQueueSize;
+
+        private Statistics(StatisticsGateway statistics) {
+            this.hits = statistics.cacheHitCount();
+            this.inMemoryHits = statistics.localHeapHitCount();
+            this.offHeapHits = statistics.localOffHeapHitCount();
+            this.onDiskHits = statistics.localDiskHitCount();
+            this.misses = statistics.cacheMissCount();
+            this.inMemoryMisses = statistics.localHeapMissCount();
+            this.offHeapMisses = statistics.localOffHeapMissCount();
+            this.onDiskMisses = statistics.localDiskMissCount();
+            this.objects = statistics.getSize();
+            this.inMemoryObjects = statistics.getLocalHeapSize();
+            this.offHeapObjects = statistics.getLocalOffHeapSize();
+            this.onDiskObjects = statistics.getLocalDiskSize();
+            this.meanGetTime = statistics.cacheGetOperation().latency().average().value();
+            this.meanSearchTime = statistics.cacheSearchOperation().latency().average().value();
+            this.evictionCount = statistics.cacheEvictionOperation().count().value();
+            this.searchesPerSecond = statistics.cacheSearchOperation().rate().value();
+            this.writerQueueSize = statistics.getWriterQueueLength();
+        }
+    }
 }
@@ -7,11 +7,17 @@ import net.sf.ehcache.CacheManager;
 import net.sf.ehcache.Ehcache;
 import net.sf.ehcache.Element;
 import net.sf.ehcache.config.CacheConfiguration;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static com.codahale.metrics.MetricRegistry.name;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 public class InstrumentedEhcacheTest {
     private static final CacheManager MANAGER = CacheManager.create();
@@ -26,6 +32,11 @@ public class InstrumentedEhcacheTest {
         this.cache = InstrumentedEhcache.instrument(registry, c);
     }
 
+    @After
+    public void tearDown() throws Exception {
+        MANAGER.removeCache("test");
+    }
+
     @Test
     public void measuresGetsAndPuts() throws Exception {
         cache.get("woo");
@@ -42,4 +53,76 @@ public class InstrumentedEhcacheTest {
         assertThat(puts.getCount())
                 .isEqualTo(1);
     }
+
+    @Test
+    public void countsAndTimesHitsAndMissesSeparately() throws Exception {
+        cache.get("woo");
+        cache.put(new Element("woo", "whee"));
+        cache.get("woo");
+        cache.get("woo");
+
+        assertThat(registry.counter(name(Cache.class, "test", "get-hits")).getCount())
+                .isEqualTo(2);
+        assertThat(registry.counter(name(Cache.class, "test", "get-misses")).getCount())
+                .isEqualTo(1);
+        assertThat(registry.timer(name(Cache.class, "test", "gets", "hits")).getCount())
+                .isEqualTo(2);
+        assertThat(registry.timer(name(Cache.class, "test", "gets", "misses")).getCount())
+                .isEqualTo(1);
+        assertThat(registry.timer(name(Cache.class, "test", "gets")).getCount())
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void timesOneInEverySamplingIntervalOperations() throws Exception {
+        final Cache c = new Cache(new CacheConfiguration("sampled", 100));
+        MANAGER.addCache(c);
+        final Ehcache sampled = InstrumentedEhcache.instrument(registry, c, 4);
+
+        for (int i = 0; i < 8; i++) {
+            sampled.put(new Element("key-" + i, "value"));
+        }
+        for (int i = 0; i < 12; i++) {
+            sampled.get("key-" + i);
+        }
+
+        assertThat(registry.timer(name(Cache.class, "sampled", "puts")).getCount())
+                .isEqualTo(2);
+        assertThat(registry.timer(name(Cache.class, "sampled", "gets")).getCount())
+                .isEqualTo(3);
+        assertThat(registry.counter(name(Cache.class, "sampled", "get-hits")).getCount())
+                .isEqualTo(8);
+        assertThat(registry.counter(name(Cache.class, "sampled", "get-misses")).getCount())
+                .isEqualTo(4);
+
+        MANAGER.removeCache("sampled");
+    }
+
+    @Test
+    public void readsTheStatisticsOncePerInterval() throws Exception {
+        final Cache c = new Cache(new CacheConfiguration("spied", 100));
+        MANAGER.addCache(c);
+        final Ehcache spied = spy(c);
+        final MetricRegistry statisticsRegistry = new MetricRegistry();
+        final Ehcache instrumented = InstrumentedEhcache.instrument(statisticsRegistry, spied, 1, 1, TimeUnit.HOURS);
+        instrumented.put(new Element("woo", "whee"));
+        instrumented.get("woo");
+        instrumented.get("nope");
+
+        final String prefix = name(spied.getClass(), "spied");
+        assertThat(statisticsRegistry.getGauges().get(name(prefix, "hits")).getValue())
+                .isEqualTo(1L);
+        assertThat(statisticsRegistry.getGauges().get(name(prefix, "misses")).getValue())
+                .isEqualTo(1L);
+        assertThat(statisticsRegistry.getGauges().get(name(prefix, "objects")).getValue())
+                .isEqualTo(1L);
+
+        instrumented.get("woo");
+
+        assertThat(statisticsRegistry.getGauges().get(name(prefix, "hits")).getValue())
+                .isEqualTo(1L);
+        verify(spied, times(1)).getStatistics();
+
+        MANAGER.removeCache("spied");
+    }
 }
@@ -261,6 +261,7 @@ public class GraphiteReporter extends ScheduledReporter {
             graphite.flush();
         } catch (IOException e) {
             LOGGER.warn("Unable to report to Graphite", graphite, e);
+            recordDropped(gauges.size() + counters.size() + histograms.size() + meters.size() + timers.size());
         } finally {
             try {
                 graphite.close();
@@ -0,0 +1,145 @@
+package com.codahale.metrics.health;
+
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.health.annotation.Async;
+
+/**
+ * A health check decorator which runs an asynchronous health check on an {@link AdaptiveSchedule}
+ * rather than at a fixed rate.
+ */
+class AdaptiveHealthCheckDecorator extends HealthCheck implements Runnable {
+    private static final String NO_RESULT_YET_MESSAGE = "Waiting for first asynchronous check result.";
+    private static final long MIN_RETRY_DELAY = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final HealthCheck healthCheck;
+    private final ScheduledExecutorService executorService;
+    private final AdaptiveSchedule schedule;
+    private final Semaphore permits;
+    private final Timer timer;
+    private final long periodNanos;
+    private final Random random;
+    private volatile Result result;
+
+    // only touched by runs, which never overlap
+    private double backoff;
+    private long meanDuration;
+
+    // guarded by this
+    private ScheduledFuture<?> future;
+    private boolean cancelled;
+
+    AdaptiveHealthCheckDecorator(HealthCheck healthCheck,
+                                 ScheduledExecutorService executorService,
+                                 AdaptiveSchedule schedule,
+                                 Semaphore permits,
+                                 Timer timer) {
+        check(healthCheck != null, "healthCheck cannot be null");
+        check(executorService != null, "executorService cannot be null");
+        final Async async = healthCheck.getClass().getAnnotation(Async.class);
+        check(async != null, "healthCheck must contain Async annotation");
+        check(async.period() > 0, "period cannot be less than or equal to zero");
+        check(async.initialDelay() >= 0, "initialDelay cannot be less than zero");
+
+        this.healthCheck = healthCheck;
+        this.executorService = executorService;
+        this.schedule = schedule;
+        this.permits = permits;
+        this.timer = timer;
+        this.periodNanos = async.unit().toNanos(async.period());
+        this.random = new Random();
+        this.backoff = 1;
+        this.result = Async.InitialState.HEALTHY.equals(async.initialState()) ? Result.healthy(NO_RESULT_YET_MESSAGE) :
+                Result.unhealthy(NO_RESULT_YET_MESSAGE);
+
+        // spread the first runs of health checks registered at the same time over their period
+        scheduleNext(async.unit().toNanos(async.initialDelay()) +
+                             (long) (random.nextDouble() * schedule.getStartJitter() * periodNanos));
+    }
+
+    @Override
+    public void run() {
+        if (!permits.tryAcquire()) {
+            // too many health checks running; try again once one of them is likely done
+            scheduleNext(jitter(Math.max(MIN_RETRY_DELAY, Math.min(meanDuration, periodNanos))));
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final Result current;
+        try {
+            current = healthCheck.execute();
+        } finally {
+            permits.release();
+        }
+        final long duration = System.nanoTime() - start;
+        this.result = current;
+        if (timer != null) {
+            timer.update(duration, TimeUnit.NANOSECONDS);
+        }
+        this.meanDuration = meanDuration == 0 ? duration : meanDuration + (duration - meanDuration) / 4;
+
+        scheduleNext(nextDelay(current.isHealthy()));
+    }
+
+    @Override
+    protected Result check() throws Exception {
+        return result;
+    }
+
+    /**
+     * Returns the delay until the next run, in nanoseconds.
+     */
+    long nextDelay(boolean healthy) {
+        final double delay;
+        if (healthy) {
+            delay = periodNanos * backoff;
+            backoff = Math.min(backoff * schedule.getHealthyBackoff(), schedule.getMaxBackoff());
+        } else {
+            delay = periodNanos * schedule.getUnhealthyRecheck();
+            backoff = 1;
+        }
+        return jitter((long) Math.max(delay, meanDuration * schedule.getDurationMultiple()));
+    }
+
+    boolean tearDown() {
+        synchronized (this) {
+            cancelled = true;
+            return future == null || future.cancel(true);
+        }
+    }
+
+    HealthCheck getHealthCheck() {
+        return healthCheck;
+    }
+
+    private long jitter(long delay) {
+        return (long) (delay * (1 + schedule.getJitter() * (2 * random.nextDouble() - 1)));
+    }
+
+    private void scheduleNext(long delayNanos) {
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            try {
+                future = executorService.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // the executor has been shut down
+                cancelled = true;
+            }
+        }
+    }
+
+    private void check(boolean expression, String message) {
+        if (!expression) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.codahale.metrics.health;
+
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Settings for scheduling {@link com.codahale.metrics.health.annotation.Async} health checks
+ * adaptively, instead of at a fixed rate. See
+ * {@link HealthCheckRegistry#HealthCheckRegistry(java.util.concurrent.ScheduledExecutorService, AdaptiveSchedule)}.
+ * <p>
+ * Each health check's first run is delayed by a random part of its period, so that health checks
+ * registered together don't all run together. After that, every healthy result stretches the time
+ * until the next run by a factor (up to a limit), and an unhealthy result brings the next run
+ * forward to a fraction of the period. A health check never runs more often than a multiple of
+ * its average duration allows, all delays are jittered, and only a limited number of health
+ * checks run at the same time; those which are due while the budget is used up are postponed.
+ */
+public class AdaptiveSchedule {
+    /**
+     * Returns a new {@link Builder} for {@link AdaptiveSchedule}.
+     *
+     * @return a {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A builder for {@link AdaptiveSchedule} instances. Defaults to spreading first runs over a
+     * whole period, jittering delays by 10%, stretching the delay by 1.5 after every healthy
+     * result up to 4 periods, re-checking after a quarter of the period after an unhealthy result,
+     * waiting at least 10 times the average duration between runs, running at most as many health
+     * checks at a time as the registry's executor has threads, and not recording durations.
+     */
+    public static class Builder {
+        private double startJitter = 1.0;
+        private double jitter = 0.1;
+        private double healthyBackoff = 1.5;
+        private double maxBackoff = 4.0;
+        private double unhealthyRecheck = 0.25;
+        private double durationMultiple = 10.0;
+        private int maxConcurrent = 0;
+        private MetricRegistry metricRegistry;
+
+        private Builder() {
+        }
+
+        /**
+         * Delay the first run of each health check by a random fraction of its period, up to
+         * the given fraction.
+         *
+         * @param startJitter a fraction of the period, between 0 and 1
+         * @return {@code this}
+         */
+        public Builder startJitter(double startJitter) {
+            check(startJitter >= 0 && startJitter <= 1, "startJitter must be between 0 and 1");
+            this.startJitter = startJitter;
+            return this;
+        }
+
+        /**
+         * Randomly lengthen or shorten every later delay by up to the given fraction.
+         *
+         * @param jitter a fraction of the delay, between 0 and 1
+         * @return {@code this}
+         */
+        public Builder jitter(double jitter) {
+            check(jitter >= 0 && jitter < 1, "jitter must be at least 0 and less than 1");
+            this.jitter = jitter;
+            return this;
+        }
+
+        /**
+         * Multiply the delay by the given factor after every healthy result, up to
+         * {@code maxBackoff} times the health check's period.
+         *
+         * @param healthyBackoff the factor to stretch delays by
+         * @param maxBackoff     the longest delay, as a multiple of the period
+         * @return {@code this}
+         */
+        public Builder healthyBackoff(double healthyBackoff, double maxBackoff) {
+            check(healthyBackoff >= 1, "healthyBackoff must be at least 1");
+            check(maxBackoff >= 1, "maxBackoff must be at least 1");
+            this.healthyBackoff = healthyBackoff;
+            this.maxBackoff = maxBackoff;
+            return this;
+        }
+
+        /**
+         * Run a health check again after the given fraction of its period once it's unhealthy.
+         *
+         * @param unhealthyRecheck a fraction of the period, greater than 0
+         * @return {@code this}
+         */
+        public Builder unhealthyRecheck(double unhealthyRecheck) {
+            check(unhealthyRecheck > 0, "unhealthyRecheck must be positive");
+            this.unhealthyRecheck = unhealthyRecheck;
+            return this;
+        }
+
+        /**
+         * Wait at least the given multiple of a health check's average duration between its runs.
+         *
+         * @param durationMultiple a multiple of the average duration
+         * @return {@code this}
+         */
+        public Builder durationMultiple(double durationMultiple) {
+            check(durationMultiple >= 0, "durationMultiple cannot be negative");
+            this.durationMultiple = durationMultiple;
+            return this;
+        }
+
+        /**
+         * Run at most the given number of health checks at the same time. The registry's executor
+         * must have at least as many threads; see
+         * {@link HealthCheckRegistry#HealthCheckRegistry(java.util.concurrent.ScheduledExecutorService, AdaptiveSchedule)}.
+         *
+         * @param maxConcurrent the number of health checks
+         * @return {@code this}
+         */
+        public Builder maxConcurrent(int maxConcurrent) {
+            check(maxConcurrent > 0, "maxConcurrent must be positive");
+            this.maxConcurrent = maxConcurrent;
+            return this;
+        }
+
+        /**
+         * Record the duration of every run in a timer named {@code healthchecks.<name>.duration}
+         * in the given registry. Requires {@code metrics-core}.
+         *
+         * @param metricRegistry a {@link MetricRegistry}
+         * @return {@code this}
+         */
+        public Builder recordDurationsIn(MetricRegistry metricRegistry) {
+            this.metricRegistry = metricRegistry;
+            return this;
+        }
+
+        /**
+         * Builds an {@link AdaptiveSchedule} with the given properties.
+         *
+         * @return an {@link AdaptiveSchedule}
+         */
+        public AdaptiveSchedule build() {
+            return new AdaptiveSchedule(this);
+        }
+
+        private static void check(boolean expression, String message) {
+            if (!expression) {
+                throw new IllegalArgumentException(message);
+            }
+        }
+    }
+
+    private final double startJitter;
+    private final double jitter;
+    private final double healthyBackoff;
+    private final double maxBackoff;
+    private final double unhealthyRecheck;
+    private final double durationMultiple;
+    private final int maxConcurrent;
+    private final MetricRegistry metricRegistry;
+
+    private AdaptiveSchedule(Builder builder) {
+        this.startJitter = builder.startJitter;
+        this.jitter = builder.jitter;
+        this.healthyBackoff = builder.healthyBackoff;
+        this.maxBackoff = builder.maxBackoff;
+        this.unhealthyRecheck = builder.unhealthyRecheck;
+        this.durationMultiple = builder.durationMultiple;
+        this.maxConcurrent = builder.maxConcurrent;
+        this.metricRegistry = builder.metricRegistry;
+    }
+
+    double getStartJitter() {
+        return startJitter;
+    }
+
+    double getJitter() {
+        return jitter;
+    }
+
+    double getHealthyBackoff() {
+        return healthyBackoff;
+    }
+
+    double getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    double getUnhealthyRecheck() {
+        return unhealthyRecheck;
+    }
+
+    double getDurationMultiple() {
+        return durationMultiple;
+    }
+
+    /**
+     * Returns the number of health checks which may run at the same time, or {@code 0} if it's
+     * left to the executor.
+     */
+    int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+}
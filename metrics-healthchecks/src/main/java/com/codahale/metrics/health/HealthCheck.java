@@ -18,6 +18,12 @@ public abstract class HealthCheck {
     public static class Result {
         private static final String DATE_FORMAT_PATTERN = "yyyy-MM-dd'T'HH:mm:ss.SSSXXX";
         private static final int PRIME = 31;
+        private static final ThreadLocal<SimpleDateFormat> DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+            @Override
+            protected SimpleDateFormat initialValue() {
+                return new SimpleDateFormat(DATE_FORMAT_PATTERN);
+            }
+        };
 
         /**
          * Returns a healthy {@link Result} with no additional message.
@@ -100,7 +106,8 @@ public abstract class HealthCheck {
         private final String message;
         private final Throwable error;
         private final Map<String, Object> details;
-        private final String timestamp;
+        private final long time;
+        private volatile String timestamp;
 
         private Result(boolean isHealthy, String message, Throwable error) {
             this(isHealthy, message, error, null);
@@ -115,7 +122,7 @@ public abstract class HealthCheck {
             this.message = message;
             this.error = error;
             this.details = details == null ? null : Collections.unmodifiableMap(details);
-            timestamp = new SimpleDateFormat(DATE_FORMAT_PATTERN).format(new Date());
+            this.time = System.currentTimeMillis();
         }
 
         /**
@@ -152,7 +159,13 @@ public abstract class HealthCheck {
          * @return a formatted timestamp
          */
         public String getTimestamp() {
-            return timestamp;
+            // formatted on demand, since most results are never serialized
+            String formatted = timestamp;
+            if (formatted == null) {
+                formatted = DATE_FORMAT.get().format(new Date(time));
+                this.timestamp = formatted;
+            }
+            return formatted;
         }
 
         public Map<String, Object> getDetails() {
@@ -171,7 +184,7 @@ public abstract class HealthCheck {
             return healthy == result.healthy &&
                     !(error != null ? !error.equals(result.error) : result.error != null) &&
                     !(message != null ? !message.equals(result.message) : result.message != null) &&
-                    !(timestamp != null ? !timestamp.equals(result.timestamp) : result.timestamp != null);
+                    time == result.time;
         }
 
         @Override
@@ -179,7 +192,7 @@ public abstract class HealthCheck {
             int result = (healthy ? 1 : 0);
             result = PRIME * result + (message != null ? message.hashCode() : 0);
             result = PRIME * result + (error != null ? error.hashCode() : 0);
-            result = PRIME * result + (timestamp != null ? timestamp.hashCode() : 0);
+            result = PRIME * result + (int) (time ^ (time >>> 32));
             return result;
         }
 
@@ -193,7 +206,7 @@ public abstract class HealthCheck {
             if (error != null) {
                 builder.append(", error=").append(error);
             }
-            builder.append(", timestamp=").append(timestamp);
+            builder.append(", timestamp=").append(getTimestamp());
             if (details != null) {
                 Iterator<Map.Entry<String, Object>> it = details.entrySet().iterator();
                 while (it.hasNext()) {
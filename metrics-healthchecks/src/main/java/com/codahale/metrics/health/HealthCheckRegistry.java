@@ -17,18 +17,29 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.codahale.metrics.health.annotation.Async;
+import com.codahale.metrics.health.annotation.Cached;
 
 /**
  * A registry for health checks.
@@ -38,9 +49,14 @@ public class HealthCheckRegistry {
     private static final int ASYNC_EXECUTOR_POOL_SIZE = 2;
 
     private final ConcurrentMap<String, HealthCheck> healthChecks;
+    private final ConcurrentMap<String, CachedHealthCheck> cachedResults;
     private final List<HealthCheckRegistryListener> listeners;
     private final ScheduledExecutorService asyncExecutorService;
+    private final AdaptiveSchedule adaptiveSchedule;
+    private final Semaphore adaptivePermits;
     private final Object lock = new Object();
+    private volatile ExecutorService cachedRunExecutor;
+    private volatile Instrumentation instrumentation;
 
     /**
      * Creates a new {@link HealthCheckRegistry}.
@@ -64,11 +80,71 @@ public class HealthCheckRegistry {
      * @param asyncExecutorService executor service for async health check executions
      */
     public HealthCheckRegistry(ScheduledExecutorService asyncExecutorService) {
+        this(asyncExecutorService, null);
+    }
+
+    /**
+     * Creates a new {@link HealthCheckRegistry} which runs {@link Async} health checks on the given
+     * {@link AdaptiveSchedule} instead of at a fixed rate. The {@link Async#scheduleType()} of the
+     * health checks is ignored; their period is the base for the schedule. Unless the schedule
+     * sets {@link AdaptiveSchedule.Builder#maxConcurrent(int)}, as many health checks run at once as
+     * the executor has core threads.
+     *
+     * @param asyncExecutorService executor service for async health check executions
+     * @param adaptiveSchedule     the schedule for async health checks, or {@code null} to run them
+     *                             at a fixed rate
+     * @throws IllegalArgumentException if the schedule lets more health checks run at once than
+     *                                  the executor has core threads
+     */
+    public HealthCheckRegistry(ScheduledExecutorService asyncExecutorService, AdaptiveSchedule adaptiveSchedule) {
+        this.adaptiveSchedule = adaptiveSchedule;
+        this.adaptivePermits = adaptiveSchedule == null ? null
+                : new Semaphore(maxConcurrent(asyncExecutorService, adaptiveSchedule));
         this.healthChecks = new ConcurrentHashMap<String, HealthCheck>();
+        this.cachedResults = new ConcurrentHashMap<String, CachedHealthCheck>();
         this.listeners = new CopyOnWriteArrayList<HealthCheckRegistryListener>();
         this.asyncExecutorService = asyncExecutorService;
     }
 
+    /**
+     * Returns how many adaptively scheduled health checks may run at once. A limit above the
+     * executor's core threads would never be reached, as health checks would queue for threads first.
+     */
+    private static int maxConcurrent(ScheduledExecutorService executor, AdaptiveSchedule schedule) {
+        final int maxConcurrent = schedule.getMaxConcurrent();
+        if (!(executor instanceof ThreadPoolExecutor)) {
+            return maxConcurrent > 0 ? maxConcurrent : Integer.MAX_VALUE;
+        }
+        final int threads = ((ThreadPoolExecutor) executor).getCorePoolSize();
+        if (maxConcurrent > threads) {
+            throw new IllegalArgumentException("maxConcurrent is " + maxConcurrent +
+                    ", but the executor only has " + threads + " threads");
+        }
+        return maxConcurrent > 0 ? maxConcurrent : threads;
+    }
+
+    /**
+     * Records what running health checks costs into the given registry: a timer of every run of
+     * the registered health checks named {@code healthchecks.runs}, a timer of every execution of
+     * each health check named {@code healthchecks.<name>.duration}, and a gauge of the number of
+     * registered health checks named {@code healthchecks.registered}, unless another registry's is
+     * already there, which is removed on {@link #shutdown()}. {@link Async} health checks
+     * aren't timed here, as they return their last result; see
+     * {@link AdaptiveSchedule.Builder#recordDurationsIn(MetricRegistry)}. Requires {@code metrics-core}.
+     *
+     * @param metricRegistry the registry to record into
+     */
+    public void instrumentInto(MetricRegistry metricRegistry) {
+        final Instrumentation previous = instrumentation;
+        if (previous != null) {
+            if (previous.metricRegistry == metricRegistry) {
+                return;
+            }
+            previous.removeGauges();
+        }
+        this.instrumentation = new Instrumentation(metricRegistry, healthChecks);
+    }
+
     /**
      * Adds a {@link HealthCheckRegistryListener} to a collection of listeners that will be notified on health check
      * registration. Listeners will be notified in the order in which they are added. The listener will be notified of all
@@ -104,7 +180,15 @@ public class HealthCheckRegistry {
             if (!healthChecks.containsKey(name)) {
                 registered = healthCheck;
                 if (healthCheck.getClass().isAnnotationPresent(Async.class)) {
-                    registered = new AsyncHealthCheckDecorator(healthCheck, asyncExecutorService);
+                    if (adaptiveSchedule != null) {
+                        registered = new AdaptiveHealthCheckDecorator(healthCheck,
+                                                                      asyncExecutorService,
+                                                                      adaptiveSchedule,
+                                                                      adaptivePermits,
+                                                                      durationTimer(name));
+                    } else {
+                        registered = new AsyncHealthCheckDecorator(healthCheck, asyncExecutorService);
+                    }
                 }
                 healthChecks.put(name, registered);
             }
@@ -123,8 +207,17 @@ public class HealthCheckRegistry {
         HealthCheck healthCheck = null;
         synchronized (lock) {
             healthCheck = healthChecks.remove(name);
+            cachedResults.remove(name);
+            if (instrumentation != null) {
+                instrumentation.metricRegistry.remove(durationTimerName(name));
+            }
             if (healthCheck instanceof AsyncHealthCheckDecorator) {
                 ((AsyncHealthCheckDecorator) healthCheck).tearDown();
+            } else if (healthCheck instanceof AdaptiveHealthCheckDecorator) {
+                ((AdaptiveHealthCheckDecorator) healthCheck).tearDown();
+                if (adaptiveSchedule.getMetricRegistry() != null) {
+                    adaptiveSchedule.getMetricRegistry().remove(durationTimerName(name));
+                }
             }
         }
         if (healthCheck != null) {
@@ -153,7 +246,7 @@ public class HealthCheckRegistry {
         if (healthCheck == null) {
             throw new NoSuchElementException("No health check named " + name + " exists");
         }
-        return healthCheck.execute();
+        return execute(healthCheck, instrumentationTimer(name, healthCheck));
     }
 
     /**
@@ -162,11 +255,13 @@ public class HealthCheckRegistry {
      * @return a map of the health check results
      */
     public SortedMap<String, HealthCheck.Result> runHealthChecks() {
+        final long start = System.nanoTime();
         final SortedMap<String, HealthCheck.Result> results = new TreeMap<String, HealthCheck.Result>();
         for (Map.Entry<String, HealthCheck> entry : healthChecks.entrySet()) {
-            final Result result = entry.getValue().execute();
+            final Result result = execute(entry.getValue(), instrumentationTimer(entry.getKey(), entry.getValue()));
             results.put(entry.getKey(), result);
         }
+        recordRun(start);
         return Collections.unmodifiableSortedMap(results);
     }
 
@@ -177,12 +272,14 @@ public class HealthCheckRegistry {
      * @return a map of the health check results
      */
     public SortedMap<String, HealthCheck.Result> runHealthChecks(ExecutorService executor) {
+        final long start = System.nanoTime();
         final Map<String, Future<HealthCheck.Result>> futures = new HashMap<String, Future<Result>>();
         for (final Map.Entry<String, HealthCheck> entry : healthChecks.entrySet()) {
+            final Timer timer = instrumentationTimer(entry.getKey(), entry.getValue());
             futures.put(entry.getKey(), executor.submit(new Callable<Result>() {
                 @Override
                 public Result call() throws Exception {
-                    return entry.getValue().execute();
+                    return execute(entry.getValue(), timer);
                 }
             }));
         }
@@ -197,9 +294,275 @@ public class HealthCheckRegistry {
             }
         }
 
+        recordRun(start);
         return Collections.unmodifiableSortedMap(results);
     }
 
+    /**
+     * Returns the results of the registered health checks, running them in parallel only when their
+     * last result is older than {@code maxAge}.
+     * <p>
+     * Each health check has at most one run in flight, which is shared by all concurrent callers.
+     * A result older than {@code maxAge} is still returned while a newer one is being computed in the
+     * background, unless that run has been going on for longer than {@code timeout}. Callers wait at
+     * most {@code timeout} for health checks without a usable result; those which don't finish in
+     * time are reported as unhealthy, and their results are kept for later calls once they finish.
+     * Health checks annotated with {@link Cached} use their own max age and timeout instead.
+     * <p>
+     * The runs go to a pool of threads kept for them alone, which grows to one thread per health
+     * check in flight and so never holds a run back behind others. To bound it, pass an executor to
+     * {@link #runHealthChecks(ExecutorService, long, long, TimeUnit)} instead.
+     *
+     * @param maxAge  how long a result is fresh
+     * @param timeout how long to wait for health checks, or {@code 0} to wait for as long as they take
+     * @param unit    the unit of {@code maxAge} and {@code timeout}
+     * @return a map of the health check results
+     */
+    public SortedMap<String, HealthCheck.Result> runHealthChecks(long maxAge, long timeout, TimeUnit unit) {
+        return runHealthChecks(cachedRunExecutor(), maxAge, timeout, unit);
+    }
+
+    /**
+     * Returns the results of the registered health checks, running them in parallel on the given
+     * executor only when their last result is older than {@code maxAge}. See
+     * {@link #runHealthChecks(long, long, TimeUnit)}.
+     *
+     * @param executor the executor to run health checks on
+     * @param maxAge   how long a result is fresh
+     * @param timeout  how long to wait for health checks, or {@code 0} to wait for as long as they take
+     * @param unit     the unit of {@code maxAge} and {@code timeout}
+     * @return a map of the health check results
+     */
+    public SortedMap<String, HealthCheck.Result> runHealthChecks(ExecutorService executor,
+                                                                 long maxAge,
+                                                                 long timeout,
+                                                                 TimeUnit unit) {
+        final long maxAgeNanos = unit.toNanos(maxAge);
+        final long timeoutNanos = unit.toNanos(timeout);
+        final long start = System.nanoTime();
+
+        final SortedMap<String, HealthCheck.Result> results = new TreeMap<String, HealthCheck.Result>();
+        final Map<String, RunningHealthCheck> pending = new HashMap<String, RunningHealthCheck>();
+        for (Map.Entry<String, HealthCheck> entry : healthChecks.entrySet()) {
+            final CachedHealthCheck cached = cachedHealthCheck(entry.getKey(), entry.getValue());
+            final Result result = cached.result;
+            if (result != null && start - cached.completedAt < cached.maxAgeNanos(maxAgeNanos)) {
+                results.put(entry.getKey(), result);
+                continue;
+            }
+
+            final RunningHealthCheck running = cached.run(executor);
+            final long checkTimeoutNanos = cached.timeoutNanos(timeoutNanos);
+            if (result != null && (checkTimeoutNanos <= 0 || start - running.startedAt < checkTimeoutNanos)) {
+                // stale, but the refresh isn't overdue yet
+                results.put(entry.getKey(), result);
+            } else {
+                pending.put(entry.getKey(), running);
+            }
+        }
+
+        for (Map.Entry<String, RunningHealthCheck> entry : pending.entrySet()) {
+            final RunningHealthCheck running = entry.getValue();
+            results.put(entry.getKey(),
+                        await(entry.getKey(), running, start, running.cached.timeoutNanos(timeoutNanos)));
+        }
+
+        recordRun(start);
+        return Collections.unmodifiableSortedMap(results);
+    }
+
+    private CachedHealthCheck cachedHealthCheck(String name, HealthCheck healthCheck) {
+        final CachedHealthCheck cached = cachedResults.get(name);
+        if (cached != null && cached.healthCheck == healthCheck) {
+            return cached;
+        }
+        final CachedHealthCheck created = new CachedHealthCheck(healthCheck, instrumentationTimer(name, healthCheck));
+        if (cached == null) {
+            final CachedHealthCheck raced = cachedResults.putIfAbsent(name, created);
+            return raced == null ? created : raced;
+        }
+        // the name has been re-registered with a different health check
+        cachedResults.replace(name, cached, created);
+        return created;
+    }
+
+    private static Result await(String name,
+                                Future<Result> future,
+                                long start,
+                                long timeoutNanos) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (timeoutNanos <= 0) {
+                        return future.get();
+                    }
+                    return future.get(timeoutNanos - (System.nanoTime() - start), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (TimeoutException e) {
+            return Result.unhealthy("Timed out after %d ms", TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+        } catch (ExecutionException e) {
+            LOGGER.warn("Error executing health check {}", name, e.getCause());
+            return Result.unhealthy(e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The last result of a health check, along with its run in flight, if any.
+     */
+    private static class CachedHealthCheck {
+        private final HealthCheck healthCheck;
+        private final Timer timer;
+        private final long maxAgeNanos;
+        private final long timeoutNanos;
+        private final AtomicReference<RunningHealthCheck> running;
+        private volatile Result result;
+        private volatile long completedAt;
+
+        private CachedHealthCheck(HealthCheck healthCheck, Timer timer) {
+            this.healthCheck = healthCheck;
+            this.timer = timer;
+            final Cached annotation = undecorated(healthCheck).getClass().getAnnotation(Cached.class);
+            if (annotation == null) {
+                this.maxAgeNanos = -1;
+                this.timeoutNanos = -1;
+            } else {
+                this.maxAgeNanos = toNanos(annotation.maxAge(), annotation.unit());
+                this.timeoutNanos = toNanos(annotation.timeout(), annotation.unit());
+            }
+            this.running = new AtomicReference<RunningHealthCheck>();
+        }
+
+        private static long toNanos(long value, TimeUnit unit) {
+            return value < 0 ? -1 : unit.toNanos(value);
+        }
+
+        private long maxAgeNanos(long defaultNanos) {
+            return maxAgeNanos < 0 ? defaultNanos : maxAgeNanos;
+        }
+
+        private long timeoutNanos(long defaultNanos) {
+            return timeoutNanos < 0 ? defaultNanos : timeoutNanos;
+        }
+
+        /**
+         * Returns the run in flight, starting one if there is none.
+         */
+        private RunningHealthCheck run(ExecutorService executor) {
+            while (true) {
+                final RunningHealthCheck current = running.get();
+                if (current != null) {
+                    return current;
+                }
+                final RunningHealthCheck created = new RunningHealthCheck(this);
+                if (running.compareAndSet(null, created)) {
+                    try {
+                        executor.execute(created);
+                    } catch (RejectedExecutionException e) {
+                        created.fail(e);
+                    }
+                    return created;
+                }
+            }
+        }
+    }
+
+    /**
+     * A run of a health check which records its result in the cache once it's done.
+     */
+    private static class RunningHealthCheck extends FutureTask<Result> {
+        private final CachedHealthCheck cached;
+        private final long startedAt;
+
+        private RunningHealthCheck(final CachedHealthCheck cached) {
+            super(new Callable<Result>() {
+                @Override
+                public Result call() throws Exception {
+                    return execute(cached.healthCheck, cached.timer);
+                }
+            });
+            this.cached = cached;
+            this.startedAt = System.nanoTime();
+        }
+
+        private void fail(Throwable t) {
+            setException(t);
+        }
+
+        @Override
+        protected void done() {
+            Result result;
+            try {
+                result = get();
+            } catch (ExecutionException e) {
+                result = Result.unhealthy(e.getCause());
+            } catch (Exception e) {
+                result = Result.unhealthy(e);
+            }
+            // written before the result, so that whoever sees the new result sees when it completed
+            cached.completedAt = System.nanoTime();
+            cached.result = result;
+            cached.running.compareAndSet(this, null);
+        }
+    }
+
+    private static HealthCheck undecorated(HealthCheck healthCheck) {
+        if (healthCheck instanceof AsyncHealthCheckDecorator) {
+            return ((AsyncHealthCheckDecorator) healthCheck).getHealthCheck();
+        }
+        if (healthCheck instanceof AdaptiveHealthCheckDecorator) {
+            return ((AdaptiveHealthCheckDecorator) healthCheck).getHealthCheck();
+        }
+        return healthCheck;
+    }
+
+    private static Result execute(HealthCheck healthCheck, Timer timer) {
+        if (timer == null) {
+            return healthCheck.execute();
+        }
+        final Timer.Context context = timer.time();
+        try {
+            return healthCheck.execute();
+        } finally {
+            context.stop();
+        }
+    }
+
+    /**
+     * Returns the timer for executions of the given health check, or {@code null} if they aren't
+     * instrumented.
+     */
+    private Timer instrumentationTimer(String name, HealthCheck healthCheck) {
+        final Instrumentation current = instrumentation;
+        if (current == null || healthCheck instanceof AsyncHealthCheckDecorator ||
+                healthCheck instanceof AdaptiveHealthCheckDecorator) {
+            return null;
+        }
+        return current.metricRegistry.timer(durationTimerName(name));
+    }
+
+    private void recordRun(long start) {
+        final Instrumentation current = instrumentation;
+        if (current != null) {
+            current.runs.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer durationTimer(String name) {
+        final MetricRegistry metricRegistry = adaptiveSchedule.getMetricRegistry();
+        return metricRegistry == null ? null : metricRegistry.timer(durationTimerName(name));
+    }
+
+    private static String durationTimerName(String name) {
+        return "healthchecks." + name + ".duration";
+    }
 
     private void onHealthCheckAdded(String name, HealthCheck healthCheck) {
         for (HealthCheckRegistryListener listener : listeners) {
@@ -214,9 +577,34 @@ public class HealthCheckRegistry {
     }
 
     /**
-     * Shuts down the scheduled executor for async health checks
+     * Returns the executor for runs of cached health checks, creating it on first use.
+     */
+    private ExecutorService cachedRunExecutor() {
+        ExecutorService executor = cachedRunExecutor;
+        if (executor == null) {
+            synchronized (lock) {
+                executor = cachedRunExecutor;
+                if (executor == null) {
+                    executor = Executors.newCachedThreadPool(new NamedThreadFactory("healthcheck-cached-executor-"));
+                    cachedRunExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Shuts down the scheduled executor for async health checks, and the executor for cached runs
      */
     public void shutdown() {
+        final Instrumentation current = instrumentation;
+        if (current != null) {
+            current.removeGauges();
+        }
+        final ExecutorService cachedRuns = cachedRunExecutor;
+        if (cachedRuns != null) {
+            cachedRuns.shutdown();
+        }
         asyncExecutorService.shutdown(); // Disable new health checks from being submitted
         try {
             // Give some time to the current healtch checks to finish gracefully
@@ -251,6 +639,44 @@ public class HealthCheckRegistry {
                 "removed because cancellation does not actually remove them from the executor.", e);
     }
 
+    /**
+     * The metrics a registry records into. It's kept apart so that this class can be loaded without
+     * the optional {@code metrics-core}.
+     */
+    private static class Instrumentation {
+        private static final String RUNS_TIMER_NAME = "healthchecks.runs";
+        private static final String REGISTERED_GAUGE_NAME = "healthchecks.registered";
+
+        private final MetricRegistry metricRegistry;
+        private final Timer runs;
+        private final Gauge<Integer> registered;
+
+        private Instrumentation(MetricRegistry metricRegistry, final Map<String, HealthCheck> healthChecks) {
+            this.metricRegistry = metricRegistry;
+            this.runs = metricRegistry.timer(RUNS_TIMER_NAME);
+            final Gauge<Integer> gauge = new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return healthChecks.size();
+                }
+            };
+            Gauge<Integer> registered = null;
+            try {
+                metricRegistry.register(REGISTERED_GAUGE_NAME, gauge);
+                registered = gauge;
+            } catch (IllegalArgumentException e) {
+                LOGGER.debug("Not registering {}, which already exists", REGISTERED_GAUGE_NAME);
+            }
+            this.registered = registered;
+        }
+
+        private void removeGauges() {
+            if (registered != null && metricRegistry.getMetrics().get(REGISTERED_GAUGE_NAME) == registered) {
+                metricRegistry.remove(REGISTERED_GAUGE_NAME);
+            }
+        }
+    }
+
     private static class NamedThreadFactory implements ThreadFactory {
 
         private final ThreadGroup group;
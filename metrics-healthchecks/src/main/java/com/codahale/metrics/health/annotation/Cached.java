@@ -0,0 +1,40 @@
+package com.codahale.metrics.health.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An annotation for setting how long the results of a health check stay fresh, and how long
+ * callers wait for it, when cached results are asked for with
+ * {@link com.codahale.metrics.health.HealthCheckRegistry#runHealthChecks(long, long, TimeUnit)}.
+ * Values which aren't set are taken from that call.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Cached {
+    /**
+     * How long a result is fresh, or a negative value to use the one passed to the call.
+     *
+     * @return max age
+     */
+    long maxAge() default -1;
+
+    /**
+     * How long to wait for the health check, {@code 0} to wait for as long as it takes, or a
+     * negative value to use the one passed to the call.
+     *
+     * @return timeout
+     */
+    long timeout() default -1;
+
+    /**
+     * Time unit of max age and timeout.
+     *
+     * @return time unit
+     */
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+}
@@ -0,0 +1,148 @@
+package com.codahale.metrics.health;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentCaptor.forClass;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.health.annotation.Async;
+
+/**
+ * Unit tests for {@link AdaptiveHealthCheckDecorator}.
+ */
+public class AdaptiveHealthCheckDecoratorTest {
+    private static final long PERIOD = TimeUnit.SECONDS.toNanos(10);
+
+    private final ScheduledExecutorService executorService = mock(ScheduledExecutorService.class);
+    private final ScheduledFuture future = mock(ScheduledFuture.class);
+    private final Semaphore permits = new Semaphore(1);
+    private final Timer timer = new MetricRegistry().timer("duration");
+    private final AdaptiveSchedule schedule = AdaptiveSchedule.builder()
+                                                              .jitter(0.1)
+                                                              .healthyBackoff(2, 4)
+                                                              .unhealthyRecheck(0.25)
+                                                              .build();
+    private final ToggledHealthCheck healthCheck = new ToggledHealthCheck();
+
+    @Before
+    public void setUp() throws Exception {
+        when(executorService.schedule(any(Runnable.class), anyLong(), eq(TimeUnit.NANOSECONDS)))
+                .thenReturn(future);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonAsyncHealthCheckTriggersInstantiationFailure() {
+        new AdaptiveHealthCheckDecorator(mock(HealthCheck.class), executorService, schedule, permits, timer);
+    }
+
+    @Test
+    public void spreadsTheFirstRunOverThePeriod() throws Exception {
+        new AdaptiveHealthCheckDecorator(healthCheck, executorService, schedule, permits, timer);
+
+        assertThat(scheduledDelays().get(0))
+                .isBetween(0L, PERIOD);
+    }
+
+    @Test
+    public void backsOffWhileHealthy() throws Exception {
+        final AdaptiveHealthCheckDecorator decorator = new AdaptiveHealthCheckDecorator(healthCheck,
+                                                                                        executorService,
+                                                                                        schedule,
+                                                                                        permits,
+                                                                                        timer);
+        decorator.run();
+        decorator.run();
+        decorator.run();
+        decorator.run();
+
+        final List<Long> delays = scheduledDelays();
+        assertThat(delays.get(1)).isBetween((long) (PERIOD * 0.9), (long) (PERIOD * 1.1));
+        assertThat(delays.get(2)).isBetween((long) (PERIOD * 1.8), (long) (PERIOD * 2.2));
+        assertThat(delays.get(3)).isBetween((long) (PERIOD * 3.6), (long) (PERIOD * 4.4));
+        assertThat(delays.get(4)).isBetween((long) (PERIOD * 3.6), (long) (PERIOD * 4.4));
+        assertThat(decorator.execute().isHealthy()).isTrue();
+        assertThat(timer.getCount()).isEqualTo(4);
+    }
+
+    @Test
+    public void rechecksSoonerOnceUnhealthy() throws Exception {
+        final AdaptiveHealthCheckDecorator decorator = new AdaptiveHealthCheckDecorator(healthCheck,
+                                                                                        executorService,
+                                                                                        schedule,
+                                                                                        permits,
+                                                                                        timer);
+        decorator.run();
+        decorator.run();
+        healthCheck.healthy = false;
+        decorator.run();
+
+        assertThat(scheduledDelays().get(3))
+                .isBetween((long) (PERIOD * 0.225), (long) (PERIOD * 0.275));
+        assertThat(decorator.execute().isHealthy()).isFalse();
+    }
+
+    @Test
+    public void postponesRunsWhileTheConcurrencyBudgetIsUsedUp() throws Exception {
+        final AdaptiveHealthCheckDecorator decorator = new AdaptiveHealthCheckDecorator(healthCheck,
+                                                                                        executorService,
+                                                                                        schedule,
+                                                                                        permits,
+                                                                                        timer);
+        permits.acquire();
+        decorator.run();
+
+        assertThat(healthCheck.runs).isZero();
+        assertThat(scheduledDelays()).hasSize(2);
+        assertThat(scheduledDelays().get(1)).isLessThan(PERIOD);
+    }
+
+    @Test
+    public void stopsSchedulingOnceTornDown() throws Exception {
+        final AdaptiveHealthCheckDecorator decorator = new AdaptiveHealthCheckDecorator(healthCheck,
+                                                                                        executorService,
+                                                                                        schedule,
+                                                                                        permits,
+                                                                                        timer);
+        decorator.tearDown();
+        decorator.run();
+
+        verify(future).cancel(true);
+        assertThat(scheduledDelays()).hasSize(1);
+    }
+
+    private List<Long> scheduledDelays() {
+        final ArgumentCaptor<Long> delays = forClass(Long.class);
+        verify(executorService, atLeastOnce())
+                .schedule(any(Runnable.class), delays.capture(), eq(TimeUnit.NANOSECONDS));
+        return delays.getAllValues();
+    }
+
+    @Async(period = 10)
+    private static class ToggledHealthCheck extends HealthCheck {
+        private volatile boolean healthy = true;
+        private volatile int runs;
+
+        @Override
+        protected Result check() throws Exception {
+            runs++;
+            return healthy ? Result.healthy() : Result.unhealthy("down");
+        }
+    }
+}
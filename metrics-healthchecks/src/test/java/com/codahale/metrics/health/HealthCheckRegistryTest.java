@@ -5,8 +5,10 @@ import static org.assertj.core.api.Assertions.entry;
 import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
 import static org.mockito.ArgumentCaptor.forClass;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -15,14 +17,21 @@ import java.util.NoSuchElementException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.health.annotation.Async;
+import com.codahale.metrics.health.annotation.Cached;
 
 public class HealthCheckRegistryTest {
     private final ScheduledExecutorService executorService = mock(ScheduledExecutorService.class);
@@ -166,6 +175,204 @@ public class HealthCheckRegistryTest {
 
     }
 
+    @Test
+    public void recordsTheCostOfRunningHealthChecksWhenInstrumented() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        registry.instrumentInto(metricRegistry);
+
+        registry.runHealthChecks();
+        registry.runHealthCheck("hc1");
+
+        assertThat(metricRegistry.timer("healthchecks.runs").getCount())
+                .isEqualTo(1);
+        assertThat(metricRegistry.timer("healthchecks.hc1.duration").getCount())
+                .isEqualTo(2);
+        assertThat(metricRegistry.timer("healthchecks.hc2.duration").getCount())
+                .isEqualTo(1);
+        assertThat(metricRegistry.getTimers().containsKey("healthchecks.ahc.duration"))
+                .isFalse();
+        assertThat(metricRegistry.getGauges().get("healthchecks.registered").getValue())
+                .isEqualTo(3);
+
+        registry.unregister("hc2");
+
+        assertThat(metricRegistry.getTimers().containsKey("healthchecks.hc2.duration"))
+                .isFalse();
+    }
+
+    @Test
+    public void canBeInstrumentedRepeatedlyAndRemovesItsGaugeOnShutdown() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final HealthCheckRegistry other = new HealthCheckRegistry(mock(ScheduledExecutorService.class));
+        registry.instrumentInto(metricRegistry);
+        registry.instrumentInto(metricRegistry);
+        other.instrumentInto(metricRegistry);
+
+        assertThat(metricRegistry.getGauges().get("healthchecks.registered").getValue())
+                .isEqualTo(3);
+
+        other.shutdown();
+        assertThat(metricRegistry.getGauges().get("healthchecks.registered").getValue())
+                .isEqualTo(3);
+
+        registry.shutdown();
+        assertThat(metricRegistry.getGauges())
+                .isEmpty();
+    }
+
+    @Test
+    public void reusesFreshCachedResults() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(10);
+        try {
+            final Map<String, HealthCheck.Result> first = registry.runHealthChecks(executor, 1, 1, TimeUnit.MINUTES);
+            final Map<String, HealthCheck.Result> second = registry.runHealthChecks(executor, 1, 1, TimeUnit.MINUTES);
+
+            assertThat(first).contains(entry("hc1", r1), entry("hc2", r2));
+            assertThat(second).contains(entry("hc1", r1), entry("hc2", r2));
+            verify(hc1, times(1)).execute();
+            verify(hc2, times(1)).execute();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void servesStaleResultsWhileRefreshing() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(10);
+        final CountDownLatch refreshing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final HealthCheck.Result fresh = mock(HealthCheck.Result.class);
+        when(hc1.execute()).thenReturn(r1).thenAnswer(new Answer<HealthCheck.Result>() {
+            @Override
+            public HealthCheck.Result answer(InvocationOnMock invocation) throws Throwable {
+                refreshing.countDown();
+                release.await();
+                return fresh;
+            }
+        });
+        try {
+            registry.runHealthChecks(executor, 0, 1, TimeUnit.MINUTES);
+
+            assertThat(registry.runHealthChecks(executor, 0, 1, TimeUnit.MINUTES))
+                    .contains(entry("hc1", r1));
+            refreshing.await();
+            assertThat(registry.runHealthChecks(executor, 0, 1, TimeUnit.MINUTES))
+                    .contains(entry("hc1", r1));
+
+            release.countDown();
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+
+            verify(hc1, times(2)).execute();
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void reportsHealthChecksWhichTimeOutAsUnhealthy() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(10);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(hc1.execute()).thenAnswer(new Answer<HealthCheck.Result>() {
+            @Override
+            public HealthCheck.Result answer(InvocationOnMock invocation) throws Throwable {
+                release.await();
+                return r1;
+            }
+        });
+        try {
+            final Map<String, HealthCheck.Result> results = registry.runHealthChecks(executor, 1, 50, TimeUnit.MILLISECONDS);
+
+            assertThat(results.get("hc1").isHealthy())
+                    .isFalse();
+            assertThat(results.get("hc1").getMessage())
+                    .isEqualTo("Timed out after 50 ms");
+            assertThat(results).contains(entry("hc2", r2));
+
+            // a second caller waits for the same run rather than starting another one
+            registry.runHealthChecks(executor, 1, 10, TimeUnit.MILLISECONDS);
+            verify(hc1, times(1)).execute();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void runsCachedHealthChecksOnTheirOwnExecutor() throws Exception {
+        try {
+            assertThat(registry.runHealthChecks(1, 1, TimeUnit.MINUTES))
+                    .contains(entry("hc1", r1), entry("hc2", r2));
+        } finally {
+            registry.shutdown();
+        }
+    }
+
+    @Test
+    public void usesTheMaxAgeOfCachedHealthChecks() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(10);
+        final StaleHealthCheck stale = new StaleHealthCheck();
+        registry.register("stale", stale);
+        try {
+            registry.runHealthChecks(executor, 1, 1, TimeUnit.MINUTES);
+            registry.runHealthChecks(executor, 1, 1, TimeUnit.MINUTES);
+
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+
+            verify(hc1, times(1)).execute();
+            assertThat(stale.runs.get())
+                    .isEqualTo(2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void usesTheTimeoutOfCachedHealthChecks() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(10);
+        final CountDownLatch release = new CountDownLatch(1);
+        registry.register("slow", new SlowHealthCheck(release));
+        try {
+            final Map<String, HealthCheck.Result> results = registry.runHealthChecks(executor, 1, 0, TimeUnit.MINUTES);
+
+            assertThat(results.get("slow").getMessage())
+                    .isEqualTo("Timed out after 50 ms");
+            assertThat(results).contains(entry("hc1", r1), entry("hc2", r2));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void schedulesAsyncHealthChecksAdaptively() throws Exception {
+        final ScheduledExecutorService adaptiveExecutor = mock(ScheduledExecutorService.class);
+        final MetricRegistry metrics = new MetricRegistry();
+        final HealthCheckRegistry adaptiveRegistry = new HealthCheckRegistry(adaptiveExecutor,
+                AdaptiveSchedule.builder().recordDurationsIn(metrics).build());
+
+        adaptiveRegistry.register("ahc", new TestAsyncHealthCheck(ar));
+
+        verify(adaptiveExecutor).schedule(any(AdaptiveHealthCheckDecorator.class), anyLong(), eq(TimeUnit.NANOSECONDS));
+        assertThat(metrics.getTimers()).containsKey("healthchecks.ahc.duration");
+
+        adaptiveRegistry.unregister("ahc");
+
+        assertThat(metrics.getTimers()).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void doesNotAllowMoreConcurrentHealthChecksThanExecutorThreads() throws Exception {
+        final ScheduledThreadPoolExecutor adaptiveExecutor = new ScheduledThreadPoolExecutor(2);
+        try {
+            new HealthCheckRegistry(adaptiveExecutor, AdaptiveSchedule.builder().maxConcurrent(4).build());
+        } finally {
+            adaptiveExecutor.shutdown();
+        }
+    }
+
     @Async(period = 10)
     private static class TestAsyncHealthCheck extends HealthCheck {
         private final Result result;
@@ -179,4 +386,30 @@ public class HealthCheckRegistryTest {
             return result;
         }
     }
+
+    @Cached(maxAge = 0)
+    private static class StaleHealthCheck extends HealthCheck {
+        private final AtomicInteger runs = new AtomicInteger();
+
+        @Override
+        protected Result check() throws Exception {
+            runs.incrementAndGet();
+            return Result.healthy();
+        }
+    }
+
+    @Cached(timeout = 50, unit = TimeUnit.MILLISECONDS)
+    private static class SlowHealthCheck extends HealthCheck {
+        private final CountDownLatch release;
+
+        SlowHealthCheck(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        protected Result check() throws Exception {
+            release.await();
+            return Result.healthy();
+        }
+    }
 }
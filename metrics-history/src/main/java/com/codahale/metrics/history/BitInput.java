@@ -0,0 +1,65 @@
+package com.codahale.metrics.history;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads bits, most significant bit first, from a region of a {@link ByteBuffer}.
+ */
+class BitInput {
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int limit;
+    private long position;
+
+    /**
+     * @param buffer the buffer to read from; its position and limit are not modified
+     * @param offset the absolute index of the first byte in the region
+     * @param length the length of the region in bytes
+     */
+    BitInput(ByteBuffer buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.limit = offset + length;
+        this.position = 0;
+    }
+
+    boolean readBit() {
+        return readBits(1) != 0;
+    }
+
+    /**
+     * Reads {@code count} bits as an unsigned value.
+     *
+     * @param count the number of bits to read, between 0 and 64
+     */
+    long readBits(int count) {
+        long value = 0;
+        int remaining = count;
+        while (remaining > 0) {
+            final int index = offset + (int) (position >>> 3);
+            if (index >= limit) {
+                throw new IllegalStateException("Read past the end of the column");
+            }
+            final int used = (int) (position & 7);
+            final int available = 8 - used;
+            final int take = Math.min(available, remaining);
+            final int bits = ((buffer.get(index) & 0xFF) >>> (available - take)) & ((1 << take) - 1);
+            value = (value << take) | bits;
+            remaining -= take;
+            position += take;
+        }
+        return value;
+    }
+
+    /**
+     * Reads {@code count} bits as a two's complement signed value.
+     */
+    long readSignedBits(int count) {
+        final long value = readBits(count);
+        if (count == 64) {
+            return value;
+        }
+        final int shift = 64 - count;
+        return (value << shift) >> shift;
+    }
+}
@@ -0,0 +1,90 @@
+package com.codahale.metrics.history;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable, in-memory sequence of bits, written most significant bit first.
+ */
+class BitOutput {
+    private long[] words;
+    private long length;
+
+    BitOutput() {
+        this.words = new long[4];
+        this.length = 0;
+    }
+
+    /**
+     * Appends a single bit.
+     */
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Appends the lowest {@code count} bits of {@code value}.
+     *
+     * @param value the bits to append
+     * @param count the number of bits to append, between 0 and 64
+     */
+    void writeBits(long value, int count) {
+        if (count == 0) {
+            return;
+        }
+        if (count < 64) {
+            value &= (1L << count) - 1;
+        }
+        final int index = (int) (length >>> 6);
+        final int used = (int) (length & 63);
+        ensureCapacity(index + 2);
+
+        final int free = 64 - used;
+        if (count <= free) {
+            words[index] |= value << (free - count);
+        } else {
+            final int overflow = count - free;
+            words[index] |= value >>> overflow;
+            words[index + 1] |= value << (64 - overflow);
+        }
+        length += count;
+    }
+
+    /**
+     * Returns the number of bits written so far.
+     */
+    long length() {
+        return length;
+    }
+
+    /**
+     * Returns the number of bytes needed to hold the bits written so far.
+     */
+    int byteLength() {
+        return (int) ((length + 7) >>> 3);
+    }
+
+    /**
+     * Copies the bits written so far into the given buffer, padding the last byte with zeros.
+     */
+    void writeTo(ByteBuffer buffer) {
+        final int bytes = byteLength();
+        for (int i = 0; i < bytes; i++) {
+            buffer.put((byte) (words[i >>> 3] >>> (56 - ((i & 7) << 3))));
+        }
+    }
+
+    /**
+     * Discards all bits written so far.
+     */
+    void clear() {
+        Arrays.fill(words, 0);
+        length = 0;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > words.length) {
+            words = Arrays.copyOf(words, Math.max(size, words.length * 2));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.codahale.metrics.history;
+
+import com.codahale.metrics.MetricAttribute;
+
+import java.nio.charset.Charset;
+
+/**
+ * Constants describing the layout of history files.
+ * <p>
+ * A history file starts with a magic number and a version, followed by a sequence of blocks. Each
+ * block covers a run of consecutive reports (ticks) and is laid out as:
+ * <pre>
+ * int    magic
+ * int    length of the rest of the block
+ * long   first timestamp
+ * long   last timestamp
+ * int    number of ticks
+ * int    length of the timestamps, followed by the delta-of-delta encoded timestamps
+ * int    number of names first seen in this block, followed by each name as an int length and
+ *        UTF-8 bytes; names are numbered in order of appearance across the whole file
+ * int    number of columns, followed by one fixed size entry per column, sorted by name id and
+ *        attribute: int name id, byte attribute, int first tick, int number of values, int offset
+ *        of the values relative to the start of the column data, int length of the values
+ * byte[] column data: the XOR encoded values of each column
+ * </pre>
+ * Since the column entries are fixed size and sorted, a reader can find a single column by
+ * binary search and decode it without touching any other column of the block.
+ */
+final class HistoryFormat {
+    static final int FILE_MAGIC = 0x4D484953;
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 8;
+    static final int BLOCK_MAGIC = 0x424C4B31;
+    static final int BLOCK_PREAMBLE_SIZE = 8;
+    static final int COLUMN_ENTRY_SIZE = 21;
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The attribute name used for gauge values.
+     */
+    static final String VALUE = "value";
+
+    private static final MetricAttribute[] ATTRIBUTES = MetricAttribute.values();
+
+    /**
+     * The number of attribute codes, including the one for gauge values.
+     */
+    static final int ATTRIBUTE_COUNT = ATTRIBUTES.length + 1;
+
+    private HistoryFormat() {
+    }
+
+    static byte attributeCode(MetricAttribute attribute) {
+        return (byte) (attribute.ordinal() + 1);
+    }
+
+    /**
+     * Returns the code of the attribute with the given name, or {@code -1} if there is none.
+     */
+    static byte attributeCode(String name) {
+        if (VALUE.equals(name)) {
+            return 0;
+        }
+        for (MetricAttribute attribute : ATTRIBUTES) {
+            if (attribute.getCode().equals(name)) {
+                return attributeCode(attribute);
+            }
+        }
+        return -1;
+    }
+
+    static String attributeName(byte code) {
+        return code == 0 ? VALUE : ATTRIBUTES[code - 1].getCode();
+    }
+}
@@ -0,0 +1,228 @@
+package com.codahale.metrics.history;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.codahale.metrics.history.HistoryFormat.*;
+
+/**
+ * Reads a history file written by {@link HistoryReporter}.
+ * <p>
+ * Opening a file only reads the block headers and the name dictionary; each block stays
+ * memory-mapped, and a {@link #scan(String, String, long, long, DataPointVisitor) scan} decodes the
+ * timestamps of the blocks overlapping the requested range plus the single column it asks for.
+ * The reader sees the blocks which were complete at the time it was opened.
+ */
+public class HistoryReader {
+    /**
+     * Receives the data points of a scan, in chronological order.
+     */
+    public interface DataPointVisitor {
+        void visit(long timestamp, double value);
+    }
+
+    /**
+     * Opens the given history file.
+     *
+     * @param file a history file
+     * @return a {@link HistoryReader} for {@code file}
+     * @throws IOException if the file cannot be read or is not a history file
+     */
+    public static HistoryReader open(File file) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final long size = channel.size();
+
+            final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != FILE_MAGIC) {
+                throw new IOException(file + " is not a metrics history file");
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported metrics history version " + header.getInt(4) + " in " + file);
+            }
+
+            final List<String> names = new ArrayList<String>();
+            final List<Block> blocks = new ArrayList<Block>();
+            final ByteBuffer preamble = ByteBuffer.allocate(BLOCK_PREAMBLE_SIZE);
+            long position = FILE_HEADER_SIZE;
+            while (position + BLOCK_PREAMBLE_SIZE <= size) {
+                preamble.clear();
+                readFully(channel, preamble, position);
+                final int length = preamble.getInt(4);
+                // anything else is space mapped by a writer which didn't get to trim it
+                if (preamble.getInt(0) != BLOCK_MAGIC || length <= 0 ||
+                        position + BLOCK_PREAMBLE_SIZE + length > size) {
+                    break;
+                }
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                                                            position + BLOCK_PREAMBLE_SIZE,
+                                                            length);
+                blocks.add(new Block(buffer, names));
+                position += BLOCK_PREAMBLE_SIZE + length;
+            }
+            return new HistoryReader(names, blocks, position);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private final List<String> names;
+    private final Map<String, Integer> nameIds;
+    private final List<Block> blocks;
+    private final long endOffset;
+
+    private HistoryReader(List<String> names, List<Block> blocks, long endOffset) {
+        this.names = Collections.unmodifiableList(names);
+        this.nameIds = new HashMap<String, Integer>();
+        for (int i = 0; i < names.size(); i++) {
+            nameIds.put(names.get(i), i);
+        }
+        this.blocks = blocks;
+        this.endOffset = endOffset;
+    }
+
+    /**
+     * Returns the names of all metrics in the file, in order of first appearance.
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Visits every recorded value of a metric's attribute with a timestamp in the given range.
+     * Reports which didn't include the metric, and {@code NaN} values, are skipped.
+     *
+     * @param name      the metric's name
+     * @param attribute the attribute's code as in {@link com.codahale.metrics.MetricAttribute}, or
+     *                  {@code value} for gauges
+     * @param from      the earliest timestamp to visit, in milliseconds, inclusive
+     * @param to        the latest timestamp to visit, in milliseconds, inclusive
+     * @param visitor   the receiver of the data points
+     */
+    public void scan(String name, String attribute, long from, long to, DataPointVisitor visitor) {
+        final Integer nameId = nameIds.get(name);
+        final byte code = attributeCode(attribute);
+        if (nameId == null || code < 0) {
+            return;
+        }
+
+        for (Block block : blocks) {
+            if (block.lastTimestamp < from || block.firstTimestamp > to) {
+                continue;
+            }
+            final int entry = block.findColumn(nameId, code);
+            if (entry < 0) {
+                continue;
+            }
+            block.scan(entry, from, to, visitor);
+        }
+    }
+
+    long getEndOffset() {
+        return endOffset;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        if (buffer.remaining() < buffer.capacity()) {
+            throw new IOException("Unexpected end of history file");
+        }
+    }
+
+    private static class Block {
+        private final ByteBuffer buffer;
+        private final long firstTimestamp;
+        private final long lastTimestamp;
+        private final int tickCount;
+        private final int timestampsOffset;
+        private final int timestampsLength;
+        private final int columnsOffset;
+        private final int columnCount;
+        private final int dataOffset;
+
+        private Block(ByteBuffer buffer, List<String> names) {
+            this.buffer = buffer;
+            this.firstTimestamp = buffer.getLong(0);
+            this.lastTimestamp = buffer.getLong(8);
+            this.tickCount = buffer.getInt(16);
+            this.timestampsLength = buffer.getInt(20);
+            this.timestampsOffset = 24;
+
+            int offset = timestampsOffset + timestampsLength;
+            final int nameCount = buffer.getInt(offset);
+            offset += 4;
+            for (int i = 0; i < nameCount; i++) {
+                final byte[] bytes = new byte[buffer.getInt(offset)];
+                offset += 4;
+                for (int j = 0; j < bytes.length; j++) {
+                    bytes[j] = buffer.get(offset + j);
+                }
+                offset += bytes.length;
+                names.add(new String(bytes, UTF_8));
+            }
+
+            this.columnCount = buffer.getInt(offset);
+            this.columnsOffset = offset + 4;
+            this.dataOffset = columnsOffset + columnCount * COLUMN_ENTRY_SIZE;
+        }
+
+        /**
+         * Returns the offset of the column entry with the given key, or {@code -1}.
+         */
+        private int findColumn(int nameId, byte attribute) {
+            int low = 0;
+            int high = columnCount - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final int entry = columnsOffset + mid * COLUMN_ENTRY_SIZE;
+                final int id = buffer.getInt(entry);
+                final int cmp = id != nameId ? (id < nameId ? -1 : 1) : buffer.get(entry + 4) - attribute;
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return entry;
+                }
+            }
+            return -1;
+        }
+
+        private void scan(int entry, long from, long to, DataPointVisitor visitor) {
+            final int firstTick = buffer.getInt(entry + 5);
+            final int valueCount = buffer.getInt(entry + 9);
+            final int offset = buffer.getInt(entry + 13);
+            final int length = buffer.getInt(entry + 17);
+
+            final long[] timestamps = TimestampDecoder.decode(
+                    new BitInput(buffer, timestampsOffset, timestampsLength), firstTimestamp, tickCount);
+            final XorDecoder values = new XorDecoder(new BitInput(buffer, dataOffset + offset, length));
+            for (int i = 0; i < valueCount; i++) {
+                final double value = values.next();
+                final long timestamp = timestamps[firstTick + i];
+                if (timestamp > to) {
+                    break;
+                }
+                if (timestamp >= from && !Double.isNaN(value)) {
+                    visitor.visit(timestamp, value);
+                }
+            }
+        }
+    }
+}
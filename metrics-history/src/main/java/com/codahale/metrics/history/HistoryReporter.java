@@ -0,0 +1,341 @@
+package com.codahale.metrics.history;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricAttribute.*;
+
+/**
+ * A reporter which appends the measurements of every report to a compact, binary, columnar
+ * history file, which can be read back with {@link HistoryReader}.
+ * <p>
+ * Reports are buffered in memory and written out as one block every {@code ticksPerBlock}
+ * reports, and when the reporter is stopped. Within a block, timestamps are delta-of-delta encoded
+ * and each attribute of each metric is a separate column of XOR-compressed doubles, so a series
+ * which reports at a steady rate and rarely changes costs about two bits per report. Metric names
+ * are written once per file. Durations and rates are stored in the reporter's units.
+ */
+public class HistoryReporter extends ScheduledReporter {
+    /**
+     * Returns a new {@link Builder} for {@link HistoryReporter}.
+     *
+     * @param registry the registry to report
+     * @return a {@link Builder} instance for a {@link HistoryReporter}
+     */
+    public static Builder forRegistry(MetricRegistry registry) {
+        return new Builder(registry);
+    }
+
+    /**
+     * A builder for {@link HistoryReporter} instances. Defaults to using the default clock,
+     * converting rates to events/second, converting durations to milliseconds, not filtering
+     * metrics, writing a block every 60 reports, and mapping the file in 8MiB segments.
+     */
+    public static class Builder {
+        private final MetricRegistry registry;
+        private Clock clock;
+        private TimeUnit rateUnit;
+        private TimeUnit durationUnit;
+        private MetricFilter filter;
+        private ScheduledExecutorService executor;
+        private boolean shutdownExecutorOnStop;
+        private int ticksPerBlock;
+        private int segmentSize;
+
+        private Builder(MetricRegistry registry) {
+            this.registry = registry;
+            this.clock = Clock.defaultClock();
+            this.rateUnit = TimeUnit.SECONDS;
+            this.durationUnit = TimeUnit.MILLISECONDS;
+            this.filter = MetricFilter.ALL;
+            this.executor = null;
+            this.shutdownExecutorOnStop = true;
+            this.ticksPerBlock = 60;
+            this.segmentSize = 8 * 1024 * 1024;
+        }
+
+        /**
+         * Specifies whether or not, the executor (used for reporting) will be stopped with same time with reporter.
+         * Default value is true.
+         * Setting this parameter to false, has the sense in combining with providing external managed executor via {@link #scheduleOn(ScheduledExecutorService)}.
+         *
+         * @param shutdownExecutorOnStop if true, then executor will be stopped in same time with this reporter
+         * @return {@code this}
+         */
+        public Builder shutdownExecutorOnStop(boolean shutdownExecutorOnStop) {
+            this.shutdownExecutorOnStop = shutdownExecutorOnStop;
+            return this;
+        }
+
+        /**
+         * Specifies the executor to use while scheduling reporting of metrics.
+         * Default value is null.
+         * Null value leads to executor will be auto created on start.
+         *
+         * @param executor the executor to use while scheduling reporting of metrics.
+         * @return {@code this}
+         */
+        public Builder scheduleOn(ScheduledExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Use the given {@link Clock} instance for the time.
+         *
+         * @param clock a {@link Clock} instance
+         * @return {@code this}
+         */
+        public Builder withClock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Convert rates to the given time unit.
+         *
+         * @param rateUnit a unit of time
+         * @return {@code this}
+         */
+        public Builder convertRatesTo(TimeUnit rateUnit) {
+            this.rateUnit = rateUnit;
+            return this;
+        }
+
+        /**
+         * Convert durations to the given time unit.
+         *
+         * @param durationUnit a unit of time
+         * @return {@code this}
+         */
+        public Builder convertDurationsTo(TimeUnit durationUnit) {
+            this.durationUnit = durationUnit;
+            return this;
+        }
+
+        /**
+         * Only report metrics which match the given filter.
+         *
+         * @param filter a {@link MetricFilter}
+         * @return {@code this}
+         */
+        public Builder filter(MetricFilter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Write a block to the file after the given number of reports. Larger blocks compress
+         * better, but more reports are held in memory and lost if the process dies.
+         *
+         * @param ticksPerBlock the number of reports per block
+         * @return {@code this}
+         */
+        public Builder ticksPerBlock(int ticksPerBlock) {
+            if (ticksPerBlock < 1) {
+                throw new IllegalArgumentException("ticksPerBlock must be positive");
+            }
+            this.ticksPerBlock = ticksPerBlock;
+            return this;
+        }
+
+        /**
+         * Map the file into memory in segments of at least the given size.
+         *
+         * @param segmentSize the segment size in bytes
+         * @return {@code this}
+         */
+        public Builder segmentSize(int segmentSize) {
+            if (segmentSize < 1) {
+                throw new IllegalArgumentException("segmentSize must be positive");
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Builds a {@link HistoryReporter} with the given properties, appending to the given file.
+         *
+         * @param file the history file, which is created on the first report if it doesn't exist
+         * @return a {@link HistoryReporter}
+         */
+        public HistoryReporter build(File file) {
+            return new HistoryReporter(registry,
+                                       file,
+                                       clock,
+                                       rateUnit,
+                                       durationUnit,
+                                       filter,
+                                       executor,
+                                       shutdownExecutorOnStop,
+                                       ticksPerBlock,
+                                       segmentSize);
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HistoryReporter.class);
+
+    private static final byte VALUE_CODE = HistoryFormat.attributeCode(HistoryFormat.VALUE);
+    private static final byte COUNT_CODE = HistoryFormat.attributeCode(COUNT);
+    private static final byte MAX_CODE = HistoryFormat.attributeCode(MAX);
+    private static final byte MEAN_CODE = HistoryFormat.attributeCode(MEAN);
+    private static final byte MIN_CODE = HistoryFormat.attributeCode(MIN);
+    private static final byte STDDEV_CODE = HistoryFormat.attributeCode(STDDEV);
+    private static final byte P50_CODE = HistoryFormat.attributeCode(P50);
+    private static final byte P75_CODE = HistoryFormat.attributeCode(P75);
+    private static final byte P95_CODE = HistoryFormat.attributeCode(P95);
+    private static final byte P98_CODE = HistoryFormat.attributeCode(P98);
+    private static final byte P99_CODE = HistoryFormat.attributeCode(P99);
+    private static final byte P999_CODE = HistoryFormat.attributeCode(P999);
+    private static final byte MEAN_RATE_CODE = HistoryFormat.attributeCode(MEAN_RATE);
+    private static final byte M1_RATE_CODE = HistoryFormat.attributeCode(M1_RATE);
+    private static final byte M5_RATE_CODE = HistoryFormat.attributeCode(M5_RATE);
+    private static final byte M15_RATE_CODE = HistoryFormat.attributeCode(M15_RATE);
+
+    private final File file;
+    private final Clock clock;
+    private final int ticksPerBlock;
+    private final int segmentSize;
+    private HistoryWriter writer;
+
+    private HistoryReporter(MetricRegistry registry,
+                            File file,
+                            Clock clock,
+                            TimeUnit rateUnit,
+                            TimeUnit durationUnit,
+                            MetricFilter filter,
+                            ScheduledExecutorService executor,
+                            boolean shutdownExecutorOnStop,
+                            int ticksPerBlock,
+                            int segmentSize) {
+        super(registry, "history-reporter", filter, rateUnit, durationUnit, executor, shutdownExecutorOnStop);
+        this.file = file;
+        this.clock = clock;
+        this.ticksPerBlock = ticksPerBlock;
+        this.segmentSize = segmentSize;
+    }
+
+    @Override
+    public void report(SortedMap<String, Gauge> gauges,
+                       SortedMap<String, Counter> counters,
+                       SortedMap<String, Histogram> histograms,
+                       SortedMap<String, Meter> meters,
+                       SortedMap<String, Timer> timers) {
+        try {
+            if (writer == null) {
+                writer = new HistoryWriter(file, segmentSize);
+            }
+
+            writer.beginTick(clock.getTime());
+
+            for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+                final Object value = entry.getValue().getValue();
+                if (value instanceof Number) {
+                    writer.append(entry.getKey(), VALUE_CODE, ((Number) value).doubleValue());
+                }
+            }
+
+            for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+                writer.append(entry.getKey(), COUNT_CODE, entry.getValue().getCount());
+            }
+
+            for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                final String name = entry.getKey();
+                final Histogram histogram = entry.getValue();
+                final Snapshot snapshot = histogram.getSnapshot();
+                writer.append(name, COUNT_CODE, histogram.getCount());
+                writer.append(name, MAX_CODE, snapshot.getMax());
+                writer.append(name, MEAN_CODE, snapshot.getMean());
+                writer.append(name, MIN_CODE, snapshot.getMin());
+                writer.append(name, STDDEV_CODE, snapshot.getStdDev());
+                writer.append(name, P50_CODE, snapshot.getMedian());
+                writer.append(name, P75_CODE, snapshot.get75thPercentile());
+                writer.append(name, P95_CODE, snapshot.get95thPercentile());
+                writer.append(name, P98_CODE, snapshot.get98thPercentile());
+                writer.append(name, P99_CODE, snapshot.get99thPercentile());
+                writer.append(name, P999_CODE, snapshot.get999thPercentile());
+            }
+
+            for (Map.Entry<String, Meter> entry : meters.entrySet()) {
+                final String name = entry.getKey();
+                final Meter meter = entry.getValue();
+                writer.append(name, COUNT_CODE, meter.getCount());
+                writer.append(name, MEAN_RATE_CODE, convertRate(meter.getMeanRate()));
+                writer.append(name, M1_RATE_CODE, convertRate(meter.getOneMinuteRate()));
+                writer.append(name, M5_RATE_CODE, convertRate(meter.getFiveMinuteRate()));
+                writer.append(name, M15_RATE_CODE, convertRate(meter.getFifteenMinuteRate()));
+            }
+
+            for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+                final String name = entry.getKey();
+                final Timer timer = entry.getValue();
+                final Snapshot snapshot = timer.getSnapshot();
+                writer.append(name, COUNT_CODE, timer.getCount());
+                writer.append(name, MAX_CODE, convertDuration(snapshot.getMax()));
+                writer.append(name, MEAN_CODE, convertDuration(snapshot.getMean()));
+                writer.append(name, MIN_CODE, convertDuration(snapshot.getMin()));
+                writer.append(name, STDDEV_CODE, convertDuration(snapshot.getStdDev()));
+                writer.append(name, P50_CODE, convertDuration(snapshot.getMedian()));
+                writer.append(name, P75_CODE, convertDuration(snapshot.get75thPercentile()));
+                writer.append(name, P95_CODE, convertDuration(snapshot.get95thPercentile()));
+                writer.append(name, P98_CODE, convertDuration(snapshot.get98thPercentile()));
+                writer.append(name, P99_CODE, convertDuration(snapshot.get99thPercentile()));
+                writer.append(name, P999_CODE, convertDuration(snapshot.get999thPercentile()));
+                writer.append(name, MEAN_RATE_CODE, convertRate(timer.getMeanRate()));
+                writer.append(name, M1_RATE_CODE, convertRate(timer.getOneMinuteRate()));
+                writer.append(name, M5_RATE_CODE, convertRate(timer.getFiveMinuteRate()));
+                writer.append(name, M15_RATE_CODE, convertRate(timer.getFifteenMinuteRate()));
+            }
+
+            if (writer.getTickCount() >= ticksPerBlock) {
+                writer.seal();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write to {}", file, e);
+            closeWriter();
+        }
+    }
+
+    /**
+     * Stops the reporter, writing out any buffered reports.
+     */
+    @Override
+    public void stop() {
+        try {
+            super.stop();
+        } finally {
+            synchronized (this) {
+                closeWriter();
+            }
+        }
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to close {}", file, e);
+            } finally {
+                writer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.codahale.metrics.history;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.codahale.metrics.history.HistoryFormat.*;
+
+/**
+ * Appends blocks to a history file through memory-mapped segments.
+ * <p>
+ * Values are buffered in memory, column by column, until {@link #seal()} writes them out as one
+ * block. Instances are not thread-safe.
+ */
+class HistoryWriter implements Closeable {
+    private static final Comparator<Column> COLUMN_ORDER = new Comparator<Column>() {
+        @Override
+        public int compare(Column a, Column b) {
+            if (a.nameId != b.nameId) {
+                return a.nameId < b.nameId ? -1 : 1;
+            }
+            return a.attribute - b.attribute;
+        }
+    };
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int segmentSize;
+    private final Map<String, Integer> nameIds;
+    private final List<String> newNames;
+    private final Map<String, Row> rows;
+    private final BitOutput timestampBits;
+    private TimestampEncoder timestamps;
+
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private long position;
+
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private int tick;
+
+    /**
+     * Opens the given file for appending, creating it if it doesn't exist yet.
+     *
+     * @param path        the history file
+     * @param segmentSize the minimum size of each region of the file mapped into memory
+     */
+    HistoryWriter(File path, int segmentSize) throws IOException {
+        this.segmentSize = segmentSize;
+        this.nameIds = new HashMap<String, Integer>();
+        this.newNames = new ArrayList<String>();
+        this.rows = new HashMap<String, Row>();
+        this.timestampBits = new BitOutput();
+        this.timestamps = new TimestampEncoder(timestampBits);
+        this.tick = -1;
+
+        if (path.exists() && path.length() > 0) {
+            final HistoryReader reader = HistoryReader.open(path);
+            final List<String> names = reader.getNames();
+            for (int i = 0; i < names.size(); i++) {
+                nameIds.put(names.get(i), i);
+            }
+            this.position = reader.getEndOffset();
+        } else {
+            this.position = 0;
+        }
+
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+        if (position == 0) {
+            ensureCapacity(FILE_HEADER_SIZE);
+            segment.putInt(FILE_MAGIC);
+            segment.putInt(VERSION);
+            position += FILE_HEADER_SIZE;
+        }
+    }
+
+    /**
+     * Starts a new tick; all values appended until the next call belong to it.
+     */
+    void beginTick(long timestamp) {
+        if (tick < 0) {
+            firstTimestamp = timestamp;
+        }
+        // never let time go backwards within a block
+        lastTimestamp = Math.max(timestamp, tick < 0 ? timestamp : lastTimestamp);
+        timestamps.append(lastTimestamp);
+        tick++;
+    }
+
+    /**
+     * Returns the number of ticks buffered since the last block was sealed.
+     */
+    int getTickCount() {
+        return tick + 1;
+    }
+
+    void append(String name, byte attribute, double value) {
+        Row row = rows.get(name);
+        if (row == null) {
+            Integer id = nameIds.get(name);
+            if (id == null) {
+                id = nameIds.size();
+                nameIds.put(name, id);
+                newNames.add(name);
+            }
+            row = new Row(id);
+            rows.put(name, row);
+        }
+
+        Column column = row.columns[attribute];
+        if (column == null) {
+            column = new Column(row.nameId, attribute, tick);
+            row.columns[attribute] = column;
+        }
+        column.append(tick, value);
+    }
+
+    /**
+     * Writes all buffered ticks out as a single block, if there are any.
+     */
+    void seal() throws IOException {
+        if (tick < 0) {
+            return;
+        }
+
+        final List<Column> sorted = new ArrayList<Column>();
+        for (Row row : rows.values()) {
+            for (Column column : row.columns) {
+                if (column != null) {
+                    sorted.add(column);
+                }
+            }
+        }
+        Collections.sort(sorted, COLUMN_ORDER);
+
+        final List<byte[]> encodedNames = new ArrayList<byte[]>(newNames.size());
+        int size = 8 + 8 + 4 + 4 + timestampBits.byteLength() + 4;
+        for (String name : newNames) {
+            final byte[] bytes = name.getBytes(UTF_8);
+            encodedNames.add(bytes);
+            size += 4 + bytes.length;
+        }
+        size += 4 + sorted.size() * COLUMN_ENTRY_SIZE;
+        for (Column column : sorted) {
+            size += column.bits.byteLength();
+        }
+
+        ensureCapacity(BLOCK_PREAMBLE_SIZE + size);
+        segment.putInt(BLOCK_MAGIC);
+        segment.putInt(size);
+        segment.putLong(firstTimestamp);
+        segment.putLong(lastTimestamp);
+        segment.putInt(tick + 1);
+        segment.putInt(timestampBits.byteLength());
+        timestampBits.writeTo(segment);
+        segment.putInt(encodedNames.size());
+        for (byte[] name : encodedNames) {
+            segment.putInt(name.length);
+            segment.put(name);
+        }
+        segment.putInt(sorted.size());
+        int offset = 0;
+        for (Column column : sorted) {
+            final int length = column.bits.byteLength();
+            segment.putInt(column.nameId);
+            segment.put(column.attribute);
+            segment.putInt(column.firstTick);
+            segment.putInt(column.encoder.count());
+            segment.putInt(offset);
+            segment.putInt(length);
+            offset += length;
+        }
+        for (Column column : sorted) {
+            column.bits.writeTo(segment);
+        }
+        segment.force();
+        position += BLOCK_PREAMBLE_SIZE + size;
+
+        rows.clear();
+        newNames.clear();
+        timestampBits.clear();
+        timestamps = new TimestampEncoder(timestampBits);
+        tick = -1;
+    }
+
+    /**
+     * Seals any buffered ticks, and trims the file to the data actually written.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            seal();
+            if (segment != null) {
+                segment.force();
+            }
+            channel.truncate(position);
+        } finally {
+            segment = null;
+            file.close();
+        }
+    }
+
+    private void ensureCapacity(int size) throws IOException {
+        if (segment == null || position + size > segmentStart + segment.capacity()) {
+            if (segment != null) {
+                segment.force();
+            }
+            segmentStart = position;
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(segmentSize, size));
+        }
+        segment.position((int) (position - segmentStart));
+    }
+
+    private static class Row {
+        private final int nameId;
+        private final Column[] columns;
+
+        private Row(int nameId) {
+            this.nameId = nameId;
+            this.columns = new Column[ATTRIBUTE_COUNT];
+        }
+    }
+
+    private static class Column {
+        private final int nameId;
+        private final byte attribute;
+        private final int firstTick;
+        private final BitOutput bits;
+        private final XorEncoder encoder;
+
+        private Column(int nameId, byte attribute, int firstTick) {
+            this.nameId = nameId;
+            this.attribute = attribute;
+            this.firstTick = firstTick;
+            this.bits = new BitOutput();
+            this.encoder = new XorEncoder(bits);
+        }
+
+        private void append(int tick, double value) {
+            final int next = firstTick + encoder.count();
+            if (tick < next) {
+                return;
+            }
+            // fill the ticks this column missed, which cost a bit each
+            for (int i = next; i < tick; i++) {
+                encoder.append(Double.NaN);
+            }
+            encoder.append(value);
+        }
+    }
+}
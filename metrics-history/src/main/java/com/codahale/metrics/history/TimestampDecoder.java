@@ -0,0 +1,54 @@
+package com.codahale.metrics.history;
+
+/**
+ * Decodes timestamps written by {@link TimestampEncoder}.
+ */
+class TimestampDecoder {
+    private final BitInput in;
+    private long previous;
+    private long previousDelta;
+    private boolean first;
+
+    /**
+     * @param in    the encoded bits
+     * @param first the first timestamp, which is not part of the encoded bits
+     */
+    TimestampDecoder(BitInput in, long first) {
+        this.in = in;
+        this.previous = first;
+        this.previousDelta = 0;
+        this.first = true;
+    }
+
+    long next() {
+        if (first) {
+            first = false;
+            return previous;
+        }
+
+        long deltaOfDelta = 0;
+        int ones = 0;
+        while (ones < TimestampEncoder.BUCKETS.length && in.readBit()) {
+            ones++;
+        }
+        if (ones > 0) {
+            deltaOfDelta = in.readSignedBits(TimestampEncoder.BUCKETS[ones - 1]);
+        }
+
+        previousDelta += deltaOfDelta;
+        previous += previousDelta;
+        return previous;
+    }
+
+    /**
+     * Decodes the given number of timestamps, including the first one.
+     */
+    static long[] decode(BitInput in, long first, int count) {
+        final TimestampDecoder decoder = new TimestampDecoder(in, first);
+        final long[] timestamps = new long[count];
+        for (int i = 0; i < count; i++) {
+            timestamps[i] = decoder.next();
+        }
+        return timestamps;
+    }
+}
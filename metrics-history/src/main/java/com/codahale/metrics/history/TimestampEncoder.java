@@ -0,0 +1,74 @@
+package com.codahale.metrics.history;
+
+/**
+ * Encodes a sequence of increasing timestamps as delta-of-deltas, in the style of Facebook's Gorilla.
+ * <p>
+ * The first timestamp is kept by the caller; every following one is stored as the difference
+ * between its delta and the previous delta, using a variable-length prefix code. Reporting at a
+ * fixed rate yields a delta-of-delta of zero, which costs a single bit.
+ *
+ * @see <a href="http://www.vldb.org/pvldb/vol8/p1816-teller.pdf">Gorilla: A Fast, Scalable,
+ * In-Memory Time Series Database</a>
+ */
+class TimestampEncoder {
+    /**
+     * The payload sizes for the prefixes {@code 10}, {@code 110}, {@code 1110}, {@code 11110} and
+     * {@code 11111}.
+     */
+    static final int[] BUCKETS = {7, 9, 12, 32, 64};
+
+    private final BitOutput out;
+    private long previous;
+    private long previousDelta;
+    private int count;
+
+    TimestampEncoder(BitOutput out) {
+        this.out = out;
+    }
+
+    /**
+     * Appends a timestamp, which must not be earlier than the previous one.
+     *
+     * @return {@code true} if this was the first timestamp, which is not written to the bits
+     */
+    boolean append(long timestamp) {
+        if (count++ == 0) {
+            this.previous = timestamp;
+            this.previousDelta = 0;
+            return true;
+        }
+
+        final long delta = timestamp - previous;
+        final long deltaOfDelta = delta - previousDelta;
+        previous = timestamp;
+        previousDelta = delta;
+
+        if (deltaOfDelta == 0) {
+            out.writeBit(false);
+            return false;
+        }
+
+        for (int i = 0; i < BUCKETS.length; i++) {
+            final int bits = BUCKETS[i];
+            if (bits == 64 || fits(deltaOfDelta, bits)) {
+                // i + 1 one bits, followed by a zero unless this is the last bucket
+                out.writeBits(-1L, i + 1);
+                if (i < BUCKETS.length - 1) {
+                    out.writeBit(false);
+                }
+                out.writeBits(deltaOfDelta, bits);
+                break;
+            }
+        }
+        return false;
+    }
+
+    int count() {
+        return count;
+    }
+
+    private static boolean fits(long value, int bits) {
+        final long bound = 1L << (bits - 1);
+        return value >= -bound && value < bound;
+    }
+}
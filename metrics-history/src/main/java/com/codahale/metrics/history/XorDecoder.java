@@ -0,0 +1,36 @@
+package com.codahale.metrics.history;
+
+/**
+ * Decodes doubles written by {@link XorEncoder}.
+ */
+class XorDecoder {
+    private final BitInput in;
+    private long previous;
+    private int previousLeading;
+    private int previousTrailing;
+    private boolean first;
+
+    XorDecoder(BitInput in) {
+        this.in = in;
+        this.first = true;
+    }
+
+    double next() {
+        if (first) {
+            first = false;
+            previous = in.readBits(64);
+            return Double.longBitsToDouble(previous);
+        }
+
+        if (in.readBit()) {
+            if (in.readBit()) {
+                previousLeading = (int) in.readBits(5);
+                final int significant = (int) in.readBits(6) + 1;
+                previousTrailing = 64 - previousLeading - significant;
+            }
+            final int significant = 64 - previousLeading - previousTrailing;
+            previous ^= in.readBits(significant) << previousTrailing;
+        }
+        return Double.longBitsToDouble(previous);
+    }
+}
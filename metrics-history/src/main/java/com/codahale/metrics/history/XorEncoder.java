@@ -0,0 +1,61 @@
+package com.codahale.metrics.history;
+
+/**
+ * Encodes a sequence of doubles by XOR-ing each value with its predecessor, in the style of
+ * Facebook's Gorilla.
+ * <p>
+ * An unchanged value costs a single bit. Otherwise only the meaningful bits of the XOR are stored,
+ * reusing the previous value's leading and trailing zero counts whenever they still apply.
+ *
+ * @see TimestampEncoder
+ */
+class XorEncoder {
+    private final BitOutput out;
+    private long previous;
+    private int previousLeading;
+    private int previousTrailing;
+    private int count;
+
+    XorEncoder(BitOutput out) {
+        this.out = out;
+        this.previousLeading = -1;
+    }
+
+    void append(double value) {
+        final long bits = Double.doubleToLongBits(value);
+        if (count++ == 0) {
+            out.writeBits(bits, 64);
+            previous = bits;
+            return;
+        }
+
+        final long xor = bits ^ previous;
+        previous = bits;
+        if (xor == 0) {
+            out.writeBit(false);
+            return;
+        }
+        out.writeBit(true);
+
+        // the leading zero count is stored in 5 bits
+        final int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        final int trailing = Long.numberOfTrailingZeros(xor);
+        if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+            out.writeBit(false);
+            out.writeBits(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+        } else {
+            final int significant = 64 - leading - trailing;
+            out.writeBit(true);
+            out.writeBits(leading, 5);
+            // 1..64 is stored as 0..63
+            out.writeBits(significant - 1, 6);
+            out.writeBits(xor >>> trailing, significant);
+            previousLeading = leading;
+            previousTrailing = trailing;
+        }
+    }
+
+    int count() {
+        return count;
+    }
+}
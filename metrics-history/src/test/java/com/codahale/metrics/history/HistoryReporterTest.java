@@ -0,0 +1,167 @@
+package com.codahale.metrics.history;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HistoryReporterTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final MetricRegistry registry = mock(MetricRegistry.class);
+    private final Clock clock = mock(Clock.class);
+    private final Counter counter = mock(Counter.class);
+    private final Gauge gauge = mock(Gauge.class);
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        this.file = new File(folder.getRoot(), "metrics.history");
+    }
+
+    @Test
+    public void readsBackCountersAndGaugesAcrossBlocks() throws Exception {
+        final HistoryReporter reporter = reporter(3);
+        for (int i = 0; i < 7; i++) {
+            when(clock.getTime()).thenReturn(60000L * i);
+            when(counter.getCount()).thenReturn((long) i);
+            when(gauge.getValue()).thenReturn(i * 0.5);
+            reporter.report(map("gauge", gauge),
+                            map("counter", counter),
+                            this.<Histogram>map(),
+                            this.<Meter>map(),
+                            this.<Timer>map());
+        }
+        reporter.stop();
+
+        final HistoryReader reader = HistoryReader.open(file);
+        assertThat(reader.getNames())
+                .containsExactly("gauge", "counter");
+        assertThat(scan(reader, "counter", "count", 0, Long.MAX_VALUE))
+                .containsExactly("0=0.0", "60000=1.0", "120000=2.0", "180000=3.0", "240000=4.0",
+                                 "300000=5.0", "360000=6.0");
+        assertThat(scan(reader, "gauge", "value", 100000, 250000))
+                .containsExactly("120000=1.0", "180000=1.5", "240000=2.0");
+        assertThat(scan(reader, "gauge", "count", 0, Long.MAX_VALUE))
+                .isEmpty();
+        assertThat(scan(reader, "missing", "value", 0, Long.MAX_VALUE))
+                .isEmpty();
+    }
+
+    @Test
+    public void skipsReportsWhichDidNotIncludeAMetric() throws Exception {
+        final HistoryReporter reporter = reporter(10);
+        when(counter.getCount()).thenReturn(5L);
+        for (int i = 0; i < 4; i++) {
+            when(clock.getTime()).thenReturn(1000L * i);
+            reporter.report(this.<Gauge>map(),
+                            i == 1 ? this.<Counter>map() : map("counter", counter),
+                            this.<Histogram>map(),
+                            this.<Meter>map(),
+                            this.<Timer>map());
+        }
+        reporter.stop();
+
+        assertThat(scan(HistoryReader.open(file), "counter", "count", 0, Long.MAX_VALUE))
+                .containsExactly("0=5.0", "2000=5.0", "3000=5.0");
+    }
+
+    @Test
+    public void reportsTimersInTheConfiguredUnits() throws Exception {
+        final Timer timer = mock(Timer.class);
+        when(timer.getCount()).thenReturn(1L);
+        when(timer.getOneMinuteRate()).thenReturn(3.0);
+        final Snapshot snapshot = mock(Snapshot.class);
+        when(snapshot.get99thPercentile()).thenReturn((double) TimeUnit.MILLISECONDS.toNanos(900));
+        when(timer.getSnapshot()).thenReturn(snapshot);
+        when(clock.getTime()).thenReturn(1000L);
+
+        final HistoryReporter reporter = reporter(10);
+        reporter.report(this.<Gauge>map(),
+                        this.<Counter>map(),
+                        this.<Histogram>map(),
+                        this.<Meter>map(),
+                        map("timer", timer));
+        reporter.stop();
+
+        final HistoryReader reader = HistoryReader.open(file);
+        assertThat(scan(reader, "timer", "p99", 0, Long.MAX_VALUE))
+                .containsExactly("1000=900.0");
+        assertThat(scan(reader, "timer", "m1_rate", 0, Long.MAX_VALUE))
+                .containsExactly("1000=3.0");
+    }
+
+    @Test
+    public void appendsToAnExistingFile() throws Exception {
+        when(counter.getCount()).thenReturn(1L);
+        when(gauge.getValue()).thenReturn(2);
+        for (int i = 0; i < 2; i++) {
+            final HistoryReporter reporter = reporter(10);
+            when(clock.getTime()).thenReturn(1000L * i);
+            reporter.report(map("gauge" + i, gauge),
+                            map("counter", counter),
+                            this.<Histogram>map(),
+                            this.<Meter>map(),
+                            this.<Timer>map());
+            reporter.stop();
+        }
+
+        final HistoryReader reader = HistoryReader.open(file);
+        assertThat(reader.getNames())
+                .containsExactly("gauge0", "counter", "gauge1");
+        assertThat(scan(reader, "counter", "count", 0, Long.MAX_VALUE))
+                .containsExactly("0=1.0", "1000=1.0");
+    }
+
+    private HistoryReporter reporter(int ticksPerBlock) {
+        return HistoryReporter.forRegistry(registry)
+                              .withClock(clock)
+                              .convertRatesTo(TimeUnit.SECONDS)
+                              .convertDurationsTo(TimeUnit.MILLISECONDS)
+                              .ticksPerBlock(ticksPerBlock)
+                              .segmentSize(64)
+                              .build(file);
+    }
+
+    private List<String> scan(HistoryReader reader, String name, String attribute, long from, long to) {
+        final List<String> points = new ArrayList<String>();
+        reader.scan(name, attribute, from, to, new HistoryReader.DataPointVisitor() {
+            @Override
+            public void visit(long timestamp, double value) {
+                points.add(timestamp + "=" + value);
+            }
+        });
+        return points;
+    }
+
+    private <T> SortedMap<String, T> map() {
+        return new TreeMap<String, T>();
+    }
+
+    private <T> SortedMap<String, T> map(String name, T metric) {
+        final TreeMap<String, T> map = new TreeMap<String, T>();
+        map.put(name, metric);
+        return map;
+    }
+}
@@ -0,0 +1,45 @@
+package com.codahale.metrics.history;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimestampEncoderTest {
+    private final BitOutput out = new BitOutput();
+    private final TimestampEncoder encoder = new TimestampEncoder(out);
+
+    @Test
+    public void encodesRegularTimestampsInOneBitEach() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            encoder.append(1000000L + i * 60000L);
+        }
+
+        // one explicit delta, then a zero delta-of-delta for each following timestamp
+        assertThat(out.length())
+                .isEqualTo(5 + 32 + 98);
+        assertThat(decode(1000000L, 100))
+                .startsWith(1000000L, 1060000L, 1120000L)
+                .endsWith(1000000L + 99 * 60000L);
+    }
+
+    @Test
+    public void roundTripsIrregularTimestamps() throws Exception {
+        final long[] timestamps = {
+                0L, 1L, 2L, 100L, 130L, 5000L, 5001L, 1L << 40, (1L << 40) + 17, Long.MAX_VALUE / 2
+        };
+        for (long timestamp : timestamps) {
+            encoder.append(timestamp);
+        }
+
+        assertThat(decode(0L, timestamps.length))
+                .isEqualTo(timestamps);
+    }
+
+    private long[] decode(long first, int count) {
+        final ByteBuffer buffer = ByteBuffer.allocate(out.byteLength());
+        out.writeTo(buffer);
+        return TimestampDecoder.decode(new BitInput(buffer, 0, buffer.capacity()), first, count);
+    }
+}
@@ -0,0 +1,41 @@
+package com.codahale.metrics.history;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class XorEncoderTest {
+    private final BitOutput out = new BitOutput();
+    private final XorEncoder encoder = new XorEncoder(out);
+
+    @Test
+    public void encodesRepeatedValuesInOneBitEach() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            encoder.append(12.5);
+        }
+
+        assertThat(out.length())
+                .isEqualTo(64 + 9);
+    }
+
+    @Test
+    public void roundTripsValues() throws Exception {
+        final double[] values = {
+                1.0, 1.0, 2.0, 2.5, -2.5, 0.0, Double.NaN, 1e300, Double.MIN_VALUE, 3.14159, 3.14158,
+                Double.NEGATIVE_INFINITY, 42.0, 42.0
+        };
+        for (double value : values) {
+            encoder.append(value);
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(out.byteLength());
+        out.writeTo(buffer);
+        final XorDecoder decoder = new XorDecoder(new BitInput(buffer, 0, buffer.capacity()));
+        for (double value : values) {
+            assertThat(decoder.next())
+                    .isEqualTo(value);
+        }
+    }
+}
@@ -1,23 +1,38 @@
 package com.codahale.metrics.httpasyncclient;
 
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import static com.codahale.metrics.MetricRegistry.name;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.config.Registry;
 import org.apache.http.conn.DnsResolver;
 import org.apache.http.conn.SchemePortResolver;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.nio.NHttpClientConnection;
 import org.apache.http.nio.conn.ManagedNHttpClientConnection;
 import org.apache.http.nio.conn.NHttpClientConnectionManager;
 import org.apache.http.nio.conn.NHttpConnectionFactory;
 import org.apache.http.nio.conn.SchemeIOSessionStrategy;
 import org.apache.http.nio.reactor.ConnectingIOReactor;
 
+/**
+ * A {@link PoolingNHttpClientConnectionManager} with gauges of its pool's connections, a
+ * {@code lease-wait} timer of how long connection requests wait until they're leased a connection
+ * (or fail), and a {@code pending-leases} counter of the connection requests which are waiting.
+ */
 public class InstrumentedNClientConnManager extends PoolingNHttpClientConnectionManager {
+    private final Timer leaseWait;
+    private final Counter pendingLeases;
 
     public InstrumentedNClientConnManager(final ConnectingIOReactor ioreactor, final NHttpConnectionFactory<ManagedNHttpClientConnection> connFactory, final SchemePortResolver schemePortResolver, final MetricRegistry metricRegistry, final Registry<SchemeIOSessionStrategy> iosessionFactoryRegistry, final long timeToLive, final TimeUnit tunit, final DnsResolver dnsResolver, final String name) {
         super(ioreactor, connFactory, iosessionFactoryRegistry, schemePortResolver, dnsResolver, timeToLive, tunit);
+        this.leaseWait = metricRegistry.timer(name(NHttpClientConnectionManager.class, name, "lease-wait"));
+        this.pendingLeases = metricRegistry.counter(name(NHttpClientConnectionManager.class, name, "pending-leases"));
         metricRegistry.register(name(NHttpClientConnectionManager.class, name, "available-connections"),
                 new Gauge<Integer>() {
                     @Override
@@ -52,4 +67,45 @@ public class InstrumentedNClientConnManager extends PoolingNHttpClientConnection
                 });
     }
 
+    @Override
+    public Future<NHttpClientConnection> requestConnection(HttpRoute route, Object state, long connectTimeout, long leaseTimeout, TimeUnit tunit, final FutureCallback<NHttpClientConnection> callback) {
+        pendingLeases.inc();
+        final Timer.Context context = leaseWait.time();
+        final FutureCallback<NHttpClientConnection> leased = new FutureCallback<NHttpClientConnection>() {
+            @Override
+            public void completed(NHttpClientConnection result) {
+                leaseEnded(context);
+                if (callback != null) {
+                    callback.completed(result);
+                }
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                leaseEnded(context);
+                if (callback != null) {
+                    callback.failed(ex);
+                }
+            }
+
+            @Override
+            public void cancelled() {
+                leaseEnded(context);
+                if (callback != null) {
+                    callback.cancelled();
+                }
+            }
+        };
+        try {
+            return super.requestConnection(route, state, connectTimeout, leaseTimeout, tunit, leased);
+        } catch (RuntimeException e) {
+            leaseEnded(context);
+            throw e;
+        }
+    }
+
+    private void leaseEnded(Timer.Context context) {
+        pendingLeases.dec();
+        context.stop();
+    }
 }
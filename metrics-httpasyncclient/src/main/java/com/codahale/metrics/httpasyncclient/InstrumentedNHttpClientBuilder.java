@@ -1,30 +1,56 @@
 package com.codahale.metrics.httpasyncclient;
 
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.codahale.metrics.httpclient.HttpClientMetricNameStrategies;
 import com.codahale.metrics.httpclient.HttpClientMetricNameStrategy;
+import static com.codahale.metrics.MetricRegistry.name;
 import java.io.IOException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
 import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
 import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.client.HttpAsyncClient;
 import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
 import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
 import org.apache.http.protocol.HttpContext;
 
+/**
+ * A {@link HttpAsyncClientBuilder} whose clients time each request from the call to
+ * {@code execute} until the response has been consumed (or the request failed or was cancelled),
+ * in a timer named by the {@link HttpClientMetricNameStrategy}. Each request is also recorded in a
+ * {@code <timer name>.time-to-first-byte} timer when its response's head arrives, and the requests
+ * which haven't completed yet are counted in {@code org.apache.http.nio.client.HttpAsyncClient.<name>.in-flight}.
+ * <p>
+ * Use an {@link InstrumentedNClientConnManager} to also time how long requests wait to lease a
+ * connection.
+ */
 public class InstrumentedNHttpClientBuilder extends HttpAsyncClientBuilder {
     private final MetricRegistry metricRegistry;
     private final String name;
     private final HttpClientMetricNameStrategy metricNameStrategy;
+    private final Clock clock;
 
     public InstrumentedNHttpClientBuilder(MetricRegistry metricRegistry, HttpClientMetricNameStrategy metricNameStrategy, String name) {
+        this(metricRegistry, metricNameStrategy, name, Clock.defaultClock());
+    }
+
+    public InstrumentedNHttpClientBuilder(MetricRegistry metricRegistry, HttpClientMetricNameStrategy metricNameStrategy, String name, Clock clock) {
         super();
         this.metricRegistry = metricRegistry;
         this.metricNameStrategy = metricNameStrategy;
         this.name = name;
+        this.clock = clock;
     }
 
     public InstrumentedNHttpClientBuilder(MetricRegistry metricRegistry) {
@@ -39,13 +65,10 @@ public class InstrumentedNHttpClientBuilder extends HttpAsyncClientBuilder {
         this(metricRegistry, HttpClientMetricNameStrategies.METHOD_ONLY, name);
     }
 
-    private Timer timer(HttpRequest request) {
-        return metricRegistry.timer(metricNameStrategy.getNameFor(name, request));
-    }
-
     @Override
     public CloseableHttpAsyncClient build() {
         final CloseableHttpAsyncClient ac = super.build();
+        final Counter inFlight = metricRegistry.counter(name(HttpAsyncClient.class, name, "in-flight"));
         return new CloseableHttpAsyncClient() {
 
             @Override
@@ -60,18 +83,15 @@ public class InstrumentedNHttpClientBuilder extends HttpAsyncClientBuilder {
 
             @Override
             public <T> Future<T> execute(HttpAsyncRequestProducer requestProducer, HttpAsyncResponseConsumer<T> responseConsumer, HttpContext context, FutureCallback<T> callback) {
-                final Timer.Context timerContext;
-                try {
-                    timerContext = timer(requestProducer.generateRequest()).time();
-                } catch (IOException ex) {
-                    throw new AssertionError(ex);
-                } catch (HttpException ex) {
-                    throw new AssertionError(ex);
-                }
+                final RequestMetrics metrics = new RequestMetrics(inFlight);
                 try {
-                    return ac.execute(requestProducer, responseConsumer, context, callback);
-                } finally {
-                    timerContext.stop();
+                    return ac.execute(new InstrumentedRequestProducer(requestProducer, metrics),
+                                      new InstrumentedResponseConsumer<T>(responseConsumer, metrics),
+                                      context,
+                                      new InstrumentedFutureCallback<T>(callback, metrics));
+                } catch (RuntimeException e) {
+                    metrics.completed();
+                    throw e;
                 }
             }
 
@@ -82,4 +102,190 @@ public class InstrumentedNHttpClientBuilder extends HttpAsyncClientBuilder {
         };
     }
 
+    /**
+     * The state of a single request. The request's timers are only known once the client has
+     * generated the request, which it does before leasing a connection.
+     */
+    private class RequestMetrics {
+        private final Counter inFlight;
+        private final long startTime;
+        private volatile String timerName;
+        private volatile boolean firstByte;
+        private boolean done;
+
+        private RequestMetrics(Counter inFlight) {
+            this.inFlight = inFlight;
+            this.startTime = clock.getTick();
+            inFlight.inc();
+        }
+
+        private void requestGenerated(HttpRequest request) {
+            if (timerName == null) {
+                this.timerName = metricNameStrategy.getNameFor(name, request);
+            }
+        }
+
+        private void responseReceived() {
+            final String current = timerName;
+            if (!firstByte && current != null) {
+                this.firstByte = true;
+                metricRegistry.timer(name(current, "time-to-first-byte"))
+                              .update(clock.getTick() - startTime, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private synchronized void completed() {
+            if (done) {
+                return;
+            }
+            this.done = true;
+            inFlight.dec();
+            final String current = timerName;
+            if (current != null) {
+                metricRegistry.timer(current).update(clock.getTick() - startTime, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private static class InstrumentedRequestProducer implements HttpAsyncRequestProducer {
+        private final HttpAsyncRequestProducer delegate;
+        private final RequestMetrics metrics;
+
+        private InstrumentedRequestProducer(HttpAsyncRequestProducer delegate, RequestMetrics metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public HttpHost getTarget() {
+            return delegate.getTarget();
+        }
+
+        @Override
+        public HttpRequest generateRequest() throws IOException, HttpException {
+            final HttpRequest request = delegate.generateRequest();
+            metrics.requestGenerated(request);
+            return request;
+        }
+
+        @Override
+        public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
+            delegate.produceContent(encoder, ioctrl);
+        }
+
+        @Override
+        public void requestCompleted(HttpContext context) {
+            delegate.requestCompleted(context);
+        }
+
+        @Override
+        public void failed(Exception ex) {
+            delegate.failed(ex);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return delegate.isRepeatable();
+        }
+
+        @Override
+        public void resetRequest() throws IOException {
+            delegate.resetRequest();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private static class InstrumentedResponseConsumer<T> implements HttpAsyncResponseConsumer<T> {
+        private final HttpAsyncResponseConsumer<T> delegate;
+        private final RequestMetrics metrics;
+
+        private InstrumentedResponseConsumer(HttpAsyncResponseConsumer<T> delegate, RequestMetrics metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void responseReceived(HttpResponse response) throws IOException, HttpException {
+            metrics.responseReceived();
+            delegate.responseReceived(response);
+        }
+
+        @Override
+        public void consumeContent(ContentDecoder decoder, IOControl ioctrl) throws IOException {
+            delegate.consumeContent(decoder, ioctrl);
+        }
+
+        @Override
+        public void responseCompleted(HttpContext context) {
+            delegate.responseCompleted(context);
+        }
+
+        @Override
+        public void failed(Exception ex) {
+            delegate.failed(ex);
+        }
+
+        @Override
+        public Exception getException() {
+            return delegate.getException();
+        }
+
+        @Override
+        public T getResult() {
+            return delegate.getResult();
+        }
+
+        @Override
+        public boolean isDone() {
+            return delegate.isDone();
+        }
+
+        @Override
+        public boolean cancel() {
+            return delegate.cancel();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    private static class InstrumentedFutureCallback<T> implements FutureCallback<T> {
+        private final FutureCallback<T> delegate;
+        private final RequestMetrics metrics;
+
+        private InstrumentedFutureCallback(FutureCallback<T> delegate, RequestMetrics metrics) {
+            this.delegate = delegate;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void completed(T result) {
+            metrics.completed();
+            if (delegate != null) {
+                delegate.completed(result);
+            }
+        }
+
+        @Override
+        public void failed(Exception ex) {
+            metrics.completed();
+            if (delegate != null) {
+                delegate.failed(ex);
+            }
+        }
+
+        @Override
+        public void cancelled() {
+            metrics.completed();
+            if (delegate != null) {
+                delegate.cancelled();
+            }
+        }
+    }
 }
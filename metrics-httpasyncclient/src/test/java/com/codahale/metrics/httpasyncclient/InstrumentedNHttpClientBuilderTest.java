@@ -0,0 +1,122 @@
+package com.codahale.metrics.httpasyncclient;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.httpclient.HttpClientMetricNameStrategy;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class InstrumentedNHttpClientBuilderTest {
+    private final HttpClientMetricNameStrategy metricNameStrategy = mock(HttpClientMetricNameStrategy.class);
+    private final MetricRegistry registry = new MetricRegistry();
+    private HttpServer server;
+    private CloseableHttpAsyncClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = ServerBootstrap.bootstrap()
+                                .setListenerPort(0)
+                                .registerHandler("*", new HttpRequestHandler() {
+                                    @Override
+                                    public void handle(HttpRequest request, HttpResponse response,
+                                                       HttpContext context) throws HttpException, IOException {
+                                        response.setEntity(new StringEntity("hello"));
+                                    }
+                                })
+                                .create();
+        server.start();
+
+        final InstrumentedNClientConnManager connManager = new InstrumentedNClientConnManager(
+                new DefaultConnectingIOReactor(), null, null, registry,
+                RegistryBuilder.<SchemeIOSessionStrategy>create()
+                               .register("http", NoopIOSessionStrategy.INSTANCE)
+                               .build(),
+                -1, TimeUnit.MILLISECONDS, null, "test");
+        client = new InstrumentedNHttpClientBuilder(registry, metricNameStrategy, "test")
+                .setConnectionManager(connManager)
+                .build();
+        client.start();
+
+        when(metricNameStrategy.getNameFor(anyString(), any(HttpRequest.class)))
+                .thenReturn("test.get-requests");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.shutdown(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void timesRequestsUntilTheResponseIsConsumed() throws Exception {
+        final HttpResponse response = client.execute(new HttpGet("http://localhost:" + server.getLocalPort() + "/"),
+                                                     null).get(10, TimeUnit.SECONDS);
+        assertThat(response.getStatusLine().getStatusCode())
+                .isEqualTo(200);
+
+        // the future completes just before the callback
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (registry.timer("test.get-requests").getCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(registry.timer("test.get-requests").getCount())
+                .isEqualTo(1);
+        assertThat(registry.timer("test.get-requests.time-to-first-byte").getCount())
+                .isEqualTo(1);
+        assertThat(registry.counter("org.apache.http.nio.client.HttpAsyncClient.test.in-flight").getCount())
+                .isEqualTo(0);
+        assertThat(registry.timer("org.apache.http.nio.conn.NHttpClientConnectionManager.test.lease-wait").getCount())
+                .isEqualTo(1);
+        assertThat(registry.counter("org.apache.http.nio.conn.NHttpClientConnectionManager.test.pending-leases").getCount())
+                .isEqualTo(0);
+        verify(metricNameStrategy, times(1)).getNameFor(anyString(), any(HttpRequest.class));
+    }
+
+    @Test
+    public void countsFailedRequests() throws Exception {
+        server.shutdown(1, TimeUnit.SECONDS);
+        try {
+            client.execute(new HttpGet("http://localhost:" + server.getLocalPort() + "/"), null)
+                  .get(10, TimeUnit.SECONDS);
+        } catch (Exception expected) {
+            // connection refused
+        }
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (registry.counter("org.apache.http.nio.client.HttpAsyncClient.test.in-flight").getCount() != 0 &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(registry.counter("org.apache.http.nio.client.HttpAsyncClient.test.in-flight").getCount())
+                .isEqualTo(0);
+        assertThat(registry.timer("test.get-requests.time-to-first-byte").getCount())
+                .isEqualTo(0);
+    }
+}
@@ -5,6 +5,7 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpRequestWrapper;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.conn.routing.HttpRoute;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -50,6 +51,17 @@ public class HttpClientMetricNameStrategies {
                 }
             };
 
+    public static final HttpClientRouteMetricNameStrategy ROUTE_HOST_AND_METHOD =
+            new HttpClientRouteMetricNameStrategy() {
+                @Override
+                public String getNameFor(String name, HttpRoute route, String method) {
+                    return name(HttpClient.class,
+                                name,
+                                route.getTargetHost().getHostName(),
+                                method.toLowerCase() + "-requests");
+                }
+            };
+
     private static String methodNameString(HttpRequest request) {
         return request.getRequestLine().getMethod().toLowerCase() + "-requests";
     }
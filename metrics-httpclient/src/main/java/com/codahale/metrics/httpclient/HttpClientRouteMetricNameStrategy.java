@@ -0,0 +1,11 @@
+package com.codahale.metrics.httpclient;
+
+import org.apache.http.conn.routing.HttpRoute;
+
+/**
+ * Names request timers by the route and method of each request, rather than by the request itself,
+ * so that {@link HttpRouteTimers} can resolve each timer once and reuse it for later requests.
+ */
+public interface HttpClientRouteMetricNameStrategy {
+    String getNameFor(String name, HttpRoute route, String method);
+}
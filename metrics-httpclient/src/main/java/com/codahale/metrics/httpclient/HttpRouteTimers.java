@@ -0,0 +1,141 @@
+package com.codahale.metrics.httpclient;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Resolves and caches the request and connection lease timers of each route, so that instrumenting
+ * a request doesn't build its metric names or look them up in the registry.
+ * <p>
+ * At most {@code maxRoutes} routes get timers of their own, the first ones to be requested or
+ * leased, with a request timer for each method used on them. Requests to other routes are recorded
+ * in {@code org.apache.http.client.HttpClient.<name>.other-routes.requests}, and their connection
+ * leases in {@code org.apache.http.conn.HttpClientConnectionManager.<name>.other-routes.lease-wait},
+ * so the number of metrics stays bounded however many hosts the client talks to.
+ */
+public class HttpRouteTimers {
+    public static final int DEFAULT_MAX_ROUTES = 100;
+
+    private final MetricRegistry registry;
+    private final String name;
+    private final HttpClientRouteMetricNameStrategy metricNameStrategy;
+    private final int maxRoutes;
+    private final ConcurrentMap<HttpRoute, Boolean> routes;
+    private final ConcurrentMap<RouteKey, Timer> requestTimers;
+    private final ConcurrentMap<HttpRoute, Timer> leaseTimers;
+    private final Timer otherRequests;
+    private final Timer otherLeases;
+
+    public HttpRouteTimers(MetricRegistry registry) {
+        this(registry, null, HttpClientMetricNameStrategies.ROUTE_HOST_AND_METHOD, DEFAULT_MAX_ROUTES);
+    }
+
+    public HttpRouteTimers(MetricRegistry registry,
+                           String name,
+                           HttpClientRouteMetricNameStrategy metricNameStrategy,
+                           int maxRoutes) {
+        this.registry = registry;
+        this.name = name;
+        this.metricNameStrategy = metricNameStrategy;
+        this.maxRoutes = maxRoutes;
+        this.routes = new ConcurrentHashMap<HttpRoute, Boolean>();
+        this.requestTimers = new ConcurrentHashMap<RouteKey, Timer>();
+        this.leaseTimers = new ConcurrentHashMap<HttpRoute, Timer>();
+        this.otherRequests = registry.timer(name(HttpClient.class, name, "other-routes", "requests"));
+        this.otherLeases = registry.timer(name(HttpClientConnectionManager.class, name, "other-routes", "lease-wait"));
+    }
+
+    /**
+     * Returns the timer for requests with the given route and method.
+     *
+     * @param route  the request's route, or {@code null} if it isn't known
+     * @param method the request's method
+     * @return the timer for the requests
+     */
+    public Timer requestTimer(HttpRoute route, String method) {
+        if (route == null) {
+            return otherRequests;
+        }
+        final RouteKey key = new RouteKey(route, method);
+        final Timer timer = requestTimers.get(key);
+        if (timer != null) {
+            return timer;
+        }
+        if (!admit(route)) {
+            return otherRequests;
+        }
+        final Timer created = registry.timer(metricNameStrategy.getNameFor(name, route, method));
+        final Timer existing = requestTimers.putIfAbsent(key, created);
+        return existing == null ? created : existing;
+    }
+
+    /**
+     * Returns the timer for how long requests with the given route wait to lease a connection.
+     *
+     * @param route the route
+     * @return the timer for the route's connection leases
+     */
+    public Timer leaseTimer(HttpRoute route) {
+        final Timer timer = leaseTimers.get(route);
+        if (timer != null) {
+            return timer;
+        }
+        if (!admit(route)) {
+            return otherLeases;
+        }
+        final Timer created = registry.timer(name(HttpClientConnectionManager.class, name,
+                                                  route.getTargetHost().getHostName(), "lease-wait"));
+        final Timer existing = leaseTimers.putIfAbsent(route, created);
+        return existing == null ? created : existing;
+    }
+
+    /**
+     * Returns whether the given route has timers of its own, giving it some if it's one of the
+     * first {@code maxRoutes} routes.
+     */
+    private boolean admit(HttpRoute route) {
+        if (routes.containsKey(route)) {
+            return true;
+        }
+        if (routes.size() >= maxRoutes) {
+            return false;
+        }
+        routes.putIfAbsent(route, Boolean.TRUE);
+        return true;
+    }
+
+    private static class RouteKey {
+        private final HttpRoute route;
+        private final String method;
+
+        private RouteKey(HttpRoute route, String method) {
+            this.route = route;
+            this.method = method;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RouteKey)) {
+                return false;
+            }
+            final RouteKey that = (RouteKey) o;
+            return route.equals(that.route) && method.equals(that.method);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * route.hashCode() + method.hashCode();
+        }
+    }
+}
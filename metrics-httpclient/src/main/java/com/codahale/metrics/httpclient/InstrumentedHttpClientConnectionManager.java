@@ -2,6 +2,8 @@ package com.codahale.metrics.httpclient;
 
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.http.HttpClientConnection;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
 import org.apache.http.conn.*;
@@ -12,12 +14,14 @@ import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.impl.conn.SystemDefaultDnsResolver;
 
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
 /**
- * A {@link HttpClientConnectionManager} which monitors the number of open connections.
+ * A {@link HttpClientConnectionManager} which monitors the number of open connections and, if given
+ * {@link HttpRouteTimers}, how long requests wait to lease a connection for each route.
  */
 public class InstrumentedHttpClientConnectionManager extends PoolingHttpClientConnectionManager {
 
@@ -31,11 +35,17 @@ public class InstrumentedHttpClientConnectionManager extends PoolingHttpClientCo
 
     private final MetricRegistry metricsRegistry;
     private final String name;
+    private final HttpRouteTimers routeTimers;
 
     public InstrumentedHttpClientConnectionManager(MetricRegistry metricRegistry) {
         this(metricRegistry, getDefaultRegistry());
     }
 
+    public InstrumentedHttpClientConnectionManager(MetricRegistry metricRegistry, HttpRouteTimers routeTimers) {
+        this(metricRegistry, getDefaultRegistry(), null, null, SystemDefaultDnsResolver.INSTANCE, -1,
+             TimeUnit.MILLISECONDS, null, routeTimers);
+    }
+
     public InstrumentedHttpClientConnectionManager(MetricRegistry metricsRegistry,
                                                    Registry<ConnectionSocketFactory> socketFactoryRegistry) {
         this(metricsRegistry, socketFactoryRegistry, -1, TimeUnit.MILLISECONDS);
@@ -57,9 +67,23 @@ public class InstrumentedHttpClientConnectionManager extends PoolingHttpClientCo
                                                    long connTTL,
                                                    TimeUnit connTTLTimeUnit,
                                                    String name) {
+        this(metricsRegistry, socketFactoryRegistry, connFactory, schemePortResolver, dnsResolver, connTTL,
+             connTTLTimeUnit, name, null);
+    }
+
+    public InstrumentedHttpClientConnectionManager(MetricRegistry metricsRegistry,
+                                                   Registry<ConnectionSocketFactory> socketFactoryRegistry,
+                                                   HttpConnectionFactory<HttpRoute,ManagedHttpClientConnection> connFactory,
+                                                   SchemePortResolver schemePortResolver,
+                                                   DnsResolver dnsResolver,
+                                                   long connTTL,
+                                                   TimeUnit connTTLTimeUnit,
+                                                   String name,
+                                                   HttpRouteTimers routeTimers) {
         super(socketFactoryRegistry, connFactory, schemePortResolver, dnsResolver, connTTL, connTTLTimeUnit);
         this.metricsRegistry = metricsRegistry;
         this.name = name;
+        this.routeTimers = routeTimers;
         metricsRegistry.register(name(HttpClientConnectionManager.class, name, "available-connections"),
                                  new Gauge<Integer>() {
                                      @Override
@@ -94,6 +118,32 @@ public class InstrumentedHttpClientConnectionManager extends PoolingHttpClientCo
                                  });
     }
 
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+        final ConnectionRequest request = super.requestConnection(route, state);
+        if (routeTimers == null) {
+            return request;
+        }
+        final Timer timer = routeTimers.leaseTimer(route);
+        return new ConnectionRequest() {
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit tunit)
+                    throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                final Timer.Context context = timer.time();
+                try {
+                    return request.get(timeout, tunit);
+                } finally {
+                    context.stop();
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+
     @Override
     public void shutdown() {
         super.shutdown();
@@ -31,5 +31,23 @@ public class InstrumentedHttpClients {
                 .setConnectionManager(new InstrumentedHttpClientConnectionManager(metricRegistry));
     }
 
+    /**
+     * Returns a builder whose clients time requests per route and method, and connection leases per
+     * route, for at most {@code maxRoutes} routes; see {@link HttpRouteTimers}.
+     *
+     * @param metricRegistry     the registry
+     * @param metricNameStrategy the names of each route's request timers
+     * @param maxRoutes          the maximum number of routes with timers of their own
+     * @return a {@link HttpClientBuilder}
+     */
+    public static HttpClientBuilder custom(MetricRegistry metricRegistry,
+                                           HttpClientRouteMetricNameStrategy metricNameStrategy,
+                                           int maxRoutes) {
+        final HttpRouteTimers routeTimers = new HttpRouteTimers(metricRegistry, null, metricNameStrategy, maxRoutes);
+        return HttpClientBuilder.create()
+                .setRequestExecutor(new InstrumentedHttpRequestExecutor(metricRegistry, routeTimers))
+                .setConnectionManager(new InstrumentedHttpClientConnectionManager(metricRegistry, routeTimers));
+    }
+
 
 }
@@ -6,6 +6,8 @@ import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpRequestExecutor;
 
@@ -15,6 +17,7 @@ public class InstrumentedHttpRequestExecutor extends HttpRequestExecutor {
     private final MetricRegistry registry;
     private final HttpClientMetricNameStrategy metricNameStrategy;
     private final String name;
+    private final HttpRouteTimers routeTimers;
 
     public InstrumentedHttpRequestExecutor(MetricRegistry registry,
                                            HttpClientMetricNameStrategy metricNameStrategy) {
@@ -35,11 +38,28 @@ public class InstrumentedHttpRequestExecutor extends HttpRequestExecutor {
         this.registry = registry;
         this.name = name;
         this.metricNameStrategy = metricNameStrategy;
+        this.routeTimers = null;
+    }
+
+    /**
+     * Creates an executor which records each request in the timer of its route and method, as
+     * resolved once by the given {@link HttpRouteTimers}.
+     *
+     * @param registry    the registry
+     * @param routeTimers the timers of each route
+     */
+    public InstrumentedHttpRequestExecutor(MetricRegistry registry,
+                                           HttpRouteTimers routeTimers) {
+        super(HttpRequestExecutor.DEFAULT_WAIT_FOR_CONTINUE);
+        this.registry = registry;
+        this.name = null;
+        this.metricNameStrategy = null;
+        this.routeTimers = routeTimers;
     }
 
     @Override
     public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context) throws HttpException, IOException {
-        final Timer.Context timerContext = timer(request).time();
+        final Timer.Context timerContext = timer(request, context).time();
         try {
             return super.execute(request, conn, context);
         } finally {
@@ -47,7 +67,12 @@ public class InstrumentedHttpRequestExecutor extends HttpRequestExecutor {
         }
     }
 
-    private Timer timer(HttpRequest request) {
+    private Timer timer(HttpRequest request, HttpContext context) {
+        if (routeTimers != null) {
+            final Object route = context.getAttribute(HttpClientContext.HTTP_ROUTE);
+            return routeTimers.requestTimer(route instanceof HttpRoute ? (HttpRoute) route : null,
+                                            request.getRequestLine().getMethod());
+        }
         return registry.timer(metricNameStrategy.getNameFor(name, request));
     }
 }
@@ -1,11 +1,13 @@
 package com.codahale.metrics.httpclient;
 
+import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestWrapper;
 import org.apache.http.client.utils.URIUtils;
+import org.apache.http.conn.routing.HttpRoute;
 import org.junit.Test;
 
 import java.net.URI;
@@ -29,6 +31,12 @@ public class HttpClientMetricNameStrategiesTest {
                 is("org.apache.http.client.HttpClient.get-requests"));
     }
 
+    @Test
+    public void routeHostAndMethodWithName() {
+        assertThat(ROUTE_HOST_AND_METHOD.getNameFor("some-service", new HttpRoute(new HttpHost("my.host.com", 8080)), "POST"),
+                   is("org.apache.http.client.HttpClient.some-service.my.host.com.post-requests"));
+    }
+
     @Test
     public void hostAndMethodWithName() {
         assertThat(HOST_AND_METHOD.getNameFor("some-service", new HttpPost("http://my.host.com/whatever")),
@@ -0,0 +1,109 @@
+package com.codahale.metrics.httpclient;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.bootstrap.HttpServer;
+import org.apache.http.impl.bootstrap.ServerBootstrap;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HttpRouteTimersTest {
+    private final MetricRegistry registry = new MetricRegistry();
+    private final HttpRouteTimers timers = new HttpRouteTimers(registry, "svc",
+                                                               HttpClientMetricNameStrategies.ROUTE_HOST_AND_METHOD, 2);
+    private final HttpRoute a = new HttpRoute(new HttpHost("a.example.com"));
+    private final HttpRoute b = new HttpRoute(new HttpHost("b.example.com"));
+    private final HttpRoute c = new HttpRoute(new HttpHost("c.example.com"));
+
+    @Test
+    public void resolvesEachRoutesTimerOnce() throws Exception {
+        final Timer timer = timers.requestTimer(a, "GET");
+
+        assertThat(timers.requestTimer(new HttpRoute(new HttpHost("a.example.com")), "GET"))
+                .isSameAs(timer);
+        assertThat(registry.getTimers())
+                .containsKey("org.apache.http.client.HttpClient.svc.a.example.com.get-requests");
+    }
+
+    @Test
+    public void recordsRoutesBeyondTheCapInAnOverflowTimer() throws Exception {
+        timers.requestTimer(a, "GET");
+        timers.requestTimer(b, "GET");
+
+        assertThat(timers.requestTimer(c, "GET"))
+                .isSameAs(registry.timer("org.apache.http.client.HttpClient.svc.other-routes.requests"));
+        assertThat(registry.getTimers())
+                .doesNotContainKey("org.apache.http.client.HttpClient.svc.c.example.com.get-requests");
+    }
+
+    @Test
+    public void capsRoutesRatherThanTimers() throws Exception {
+        timers.requestTimer(a, "GET");
+        timers.requestTimer(b, "GET");
+
+        assertThat(timers.requestTimer(a, "POST"))
+                .isSameAs(registry.timer("org.apache.http.client.HttpClient.svc.a.example.com.post-requests"));
+        assertThat(timers.leaseTimer(b))
+                .isSameAs(registry.timer("org.apache.http.conn.HttpClientConnectionManager.svc.b.example.com.lease-wait"));
+        assertThat(timers.leaseTimer(c))
+                .isSameAs(registry.timer("org.apache.http.conn.HttpClientConnectionManager.svc.other-routes.lease-wait"));
+    }
+
+    @Test
+    public void resolvesLeaseTimersPerRoute() throws Exception {
+        assertThat(timers.leaseTimer(a))
+                .isSameAs(registry.timer("org.apache.http.conn.HttpClientConnectionManager.svc.a.example.com.lease-wait"));
+        timers.leaseTimer(b);
+        assertThat(timers.leaseTimer(c))
+                .isSameAs(registry.timer("org.apache.http.conn.HttpClientConnectionManager.svc.other-routes.lease-wait"));
+    }
+
+    @Test
+    public void instrumentsClientsPerRoute() throws Exception {
+        final HttpServer server = ServerBootstrap.bootstrap()
+                                                 .setListenerPort(0)
+                                                 .registerHandler("*", new HttpRequestHandler() {
+                                                     @Override
+                                                     public void handle(HttpRequest request, HttpResponse response,
+                                                                        HttpContext context) throws java.io.IOException {
+                                                         response.setEntity(new StringEntity("hello"));
+                                                     }
+                                                 })
+                                                 .create();
+        server.start();
+        final CloseableHttpClient client = InstrumentedHttpClients.custom(registry,
+                                                                          HttpClientMetricNameStrategies.ROUTE_HOST_AND_METHOD,
+                                                                          10)
+                                                                  .build();
+        try {
+            for (int i = 0; i < 2; i++) {
+                final CloseableHttpResponse response = client.execute(new HttpGet("http://localhost:" +
+                                                                                          server.getLocalPort() + "/"));
+                EntityUtils.consume(response.getEntity());
+                response.close();
+            }
+        } finally {
+            client.close();
+            server.shutdown(1, TimeUnit.SECONDS);
+        }
+
+        assertThat(registry.timer("org.apache.http.client.HttpClient.localhost.get-requests").getCount())
+                .isEqualTo(2);
+        assertThat(registry.timer("org.apache.http.conn.HttpClientConnectionManager.localhost.lease-wait").getCount())
+                .isEqualTo(2);
+    }
+}
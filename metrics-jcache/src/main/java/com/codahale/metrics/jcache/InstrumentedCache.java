@@ -0,0 +1,405 @@
+package com.codahale.metrics.jcache;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.CacheEntryListenerConfiguration;
+import javax.cache.configuration.Configuration;
+import javax.cache.configuration.Factory;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.event.CacheEntryCreatedListener;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryExpiredListener;
+import javax.cache.event.CacheEntryListener;
+import javax.cache.event.CacheEntryRemovedListener;
+import javax.cache.event.CacheEntryUpdatedListener;
+import javax.cache.integration.CompletionListener;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.EntryProcessorException;
+import javax.cache.processor.EntryProcessorResult;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A {@link Cache} decorator which records a cache's metrics as they happen, rather than polling its
+ * {@code CacheStatisticsMXBean}:
+ * <ul>
+ * <li>{@code hits} and {@code misses}: counters of the gets through the decorator which found and
+ * didn't find their entries</li>
+ * <li>{@code entries-put}, {@code entries-removed} and {@code entries-expired}: counters of the
+ * entries created or updated, removed and expired in the cache, by anyone, from an asynchronous
+ * {@link CacheEntryListener}</li>
+ * <li>{@code gets}, {@code puts} and {@code removals}: timers of the operations through the
+ * decorator, if it's timed</li>
+ * </ul>
+ * The metrics are named after {@link Cache} and the cache's name. JCache has no eviction events, so
+ * evictions are only available from {@link JCacheGaugeSet}.
+ *
+ * @param <K> the type of the cache's keys
+ * @param <V> the type of the cache's values
+ */
+public class InstrumentedCache<K, V> implements Cache<K, V> {
+    /**
+     * Instruments the given cache with counters of its hits, misses, puts, removals and
+     * expirations.
+     *
+     * @param registry the registry for the metrics
+     * @param cache    the cache to instrument
+     * @param <K>      the type of the cache's keys
+     * @param <V>      the type of the cache's values
+     * @return an instrumented decorator for {@code cache}
+     */
+    public static <K, V> InstrumentedCache<K, V> instrument(MetricRegistry registry, Cache<K, V> cache) {
+        return instrument(registry, cache, false);
+    }
+
+    /**
+     * Instruments the given cache with counters of its hits, misses, puts, removals and
+     * expirations, and optionally with timers of its gets, puts and removals.
+     *
+     * @param registry the registry for the metrics
+     * @param cache    the cache to instrument
+     * @param timed    whether to time the operations through the decorator
+     * @param <K>      the type of the cache's keys
+     * @param <V>      the type of the cache's values
+     * @return an instrumented decorator for {@code cache}
+     */
+    public static <K, V> InstrumentedCache<K, V> instrument(MetricRegistry registry, Cache<K, V> cache,
+                                                            boolean timed) {
+        return new InstrumentedCache<K, V>(registry, cache, timed);
+    }
+
+    private final Cache<K, V> cache;
+    private final Counter hits;
+    private final Counter misses;
+    private final String listenerKey;
+    private final CacheEntryListenerConfiguration<K, V> listenerConfiguration;
+
+    // null unless timed
+    private final Timer getTimer;
+    private final Timer putTimer;
+    private final Timer removeTimer;
+
+    private InstrumentedCache(MetricRegistry registry, Cache<K, V> cache, boolean timed) {
+        this.cache = cache;
+        final String prefix = name(Cache.class, cache.getName());
+        this.hits = registry.counter(name(prefix, "hits"));
+        this.misses = registry.counter(name(prefix, "misses"));
+        if (timed) {
+            this.getTimer = registry.timer(name(prefix, "gets"));
+            this.putTimer = registry.timer(name(prefix, "puts"));
+            this.removeTimer = registry.timer(name(prefix, "removals"));
+        } else {
+            this.getTimer = null;
+            this.putTimer = null;
+            this.removeTimer = null;
+        }
+
+        final EventCounter listener = new EventCounter(registry.counter(name(prefix, "entries-put")),
+                                                       registry.counter(name(prefix, "entries-removed")),
+                                                       registry.counter(name(prefix, "entries-expired")));
+        this.listenerKey = UUID.randomUUID().toString();
+        EventCounterFactory.LISTENERS.put(listenerKey, listener);
+        this.listenerConfiguration = new MutableCacheEntryListenerConfiguration<K, V>(
+                new EventCounterFactory(listenerKey), null, false, false);
+        cache.registerCacheEntryListener(listenerConfiguration);
+    }
+
+    @Override
+    public V get(K key) {
+        final Timer.Context ctx = time(getTimer);
+        try {
+            final V value = cache.get(key);
+            (value == null ? misses : hits).inc();
+            return value;
+        } finally {
+            stop(ctx);
+        }
+    }
+
+    @Override
+    public Map<K, V> getAll(Set<? extends K> keys) {
+        final Timer.Context ctx = time(getTimer);
+        try {
+            final Map<K, V> values = cache.getAll(keys);
+            hits.inc(values.size());
+            misses.inc(keys.size() - values.size());
+            return values;
+        } finally {
+            stop(ctx);
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return cache.containsKey(key);
+    }
+
+    @Override
+    public void loadAll(Set<? extends K> keys, boolean replaceExistingValues,
+                        CompletionListener completionListener) {
+        cache.loadAll(keys, replaceExistingValues, completionListener);
+    }
+
+    @Override
+    public void put(K key, V value) {
+        final Timer.Context ctx = time(putTimer);
+        try {
+            cache.put(key, value);
+        } finally {
+            stop(ctx);
+        }
+    }
+
+    @Override
+    public V getAndPut(K key, V value) {
+        final Timer.Context ctx = time(putTimer);
+        try {
+            return cache.getAndPut(key, value);
+        } finally {
+            stop(ctx);
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        final Timer.Context ctx = time(putTimer);
+        try {
+            cache.putAll(map);
+        } finally {
+            stop(ctx);
+        }
+    }
+
+    @Override
+    public boolean putIfAbsent(K key, V value) {
+        final Timer.Context ctx = time(putTimer);
+        try {
+            return cache.putIfAbsent(key, value);
+        } finally {
+            stop(ctx);
+        }
+    }
+
+    @Override
+    public boolean remove(K key) {
+        final Timer.Context ctx = time(removeTimer);
+        try {
+            return cache.remove(key);
+        } finally {
+            stop(ctx);
+        }
+    }
+
+    @Override
+    public boolean remove(K key, V oldValue) {
+        final Timer.Context ctx = time(removeTimer);
+        try {
+            return cache.remove(key, oldValue);
+        } finally {
+            stop(ctx);
+        }
+    }
+
+    @Override
+    public V getAndRemove(K key) {
+        final Timer.Context ctx = time(removeTimer);
+        try {
+            return cache.getAndRemove(key);
+        } finally {
+            stop(ctx);
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        return cache.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public boolean replace(K key, V value) {
+        return cache.replace(key, value);
+    }
+
+    @Override
+    public V getAndReplace(K key, V value) {
+        return cache.getAndReplace(key, value);
+    }
+
+    @Override
+    public void removeAll(Set<? extends K> keys) {
+        cache.removeAll(keys);
+    }
+
+    @Override
+    public void removeAll() {
+        cache.removeAll();
+    }
+
+    @Override
+    public void clear() {
+        cache.clear();
+    }
+
+    @Override
+    public <C extends Configuration<K, V>> C getConfiguration(Class<C> clazz) {
+        return cache.getConfiguration(clazz);
+    }
+
+    @Override
+    public <T> T invoke(K key, EntryProcessor<K, V, T> entryProcessor, Object... arguments)
+            throws EntryProcessorException {
+        return cache.invoke(key, entryProcessor, arguments);
+    }
+
+    @Override
+    public <T> Map<K, EntryProcessorResult<T>> invokeAll(Set<? extends K> keys,
+                                                         EntryProcessor<K, V, T> entryProcessor,
+                                                         Object... arguments) {
+        return cache.invokeAll(keys, entryProcessor, arguments);
+    }
+
+    @Override
+    public String getName() {
+        return cache.getName();
+    }
+
+    @Override
+    public CacheManager getCacheManager() {
+        return cache.getCacheManager();
+    }
+
+    /**
+     * Stops counting the cache's events and closes it.
+     */
+    @Override
+    public void close() {
+        if (!cache.isClosed()) {
+            cache.deregisterCacheEntryListener(listenerConfiguration);
+        }
+        EventCounterFactory.LISTENERS.remove(listenerKey);
+        cache.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return cache.isClosed();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> clazz) {
+        if (clazz.isInstance(this)) {
+            return clazz.cast(this);
+        }
+        return cache.unwrap(clazz);
+    }
+
+    @Override
+    public void registerCacheEntryListener(CacheEntryListenerConfiguration<K, V> configuration) {
+        cache.registerCacheEntryListener(configuration);
+    }
+
+    @Override
+    public void deregisterCacheEntryListener(CacheEntryListenerConfiguration<K, V> configuration) {
+        cache.deregisterCacheEntryListener(configuration);
+    }
+
+    @Override
+    public Iterator<Entry<K, V>> iterator() {
+        return cache.iterator();
+    }
+
+    private static Timer.Context time(Timer timer) {
+        return timer == null ? null : timer.time();
+    }
+
+    private static void stop(Timer.Context ctx) {
+        if (ctx != null) {
+            ctx.stop();
+        }
+    }
+
+    /**
+     * Counts a cache's entry events in batches, as the cache delivers them.
+     */
+    private static class EventCounter implements CacheEntryCreatedListener<Object, Object>,
+            CacheEntryUpdatedListener<Object, Object>, CacheEntryRemovedListener<Object, Object>,
+            CacheEntryExpiredListener<Object, Object> {
+        private final Counter puts;
+        private final Counter removals;
+        private final Counter expirations;
+
+        private EventCounter(Counter puts, Counter removals, Counter expirations) {
+            this.puts = puts;
+            this.removals = removals;
+            this.expirations = expirations;
+        }
+
+        @Override
+        public void onCreated(Iterable<CacheEntryEvent<?, ?>> events) {
+            puts.inc(count(events));
+        }
+
+        @Override
+        public void onUpdated(Iterable<CacheEntryEvent<?, ?>> events) {
+            puts.inc(count(events));
+        }
+
+        @Override
+        public void onRemoved(Iterable<CacheEntryEvent<?, ?>> events) {
+            removals.inc(count(events));
+        }
+
+        @Override
+        public void onExpired(Iterable<CacheEntryEvent<?, ?>> events) {
+            expirations.inc(count(events));
+        }
+
+        private static long count(Iterable<CacheEntryEvent<?, ?>> events) {
+            long count = 0;
+            for (Iterator<CacheEntryEvent<?, ?>> i = events.iterator(); i.hasNext(); i.next()) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Hands the cache the decorator's listener. The listener isn't serializable, so the factory
+     * only holds its key, which still finds it after the factory has been serialized and
+     * deserialized in the same JVM, as caches may do to copy their configuration.
+     */
+    private static class EventCounterFactory implements Factory<CacheEntryListener<Object, Object>> {
+        private static final long serialVersionUID = 1L;
+
+        // the listeners of the open decorators, by key
+        private static final ConcurrentMap<String, EventCounter> LISTENERS =
+                new ConcurrentHashMap<String, EventCounter>();
+
+        private final String key;
+
+        private EventCounterFactory(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public CacheEntryListener<Object, Object> create() {
+            final EventCounter listener = LISTENERS.get(key);
+            if (listener == null) {
+                throw new IllegalStateException("No instrumented cache's listener has the key " + key +
+                        "; it was closed, or the cache created its listener in another JVM");
+            }
+            return listener;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.codahale.metrics.jcache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.codahale.metrics.CachedGauge;
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.JmxAttributeGauge;
 import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricSet;
@@ -16,8 +18,12 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import javax.cache.management.CacheStatisticsMXBean;
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
@@ -26,6 +32,11 @@ import static com.codahale.metrics.MetricRegistry.name;
 
 /**
  * Gauge set retrieving JCache JMX attributes
+ * <p>
+ * By default each gauge reads its attribute when it's read. Created with a refresh interval, the
+ * gauges of each cache share all of its attributes, read in a single
+ * {@link MBeanServer#getAttributes(ObjectName, String[])} call at most once per interval. This is
+ * also the fallback for providers which don't fire the events {@link InstrumentedCache} counts.
  *
  * @author <a href="mailto:henri.tremblay@softwareag.com">Henri Tremblay</a>
  * @author <a href="mailto:anthony.dahanne@softwareag.com">Anthony Dahanne</a>
@@ -36,6 +47,24 @@ public class JCacheGaugeSet implements MetricSet {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JCacheGaugeSet.class);
 
+    private final long refreshInterval;
+    private final TimeUnit refreshUnit;
+
+    public JCacheGaugeSet() {
+        this(0, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a gauge set which reads each cache's statistics together, at most once per interval.
+     *
+     * @param refreshInterval how long the statistics are kept, or 0 to read each one when it's read
+     * @param refreshUnit     the unit of {@code refreshInterval}
+     */
+    public JCacheGaugeSet(long refreshInterval, TimeUnit refreshUnit) {
+        this.refreshInterval = refreshInterval;
+        this.refreshUnit = refreshUnit;
+    }
+
     @Override
     public Map<String, Metric> getMetrics() {
         Set<ObjectInstance> cacheBeans = getCacheBeans();
@@ -47,9 +76,22 @@ public class JCacheGaugeSet implements MetricSet {
             ObjectName objectName = cacheBean.getObjectName();
             String cacheName = objectName.getKeyProperty("Cache");
 
-            for (String statsName : availableStatsNames) {
-                JmxAttributeGauge jmxAttributeGauge = new JmxAttributeGauge(objectName, statsName);
-                gauges.put(name(cacheName, toSpinalCase(statsName)), jmxAttributeGauge);
+            if (refreshInterval > 0) {
+                final AttributesGauge attributes = new AttributesGauge(objectName, availableStatsNames,
+                                                                       refreshInterval, refreshUnit);
+                for (final String statsName : availableStatsNames) {
+                    gauges.put(name(cacheName, toSpinalCase(statsName)), new Gauge<Object>() {
+                        @Override
+                        public Object getValue() {
+                            return attributes.getValue().get(statsName);
+                        }
+                    });
+                }
+            } else {
+                for (String statsName : availableStatsNames) {
+                    JmxAttributeGauge jmxAttributeGauge = new JmxAttributeGauge(objectName, statsName);
+                    gauges.put(name(cacheName, toSpinalCase(statsName)), jmxAttributeGauge);
+                }
             }
         }
 
@@ -83,4 +125,39 @@ public class JCacheGaugeSet implements MetricSet {
         return camelCase.replaceAll("(.)(\\p{Upper})", "$1-$2").toLowerCase(Locale.US);
     }
 
+    /**
+     * Reads all of a cache's statistics in one call.
+     */
+    private static class AttributesGauge extends CachedGauge<Map<String, Object>> {
+        private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        private final ObjectName objectName;
+        private final String[] attributeNames;
+
+        private AttributesGauge(ObjectName objectName, List<String> attributeNames, long timeout,
+                                TimeUnit timeoutUnit) {
+            super(timeout, timeoutUnit);
+            this.objectName = objectName;
+            this.attributeNames = attributeNames.toArray(new String[attributeNames.size()]);
+        }
+
+        @Override
+        protected Map<String, Object> loadValue() {
+            final Map<String, Object> values = new HashMap<String, Object>(attributeNames.length * 2);
+            try {
+                for (Attribute attribute : server.getAttributes(objectName, attributeNames).asList()) {
+                    values.put(attribute.getName(), attribute.getValue());
+                }
+            } catch (JMException e) {
+                LOGGER.warn("Unable to read the statistics of {}", objectName, e);
+            }
+            return values;
+        }
+
+        @Override
+        public Map<String, Object> getValue() {
+            final Map<String, Object> values = super.getValue();
+            // another thread may still be loading the first values
+            return values != null ? values : loadValue();
+        }
+    }
 }
@@ -0,0 +1,153 @@
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.jcache.InstrumentedCache;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.CacheEntryListenerConfiguration;
+import javax.cache.configuration.CompleteConfiguration;
+import javax.cache.configuration.Factory;
+import javax.cache.configuration.MutableConfiguration;
+import javax.cache.spi.CachingProvider;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class InstrumentedCacheTest {
+
+    private MetricRegistry registry;
+    private CacheManager cacheManager;
+    private Cache<String, String> cache;
+
+    @Before
+    public void setUp() throws Exception {
+        CachingProvider provider = Caching.getCachingProvider();
+        cacheManager = provider.getCacheManager();
+
+        registry = new MetricRegistry();
+        cache = InstrumentedCache.instrument(registry,
+                                             cacheManager.createCache("instrumented",
+                                                                      new MutableConfiguration<String, String>()),
+                                             true);
+    }
+
+    @Test
+    public void countsHitsAndMisses() throws Exception {
+        cache.get("woo");
+        cache.put("woo", "whee");
+        cache.get("woo");
+        cache.getAll(new HashSet<String>(Arrays.asList("woo", "nope", "neither")));
+
+        assertThat(registry.counter(metric("hits")).getCount())
+            .isEqualTo(2);
+        assertThat(registry.counter(metric("misses")).getCount())
+            .isEqualTo(3);
+    }
+
+    @Test
+    public void timesOperations() throws Exception {
+        cache.get("woo");
+        cache.put("woo", "whee");
+        cache.putIfAbsent("woo", "whoa");
+        cache.remove("woo");
+
+        assertThat(registry.timer(metric("gets")).getCount())
+            .isEqualTo(1);
+        assertThat(registry.timer(metric("puts")).getCount())
+            .isEqualTo(2);
+        assertThat(registry.timer(metric("removals")).getCount())
+            .isEqualTo(1);
+    }
+
+    @Test
+    public void countsEntryEvents() throws Exception {
+        cache.put("woo", "whee");
+        cache.put("woo", "whoa");
+        cacheManager.getCache("instrumented").put("other", "client");
+        cache.remove("woo");
+
+        awaitCount(metric("entries-put"), 3);
+        awaitCount(metric("entries-removed"), 1);
+        assertThat(registry.counter(metric("entries-expired")).getCount())
+            .isEqualTo(0);
+    }
+
+    @Test
+    public void doesNotTimeOperationsByDefault() throws Exception {
+        final MetricRegistry untimedRegistry = new MetricRegistry();
+        final Cache<String, String> untimed = InstrumentedCache.instrument(
+            untimedRegistry,
+            cacheManager.createCache("untimed", new MutableConfiguration<String, String>()));
+        untimed.get("woo");
+
+        assertThat(untimedRegistry.getTimers())
+            .isEmpty();
+        assertThat(untimedRegistry.counter(name(Cache.class, "untimed", "misses")).getCount())
+            .isEqualTo(1);
+    }
+
+    @Test
+    public void findsTheListenerOfSerializedFactoriesUntilClosed() throws Exception {
+        @SuppressWarnings("unchecked")
+        final CompleteConfiguration<String, String> configuration = cache.getConfiguration(CompleteConfiguration.class);
+        Factory<?> factory = null;
+        for (CacheEntryListenerConfiguration<String, String> listener :
+                configuration.getCacheEntryListenerConfigurations()) {
+            factory = listener.getCacheEntryListenerFactory();
+        }
+        final Factory<?> copy = copy(factory);
+
+        assertThat(copy.create())
+            .isNotNull();
+
+        cache.close();
+        try {
+            copy.create();
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage())
+                .contains("closed");
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cache.close();
+        cacheManager.close();
+    }
+
+    private void awaitCount(String counter, long count) throws InterruptedException {
+        // the events are delivered asynchronously
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.counter(counter).getCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(registry.counter(counter).getCount())
+            .isEqualTo(count);
+    }
+
+    private static Factory<?> copy(Factory<?> factory) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ObjectOutputStream output = new ObjectOutputStream(bytes);
+        output.writeObject(factory);
+        output.close();
+        return (Factory<?>) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+    }
+
+    private static String metric(String metric) {
+        return name(Cache.class, "instrumented", metric);
+    }
+}
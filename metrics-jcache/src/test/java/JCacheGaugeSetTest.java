@@ -10,6 +10,8 @@ import javax.cache.CacheManager;
 import javax.cache.Caching;
 import javax.cache.spi.CachingProvider;
 
+import java.util.concurrent.TimeUnit;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class JCacheGaugeSetTest {
@@ -77,6 +79,24 @@ public class JCacheGaugeSetTest {
 
     }
 
+    @Test
+    public void readsEachCachesStatisticsTogetherOncePerInterval() throws Exception {
+        final MetricRegistry batched = new MetricRegistry();
+        batched.register("jcache.statistics", new JCacheGaugeSet(1, TimeUnit.HOURS));
+
+        myCache.get("woo");
+        assertThat(batched.getGauges().get("jcache.statistics.myCache.cache-misses").getValue())
+            .isEqualTo(1L);
+        assertThat(batched.getGauges().get("jcache.statistics.myCache.cache-gets").getValue())
+            .isEqualTo(1L);
+
+        myCache.get("woo");
+        assertThat(batched.getGauges().get("jcache.statistics.myCache.cache-misses").getValue())
+            .isEqualTo(1L);
+        assertThat(registry.getGauges().get("jcache.statistics.myCache.cache-misses").getValue())
+            .isEqualTo(2L);
+    }
+
     @After
     public void tearDown() throws Exception {
         cacheManager.destroyCache("myCache");
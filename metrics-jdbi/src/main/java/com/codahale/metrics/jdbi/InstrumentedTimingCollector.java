@@ -1,21 +1,78 @@
 package com.codahale.metrics.jdbi;
 
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.codahale.metrics.jdbi.strategies.BasicSqlNameStrategy;
+import com.codahale.metrics.jdbi.strategies.ContextNameStrategy;
+import com.codahale.metrics.jdbi.strategies.NaiveNameStrategy;
+import com.codahale.metrics.jdbi.strategies.NameStrategies;
+import com.codahale.metrics.jdbi.strategies.ShortNameStrategy;
 import com.codahale.metrics.jdbi.strategies.SmartNameStrategy;
 import com.codahale.metrics.jdbi.strategies.StatementNameStrategy;
+import org.skife.jdbi.v2.Cleanable;
 import org.skife.jdbi.v2.StatementContext;
 import org.skife.jdbi.v2.TimingCollector;
 
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
+import static com.codahale.metrics.MetricRegistry.name;
+
 /**
  * A {@link TimingCollector} implementation for JDBI which uses the SQL objects' class names and
  * method names for millisecond-precision timers.
+ * <p>
+ * Each statement's execution is recorded in the timer named by the {@link StatementNameStrategy},
+ * and the time from its execution until it's cleaned up, which is when its results have been
+ * mapped, in a {@code <name>.mapping} timer. Statements which report an update count record it in
+ * a {@code <name>.rows} histogram; JDBC doesn't count the rows a query returns.
+ * <p>
+ * The metrics are cached by name. With one of the built-in strategies, which derive names only from
+ * the statements' SQL object type and method, raw SQL and naming attributes, they're cached by those
+ * instead, so the names aren't derived again for every statement; other strategies may use anything
+ * else in the context. At most {@code maxStatements} distinct statements are cached, and any others
+ * are recorded in {@code sql.other} metrics, so that raw SQL with inlined values can't create
+ * unbounded numbers of metrics.
  */
 public class InstrumentedTimingCollector implements TimingCollector {
+    /**
+     * The default maximum number of distinct statements.
+     */
+    public static final int DEFAULT_MAX_STATEMENTS = 1000;
+
+    private static final String[] NAMING_ATTRIBUTES = {
+            NameStrategies.STATEMENT_CLASS,
+            NameStrategies.STATEMENT_GROUP,
+            NameStrategies.STATEMENT_TYPE,
+            NameStrategies.STATEMENT_NAME
+    };
+
+    // the strategies which derive names from a StatementKey's inputs alone
+    private static final Set<Class<?>> KEYED_STRATEGIES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            SmartNameStrategy.class,
+            ShortNameStrategy.class,
+            ContextNameStrategy.class,
+            NaiveNameStrategy.class,
+            BasicSqlNameStrategy.class));
+
     private final MetricRegistry registry;
     private final StatementNameStrategy statementNameStrategy;
+    private final int maxStatements;
+    private final boolean keyed;
+    private final Clock clock = Clock.defaultClock();
+    // by StatementKey if keyed, by name otherwise
+    private final ConcurrentMap<Object, StatementMetrics> metrics =
+            new ConcurrentHashMap<Object, StatementMetrics>();
+    private volatile StatementMetrics otherStatements;
 
     public InstrumentedTimingCollector(MetricRegistry registry) {
         this(registry, new SmartNameStrategy());
@@ -23,17 +80,148 @@ public class InstrumentedTimingCollector implements TimingCollector {
 
     public InstrumentedTimingCollector(MetricRegistry registry,
                                        StatementNameStrategy statementNameStrategy) {
+        this(registry, statementNameStrategy, DEFAULT_MAX_STATEMENTS);
+    }
+
+    /**
+     * Creates a new {@link InstrumentedTimingCollector}.
+     *
+     * @param registry              the registry for the metrics
+     * @param statementNameStrategy the strategy for the statements' names
+     * @param maxStatements         the maximum number of distinct statements to record metrics for
+     */
+    public InstrumentedTimingCollector(MetricRegistry registry,
+                                       StatementNameStrategy statementNameStrategy,
+                                       int maxStatements) {
         this.registry = registry;
         this.statementNameStrategy = statementNameStrategy;
+        this.maxStatements = maxStatements;
+        this.keyed = KEYED_STRATEGIES.contains(statementNameStrategy.getClass());
     }
 
     @Override
     public void collect(long elapsedTime, StatementContext ctx) {
-        final Timer timer = getTimer(ctx);
-        timer.update(elapsedTime, TimeUnit.NANOSECONDS);
+        final StatementMetrics statementMetrics = getMetrics(ctx);
+        statementMetrics.execution.update(elapsedTime, TimeUnit.NANOSECONDS);
+
+        final int rows = updateCount(ctx.getStatement());
+        if (rows >= 0) {
+            statementMetrics.rows.update(rows);
+        } else {
+            ctx.addCleanable(new MappingCleanable(statementMetrics.mapping, clock.getTick()));
+        }
+    }
+
+    private StatementMetrics getMetrics(StatementContext ctx) {
+        final Object key = keyed ? new StatementKey(ctx) : statementNameStrategy.getStatementName(ctx);
+        final StatementMetrics cached = metrics.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (metrics.size() >= maxStatements) {
+            return getOtherStatements();
+        }
+        final StatementMetrics created = new StatementMetrics(keyed ?
+                statementNameStrategy.getStatementName(ctx) : (String) key);
+        final StatementMetrics raced = metrics.putIfAbsent(key, created);
+        return raced == null ? created : raced;
+    }
+
+    private StatementMetrics getOtherStatements() {
+        StatementMetrics other = otherStatements;
+        if (other == null) {
+            other = new StatementMetrics(name("sql", "other"));
+            this.otherStatements = other;
+        }
+        return other;
     }
 
-    private Timer getTimer(StatementContext ctx) {
-        return registry.timer(statementNameStrategy.getStatementName(ctx));
+    private static int updateCount(PreparedStatement statement) {
+        if (statement == null) {
+            return -1;
+        }
+        try {
+            return statement.getUpdateCount();
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    private class StatementMetrics {
+        private final Timer execution;
+        private final Timer mapping;
+        private final Histogram rows;
+
+        private StatementMetrics(String name) {
+            this.execution = registry.timer(name);
+            this.mapping = registry.timer(name(name, "mapping"));
+            this.rows = registry.histogram(name(name, "rows"));
+        }
+    }
+
+    private class MappingCleanable implements Cleanable {
+        private final Timer mapping;
+        private final long executedAt;
+
+        private MappingCleanable(Timer mapping, long executedAt) {
+            this.mapping = mapping;
+            this.executedAt = executedAt;
+        }
+
+        @Override
+        public void cleanup() throws SQLException {
+            mapping.update(clock.getTick() - executedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * The inputs of the name strategies: two statements with the same key have the same name.
+     */
+    private static class StatementKey {
+        private final Class<?> sqlObjectType;
+        private final Method sqlObjectMethod;
+        private final String rawSql;
+        private final Object[] attributes;
+        private final int hashCode;
+
+        private StatementKey(StatementContext ctx) {
+            this.sqlObjectType = ctx.getSqlObjectType();
+            this.sqlObjectMethod = ctx.getSqlObjectMethod();
+            this.rawSql = ctx.getRawSql();
+            Object[] attributes = null;
+            for (int i = 0; i < NAMING_ATTRIBUTES.length; i++) {
+                final Object attribute = ctx.getAttribute(NAMING_ATTRIBUTES[i]);
+                if (attribute != null) {
+                    if (attributes == null) {
+                        attributes = new Object[NAMING_ATTRIBUTES.length];
+                    }
+                    attributes[i] = attribute;
+                }
+            }
+            this.attributes = attributes;
+            this.hashCode = Arrays.hashCode(new Object[]{sqlObjectType, sqlObjectMethod, rawSql}) * 31 +
+                    Arrays.hashCode(attributes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StatementKey)) {
+                return false;
+            }
+            final StatementKey that = (StatementKey) o;
+            return hashCode == that.hashCode &&
+                    sqlObjectType == that.sqlObjectType &&
+                    (sqlObjectMethod == null ? that.sqlObjectMethod == null : sqlObjectMethod.equals(that.sqlObjectMethod)) &&
+                    (rawSql == null ? that.rawSql == null : rawSql.equals(that.rawSql)) &&
+                    Arrays.equals(attributes, that.attributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
     }
 }
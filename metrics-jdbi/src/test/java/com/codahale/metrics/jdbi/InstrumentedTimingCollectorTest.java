@@ -7,14 +7,21 @@ import com.codahale.metrics.jdbi.strategies.ShortNameStrategy;
 import com.codahale.metrics.jdbi.strategies.SmartNameStrategy;
 import com.codahale.metrics.jdbi.strategies.StatementNameStrategy;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.skife.jdbi.v2.Cleanable;
 import org.skife.jdbi.v2.StatementContext;
 
+import java.sql.PreparedStatement;
 import java.util.concurrent.TimeUnit;
 
 import static com.codahale.metrics.MetricRegistry.name;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 public class InstrumentedTimingCollectorTest {
     private final MetricRegistry registry = new MetricRegistry();
@@ -252,4 +259,110 @@ public class InstrumentedTimingCollectorTest {
         assertThat(timer.getSnapshot().getMax())
                 .isEqualTo(3000000000L);
     }
+
+    @Test
+    public void resolvesEachStatementsNameOnceWithBuiltInStrategies() throws Exception {
+        final InstrumentedTimingCollector collector = new InstrumentedTimingCollector(registry,
+                                                                                      new SmartNameStrategy());
+        final StatementContext ctx = mock(StatementContext.class);
+        doReturn("SELECT 1").when(ctx).getRawSql();
+        doReturn(getClass()).when(ctx).getSqlObjectType();
+
+        collector.collect(TimeUnit.SECONDS.toNanos(1), ctx);
+        collector.collect(TimeUnit.SECONDS.toNanos(2), ctx);
+
+        // once for each statement's key, and once for the name
+        verify(ctx, times(3)).getSqlObjectMethod();
+        assertThat(registry.timer(name(getClass(), "SELECT 1")).getCount())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void resolvesTheNamesOfEachStatementWithOtherStrategies() throws Exception {
+        final StatementNameStrategy strategy = new StatementNameStrategy() {
+            @Override
+            public String getStatementName(StatementContext statementContext) {
+                return name("tenant", (String) statementContext.getAttribute("tenant"));
+            }
+        };
+        final InstrumentedTimingCollector collector = new InstrumentedTimingCollector(registry,
+                                                                                      strategy);
+        final StatementContext first = rawSql("SELECT 1");
+        doReturn("a").when(first).getAttribute("tenant");
+        final StatementContext second = rawSql("SELECT 1");
+        doReturn("b").when(second).getAttribute("tenant");
+
+        collector.collect(TimeUnit.SECONDS.toNanos(1), first);
+        collector.collect(TimeUnit.SECONDS.toNanos(1), second);
+        collector.collect(TimeUnit.SECONDS.toNanos(1), second);
+
+        assertThat(registry.timer(name("tenant", "a")).getCount())
+                .isEqualTo(1);
+        assertThat(registry.timer(name("tenant", "b")).getCount())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void recordsStatementsBeyondTheLimitAsOtherStatements() throws Exception {
+        final InstrumentedTimingCollector collector = new InstrumentedTimingCollector(registry,
+                                                                                      new SmartNameStrategy(),
+                                                                                      1);
+        collector.collect(TimeUnit.SECONDS.toNanos(1), rawSql("SELECT 1"));
+        collector.collect(TimeUnit.SECONDS.toNanos(1), rawSql("SELECT 2"));
+        collector.collect(TimeUnit.SECONDS.toNanos(1), rawSql("SELECT 3"));
+        collector.collect(TimeUnit.SECONDS.toNanos(1), rawSql("SELECT 1"));
+
+        assertThat(registry.timer(name("sql", "raw", "SELECT 1")).getCount())
+                .isEqualTo(2);
+        assertThat(registry.timer(name("sql", "other")).getCount())
+                .isEqualTo(2);
+        assertThat(registry.getTimers().keySet())
+                .doesNotContain(name("sql", "raw", "SELECT 2"), name("sql", "raw", "SELECT 3"));
+    }
+
+    @Test
+    public void recordsTheRowsUpdatedByStatements() throws Exception {
+        final InstrumentedTimingCollector collector = new InstrumentedTimingCollector(registry);
+        final StatementContext ctx = rawSql("UPDATE users SET name = 'a'");
+        final PreparedStatement statement = mock(PreparedStatement.class);
+        doReturn(12).when(statement).getUpdateCount();
+        doReturn(statement).when(ctx).getStatement();
+
+        collector.collect(TimeUnit.SECONDS.toNanos(1), ctx);
+
+        assertThat(registry.histogram(name("sql", "raw", "UPDATE users SET name = 'a'", "rows"))
+                           .getSnapshot().getMax())
+                .isEqualTo(12);
+        verify(ctx, never()).addCleanable(any(Cleanable.class));
+    }
+
+    @Test
+    public void timesTheMappingOfQueriesUntilTheyAreCleanedUp() throws Exception {
+        final InstrumentedTimingCollector collector = new InstrumentedTimingCollector(registry);
+        final StatementContext ctx = rawSql("SELECT 1");
+        final PreparedStatement statement = mock(PreparedStatement.class);
+        doReturn(-1).when(statement).getUpdateCount();
+        doReturn(statement).when(ctx).getStatement();
+
+        collector.collect(TimeUnit.SECONDS.toNanos(1), ctx);
+
+        final Timer mapping = registry.timer(name("sql", "raw", "SELECT 1", "mapping"));
+        assertThat(mapping.getCount())
+                .isZero();
+
+        final ArgumentCaptor<Cleanable> cleanable = ArgumentCaptor.forClass(Cleanable.class);
+        verify(ctx).addCleanable(cleanable.capture());
+        cleanable.getValue().cleanup();
+
+        assertThat(mapping.getCount())
+                .isEqualTo(1);
+        assertThat(registry.histogram(name("sql", "raw", "SELECT 1", "rows")).getCount())
+                .isZero();
+    }
+
+    private StatementContext rawSql(String sql) {
+        final StatementContext ctx = mock(StatementContext.class);
+        doReturn(sql).when(ctx).getRawSql();
+        return ctx;
+    }
 }
@@ -1,23 +1,84 @@
 package com.codahale.metrics.jetty9;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpChannelState;
+import org.eclipse.jetty.server.HttpConnection;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A {@link ConnectionFactory} which times the connections of another one, from their creation to
+ * their close.
+ * <p>
+ * If it's created with a registry, it also registers:
+ * <ul>
+ * <li>{@code <prefix>.connections}: a timer of the connections' lifetimes</li>
+ * <li>{@code <prefix>.bytes-in} and {@code <prefix>.bytes-out}: histograms of the bytes each
+ * connection read and wrote, for connections which count them</li>
+ * <li>{@code <prefix>.messages-in} and {@code <prefix>.messages-out}: histograms of the messages
+ * (such as HTTP requests and responses) each connection read and wrote</li>
+ * <li>{@code <prefix>.idle-closes}: a meter of HTTP connections closed between requests, by
+ * either side, such as when their idle timeout expired</li>
+ * <li>{@code <prefix>.error-closes}: a meter of HTTP connections closed while handling a request,
+ * such as when the client went away or the response failed</li>
+ * <li>{@code <prefix>.<protocol>.open-connections}: a gauge of the open connections, where the
+ * protocol is the factory's, in lower case with anything but letters and digits replaced by
+ * dashes; factories with the same prefix and protocol, such as those of several connectors, share
+ * it</li>
+ * </ul>
+ * Connections are all given the same listener, which records them from the counts they keep, so
+ * no objects are allocated per connection.
+ */
 public class InstrumentedConnectionFactory extends ContainerLifeCycle implements ConnectionFactory {
     private final ConnectionFactory connectionFactory;
     private final Timer timer;
+    private final Connection.Listener listener;
+    private final AtomicInteger openConnections;
     private Method getProtocols;
 
+    // null unless created with a registry
+    private final Histogram bytesIn;
+    private final Histogram bytesOut;
+    private final Histogram messagesIn;
+    private final Histogram messagesOut;
+    private final Meter idleCloses;
+    private final Meter errorCloses;
+
     public InstrumentedConnectionFactory(ConnectionFactory connectionFactory, Timer timer) {
+        this(connectionFactory, timer, null, null);
+    }
+
+    /**
+     * Creates a new instrumented connection factory with all of its metrics.
+     *
+     * @param connectionFactory the connection factory to instrument
+     * @param registry          the registry for the metrics
+     * @param prefix            the prefix of the metrics' names
+     */
+    public InstrumentedConnectionFactory(ConnectionFactory connectionFactory, MetricRegistry registry, String prefix) {
+        this(connectionFactory, registry.timer(name(prefix, "connections")), registry, prefix);
+    }
+
+    private InstrumentedConnectionFactory(ConnectionFactory connectionFactory, Timer timer,
+                                          MetricRegistry registry, String prefix) {
         this.connectionFactory = connectionFactory;
         this.timer = timer;
         addBean(connectionFactory);
@@ -26,6 +87,37 @@ public class InstrumentedConnectionFactory extends ContainerLifeCycle implements
         } catch (NoSuchMethodException ignore) {
             getProtocols = null;
         }
+
+        if (registry == null) {
+            this.openConnections = new AtomicInteger();
+            this.bytesIn = null;
+            this.bytesOut = null;
+            this.messagesIn = null;
+            this.messagesOut = null;
+            this.idleCloses = null;
+            this.errorCloses = null;
+        } else {
+            this.bytesIn = registry.histogram(name(prefix, "bytes-in"));
+            this.bytesOut = registry.histogram(name(prefix, "bytes-out"));
+            this.messagesIn = registry.histogram(name(prefix, "messages-in"));
+            this.messagesOut = registry.histogram(name(prefix, "messages-out"));
+            this.idleCloses = registry.meter(name(prefix, "idle-closes"));
+            this.errorCloses = registry.meter(name(prefix, "error-closes"));
+            this.openConnections = openConnectionsGauge(registry,
+                    name(prefix, protocolName(connectionFactory.getProtocol()), "open-connections")).count;
+        }
+        this.listener = new Connection.Listener() {
+            @Override
+            public void onOpened(Connection connection) {
+                openConnections.incrementAndGet();
+            }
+
+            @Override
+            public void onClosed(Connection connection) {
+                openConnections.decrementAndGet();
+                connectionClosed(connection);
+            }
+        };
     }
 
     @Override
@@ -47,19 +139,67 @@ public class InstrumentedConnectionFactory extends ContainerLifeCycle implements
     @Override
     public Connection newConnection(Connector connector, EndPoint endPoint) {
         final Connection connection = connectionFactory.newConnection(connector, endPoint);
-        connection.addListener(new Connection.Listener() {
-            private Timer.Context context;
+        connection.addListener(listener);
+        return connection;
+    }
 
-            @Override
-            public void onOpened(Connection connection) {
-                this.context = timer.time();
+    private void connectionClosed(Connection connection) {
+        final long now = System.currentTimeMillis();
+        timer.update(now - connection.getCreatedTimeStamp(), TimeUnit.MILLISECONDS);
+        if (bytesIn == null) {
+            return;
+        }
+
+        // connections which don't count something report -1
+        if (connection.getBytesIn() >= 0) {
+            bytesIn.update(connection.getBytesIn());
+        }
+        if (connection.getBytesOut() >= 0) {
+            bytesOut.update(connection.getBytesOut());
+        }
+        if (connection.getMessagesIn() >= 0) {
+            messagesIn.update(connection.getMessagesIn());
+        }
+        if (connection.getMessagesOut() >= 0) {
+            messagesOut.update(connection.getMessagesOut());
+        }
+
+        // a connection only shuts down its output when its idle timeout expires, so which side
+        // closed it isn't known by the time it's closed, but whether it was handling a request is
+        if (connection instanceof HttpConnection) {
+            final HttpChannelState state = ((HttpConnection) connection).getHttpChannel().getState();
+            if (state.getState() == HttpChannelState.State.IDLE) {
+                idleCloses.mark();
+            } else {
+                errorCloses.mark();
             }
+        }
+    }
 
-            @Override
-            public void onClosed(Connection connection) {
-                context.stop();
+    private static OpenConnectionsGauge openConnectionsGauge(MetricRegistry registry, String name) {
+        final OpenConnectionsGauge gauge = new OpenConnectionsGauge();
+        try {
+            return registry.register(name, gauge);
+        } catch (IllegalArgumentException e) {
+            final Metric existing = registry.getMetrics().get(name);
+            if (existing instanceof OpenConnectionsGauge) {
+                return (OpenConnectionsGauge) existing;
             }
-        });
-        return connection;
+            // some other metric has the name, so only count them
+            return gauge;
+        }
+    }
+
+    private static String protocolName(String protocol) {
+        return protocol.toLowerCase(Locale.ENGLISH).replaceAll("[^a-z0-9]+", "-");
+    }
+
+    private static class OpenConnectionsGauge implements Gauge<Integer> {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Integer getValue() {
+            return count.get();
+        }
     }
 }
@@ -1,11 +1,12 @@
 package com.codahale.metrics.jetty9;
 
+import com.codahale.metrics.Clock;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.RouteTimers;
 import com.codahale.metrics.Timer;
-import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.server.AsyncContextState;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpChannelState;
@@ -18,6 +19,7 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 
 import static com.codahale.metrics.MetricRegistry.name;
@@ -55,16 +57,16 @@ public class InstrumentedHandler extends HandlerWrapper {
 
     private Meter[] responses;
 
-    private Timer getRequests;
-    private Timer postRequests;
-    private Timer headRequests;
-    private Timer putRequests;
-    private Timer deleteRequests;
-    private Timer optionsRequests;
-    private Timer traceRequests;
-    private Timer connectRequests;
-    private Timer moveRequests;
-    private Timer otherRequests;
+    // the requests of each method, by RequestMetricsMatrix.methodIndex
+    private Timer[] methodRequests;
+
+    // the request metrics in compact mode, or null
+    private RequestMetricsMatrix matrix;
+    private final boolean compactMetrics;
+
+    // the route templates and their timers, or null
+    private Collection<String> routeTemplates;
+    private RouteTimers routeTimers;
 
     private AsyncListener listener;
 
@@ -86,10 +88,29 @@ public class InstrumentedHandler extends HandlerWrapper {
 	 *
 	 */
 	public InstrumentedHandler(MetricRegistry registry, String prefix) {
-		this.metricRegistry = registry;
-		this.prefix = prefix;
+		this(registry, prefix, false);
 	}
 
+    /**
+     * Create a new instrumented handler using a given metrics registry.
+     * <p>
+     * In compact mode, each request is recorded in a single cell of a matrix of request methods and
+     * response status classes, instead of in a timer for all requests, a timer for its method and a
+     * meter for its status class. The same timers and meters are registered, as views which are
+     * derived from the matrix when they're read; their snapshots are approximated from histograms
+     * with buckets a power of two milliseconds wide, and cover all requests since the handler
+     * started.
+     *
+     * @param registry       the registry for the metrics
+     * @param prefix         the prefix to use for the metrics names
+     * @param compactMetrics whether to record requests in compact mode
+     */
+    public InstrumentedHandler(MetricRegistry registry, String prefix, boolean compactMetrics) {
+        this.metricRegistry = registry;
+        this.prefix = prefix;
+        this.compactMetrics = compactMetrics;
+    }
+
     public String getName() {
         return name;
     }
@@ -98,13 +119,28 @@ public class InstrumentedHandler extends HandlerWrapper {
         this.name = name;
     }
 
+    public Collection<String> getRouteTemplates() {
+        return routeTemplates;
+    }
+
+    /**
+     * Also time requests per route, given as path templates such as {@code /users/{id}}, which are
+     * matched against the request URI without the context path. Requests which don't match any
+     * template are timed together. Must be set before the handler is started.
+     *
+     * @param routeTemplates the path templates of the routes, or {@code null} for none
+     * @see RouteTimers
+     */
+    public void setRouteTemplates(Collection<String> routeTemplates) {
+        this.routeTemplates = routeTemplates;
+    }
+
     @Override
     protected void doStart() throws Exception {
         super.doStart();
 
         final String prefix = this.prefix == null ? name(getHandler().getClass(), name) : name(this.prefix, name);
 
-        this.requests = metricRegistry.timer(name(prefix, "requests"));
         this.dispatches = metricRegistry.timer(name(prefix, "dispatches"));
 
         this.activeRequests = metricRegistry.counter(name(prefix, "active-requests"));
@@ -114,24 +150,31 @@ public class InstrumentedHandler extends HandlerWrapper {
         this.asyncDispatches = metricRegistry.meter(name(prefix, "async-dispatches"));
         this.asyncTimeouts = metricRegistry.meter(name(prefix, "async-timeouts"));
 
-        this.responses = new Meter[]{
-                metricRegistry.meter(name(prefix, "1xx-responses")), // 1xx
-                metricRegistry.meter(name(prefix, "2xx-responses")), // 2xx
-                metricRegistry.meter(name(prefix, "3xx-responses")), // 3xx
-                metricRegistry.meter(name(prefix, "4xx-responses")), // 4xx
-                metricRegistry.meter(name(prefix, "5xx-responses"))  // 5xx
-        };
+        this.responses = new Meter[5];
+        this.methodRequests = new Timer[RequestMetricsMatrix.METHODS.length];
+        if (compactMetrics) {
+            this.matrix = new RequestMetricsMatrix(Clock.defaultClock());
+            this.requests = metricRegistry.register(name(prefix, "requests"), matrix.timer(-1));
+            for (int i = 0; i < responses.length; i++) {
+                responses[i] = metricRegistry.register(name(prefix, (i + 1) + "xx-responses"), matrix.meter(i + 1));
+            }
+            for (int i = 0; i < methodRequests.length; i++) {
+                methodRequests[i] = metricRegistry.register(name(prefix, RequestMetricsMatrix.METHODS[i] + "-requests"),
+                                                            matrix.timer(i));
+            }
+        } else {
+            this.requests = metricRegistry.timer(name(prefix, "requests"));
+            for (int i = 0; i < responses.length; i++) {
+                responses[i] = metricRegistry.meter(name(prefix, (i + 1) + "xx-responses"));
+            }
+            for (int i = 0; i < methodRequests.length; i++) {
+                methodRequests[i] = metricRegistry.timer(name(prefix, RequestMetricsMatrix.METHODS[i] + "-requests"));
+            }
+        }
 
-        this.getRequests = metricRegistry.timer(name(prefix, "get-requests"));
-        this.postRequests = metricRegistry.timer(name(prefix, "post-requests"));
-        this.headRequests = metricRegistry.timer(name(prefix, "head-requests"));
-        this.putRequests = metricRegistry.timer(name(prefix, "put-requests"));
-        this.deleteRequests = metricRegistry.timer(name(prefix, "delete-requests"));
-        this.optionsRequests = metricRegistry.timer(name(prefix, "options-requests"));
-        this.traceRequests = metricRegistry.timer(name(prefix, "trace-requests"));
-        this.connectRequests = metricRegistry.timer(name(prefix, "connect-requests"));
-        this.moveRequests = metricRegistry.timer(name(prefix, "move-requests"));
-        this.otherRequests = metricRegistry.timer(name(prefix, "other-requests"));
+        if (routeTemplates != null) {
+            this.routeTimers = new RouteTimers(metricRegistry, prefix, routeTemplates);
+        }
 
         metricRegistry.register(name(prefix, "percent-4xx-1m"), new RatioGauge() {
             @Override
@@ -256,42 +299,29 @@ public class InstrumentedHandler extends HandlerWrapper {
     }
 
     private Timer requestTimer(String method) {
-        final HttpMethod m = HttpMethod.fromString(method);
-        if (m == null) {
-            return otherRequests;
-        } else {
-            switch (m) {
-                case GET:
-                    return getRequests;
-                case POST:
-                    return postRequests;
-                case PUT:
-                    return putRequests;
-                case HEAD:
-                    return headRequests;
-                case DELETE:
-                    return deleteRequests;
-                case OPTIONS:
-                    return optionsRequests;
-                case TRACE:
-                    return traceRequests;
-                case CONNECT:
-                    return connectRequests;
-                case MOVE:
-                    return moveRequests;
-                default:
-                    return otherRequests;
-            }
-        }
+        return methodRequests[RequestMetricsMatrix.methodIndex(method)];
+    }
+
+    private static String routePath(HttpServletRequest request) {
+        final String contextPath = request.getContextPath();
+        final String uri = request.getRequestURI();
+        return contextPath != null && uri.startsWith(contextPath) ? uri.substring(contextPath.length()) : uri;
     }
 
     private void updateResponses(HttpServletRequest request, HttpServletResponse response, long start) {
+        activeRequests.dec();
+        final long elapsedTime = System.currentTimeMillis() - start;
+        if (routeTimers != null) {
+            routeTimers.timer(routePath(request)).update(elapsedTime, TimeUnit.MILLISECONDS);
+        }
+        if (matrix != null) {
+            matrix.record(RequestMetricsMatrix.methodIndex(request.getMethod()), response.getStatus(), elapsedTime);
+            return;
+        }
         final int responseStatus = response.getStatus() / 100;
         if (responseStatus >= 1 && responseStatus <= 5) {
             responses[responseStatus - 1].mark();
         }
-        activeRequests.dec();
-        final long elapsedTime = System.currentTimeMillis() - start;
         requests.update(elapsedTime, TimeUnit.MILLISECONDS);
         requestTimer(request.getMethod()).update(elapsedTime, TimeUnit.MILLISECONDS);
     }
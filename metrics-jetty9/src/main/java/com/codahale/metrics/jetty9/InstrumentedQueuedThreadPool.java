@@ -1,19 +1,44 @@
 package com.codahale.metrics.jetty9;
 
+import com.codahale.metrics.Clock;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
 import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
+/**
+ * A {@link QueuedThreadPool} with gauges of its threads and queue, {@code queue-wait} and
+ * {@code job-duration} timers of how long its jobs wait in the queue and then run, a
+ * {@code rejected-jobs} meter, a {@code jobs-peak} gauge of the most jobs which were queued at
+ * once since it was last read, and a {@code saturation} gauge of the ratio of the jobs' mean wait
+ * to their mean wait and duration.
+ * <p>
+ * The pool runs every selector task, so each job is only wrapped in an object holding the time it
+ * was queued, and the queued jobs are counted separately from the queue, which would lock to count
+ * them.
+ */
 public class InstrumentedQueuedThreadPool extends QueuedThreadPool {
     private final MetricRegistry metricRegistry;
+    private final Clock clock = Clock.defaultClock();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger peakQueued = new AtomicInteger();
     private String prefix;
 
+    // null until the pool has started
+    private Timer queueWait;
+    private Timer jobDuration;
+    private Meter rejectedJobs;
+
     public InstrumentedQueuedThreadPool(@Name("registry") MetricRegistry registry) {
         this(registry, 200);
     }
@@ -65,10 +90,14 @@ public class InstrumentedQueuedThreadPool extends QueuedThreadPool {
 
     @Override
     protected void doStart() throws Exception {
-        super.doStart();
-
         final String prefix = this.prefix == null ? name(QueuedThreadPool.class, getName()) : name(this.prefix, getName());
 
+        this.queueWait = metricRegistry.timer(name(prefix, "queue-wait"));
+        this.jobDuration = metricRegistry.timer(name(prefix, "job-duration"));
+        this.rejectedJobs = metricRegistry.meter(name(prefix, "rejected-jobs"));
+
+        super.doStart();
+
         metricRegistry.register(name(prefix, "utilization"), new RatioGauge() {
             @Override
             protected Ratio getRatio() {
@@ -95,5 +124,82 @@ public class InstrumentedQueuedThreadPool extends QueuedThreadPool {
                 return getQueue().size();
             }
         });
+        metricRegistry.register(name(prefix, "jobs-peak"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return peakQueued.getAndSet(queued.get());
+            }
+        });
+        metricRegistry.register(name(prefix, "saturation"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                final double wait = queueWait.getSnapshot().getMean();
+                return Ratio.of(wait, wait + jobDuration.getSnapshot().getMean());
+            }
+        });
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        // the queue's jobs are discarded
+        queued.set(0);
+    }
+
+    @Override
+    public void execute(Runnable job) {
+        if (queueWait == null) {
+            super.execute(job);
+            return;
+        }
+        final int depth = queued.incrementAndGet();
+        try {
+            super.execute(new QueuedJob(job, clock.getTick()));
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            rejectedJobs.mark();
+            throw e;
+        }
+        int peak = peakQueued.get();
+        while (depth > peak && !peakQueued.compareAndSet(peak, depth)) {
+            peak = peakQueued.get();
+        }
+    }
+
+    @Override
+    protected void runJob(Runnable job) {
+        if (!(job instanceof QueuedJob)) {
+            super.runJob(job);
+            return;
+        }
+        final QueuedJob queuedJob = (QueuedJob) job;
+        final long start = clock.getTick();
+        queued.decrementAndGet();
+        queueWait.update(start - queuedJob.queuedAt, TimeUnit.NANOSECONDS);
+        try {
+            super.runJob(queuedJob.job);
+        } finally {
+            jobDuration.update(clock.getTick() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static class QueuedJob implements Runnable {
+        private final Runnable job;
+        private final long queuedAt;
+
+        private QueuedJob(Runnable job, long queuedAt) {
+            this.job = job;
+            this.queuedAt = queuedAt;
+        }
+
+        @Override
+        public void run() {
+            job.run();
+        }
+
+        @Override
+        public String toString() {
+            return job.toString();
+        }
     }
 }
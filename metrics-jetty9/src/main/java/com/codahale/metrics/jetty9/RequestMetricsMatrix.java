@@ -0,0 +1,328 @@
+package com.codahale.metrics.jetty9;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.EWMA;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.WeightedSnapshot;
+import org.eclipse.jetty.http.HttpMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The compact request metrics of an {@link InstrumentedHandler}: for each request method and
+ * response status class, a count, a total and a histogram of request durations, kept in a single
+ * array of longs. Recording a request only updates one cell of the array, and the array is striped
+ * by thread to keep concurrent requests from contending for the same cells.
+ * <p>
+ * The handler's usual timers and meters are views of the matrix, which are derived from it when
+ * they're read. Their snapshots are built from the histograms, whose buckets are powers of two
+ * milliseconds wide, and cover all requests since the handler started. Updating a timer records a
+ * request with an unknown status (of an unknown method, for the timer of all requests), and marking
+ * a meter counts responses of its status class which aren't requests of any timer.
+ */
+class RequestMetricsMatrix {
+    static final String[] METHODS = {
+            "get", "post", "head", "put", "delete", "options", "trace", "connect", "move", "other"
+    };
+    static final int OTHER_METHOD = METHODS.length - 1;
+    // 1xx to 5xx, and anything else
+    static final int STATUSES = 6;
+
+    private static final int[] METHOD_INDEXES = methodIndexes();
+    private static final int BUCKETS = 21;
+    // count, total milliseconds, buckets
+    private static final int CELL_SIZE = 2 + BUCKETS;
+    private static final int CELLS = METHODS.length * STATUSES;
+    private static final long TICK_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+    private final AtomicLongArray cells;
+    // responses marked on the meters, by status class
+    private final AtomicLongArray marks;
+    private final int stripeMask;
+    private final Clock clock;
+    private final long startTime;
+
+    RequestMetricsMatrix(Clock clock) {
+        final int stripes = Math.min(16, Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+        this.cells = new AtomicLongArray(stripes * CELLS * CELL_SIZE);
+        this.marks = new AtomicLongArray(STATUSES);
+        this.stripeMask = stripes - 1;
+        this.clock = clock;
+        this.startTime = clock.getTick();
+    }
+
+    /**
+     * Returns the index of the given request method.
+     *
+     * @param method a request method
+     * @return the method's index in {@link #METHODS}
+     */
+    static int methodIndex(String method) {
+        final HttpMethod m = HttpMethod.fromString(method);
+        return m == null ? OTHER_METHOD : METHOD_INDEXES[m.ordinal()];
+    }
+
+    /**
+     * Records a request.
+     *
+     * @param method        the index of the request's method
+     * @param status        the response's status code
+     * @param elapsedMillis the request's duration, in milliseconds
+     */
+    void record(int method, int status, long elapsedMillis) {
+        final int statusClass = status / 100;
+        final int statusIndex = statusClass >= 1 && statusClass <= 5 ? statusClass - 1 : STATUSES - 1;
+        final int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        final int base = ((stripe * CELLS) + method * STATUSES + statusIndex) * CELL_SIZE;
+        final long elapsed = Math.max(0, elapsedMillis);
+        cells.incrementAndGet(base);
+        cells.addAndGet(base + 1, elapsed);
+        cells.incrementAndGet(base + 2 + bucket(elapsed));
+    }
+
+    /**
+     * Returns a timer of the requests with the given method, or of all requests.
+     *
+     * @param method the index of the method, or {@code -1} for all methods
+     * @return a view of the matrix
+     */
+    Timer timer(int method) {
+        return new MatrixTimer(method);
+    }
+
+    /**
+     * Returns a meter of the responses with the given status class.
+     *
+     * @param statusClass the status class, from 1 to 5
+     * @return a view of the matrix
+     */
+    Meter meter(int statusClass) {
+        return new MatrixMeter(statusClass - 1);
+    }
+
+    private long count(int method, int status) {
+        long count = method < 0 && status >= 0 ? marks.get(status) : 0;
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            for (int m = 0; m < METHODS.length; m++) {
+                if (method >= 0 && m != method) {
+                    continue;
+                }
+                for (int s = 0; s < STATUSES; s++) {
+                    if (status < 0 || s == status) {
+                        count += cells.get(((stripe * CELLS) + m * STATUSES + s) * CELL_SIZE);
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    private Snapshot snapshot(int method) {
+        final long[] buckets = new long[BUCKETS];
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            for (int m = 0; m < METHODS.length; m++) {
+                if (method >= 0 && m != method) {
+                    continue;
+                }
+                for (int s = 0; s < STATUSES; s++) {
+                    final int base = ((stripe * CELLS) + m * STATUSES + s) * CELL_SIZE;
+                    for (int b = 0; b < BUCKETS; b++) {
+                        buckets[b] += cells.get(base + 2 + b);
+                    }
+                }
+            }
+        }
+        final List<WeightedSnapshot.WeightedSample> samples = new ArrayList<WeightedSnapshot.WeightedSample>();
+        for (int b = 0; b < BUCKETS; b++) {
+            if (buckets[b] > 0) {
+                samples.add(new WeightedSnapshot.WeightedSample(TimeUnit.MILLISECONDS.toNanos(upperBound(b)),
+                                                                buckets[b]));
+            }
+        }
+        return new WeightedSnapshot(samples);
+    }
+
+    private static int bucket(long elapsedMillis) {
+        // 0 for 0ms, 1 for 1ms, 2 for 2-3ms, 3 for 4-7ms, etc.
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(elapsedMillis));
+    }
+
+    private static long upperBound(int bucket) {
+        return (1L << bucket) - 1;
+    }
+
+    private static int[] methodIndexes() {
+        final int[] indexes = new int[HttpMethod.values().length];
+        for (HttpMethod method : HttpMethod.values()) {
+            indexes[method.ordinal()] = OTHER_METHOD;
+            for (int i = 0; i < OTHER_METHOD; i++) {
+                if (METHODS[i].equalsIgnoreCase(method.asString())) {
+                    indexes[method.ordinal()] = i;
+                }
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Rates derived from a count which is only read when the rates are, ticked the way a
+     * {@link Meter} ticks its rates. A {@link Meter} knows which interval each event fell in, but
+     * here only the count since the last read is known, so it's spread evenly over the time since
+     * then: each elapsed interval gets its share, and the share of the current, incomplete interval
+     * waits for the next tick.
+     */
+    private class Rates {
+        private final EWMA m1Rate = EWMA.oneMinuteEWMA();
+        private final EWMA m5Rate = EWMA.fiveMinuteEWMA();
+        private final EWMA m15Rate = EWMA.fifteenMinuteEWMA();
+        private long lastCount;
+        private long lastTick = startTime;
+
+        private synchronized void update(long count) {
+            final long now = clock.getTick();
+            final long age = now - lastTick;
+            if (age > TICK_INTERVAL) {
+                final long requiredTicks = age / TICK_INTERVAL;
+                final double ticked = (double) (count - lastCount) * (requiredTicks * TICK_INTERVAL) / age;
+                long spread = 0;
+                for (long i = 1; i <= requiredTicks; i++) {
+                    final long share = Math.round(ticked * i / requiredTicks) - spread;
+                    spread += share;
+                    m1Rate.update(share);
+                    m5Rate.update(share);
+                    m15Rate.update(share);
+                    m1Rate.tick();
+                    m5Rate.tick();
+                    m15Rate.tick();
+                }
+                this.lastCount += spread;
+                this.lastTick = now - age % TICK_INTERVAL;
+            }
+        }
+
+        private double meanRate(long count) {
+            if (count == 0) {
+                return 0.0;
+            }
+            final double elapsed = clock.getTick() - startTime;
+            return count / elapsed * TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+
+    private class MatrixTimer extends Timer {
+        private final int method;
+        private final Rates rates = new Rates();
+
+        private MatrixTimer(int method) {
+            this.method = method;
+        }
+
+        @Override
+        public void update(long duration, TimeUnit unit) {
+            if (duration >= 0) {
+                record(method < 0 ? OTHER_METHOD : method, 0, unit.toMillis(duration));
+            }
+        }
+
+        @Override
+        public <T> T time(Callable<T> event) throws Exception {
+            final long startTime = clock.getTick();
+            try {
+                return event.call();
+            } finally {
+                update(clock.getTick() - startTime, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void time(Runnable event) {
+            final long startTime = clock.getTick();
+            try {
+                event.run();
+            } finally {
+                update(clock.getTick() - startTime, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public long getCount() {
+            return count(method, -1);
+        }
+
+        @Override
+        public double getFifteenMinuteRate() {
+            rates.update(getCount());
+            return rates.m15Rate.getRate(TimeUnit.SECONDS);
+        }
+
+        @Override
+        public double getFiveMinuteRate() {
+            rates.update(getCount());
+            return rates.m5Rate.getRate(TimeUnit.SECONDS);
+        }
+
+        @Override
+        public double getMeanRate() {
+            return rates.meanRate(getCount());
+        }
+
+        @Override
+        public double getOneMinuteRate() {
+            rates.update(getCount());
+            return rates.m1Rate.getRate(TimeUnit.SECONDS);
+        }
+
+        @Override
+        public Snapshot getSnapshot() {
+            return snapshot(method);
+        }
+    }
+
+    private class MatrixMeter extends Meter {
+        private final int status;
+        private final Rates rates = new Rates();
+
+        private MatrixMeter(int status) {
+            this.status = status;
+        }
+
+        @Override
+        public void mark(long n) {
+            marks.addAndGet(status, n);
+        }
+
+        @Override
+        public long getCount() {
+            return count(-1, status);
+        }
+
+        @Override
+        public double getFifteenMinuteRate() {
+            rates.update(getCount());
+            return rates.m15Rate.getRate(TimeUnit.SECONDS);
+        }
+
+        @Override
+        public double getFiveMinuteRate() {
+            rates.update(getCount());
+            return rates.m5Rate.getRate(TimeUnit.SECONDS);
+        }
+
+        @Override
+        public double getMeanRate() {
+            return rates.meanRate(getCount());
+        }
+
+        @Override
+        public double getOneMinuteRate() {
+            rates.update(getCount());
+            return rates.m1Rate.getRate(TimeUnit.SECONDS);
+        }
+    }
+}
@@ -18,6 +18,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.net.Socket;
 
 import static com.codahale.metrics.MetricRegistry.name;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -28,6 +29,9 @@ public class InstrumentedConnectionFactoryTest {
     private final ServerConnector connector =
             new ServerConnector(server, new InstrumentedConnectionFactory(new HttpConnectionFactory(),
                                                                           registry.timer("http.connections")));
+    private final ServerConnector instrumented =
+            new ServerConnector(server, new InstrumentedConnectionFactory(new HttpConnectionFactory(),
+                                                                          registry, "instrumented"));
     private final HttpClient client = new HttpClient();
 
     @Before
@@ -38,6 +42,10 @@ public class InstrumentedConnectionFactoryTest {
                                Request baseRequest,
                                HttpServletRequest request,
                                HttpServletResponse response) throws IOException, ServletException {
+                if ("/abort".equals(target)) {
+                    baseRequest.getHttpChannel().getEndPoint().close();
+                    return;
+                }
                 try (PrintWriter writer = response.getWriter()) {
                     writer.println("OK");
                 }
@@ -45,6 +53,8 @@ public class InstrumentedConnectionFactoryTest {
         });
 
         server.addConnector(connector);
+        instrumented.setIdleTimeout(200);
+        server.addConnector(instrumented);
         server.start();
 
         client.start();
@@ -70,4 +80,79 @@ public class InstrumentedConnectionFactoryTest {
         assertThat(timer.getCount())
                 .isEqualTo(1);
     }
+
+    @Test
+    public void recordsTheCountsOfClosedConnections() throws Exception {
+        client.GET("http://localhost:" + instrumented.getLocalPort() + "/hello");
+        client.GET("http://localhost:" + instrumented.getLocalPort() + "/hello");
+
+        assertThat(registry.getGauges().get("instrumented.http-1-1.open-connections").getValue())
+                .isEqualTo(1);
+
+        client.stop(); // close the connection
+
+        Thread.sleep(100); // make sure the connection is closed
+
+        assertThat(registry.getGauges().get("instrumented.http-1-1.open-connections").getValue())
+                .isEqualTo(0);
+        assertThat(registry.timer("instrumented.connections").getCount())
+                .isEqualTo(1);
+        assertThat(registry.histogram("instrumented.messages-in").getSnapshot().getValues())
+                .containsOnly(2);
+        assertThat(registry.meter("instrumented.idle-closes").getCount())
+                .isEqualTo(1);
+        assertThat(registry.meter("instrumented.error-closes").getCount())
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void sharesTheOpenConnectionsGaugeBetweenConnectors() throws Exception {
+        final ServerConnector other =
+                new ServerConnector(server, new InstrumentedConnectionFactory(new HttpConnectionFactory(),
+                                                                              registry, "instrumented"));
+        server.addConnector(other);
+        other.start();
+        try {
+            client.GET("http://localhost:" + instrumented.getLocalPort() + "/hello");
+            client.GET("http://localhost:" + other.getLocalPort() + "/hello");
+
+            assertThat(registry.getGauges().get("instrumented.http-1-1.open-connections").getValue())
+                    .isEqualTo(2);
+        } finally {
+            other.stop();
+        }
+    }
+
+    @Test
+    public void countsIdleTimeoutsAsIdleCloses() throws Exception {
+        client.GET("http://localhost:" + instrumented.getLocalPort() + "/hello");
+
+        Thread.sleep(400); // let the connection's idle timeout expire
+
+        client.stop(); // close the half-closed connection
+
+        Thread.sleep(100); // make sure the connection is closed
+
+        assertThat(registry.meter("instrumented.idle-closes").getCount())
+                .isEqualTo(1);
+        assertThat(registry.meter("instrumented.error-closes").getCount())
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void countsClosesWhileHandlingRequestsAsErrorCloses() throws Exception {
+        try (Socket socket = new Socket("localhost", instrumented.getLocalPort())) {
+            socket.getOutputStream().write("GET /abort HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes("UTF-8"));
+            while (socket.getInputStream().read() >= 0) {
+                // wait for the server to close the connection
+            }
+        }
+
+        Thread.sleep(100); // make sure the connection is closed
+
+        assertThat(registry.meter("instrumented.error-closes").getCount())
+                .isEqualTo(1);
+        assertThat(registry.meter("instrumented.idle-closes").getCount())
+                .isEqualTo(0);
+    }
 }
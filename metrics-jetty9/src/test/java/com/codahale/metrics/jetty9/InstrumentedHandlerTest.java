@@ -7,6 +7,7 @@ import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.server.handler.ContextHandler;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -19,6 +20,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.LockSupport;
 
@@ -116,6 +118,112 @@ public class InstrumentedHandlerTest {
         assertResponseTimesValid();
     }
 
+    @Test
+    public void recordsTheSameMetricsInCompactMode() throws Exception {
+        final MetricRegistry compactRegistry = new MetricRegistry();
+        final InstrumentedHandler compact = new InstrumentedHandler(compactRegistry, "compact", true);
+        compact.setHandler(new TestHandler());
+        final Server compactServer = new Server();
+        final ServerConnector compactConnector = new ServerConnector(compactServer);
+        compactServer.addConnector(compactConnector);
+        compactServer.setHandler(compact);
+        compactServer.start();
+        try {
+            client.GET("http://localhost:" + compactConnector.getLocalPort() + "/blocking");
+            client.GET("http://localhost:" + compactConnector.getLocalPort() + "/async");
+            client.GET("http://localhost:" + compactConnector.getLocalPort() + "/hello");
+        } finally {
+            compactServer.stop();
+        }
+
+        assertThat(compactRegistry.getNames())
+                .containsOnly(compactNames());
+        assertThat(compactRegistry.getMeters().get("compact.2xx-responses").getCount())
+                .isEqualTo(2);
+        assertThat(compactRegistry.getMeters().get("compact.4xx-responses").getCount())
+                .isEqualTo(1);
+        assertThat(compactRegistry.getTimers().get("compact.get-requests").getCount())
+                .isEqualTo(3);
+        assertThat(compactRegistry.getTimers().get("compact.requests").getSnapshot().getMax())
+                .isGreaterThan(0L).isLessThan(TimeUnit.SECONDS.toNanos(1));
+        assertThat(compactRegistry.getGauges().get("compact.percent-4xx-1m").getValue())
+                .isNotNull();
+    }
+
+    @Test
+    public void timesRequestsByRouteTemplate() throws Exception {
+        final MetricRegistry routeRegistry = new MetricRegistry();
+        final InstrumentedHandler routed = new InstrumentedHandler(routeRegistry, "routed");
+        routed.setRouteTemplates(Arrays.asList("/blocking", "/async", "/users/{id}"));
+        routed.setHandler(new TestHandler());
+        final Server routeServer = new Server();
+        final ServerConnector routeConnector = new ServerConnector(routeServer);
+        routeServer.addConnector(routeConnector);
+        routeServer.setHandler(routed);
+        routeServer.start();
+        try {
+            client.GET("http://localhost:" + routeConnector.getLocalPort() + "/blocking");
+            client.GET("http://localhost:" + routeConnector.getLocalPort() + "/async");
+            client.GET("http://localhost:" + routeConnector.getLocalPort() + "/users/1");
+            client.GET("http://localhost:" + routeConnector.getLocalPort() + "/users/2?q=3");
+            client.GET("http://localhost:" + routeConnector.getLocalPort() + "/hello");
+        } finally {
+            routeServer.stop();
+        }
+
+        assertThat(routeRegistry.getTimers().get("routed.routes.blocking").getCount())
+                .isEqualTo(1);
+        assertThat(routeRegistry.getTimers().get("routed.routes.async").getCount())
+                .isEqualTo(1);
+        assertThat(routeRegistry.getTimers().get("routed.routes.users.{id}").getCount())
+                .isEqualTo(2);
+        assertThat(routeRegistry.getTimers().get("routed.other-routes").getCount())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void matchesRoutesWithoutTheContextPathOrPathParameters() throws Exception {
+        final MetricRegistry routeRegistry = new MetricRegistry();
+        final InstrumentedHandler routed = new InstrumentedHandler(routeRegistry, "routed");
+        routed.setRouteTemplates(Arrays.asList("/users/{id}"));
+        routed.setHandler(new TestHandler());
+        final ContextHandler context = new ContextHandler("/app");
+        context.setHandler(routed);
+        final Server routeServer = new Server();
+        final ServerConnector routeConnector = new ServerConnector(routeServer);
+        routeServer.addConnector(routeConnector);
+        routeServer.setHandler(context);
+        routeServer.start();
+        try {
+            client.GET("http://localhost:" + routeConnector.getLocalPort() + "/app/users/1");
+            client.GET("http://localhost:" + routeConnector.getLocalPort() + "/app/users/2;jsessionid=abc");
+        } finally {
+            routeServer.stop();
+        }
+
+        assertThat(routeRegistry.getTimers().get("routed.routes.users.{id}").getCount())
+                .isEqualTo(2);
+        assertThat(routeRegistry.getTimers().get("routed.other-routes").getCount())
+                .isEqualTo(0);
+    }
+
+    private String[] compactNames() {
+        final String[] suffixes = {
+                "1xx-responses", "2xx-responses", "3xx-responses", "4xx-responses", "5xx-responses",
+                "percent-4xx-1m", "percent-4xx-5m", "percent-4xx-15m",
+                "percent-5xx-1m", "percent-5xx-5m", "percent-5xx-15m",
+                "requests", "active-suspended", "async-dispatches", "async-timeouts", "get-requests",
+                "put-requests", "active-dispatches", "trace-requests", "other-requests", "connect-requests",
+                "dispatches", "head-requests", "post-requests", "options-requests", "active-requests",
+                "delete-requests", "move-requests"
+        };
+        final String[] names = new String[suffixes.length];
+        for (int i = 0; i < suffixes.length; i++) {
+            names[i] = MetricRegistry.name("compact", suffixes[i]);
+        }
+        return names;
+    }
+
     private void assertResponseTimesValid() {
         assertThat(registry.getMeters().get(metricName() + ".2xx-responses")
                 .getCount()).isGreaterThan(0L);
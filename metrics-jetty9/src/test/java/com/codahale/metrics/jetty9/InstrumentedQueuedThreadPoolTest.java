@@ -14,6 +14,11 @@ import org.junit.After;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
 public class InstrumentedQueuedThreadPoolTest {
     private static final String PREFIX = "prefix";
 
@@ -46,4 +51,74 @@ public class InstrumentedQueuedThreadPoolTest {
         assertThat("The default metrics prefix was changed", metricName, startsWith(QueuedThreadPool.class.getName()));
     }
 
+    @Test
+    public void timesQueuedAndRunningJobs() throws Exception {
+        final MetricRegistry registry = new MetricRegistry();
+        final InstrumentedQueuedThreadPool pool = new InstrumentedQueuedThreadPool(registry, 8, 2, 60000,
+                                                                                   null, PREFIX);
+        pool.start();
+        try {
+            final CountDownLatch done = new CountDownLatch(10);
+            for (int i = 0; i < 10; i++) {
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        done.countDown();
+                    }
+                });
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            pool.stop();
+        }
+
+        final String prefix = MetricRegistry.name(PREFIX, pool.getName());
+        assertEquals(10, registry.timer(MetricRegistry.name(prefix, "queue-wait")).getCount());
+        // the last job's duration is recorded after it counts down
+        assertTrue(registry.timer(MetricRegistry.name(prefix, "job-duration")).getCount() >= 9);
+        assertEquals(0, registry.meter(MetricRegistry.name(prefix, "rejected-jobs")).getCount());
+        assertTrue((Integer) registry.getGauges().get(MetricRegistry.name(prefix, "jobs-peak")).getValue() >= 1);
+        final Double saturation = (Double) registry.getGauges().get(MetricRegistry.name(prefix, "saturation")).getValue();
+        assertTrue(saturation >= 0 && saturation <= 1);
+    }
+
+    @Test
+    public void marksRejectedJobs() throws Exception {
+        final MetricRegistry registry = new MetricRegistry();
+        final InstrumentedQueuedThreadPool pool = new InstrumentedQueuedThreadPool(registry, 1, 1, 60000,
+                                                                                   new ArrayBlockingQueue<Runnable>(1),
+                                                                                   PREFIX);
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Runnable blocker = new Runnable() {
+            @Override
+            public void run() {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        pool.start();
+        try {
+            pool.execute(blocker);
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            pool.execute(blocker);
+            try {
+                pool.execute(blocker);
+                fail("should have been rejected");
+            } catch (RejectedExecutionException e) {
+                // expected
+            }
+        } finally {
+            release.countDown();
+            pool.stop();
+        }
+
+        final String prefix = MetricRegistry.name(PREFIX, pool.getName());
+        assertEquals(1, registry.meter(MetricRegistry.name(prefix, "rejected-jobs")).getCount());
+    }
+
 }
@@ -0,0 +1,130 @@
+package com.codahale.metrics.jetty9;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RequestMetricsMatrixTest {
+    private final Clock clock = mock(Clock.class);
+    private final RequestMetricsMatrix matrix = new RequestMetricsMatrix(clock);
+
+    @Test
+    public void resolvesMethodIndexes() throws Exception {
+        assertThat(RequestMetricsMatrix.methodIndex("GET"))
+                .isEqualTo(0);
+        assertThat(RequestMetricsMatrix.methodIndex("MOVE"))
+                .isEqualTo(8);
+        assertThat(RequestMetricsMatrix.methodIndex("PROXY"))
+                .isEqualTo(RequestMetricsMatrix.OTHER_METHOD);
+        assertThat(RequestMetricsMatrix.methodIndex("PATCH"))
+                .isEqualTo(RequestMetricsMatrix.OTHER_METHOD);
+    }
+
+    @Test
+    public void derivesTimersAndMetersFromTheMatrix() throws Exception {
+        final int get = RequestMetricsMatrix.methodIndex("GET");
+        final int post = RequestMetricsMatrix.methodIndex("POST");
+        matrix.record(get, 200, 1);
+        matrix.record(get, 404, 6);
+        matrix.record(post, 500, 100);
+
+        final Timer all = matrix.timer(-1);
+        final Timer gets = matrix.timer(get);
+        assertThat(all.getCount())
+                .isEqualTo(3);
+        assertThat(gets.getCount())
+                .isEqualTo(2);
+        assertThat(matrix.meter(4).getCount())
+                .isEqualTo(1);
+        assertThat(matrix.meter(2).getCount())
+                .isEqualTo(1);
+
+        // 6ms falls in the 4-7ms bucket
+        assertThat(gets.getSnapshot().getMax())
+                .isEqualTo(TimeUnit.MILLISECONDS.toNanos(7));
+        assertThat(gets.getSnapshot().getMin())
+                .isEqualTo(TimeUnit.MILLISECONDS.toNanos(1));
+        assertThat(all.getSnapshot().getMax())
+                .isEqualTo(TimeUnit.MILLISECONDS.toNanos(127));
+    }
+
+    @Test
+    public void derivesRatesFromTheCounts() throws Exception {
+        final Meter ok = matrix.meter(2);
+        for (int i = 0; i < 10; i++) {
+            matrix.record(0, 200, 1);
+        }
+
+        when(clock.getTick()).thenReturn(TimeUnit.SECONDS.toNanos(8));
+
+        assertThat(ok.getMeanRate())
+                .isEqualTo(1.25, offset(0.001));
+        // one five-second tick with its share of ten requests over eight seconds
+        assertThat(ok.getOneMinuteRate())
+                .isEqualTo(1.2, offset(0.001));
+    }
+
+    @Test
+    public void tracksTheRatesOfARealMeter() throws Exception {
+        final ManualClock clock = new ManualClock();
+        final RequestMetricsMatrix matrix = new RequestMetricsMatrix(clock);
+        final Meter derived = matrix.meter(2);
+        final Meter meter = new Meter(clock);
+
+        // a steady ten requests a second, read once a minute
+        for (int second = 1; second <= 900; second++) {
+            clock.tick += TimeUnit.SECONDS.toNanos(1);
+            for (int i = 0; i < 10; i++) {
+                matrix.record(0, 200, 1);
+            }
+            meter.mark(10);
+            if (second % 60 == 0) {
+                assertThat(derived.getOneMinuteRate())
+                        .isEqualTo(meter.getOneMinuteRate(), offset(0.01));
+                assertThat(derived.getFiveMinuteRate())
+                        .isEqualTo(meter.getFiveMinuteRate(), offset(0.01));
+                assertThat(derived.getFifteenMinuteRate())
+                        .isEqualTo(meter.getFifteenMinuteRate(), offset(0.01));
+            }
+        }
+        assertThat(derived.getOneMinuteRate())
+                .isEqualTo(10.0, offset(0.1));
+    }
+
+    @Test
+    public void recordsUpdatesOfTheViewsInTheMatrix() throws Exception {
+        final Timer gets = matrix.timer(0);
+        gets.update(3, TimeUnit.MILLISECONDS);
+        gets.time().stop();
+        matrix.timer(-1).update(1, TimeUnit.SECONDS);
+        matrix.meter(5).mark(2);
+
+        assertThat(gets.getCount())
+                .isEqualTo(2);
+        assertThat(matrix.timer(-1).getCount())
+                .isEqualTo(3);
+        assertThat(matrix.timer(RequestMetricsMatrix.OTHER_METHOD).getCount())
+                .isEqualTo(1);
+        assertThat(matrix.meter(5).getCount())
+                .isEqualTo(2);
+        assertThat(matrix.meter(2).getCount())
+                .isEqualTo(0);
+    }
+
+    private static class ManualClock extends Clock {
+        private long tick;
+
+        @Override
+        public long getTick() {
+            return tick;
+        }
+    }
+}
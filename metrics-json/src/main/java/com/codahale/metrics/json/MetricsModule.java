@@ -11,12 +11,35 @@ import com.codahale.metrics.*;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 public class MetricsModule extends Module {
     static final Version VERSION = new Version(3, 1, 3, "", "com.codahale.metrics", "metrics-json");
 
+    /**
+     * The key of a {@link MetricFilter} to apply, in addition to the module's filter, when
+     * serializing a {@link MetricRegistry}. Set it for a single serialization with
+     * {@link com.fasterxml.jackson.databind.ObjectWriter#withAttribute(Object, Object)}. Metrics are
+     * filtered before any of their values are read.
+     */
+    public static final String FILTER_KEY = MetricsModule.class.getName() + ".filter";
+
+    /**
+     * The key of a {@link Set} of field names (e.g. {@code count} or {@code p99}) to restrict the
+     * serialized metrics to. Set it for a single serialization with
+     * {@link com.fasterxml.jackson.databind.ObjectWriter#withAttribute(Object, Object)}. Snapshots
+     * are not taken unless one of their fields is included.
+     */
+    public static final String FIELDS_KEY = MetricsModule.class.getName() + ".fields";
+
+    private static final Set<String> SNAPSHOT_FIELDS = new HashSet<String>(Arrays.asList(
+            "max", "mean", "min", "p50", "p75", "p95", "p98", "p99", "p999", "values", "stddev"
+    ));
+
     private static class GaugeSerializer extends StdSerializer<Gauge> {
         private GaugeSerializer() {
             super(Gauge.class);
@@ -27,12 +50,14 @@ public class MetricsModule extends Module {
                               JsonGenerator json,
                               SerializerProvider provider) throws IOException {
             json.writeStartObject();
-            final Object value;
-            try {
-                value = gauge.getValue();
-                json.writeObjectField("value", value);
-            } catch (RuntimeException e) {
-                json.writeObjectField("error", e.toString());
+            if (includes(provider, "value")) {
+                final Object value;
+                try {
+                    value = gauge.getValue();
+                    json.writeObjectField("value", value);
+                } catch (RuntimeException e) {
+                    json.writeObjectField("error", e.toString());
+                }
             }
             json.writeEndObject();
         }
@@ -48,7 +73,9 @@ public class MetricsModule extends Module {
                               JsonGenerator json,
                               SerializerProvider provider) throws IOException {
             json.writeStartObject();
-            json.writeNumberField("count", counter.getCount());
+            if (includes(provider, "count")) {
+                json.writeNumberField("count", counter.getCount());
+            }
             json.writeEndObject();
         }
     }
@@ -66,23 +93,48 @@ public class MetricsModule extends Module {
                               JsonGenerator json,
                               SerializerProvider provider) throws IOException {
             json.writeStartObject();
-            final Snapshot snapshot = histogram.getSnapshot();
-            json.writeNumberField("count", histogram.getCount());
-            json.writeNumberField("max", snapshot.getMax());
-            json.writeNumberField("mean", snapshot.getMean());
-            json.writeNumberField("min", snapshot.getMin());
-            json.writeNumberField("p50", snapshot.getMedian());
-            json.writeNumberField("p75", snapshot.get75thPercentile());
-            json.writeNumberField("p95", snapshot.get95thPercentile());
-            json.writeNumberField("p98", snapshot.get98thPercentile());
-            json.writeNumberField("p99", snapshot.get99thPercentile());
-            json.writeNumberField("p999", snapshot.get999thPercentile());
-
-            if (showSamples) {
-                json.writeObjectField("values", snapshot.getValues());
-            }
-
-            json.writeNumberField("stddev", snapshot.getStdDev());
+            final Set<String> fields = fields(provider);
+            if (includes(fields, "count")) {
+                json.writeNumberField("count", histogram.getCount());
+            }
+            if (includesAny(fields, SNAPSHOT_FIELDS)) {
+                final Snapshot snapshot = histogram.getSnapshot();
+                if (includes(fields, "max")) {
+                    json.writeNumberField("max", snapshot.getMax());
+                }
+                if (includes(fields, "mean")) {
+                    json.writeNumberField("mean", snapshot.getMean());
+                }
+                if (includes(fields, "min")) {
+                    json.writeNumberField("min", snapshot.getMin());
+                }
+                if (includes(fields, "p50")) {
+                    json.writeNumberField("p50", snapshot.getMedian());
+                }
+                if (includes(fields, "p75")) {
+                    json.writeNumberField("p75", snapshot.get75thPercentile());
+                }
+                if (includes(fields, "p95")) {
+                    json.writeNumberField("p95", snapshot.get95thPercentile());
+                }
+                if (includes(fields, "p98")) {
+                    json.writeNumberField("p98", snapshot.get98thPercentile());
+                }
+                if (includes(fields, "p99")) {
+                    json.writeNumberField("p99", snapshot.get99thPercentile());
+                }
+                if (includes(fields, "p999")) {
+                    json.writeNumberField("p999", snapshot.get999thPercentile());
+                }
+
+                if (showSamples && includes(fields, "values")) {
+                    json.writeObjectField("values", snapshot.getValues());
+                }
+
+                if (includes(fields, "stddev")) {
+                    json.writeNumberField("stddev", snapshot.getStdDev());
+                }
+            }
             json.writeEndObject();
         }
     }
@@ -102,12 +154,25 @@ public class MetricsModule extends Module {
                               JsonGenerator json,
                               SerializerProvider provider) throws IOException {
             json.writeStartObject();
-            json.writeNumberField("count", meter.getCount());
-            json.writeNumberField("m15_rate", meter.getFifteenMinuteRate() * rateFactor);
-            json.writeNumberField("m1_rate", meter.getOneMinuteRate() * rateFactor);
-            json.writeNumberField("m5_rate", meter.getFiveMinuteRate() * rateFactor);
-            json.writeNumberField("mean_rate", meter.getMeanRate() * rateFactor);
-            json.writeStringField("units", rateUnit);
+            final Set<String> fields = fields(provider);
+            if (includes(fields, "count")) {
+                json.writeNumberField("count", meter.getCount());
+            }
+            if (includes(fields, "m15_rate")) {
+                json.writeNumberField("m15_rate", meter.getFifteenMinuteRate() * rateFactor);
+            }
+            if (includes(fields, "m1_rate")) {
+                json.writeNumberField("m1_rate", meter.getOneMinuteRate() * rateFactor);
+            }
+            if (includes(fields, "m5_rate")) {
+                json.writeNumberField("m5_rate", meter.getFiveMinuteRate() * rateFactor);
+            }
+            if (includes(fields, "mean_rate")) {
+                json.writeNumberField("mean_rate", meter.getMeanRate() * rateFactor);
+            }
+            if (includes(fields, "units")) {
+                json.writeStringField("units", rateUnit);
+            }
             json.writeEndObject();
         }
     }
@@ -135,35 +200,72 @@ public class MetricsModule extends Module {
                               JsonGenerator json,
                               SerializerProvider provider) throws IOException {
             json.writeStartObject();
-            final Snapshot snapshot = timer.getSnapshot();
-            json.writeNumberField("count", timer.getCount());
-            json.writeNumberField("max", snapshot.getMax() * durationFactor);
-            json.writeNumberField("mean", snapshot.getMean() * durationFactor);
-            json.writeNumberField("min", snapshot.getMin() * durationFactor);
-
-            json.writeNumberField("p50", snapshot.getMedian() * durationFactor);
-            json.writeNumberField("p75", snapshot.get75thPercentile() * durationFactor);
-            json.writeNumberField("p95", snapshot.get95thPercentile() * durationFactor);
-            json.writeNumberField("p98", snapshot.get98thPercentile() * durationFactor);
-            json.writeNumberField("p99", snapshot.get99thPercentile() * durationFactor);
-            json.writeNumberField("p999", snapshot.get999thPercentile() * durationFactor);
-
-            if (showSamples) {
-                final long[] values = snapshot.getValues();
-                final double[] scaledValues = new double[values.length];
-                for (int i = 0; i < values.length; i++) {
-                    scaledValues[i] = values[i] * durationFactor;
-                }
-                json.writeObjectField("values", scaledValues);
-            }
-
-            json.writeNumberField("stddev", snapshot.getStdDev() * durationFactor);
-            json.writeNumberField("m15_rate", timer.getFifteenMinuteRate() * rateFactor);
-            json.writeNumberField("m1_rate", timer.getOneMinuteRate() * rateFactor);
-            json.writeNumberField("m5_rate", timer.getFiveMinuteRate() * rateFactor);
-            json.writeNumberField("mean_rate", timer.getMeanRate() * rateFactor);
-            json.writeStringField("duration_units", durationUnit);
-            json.writeStringField("rate_units", rateUnit);
+            final Set<String> fields = fields(provider);
+            if (includes(fields, "count")) {
+                json.writeNumberField("count", timer.getCount());
+            }
+            if (includesAny(fields, SNAPSHOT_FIELDS)) {
+                final Snapshot snapshot = timer.getSnapshot();
+                if (includes(fields, "max")) {
+                    json.writeNumberField("max", snapshot.getMax() * durationFactor);
+                }
+                if (includes(fields, "mean")) {
+                    json.writeNumberField("mean", snapshot.getMean() * durationFactor);
+                }
+                if (includes(fields, "min")) {
+                    json.writeNumberField("min", snapshot.getMin() * durationFactor);
+                }
+
+                if (includes(fields, "p50")) {
+                    json.writeNumberField("p50", snapshot.getMedian() * durationFactor);
+                }
+                if (includes(fields, "p75")) {
+                    json.writeNumberField("p75", snapshot.get75thPercentile() * durationFactor);
+                }
+                if (includes(fields, "p95")) {
+                    json.writeNumberField("p95", snapshot.get95thPercentile() * durationFactor);
+                }
+                if (includes(fields, "p98")) {
+                    json.writeNumberField("p98", snapshot.get98thPercentile() * durationFactor);
+                }
+                if (includes(fields, "p99")) {
+                    json.writeNumberField("p99", snapshot.get99thPercentile() * durationFactor);
+                }
+                if (includes(fields, "p999")) {
+                    json.writeNumberField("p999", snapshot.get999thPercentile() * durationFactor);
+                }
+
+                if (showSamples && includes(fields, "values")) {
+                    final long[] values = snapshot.getValues();
+                    final double[] scaledValues = new double[values.length];
+                    for (int i = 0; i < values.length; i++) {
+                        scaledValues[i] = values[i] * durationFactor;
+                    }
+                    json.writeObjectField("values", scaledValues);
+                }
+
+                if (includes(fields, "stddev")) {
+                    json.writeNumberField("stddev", snapshot.getStdDev() * durationFactor);
+                }
+            }
+            if (includes(fields, "m15_rate")) {
+                json.writeNumberField("m15_rate", timer.getFifteenMinuteRate() * rateFactor);
+            }
+            if (includes(fields, "m1_rate")) {
+                json.writeNumberField("m1_rate", timer.getOneMinuteRate() * rateFactor);
+            }
+            if (includes(fields, "m5_rate")) {
+                json.writeNumberField("m5_rate", timer.getFiveMinuteRate() * rateFactor);
+            }
+            if (includes(fields, "mean_rate")) {
+                json.writeNumberField("mean_rate", timer.getMeanRate() * rateFactor);
+            }
+            if (includes(fields, "duration_units")) {
+                json.writeStringField("duration_units", durationUnit);
+            }
+            if (includes(fields, "rate_units")) {
+                json.writeStringField("rate_units", rateUnit);
+            }
             json.writeEndObject();
         }
     }
@@ -171,10 +273,12 @@ public class MetricsModule extends Module {
     private static class MetricRegistrySerializer extends StdSerializer<MetricRegistry> {
       
         private final MetricFilter filter;
+        private final boolean streaming;
         
-        private MetricRegistrySerializer(MetricFilter filter) {
+        private MetricRegistrySerializer(MetricFilter filter, boolean streaming) {
             super(MetricRegistry.class);
             this.filter = filter;
+            this.streaming = streaming;
         }
 
         @Override
@@ -183,29 +287,88 @@ public class MetricsModule extends Module {
                               SerializerProvider provider) throws IOException {
             json.writeStartObject();
             json.writeStringField("version", VERSION.toString());
-            json.writeObjectField("gauges", registry.getGauges(filter));
-            json.writeObjectField("counters", registry.getCounters(filter));
-            json.writeObjectField("histograms", registry.getHistograms(filter));
-            json.writeObjectField("meters", registry.getMeters(filter));
-            json.writeObjectField("timers", registry.getTimers(filter));
+            final MetricFilter metricFilter = filter(provider);
+            if (streaming) {
+                final Set<Map.Entry<String, Metric>> metrics = registry.getMetrics().entrySet();
+                writeMetrics("gauges", Gauge.class, metrics, metricFilter, json, provider);
+                writeMetrics("counters", Counter.class, metrics, metricFilter, json, provider);
+                writeMetrics("histograms", Histogram.class, metrics, metricFilter, json, provider);
+                writeMetrics("meters", Meter.class, metrics, metricFilter, json, provider);
+                writeMetrics("timers", Timer.class, metrics, metricFilter, json, provider);
+            } else {
+                provider.defaultSerializeField("gauges", registry.getGauges(metricFilter), json);
+                provider.defaultSerializeField("counters", registry.getCounters(metricFilter), json);
+                provider.defaultSerializeField("histograms", registry.getHistograms(metricFilter), json);
+                provider.defaultSerializeField("meters", registry.getMeters(metricFilter), json);
+                provider.defaultSerializeField("timers", registry.getTimers(metricFilter), json);
+            }
+            json.writeEndObject();
+        }
+
+        /**
+         * Writes each metric of the given type as it is visited, without collecting them first.
+         */
+        private void writeMetrics(String fieldName,
+                                  Class<? extends Metric> klass,
+                                  Set<Map.Entry<String, Metric>> metrics,
+                                  MetricFilter filter,
+                                  JsonGenerator json,
+                                  SerializerProvider provider) throws IOException {
+            json.writeObjectFieldStart(fieldName);
+            for (Map.Entry<String, Metric> entry : metrics) {
+                final Metric metric = entry.getValue();
+                if (klass.isInstance(metric) && filter.matches(entry.getKey(), metric)) {
+                    provider.defaultSerializeField(entry.getKey(), metric, json);
+                }
+            }
             json.writeEndObject();
         }
+
+        /**
+         * Returns the module's filter, combined with the one given for this serialization, if any.
+         */
+        private MetricFilter filter(SerializerProvider provider) {
+            final Object extra = provider.getAttribute(FILTER_KEY);
+            if (!(extra instanceof MetricFilter)) {
+                return filter;
+            }
+            final MetricFilter requested = (MetricFilter) extra;
+            return new MetricFilter() {
+                @Override
+                public boolean matches(String name, Metric metric) {
+                    return requested.matches(name, metric) && filter.matches(name, metric);
+                }
+            };
+        }
     }
 
     private final TimeUnit rateUnit;
     private final TimeUnit durationUnit;
     private final boolean showSamples;
     private final MetricFilter filter;
+    private final boolean streaming;
     
     public MetricsModule(TimeUnit rateUnit, TimeUnit durationUnit, boolean showSamples) {
         this(rateUnit, durationUnit, showSamples, MetricFilter.ALL);
     }
 
     public MetricsModule(TimeUnit rateUnit, TimeUnit durationUnit, boolean showSamples, MetricFilter filter) {
+        this(rateUnit, durationUnit, showSamples, filter, false);
+    }
+
+    /**
+     * @param streaming if {@code true}, a {@link MetricRegistry} is serialized by walking its
+     *                  metrics and writing each one as it is visited, instead of first collecting
+     *                  sorted maps of each type of metric. This keeps the memory used per
+     *                  serialization constant, but the metrics are no longer written in order.
+     */
+    public MetricsModule(TimeUnit rateUnit, TimeUnit durationUnit, boolean showSamples, MetricFilter filter,
+                         boolean streaming) {
         this.rateUnit = rateUnit;
         this.durationUnit = durationUnit;
         this.showSamples = showSamples;
         this.filter = filter;
+        this.streaming = streaming;
     }
 
     @Override
@@ -226,10 +389,36 @@ public class MetricsModule extends Module {
                 new HistogramSerializer(showSamples),
                 new MeterSerializer(rateUnit),
                 new TimerSerializer(rateUnit, durationUnit, showSamples),
-                new MetricRegistrySerializer(filter)
+                new MetricRegistrySerializer(filter, streaming)
         )));
     }
 
+    @SuppressWarnings("unchecked")
+    private static Set<String> fields(SerializerProvider provider) {
+        final Object fields = provider.getAttribute(FIELDS_KEY);
+        return fields instanceof Set ? (Set<String>) fields : null;
+    }
+
+    private static boolean includes(SerializerProvider provider, String field) {
+        return includes(fields(provider), field);
+    }
+
+    private static boolean includes(Set<String> fields, String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    private static boolean includesAny(Set<String> fields, Set<String> candidates) {
+        if (fields == null) {
+            return true;
+        }
+        for (String field : fields) {
+            if (candidates.contains(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static String calculateRateUnit(TimeUnit unit, String name) {
         final String s = unit.toString().toLowerCase(Locale.US);
         return name + '/' + s.substring(0, s.length() - 1);
@@ -4,10 +4,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.codahale.metrics.*;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class MetricsModuleTest {
@@ -208,4 +212,69 @@ public class MetricsModuleTest {
                                    "\"meters\":{}," +
                                    "\"timers\":{}}");
     }
+
+    @Test
+    public void streamsMetricRegistries() throws Exception {
+        final ObjectMapper streamingMapper = new ObjectMapper().registerModule(
+                new MetricsModule(TimeUnit.SECONDS, TimeUnit.MILLISECONDS, false, new MetricFilter() {
+                    @Override
+                    public boolean matches(String name, Metric metric) {
+                        return !name.startsWith("hidden");
+                    }
+                }, true));
+        final MetricRegistry registry = new MetricRegistry();
+        registry.counter("counter").inc();
+        registry.counter("hidden.counter").inc();
+        registry.register("gauge", new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return 1;
+            }
+        });
+
+        assertThat(streamingMapper.writeValueAsString(registry))
+                .isEqualTo("{" +
+                                   "\"version\":\"3.1.3\"," +
+                                   "\"gauges\":{\"gauge\":{\"value\":1}}," +
+                                   "\"counters\":{\"counter\":{\"count\":1}}," +
+                                   "\"histograms\":{}," +
+                                   "\"meters\":{}," +
+                                   "\"timers\":{}}");
+    }
+
+    @Test
+    public void serializesOnlyTheGivenFieldsWithoutTakingUnneededSnapshots() throws Exception {
+        final Timer timer = mock(Timer.class);
+        when(timer.getCount()).thenReturn(1L);
+        when(timer.getOneMinuteRate()).thenReturn(3.0);
+
+        assertThat(mapper.writer()
+                         .withAttribute(MetricsModule.FIELDS_KEY, new HashSet<String>(Arrays.asList("count", "m1_rate")))
+                         .writeValueAsString(timer))
+                .isEqualTo("{\"count\":1,\"m1_rate\":3.0}");
+        verify(timer, never()).getSnapshot();
+    }
+
+    @Test
+    public void appliesTheGivenFilterToMetricRegistries() throws Exception {
+        final MetricRegistry registry = new MetricRegistry();
+        registry.counter("a.counter").inc();
+        registry.counter("b.counter").inc();
+
+        assertThat(mapper.writer()
+                         .withAttribute(MetricsModule.FILTER_KEY, new MetricFilter() {
+                             @Override
+                             public boolean matches(String name, Metric metric) {
+                                 return name.startsWith("b.");
+                             }
+                         })
+                         .writeValueAsString(registry))
+                .isEqualTo("{" +
+                                   "\"version\":\"3.1.3\"," +
+                                   "\"gauges\":{}," +
+                                   "\"counters\":{\"b.counter\":{\"count\":1}}," +
+                                   "\"histograms\":{}," +
+                                   "\"meters\":{}," +
+                                   "\"timers\":{}}");
+    }
 }
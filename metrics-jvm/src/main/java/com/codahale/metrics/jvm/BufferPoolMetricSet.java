@@ -1,6 +1,8 @@
 package com.codahale.metrics.jvm;
 
+import com.codahale.metrics.Clock;
 import com.codahale.metrics.JmxAttributeGauge;
+import com.codahale.metrics.JmxAttributeSampler;
 import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricSet;
 import org.slf4j.Logger;
@@ -12,6 +14,7 @@ import javax.management.ObjectName;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
@@ -19,6 +22,9 @@ import static com.codahale.metrics.MetricRegistry.name;
  * A set of gauges for the count, usage, and capacity of the JVM's direct and mapped buffer pools.
  * <p>
  * These JMX objects are only available on Java 7 and above.
+ * <p>
+ * Given an interval, each pool's attributes are fetched in one call at most once per interval, and
+ * all of the pool's gauges read from that sample.
  */
 public class BufferPoolMetricSet implements MetricSet {
     private static final Logger LOGGER = LoggerFactory.getLogger(BufferPoolMetricSet.class);
@@ -27,26 +33,41 @@ public class BufferPoolMetricSet implements MetricSet {
     private static final String[] POOLS = { "direct", "mapped" };
 
     private final MBeanServer mBeanServer;
+    private final long intervalNanos;
 
     public BufferPoolMetricSet(MBeanServer mBeanServer) {
+        this(mBeanServer, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a new set of gauges which sample each pool's attributes at most once per interval.
+     *
+     * @param mBeanServer the {@link MBeanServer}
+     * @param interval    how long a sample is used for
+     * @param unit        the unit of {@code interval}
+     */
+    public BufferPoolMetricSet(MBeanServer mBeanServer, long interval, TimeUnit unit) {
         this.mBeanServer = mBeanServer;
+        this.intervalNanos = unit.toNanos(interval);
     }
 
     @Override
     public Map<String, Metric> getMetrics() {
         final Map<String, Metric> gauges = new HashMap<String, Metric>();
         for (String pool : POOLS) {
-            for (int i = 0; i < ATTRIBUTES.length; i++) {
-                final String attribute = ATTRIBUTES[i];
-                final String name = NAMES[i];
-                try {
-                    final ObjectName on = new ObjectName("java.nio:type=BufferPool,name=" + pool);
-                    mBeanServer.getMBeanInfo(on);
-                    gauges.put(name(pool, name),
-                               new JmxAttributeGauge(mBeanServer, on, attribute));
-                } catch (JMException ignored) {
-                    LOGGER.debug("Unable to load buffer pool MBeans, possibly running on Java 6");
+            try {
+                final ObjectName on = new ObjectName("java.nio:type=BufferPool,name=" + pool);
+                mBeanServer.getMBeanInfo(on);
+                final JmxAttributeSampler sampler = intervalNanos > 0 ?
+                        new JmxAttributeSampler(mBeanServer, on, Clock.defaultClock(),
+                                                intervalNanos, TimeUnit.NANOSECONDS, ATTRIBUTES) : null;
+                for (int i = 0; i < ATTRIBUTES.length; i++) {
+                    gauges.put(name(pool, NAMES[i]),
+                               sampler != null ? sampler.gauge(ATTRIBUTES[i]) :
+                                       new JmxAttributeGauge(mBeanServer, on, ATTRIBUTES[i]));
                 }
+            } catch (JMException ignored) {
+                LOGGER.debug("Unable to load buffer pool MBeans, possibly running on Java 6");
             }
         }
         return Collections.unmodifiableMap(gauges);
@@ -1,23 +1,28 @@
 package com.codahale.metrics.jvm;
 
 import java.lang.management.ManagementFactory;
-import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import com.codahale.metrics.CachedGauge;
 
 /**
- * A variation of ThreadStatesGaugeSet that caches the ThreadInfo[] objects for
- * a given interval.
+ * A variation of ThreadStatesGaugeSet that takes at most one pass over all threads for a given
+ * interval, which all gauges share, and looks for deadlocks on its own interval.
  */
 public class CachedThreadStatesGaugeSet extends ThreadStatesGaugeSet {
+    private static final long MIN_DEADLOCK_INTERVAL_NS = TimeUnit.MINUTES.toNanos(1);
 
-    private final CachedGauge<ThreadInfo[]> threadInfo;
+    private final CachedGauge<Sample> sample;
+    private final CachedGauge<Set<String>> deadlockedThreads;
 
     /**
      * Creates a new set of gauges using the given MXBean and detector.
-     * Caches the information for the given interval and time unit.
+     * Caches the thread states for the given interval and time unit, and the deadlocked threads,
+     * which are more expensive to look for, for at least a minute.
      *
      * @param threadMXBean     a thread MXBean
      * @param deadlockDetector a deadlock detector
@@ -26,18 +31,62 @@ public class CachedThreadStatesGaugeSet extends ThreadStatesGaugeSet {
      */
     public CachedThreadStatesGaugeSet(final ThreadMXBean threadMXBean, ThreadDeadlockDetector deadlockDetector,
                                       long interval, TimeUnit unit) {
-        super(threadMXBean, deadlockDetector);
-        threadInfo = new CachedGauge<ThreadInfo[]>(interval, unit) {
+        this(threadMXBean, deadlockDetector, Collections.<String>emptyList(), 0, interval, unit,
+             Math.max(unit.toNanos(interval), MIN_DEADLOCK_INTERVAL_NS), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a new set of gauges using the given MXBean and detector, which also break the thread
+     * states down by thread pool and report the threads which use the most CPU time (see
+     * {@link ThreadStatesGaugeSet#ThreadStatesGaugeSet(ThreadMXBean, ThreadDeadlockDetector, Collection, int)}).
+     * Caches the thread states for the given interval, and the deadlocked threads for the given
+     * deadlock interval, which is usually longer.
+     *
+     * @param threadMXBean     a thread MXBean
+     * @param deadlockDetector a deadlock detector
+     * @param poolPrefixes     the thread name prefixes of the thread pools to break down
+     * @param topCpuThreads    the number of threads to report CPU usage for, or {@code 0}
+     * @param interval         cache interval
+     * @param unit             cache interval time unit
+     * @param deadlockInterval cache interval for deadlocked threads
+     * @param deadlockUnit     cache interval time unit for deadlocked threads
+     */
+    public CachedThreadStatesGaugeSet(ThreadMXBean threadMXBean, ThreadDeadlockDetector deadlockDetector,
+                                      Collection<String> poolPrefixes, int topCpuThreads,
+                                      long interval, TimeUnit unit,
+                                      long deadlockInterval, TimeUnit deadlockUnit) {
+        super(threadMXBean, deadlockDetector, poolPrefixes, topCpuThreads);
+        sample = new CachedGauge<Sample>(interval, unit) {
             @Override
-           protected ThreadInfo[] loadValue() {
-                return CachedThreadStatesGaugeSet.super.getThreadInfo();
+            protected Sample loadValue() {
+                return takeSample();
+            }
+
+            @Override
+            public Sample getValue() {
+                final Sample sample = super.getValue();
+                // another thread may still be taking the first sample
+                return sample != null ? sample : loadValue();
+            }
+        };
+        deadlockedThreads = new CachedGauge<Set<String>>(deadlockInterval, deadlockUnit) {
+            @Override
+            protected Set<String> loadValue() {
+                return CachedThreadStatesGaugeSet.super.getDeadlockedThreads();
+            }
+
+            @Override
+            public Set<String> getValue() {
+                final Set<String> threads = super.getValue();
+                return threads != null ? threads : loadValue();
             }
         };
     }
 
     /**
      * Creates a new set of gauges using the default MXBeans.
-     * Caches the information for the given interval and time unit.
+     * Caches the thread states for the given interval and time unit, and the deadlocked threads
+     * for at least a minute.
      * @param interval         cache interval
      * @param unit             cache interval time unit
      */
@@ -46,8 +95,13 @@ public class CachedThreadStatesGaugeSet extends ThreadStatesGaugeSet {
     }
 
     @Override
-    ThreadInfo[] getThreadInfo() {
-        return threadInfo.getValue();
+    Sample getSample() {
+        return sample.getValue();
+    }
+
+    @Override
+    Set<String> getDeadlockedThreads() {
+        return deadlockedThreads.getValue();
     }
 
 }
@@ -0,0 +1,275 @@
+package com.codahale.metrics.jvm;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricSet;
+import com.codahale.metrics.Timer;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A set of metrics for individual garbage collections, fed by the notifications garbage collectors
+ * send after each collection:
+ * <ul>
+ * <li>{@code <collector>.pauses}: a timer of the collector's collections, as long as the collector
+ * reports them; for concurrent collectors this includes their concurrent phases</li>
+ * <li>{@code allocated}: a meter of the bytes allocated in the young generation between
+ * collections</li>
+ * <li>{@code promoted}: a meter of the bytes promoted to the old generation by collections</li>
+ * <li>{@code pools.<pool>.after-gc}: gauges of each memory pool's usage after the last collection
+ * of it</li>
+ * </ul>
+ * See {@link #recordCausesIn(MetricRegistry, String)} for timers per collector and cause.
+ * <p>
+ * On JVMs which don't send these notifications, or for collectors which can't, the set falls back
+ * to the {@code <collector>.count} and {@code <collector>.time} gauges of
+ * {@link GarbageCollectorMetricSet}. Call {@link #stop()} to stop listening for notifications.
+ */
+public class GcNotificationMetricSet implements MetricSet {
+    private static final String GC_NOTIFICATION = "com.sun.management.gc.notification";
+    private static final boolean NOTIFICATIONS_SUPPORTED = isNotificationSupported();
+    private static final Pattern WHITESPACE = Pattern.compile("[\\s]+");
+
+    private final List<GarbageCollectorMXBean> garbageCollectors;
+    private final List<MemoryPoolMXBean> memoryPools;
+    private final Map<String, Timer> pauses;
+    private final ConcurrentMap<String, Timer> causes;
+    private final Meter allocated;
+    private final Meter promoted;
+    private final NotificationListener listener;
+    private final List<NotificationEmitter> emitters;
+    private volatile MetricRegistry causeRegistry;
+    private volatile String causePrefix;
+
+    // guarded by this
+    private long youngUsedAfterLastGc;
+
+    /**
+     * Creates a new set of metrics for all discoverable garbage collectors and memory pools.
+     */
+    public GcNotificationMetricSet() {
+        this(ManagementFactory.getGarbageCollectorMXBeans(), ManagementFactory.getMemoryPoolMXBeans());
+    }
+
+    /**
+     * Creates a new set of metrics for the given garbage collectors and memory pools, and starts
+     * listening for notifications from the collectors.
+     *
+     * @param garbageCollectors the garbage collectors
+     * @param memoryPools       the memory pools
+     */
+    public GcNotificationMetricSet(Collection<GarbageCollectorMXBean> garbageCollectors,
+                                   Collection<MemoryPoolMXBean> memoryPools) {
+        this.garbageCollectors = new ArrayList<GarbageCollectorMXBean>(garbageCollectors);
+        this.memoryPools = new ArrayList<MemoryPoolMXBean>(memoryPools);
+        this.pauses = new HashMap<String, Timer>();
+        this.causes = new ConcurrentHashMap<String, Timer>();
+        this.allocated = new Meter();
+        this.promoted = new Meter();
+        this.emitters = new ArrayList<NotificationEmitter>();
+        this.listener = new NotificationListener() {
+            @Override
+            public void handleNotification(Notification notification, Object handback) {
+                if (GC_NOTIFICATION.equals(notification.getType())) {
+                    onCollection((CompositeData) notification.getUserData());
+                }
+            }
+        };
+
+        for (GarbageCollectorMXBean gc : this.garbageCollectors) {
+            if (NOTIFICATIONS_SUPPORTED && gc instanceof NotificationEmitter) {
+                pauses.put(gc.getName(), new Timer());
+                final NotificationEmitter emitter = (NotificationEmitter) gc;
+                emitter.addNotificationListener(listener, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    /**
+     * Also record each collection in a timer per collector and cause, named
+     * {@code <prefix>.<collector>.causes.<cause>}, which is registered in the given registry the
+     * first time the collector reports the cause.
+     *
+     * @param registry the registry to register the timers in
+     * @param prefix   the prefix of the timers' names
+     * @return {@code this}
+     */
+    public GcNotificationMetricSet recordCausesIn(MetricRegistry registry, String prefix) {
+        this.causePrefix = prefix;
+        this.causeRegistry = registry;
+        return this;
+    }
+
+    /**
+     * Stops listening for notifications from the garbage collectors.
+     */
+    public void stop() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException ignored) {
+                // already removed
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        final Map<String, Metric> metrics = new HashMap<String, Metric>();
+        for (final GarbageCollectorMXBean gc : garbageCollectors) {
+            final String name = sanitize(gc.getName());
+            final Timer timer = pauses.get(gc.getName());
+            if (timer != null) {
+                metrics.put(name(name, "pauses"), timer);
+            } else {
+                metrics.put(name(name, "count"), new Gauge<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return gc.getCollectionCount();
+                    }
+                });
+                metrics.put(name(name, "time"), new Gauge<Long>() {
+                    @Override
+                    public Long getValue() {
+                        return gc.getCollectionTime();
+                    }
+                });
+            }
+        }
+
+        if (!pauses.isEmpty()) {
+            metrics.put("allocated", allocated);
+            metrics.put("promoted", promoted);
+        }
+
+        for (final MemoryPoolMXBean pool : memoryPools) {
+            if (pool.getCollectionUsage() == null) {
+                // never collected
+                continue;
+            }
+            metrics.put(name("pools", sanitize(pool.getName()), "after-gc"), new Gauge<Long>() {
+                @Override
+                public Long getValue() {
+                    final MemoryUsage usage = pool.getCollectionUsage();
+                    return usage == null ? 0L : usage.getUsed();
+                }
+            });
+        }
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    private void onCollection(CompositeData notification) {
+        final String gcName = (String) notification.get("gcName");
+        final String cause = (String) notification.get("gcCause");
+        final CompositeData info = (CompositeData) notification.get("gcInfo");
+        final long duration = (Long) info.get("duration");
+
+        final Timer timer = pauses.get(gcName);
+        if (timer != null) {
+            timer.update(duration, TimeUnit.MILLISECONDS);
+        }
+        final MetricRegistry registry = causeRegistry;
+        if (registry != null && cause != null) {
+            causeTimer(registry, gcName, cause).update(duration, TimeUnit.MILLISECONDS);
+        }
+
+        final Map<String, Long> before = usedByPool((TabularData) info.get("memoryUsageBeforeGc"));
+        final Map<String, Long> after = usedByPool((TabularData) info.get("memoryUsageAfterGc"));
+        long youngBefore = 0;
+        long youngAfter = 0;
+        long oldBefore = 0;
+        long oldAfter = 0;
+        for (Map.Entry<String, Long> entry : before.entrySet()) {
+            final Long used = after.get(entry.getKey());
+            if (used == null) {
+                continue;
+            }
+            if (isYoung(entry.getKey())) {
+                youngBefore += entry.getValue();
+                youngAfter += used;
+            } else if (isOld(entry.getKey())) {
+                oldBefore += entry.getValue();
+                oldAfter += used;
+            }
+        }
+
+        synchronized (this) {
+            if (youngBefore > youngUsedAfterLastGc) {
+                allocated.mark(youngBefore - youngUsedAfterLastGc);
+            }
+            this.youngUsedAfterLastGc = youngAfter;
+        }
+        if (youngBefore > youngAfter && oldAfter > oldBefore) {
+            // a collection of the young generation which moved objects to the old one
+            promoted.mark(oldAfter - oldBefore);
+        }
+    }
+
+    private Timer causeTimer(MetricRegistry registry, String gcName, String cause) {
+        final String key = gcName + '\u0000' + cause;
+        Timer timer = causes.get(key);
+        if (timer == null) {
+            timer = registry.timer(name(causePrefix, sanitize(gcName), "causes", sanitize(cause)));
+            causes.putIfAbsent(key, timer);
+        }
+        return timer;
+    }
+
+    private static Map<String, Long> usedByPool(TabularData usages) {
+        final Map<String, Long> used = new HashMap<String, Long>();
+        if (usages == null) {
+            return used;
+        }
+        for (Object row : usages.values()) {
+            final CompositeData entry = (CompositeData) row;
+            final MemoryUsage usage = MemoryUsage.from((CompositeData) entry.get("value"));
+            used.put((String) entry.get("key"), usage.getUsed());
+        }
+        return used;
+    }
+
+    private static boolean isYoung(String pool) {
+        return pool.contains("Eden") || pool.equals("Nursery");
+    }
+
+    private static boolean isOld(String pool) {
+        return pool.contains("Old Gen") || pool.contains("Tenured");
+    }
+
+    private static String sanitize(String name) {
+        return WHITESPACE.matcher(name).replaceAll("-");
+    }
+
+    private static boolean isNotificationSupported() {
+        try {
+            Class.forName("com.sun.management.GarbageCollectionNotificationInfo");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
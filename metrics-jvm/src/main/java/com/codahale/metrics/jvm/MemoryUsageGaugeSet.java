@@ -1,5 +1,6 @@
 package com.codahale.metrics.jvm;
 
+import com.codahale.metrics.CachedGauge;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricSet;
@@ -10,6 +11,7 @@ import java.lang.management.MemoryMXBean;
 import java.lang.management.MemoryPoolMXBean;
 import java.lang.management.MemoryUsage;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import static com.codahale.metrics.MetricRegistry.name;
@@ -17,12 +19,17 @@ import static com.codahale.metrics.MetricRegistry.name;
 /**
  * A set of gauges for JVM memory usage, including stats on heap vs. non-heap memory, plus
  * GC-specific memory pools.
+ * <p>
+ * Given an interval, each memory usage is fetched at most once per interval, and all gauges which
+ * read from it share that sample.
  */
 public class MemoryUsageGaugeSet implements MetricSet {
     private static final Pattern WHITESPACE = Pattern.compile("[\\s]+");
 
     private final MemoryMXBean mxBean;
     private final List<MemoryPoolMXBean> memoryPools;
+    private final long interval;
+    private final TimeUnit unit;
 
     public MemoryUsageGaugeSet() {
         this(ManagementFactory.getMemoryMXBean(),
@@ -31,43 +38,72 @@ public class MemoryUsageGaugeSet implements MetricSet {
 
     public MemoryUsageGaugeSet(MemoryMXBean mxBean,
                                Collection<MemoryPoolMXBean> memoryPools) {
+        this(mxBean, memoryPools, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a new set of gauges which fetch each memory usage at most once per interval.
+     *
+     * @param mxBean      a memory MXBean
+     * @param memoryPools the memory pools
+     * @param interval    how long a memory usage is used for
+     * @param unit        the unit of {@code interval}
+     */
+    public MemoryUsageGaugeSet(MemoryMXBean mxBean,
+                               Collection<MemoryPoolMXBean> memoryPools,
+                               long interval,
+                               TimeUnit unit) {
         this.mxBean = mxBean;
         this.memoryPools = new ArrayList<MemoryPoolMXBean>(memoryPools);
+        this.interval = interval;
+        this.unit = unit;
     }
 
     @Override
     public Map<String, Metric> getMetrics() {
         final Map<String, Metric> gauges = new HashMap<String, Metric>();
+        final Gauge<MemoryUsage> heapUsage = sampled(new Gauge<MemoryUsage>() {
+            @Override
+            public MemoryUsage getValue() {
+                return mxBean.getHeapMemoryUsage();
+            }
+        });
+        final Gauge<MemoryUsage> nonHeapUsage = sampled(new Gauge<MemoryUsage>() {
+            @Override
+            public MemoryUsage getValue() {
+                return mxBean.getNonHeapMemoryUsage();
+            }
+        });
 
         gauges.put("total.init", new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return mxBean.getHeapMemoryUsage().getInit() +
-                        mxBean.getNonHeapMemoryUsage().getInit();
+                return heapUsage.getValue().getInit() +
+                        nonHeapUsage.getValue().getInit();
             }
         });
 
         gauges.put("total.used", new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return mxBean.getHeapMemoryUsage().getUsed() +
-                        mxBean.getNonHeapMemoryUsage().getUsed();
+                return heapUsage.getValue().getUsed() +
+                        nonHeapUsage.getValue().getUsed();
             }
         });
 
         gauges.put("total.max", new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return mxBean.getHeapMemoryUsage().getMax() +
-                        mxBean.getNonHeapMemoryUsage().getMax();
+                return heapUsage.getValue().getMax() +
+                        nonHeapUsage.getValue().getMax();
             }
         });
 
         gauges.put("total.committed", new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return mxBean.getHeapMemoryUsage().getCommitted() +
-                        mxBean.getNonHeapMemoryUsage().getCommitted();
+                return heapUsage.getValue().getCommitted() +
+                        nonHeapUsage.getValue().getCommitted();
             }
         });
 
@@ -75,35 +111,35 @@ public class MemoryUsageGaugeSet implements MetricSet {
         gauges.put("heap.init", new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return mxBean.getHeapMemoryUsage().getInit();
+                return heapUsage.getValue().getInit();
             }
         });
 
         gauges.put("heap.used", new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return mxBean.getHeapMemoryUsage().getUsed();
+                return heapUsage.getValue().getUsed();
             }
         });
 
         gauges.put("heap.max", new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return mxBean.getHeapMemoryUsage().getMax();
+                return heapUsage.getValue().getMax();
             }
         });
 
         gauges.put("heap.committed", new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return mxBean.getHeapMemoryUsage().getCommitted();
+                return heapUsage.getValue().getCommitted();
             }
         });
 
         gauges.put("heap.usage", new RatioGauge() {
             @Override
             protected Ratio getRatio() {
-                final MemoryUsage usage = mxBean.getHeapMemoryUsage();
+                final MemoryUsage usage = heapUsage.getValue();
                 return Ratio.of(usage.getUsed(), usage.getMax());
             }
         });
@@ -111,47 +147,53 @@ public class MemoryUsageGaugeSet implements MetricSet {
         gauges.put("non-heap.init", new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return mxBean.getNonHeapMemoryUsage().getInit();
+                return nonHeapUsage.getValue().getInit();
             }
         });
 
         gauges.put("non-heap.used", new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return mxBean.getNonHeapMemoryUsage().getUsed();
+                return nonHeapUsage.getValue().getUsed();
             }
         });
 
         gauges.put("non-heap.max", new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return mxBean.getNonHeapMemoryUsage().getMax();
+                return nonHeapUsage.getValue().getMax();
             }
         });
 
         gauges.put("non-heap.committed", new Gauge<Long>() {
             @Override
             public Long getValue() {
-                return mxBean.getNonHeapMemoryUsage().getCommitted();
+                return nonHeapUsage.getValue().getCommitted();
             }
         });
 
         gauges.put("non-heap.usage", new RatioGauge() {
             @Override
             protected Ratio getRatio() {
-                final MemoryUsage usage = mxBean.getNonHeapMemoryUsage();
+                final MemoryUsage usage = nonHeapUsage.getValue();
                 return Ratio.of(usage.getUsed(), usage.getMax());
             }
         });
 
         for (final MemoryPoolMXBean pool : memoryPools) {
             final String poolName = name("pools", WHITESPACE.matcher(pool.getName()).replaceAll("-"));
+            final Gauge<MemoryUsage> poolUsage = sampled(new Gauge<MemoryUsage>() {
+                @Override
+                public MemoryUsage getValue() {
+                    return pool.getUsage();
+                }
+            });
 
             gauges.put(name(poolName, "usage"),
                     new RatioGauge() {
                            @Override
                            protected Ratio getRatio() {
-                               MemoryUsage usage = pool.getUsage();
+                               MemoryUsage usage = poolUsage.getValue();
                                return Ratio.of(usage.getUsed(),
                                        usage.getMax() == -1 ? usage.getCommitted() : usage.getMax());
                            }
@@ -160,21 +202,21 @@ public class MemoryUsageGaugeSet implements MetricSet {
             gauges.put(name(poolName, "max"),new Gauge<Long>() {
                 @Override
                 public Long getValue() {
-                    return pool.getUsage().getMax();
+                    return poolUsage.getValue().getMax();
                 }
             });
 
             gauges.put(name(poolName, "used"),new Gauge<Long>() {
                 @Override
                 public Long getValue() {
-                    return pool.getUsage().getUsed();
+                    return poolUsage.getValue().getUsed();
                 }
             });
 
             gauges.put(name(poolName, "committed"),new Gauge<Long>() {
                 @Override
                 public Long getValue() {
-                    return pool.getUsage().getCommitted();
+                    return poolUsage.getValue().getCommitted();
                 }
             });
 
@@ -191,11 +233,30 @@ public class MemoryUsageGaugeSet implements MetricSet {
             gauges.put(name(poolName, "init"),new Gauge<Long>() {
                 @Override
                 public Long getValue() {
-                    return pool.getUsage().getInit();
+                    return poolUsage.getValue().getInit();
                 }
             });
         }
 
         return Collections.unmodifiableMap(gauges);
     }
+
+    private Gauge<MemoryUsage> sampled(final Gauge<MemoryUsage> usage) {
+        if (interval <= 0) {
+            return usage;
+        }
+        return new CachedGauge<MemoryUsage>(interval, unit) {
+            @Override
+            protected MemoryUsage loadValue() {
+                return usage.getValue();
+            }
+
+            @Override
+            public MemoryUsage getValue() {
+                final MemoryUsage sample = super.getValue();
+                // another thread may still be loading the first sample
+                return sample != null ? sample : loadValue();
+            }
+        };
+    }
 }
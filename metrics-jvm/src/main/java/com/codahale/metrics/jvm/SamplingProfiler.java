@@ -0,0 +1,319 @@
+package com.codahale.metrics.jvm;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * A sampling CPU profiler which periodically takes the stack traces of the JVM's threads on a
+ * background thread and aggregates them into a {@link StackProfile}.
+ * <p>
+ * Each sample only fetches stacks up to a maximum depth, and only the stacks of threads in the
+ * selected states whose names match a pattern are kept. Several profiles may run at once; they
+ * share the profiler's background thread.
+ */
+public class SamplingProfiler {
+    /**
+     * Returns a new {@link Builder} for {@link SamplingProfiler}.
+     *
+     * @return a {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A builder for {@link SamplingProfiler} instances. Defaults to sampling the platform's
+     * threads 100 times a second, keeping the stacks of all {@link Thread.State#RUNNABLE} threads up
+     * to 256 frames deep, and at most 100,000 trie nodes per profile.
+     */
+    public static class Builder {
+        private ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private ScheduledExecutorService executor;
+        private int frequency = 100;
+        private Set<Thread.State> states = EnumSet.of(Thread.State.RUNNABLE);
+        private Pattern threadNames;
+        private int maxDepth = 256;
+        private int maxNodes = 100000;
+
+        private Builder() {
+        }
+
+        /**
+         * Sample the threads of the given {@link ThreadMXBean}.
+         *
+         * @param threads a {@link ThreadMXBean}
+         * @return {@code this}
+         */
+        public Builder withThreads(ThreadMXBean threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Sample on the given executor instead of a thread of the profiler's own.
+         *
+         * @param executor the executor
+         * @return {@code this}
+         */
+        public Builder sampleOn(ScheduledExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Sample the given number of times per second, by default.
+         *
+         * @param frequency the number of samples per second
+         * @return {@code this}
+         */
+        public Builder frequency(int frequency) {
+            this.frequency = frequency;
+            return this;
+        }
+
+        /**
+         * Only keep the stacks of threads in the given states, by default.
+         *
+         * @param states the thread states
+         * @return {@code this}
+         */
+        public Builder states(Set<Thread.State> states) {
+            this.states = EnumSet.copyOf(states);
+            return this;
+        }
+
+        /**
+         * Only keep the stacks of threads whose names match the given pattern, by default.
+         *
+         * @param threadNames a pattern for thread names, or {@code null} for all threads
+         * @return {@code this}
+         */
+        public Builder threadNames(Pattern threadNames) {
+            this.threadNames = threadNames;
+            return this;
+        }
+
+        /**
+         * Only fetch the given number of innermost frames of each stack.
+         *
+         * @param maxDepth the maximum stack depth
+         * @return {@code this}
+         */
+        public Builder maxDepth(int maxDepth) {
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * Keep at most the given number of nodes in each profile's trie.
+         *
+         * @param maxNodes the maximum number of nodes
+         * @return {@code this}
+         */
+        public Builder maxNodes(int maxNodes) {
+            this.maxNodes = maxNodes;
+            return this;
+        }
+
+        /**
+         * Builds a {@link SamplingProfiler} with the given properties.
+         *
+         * @return a {@link SamplingProfiler}
+         */
+        public SamplingProfiler build() {
+            final boolean ownExecutor = executor == null;
+            final ScheduledExecutorService sampler = ownExecutor ?
+                    Executors.newSingleThreadScheduledExecutor(new ProfilerThreadFactory()) : executor;
+            return new SamplingProfiler(this, sampler, ownExecutor);
+        }
+    }
+
+    /**
+     * A running or completed profile.
+     */
+    public static class Profile {
+        private final StackProfile stacks;
+        private final long periodMicros;
+        private final long samples;
+        private final CountDownLatch done;
+        private volatile ScheduledFuture<?> future;
+
+        private Profile(StackProfile stacks, long periodMicros, long samples) {
+            this.stacks = stacks;
+            this.periodMicros = periodMicros;
+            this.samples = samples;
+            this.done = new CountDownLatch(1);
+        }
+
+        /**
+         * Returns whether the profile is complete.
+         *
+         * @return {@code true} once all samples have been taken or the profile was cancelled
+         */
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        /**
+         * Waits for the profile to complete.
+         *
+         * @param timeout the maximum time to wait
+         * @param unit    the unit of {@code timeout}
+         * @return {@code true} if the profile is complete
+         * @throws InterruptedException if the current thread was interrupted while waiting
+         */
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            return done.await(timeout, unit);
+        }
+
+        /**
+         * Stops taking samples.
+         */
+        public void cancel() {
+            final ScheduledFuture<?> current = future;
+            if (current != null) {
+                current.cancel(false);
+            }
+            done.countDown();
+        }
+
+        /**
+         * Returns the sampled stacks, which are still changing while the profile runs.
+         *
+         * @return the sampled stacks
+         */
+        public StackProfile getStacks() {
+            return stacks;
+        }
+
+        /**
+         * Returns the time between samples.
+         *
+         * @return the sampling period, in microseconds
+         */
+        public long getPeriodMicros() {
+            return periodMicros;
+        }
+    }
+
+    private final ThreadMXBean threads;
+    private final ScheduledExecutorService executor;
+    private final boolean ownExecutor;
+    private final int frequency;
+    private final Set<Thread.State> states;
+    private final Pattern threadNames;
+    private final int maxDepth;
+    private final int maxNodes;
+
+    private SamplingProfiler(Builder builder, ScheduledExecutorService executor, boolean ownExecutor) {
+        this.threads = builder.threads;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.frequency = builder.frequency;
+        this.states = builder.states;
+        this.threadNames = builder.threadNames;
+        this.maxDepth = builder.maxDepth;
+        this.maxNodes = builder.maxNodes;
+    }
+
+    /**
+     * Starts a profile with the default frequency and filters.
+     *
+     * @param duration how long to profile for
+     * @param unit     the unit of {@code duration}
+     * @return the running profile
+     */
+    public Profile start(long duration, TimeUnit unit) {
+        return start(duration, unit, frequency, states, threadNames);
+    }
+
+    /**
+     * Starts a profile.
+     *
+     * @param duration    how long to profile for
+     * @param unit        the unit of {@code duration}
+     * @param frequency   the number of samples per second
+     * @param states      the states of the threads whose stacks to keep
+     * @param threadNames a pattern for the names of the threads whose stacks to keep, or
+     *                    {@code null} for all threads
+     * @return the running profile
+     */
+    public Profile start(long duration, TimeUnit unit, int frequency, Set<Thread.State> states,
+                         Pattern threadNames) {
+        if (frequency <= 0 || frequency > 1000) {
+            throw new IllegalArgumentException("frequency must be between 1 and 1000");
+        }
+        final long periodMicros = TimeUnit.SECONDS.toMicros(1) / frequency;
+        final long samples = Math.max(1, unit.toMicros(duration) / periodMicros);
+        final Profile profile = new Profile(new StackProfile(maxNodes), periodMicros, samples);
+        final Sampler sampler = new Sampler(profile, EnumSet.copyOf(states), threadNames);
+        profile.future = executor.scheduleAtFixedRate(sampler, 0, periodMicros, TimeUnit.MICROSECONDS);
+        return profile;
+    }
+
+    /**
+     * Stops the profiler's own background thread. Running profiles stop taking samples.
+     */
+    public void stop() {
+        if (ownExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private class Sampler implements Runnable {
+        private final Profile profile;
+        private final Set<Thread.State> states;
+        private final Pattern threadNames;
+        private long taken;
+
+        private Sampler(Profile profile, Set<Thread.State> states, Pattern threadNames) {
+            this.profile = profile;
+            this.states = states;
+            this.threadNames = threadNames;
+        }
+
+        @Override
+        public void run() {
+            if (profile.isDone()) {
+                profile.cancel();
+                return;
+            }
+            final long self = Thread.currentThread().getId();
+            final ThreadInfo[] infos = threads.getThreadInfo(threads.getAllThreadIds(), maxDepth);
+            for (ThreadInfo info : infos) {
+                if (info == null || info.getThreadId() == self || !states.contains(info.getThreadState())) {
+                    continue;
+                }
+                if (threadNames != null && !threadNames.matcher(info.getThreadName()).matches()) {
+                    continue;
+                }
+                final StackTraceElement[] stackTrace = info.getStackTrace();
+                if (stackTrace.length > 0) {
+                    profile.stacks.add(stackTrace);
+                }
+            }
+            if (++taken >= profile.samples) {
+                profile.cancel();
+            }
+        }
+    }
+
+    private static class ProfilerThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, "metrics-profiler");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.codahale.metrics.jvm;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sampled stack traces, aggregated into a trie of interned frames so that memory use is bounded by
+ * the number of distinct call paths rather than the number of samples.
+ * <p>
+ * Once the trie has its maximum number of nodes, samples which would need new nodes are counted at
+ * the deepest existing node on their path instead, and {@link #getTruncatedSamples()} counts them.
+ * No new frames are interned then either.
+ */
+public class StackProfile {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final int maxNodes;
+    private final Map<StackTraceElement, Integer> frameIds;
+    private final List<StackTraceElement> frames;
+    private final Node root;
+    private int nodes;
+    private long samples;
+    private long truncatedSamples;
+
+    /**
+     * Creates a new, empty profile.
+     *
+     * @param maxNodes the maximum number of nodes in the trie
+     */
+    public StackProfile(int maxNodes) {
+        this.maxNodes = maxNodes;
+        this.frameIds = new HashMap<StackTraceElement, Integer>();
+        this.frames = new ArrayList<StackTraceElement>();
+        this.root = new Node(-1);
+    }
+
+    /**
+     * Adds a sampled stack trace.
+     *
+     * @param stackTrace the stack trace, innermost frame first
+     */
+    public synchronized void add(StackTraceElement[] stackTrace) {
+        Node node = root;
+        boolean truncated = false;
+        for (int i = stackTrace.length - 1; i >= 0; i--) {
+            final boolean full = nodes >= maxNodes;
+            final int frame = full ? lookup(stackTrace[i]) : intern(stackTrace[i]);
+            Node child = frame < 0 ? null : node.child(frame);
+            if (child == null) {
+                if (full) {
+                    truncated = true;
+                    break;
+                }
+                child = node.addChild(frame);
+                nodes++;
+            }
+            node = child;
+        }
+        node.count++;
+        samples++;
+        if (truncated) {
+            truncatedSamples++;
+        }
+    }
+
+    /**
+     * Returns the number of samples.
+     *
+     * @return the number of samples
+     */
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    /**
+     * Returns the number of samples which were counted at a shallower frame because the trie was
+     * full.
+     *
+     * @return the number of truncated samples
+     */
+    public synchronized long getTruncatedSamples() {
+        return truncatedSamples;
+    }
+
+    /**
+     * Writes the profile in the collapsed stack format which flame graph tools read: one line per
+     * distinct stack, with its frames from the outermost in, separated by {@code ;}, followed by a
+     * space and the number of samples. Samples which were truncated before their outermost frame
+     * are counted on a {@code [truncated]} line.
+     *
+     * @param out the stream to write to
+     * @throws IOException if the profile couldn't be written
+     */
+    public synchronized void writeCollapsed(OutputStream out) throws IOException {
+        final Writer writer = new OutputStreamWriter(out, UTF_8);
+        writeCollapsed(writer, root, new StringBuilder());
+        writer.flush();
+    }
+
+    private void writeCollapsed(Writer writer, Node node, StringBuilder path) throws IOException {
+        final int length = path.length();
+        if (node != root) {
+            if (length > 0) {
+                path.append(';');
+            }
+            final StackTraceElement frame = frames.get(node.frame);
+            path.append(frame.getClassName()).append('.').append(frame.getMethodName());
+            if (node.count > 0) {
+                writer.append(path).append(' ').append(Long.toString(node.count)).append('\n');
+            }
+        } else if (node.count > 0) {
+            writer.append("[truncated] ").append(Long.toString(node.count)).append('\n');
+        }
+        for (Node child : node.children()) {
+            writeCollapsed(writer, child, path);
+        }
+        path.setLength(length);
+    }
+
+    /**
+     * Writes the profile in the legacy binary CPU profile format of
+     * <a href="https://github.com/gperftools/gperftools">gperftools</a>, preceded by a symbol table
+     * which maps each frame's made-up address to its name, as {@code pprof} reads from
+     * {@code pprof/raw} responses.
+     *
+     * @param out          the stream to write to
+     * @param periodMicros the sampling period, in microseconds
+     * @throws IOException if the profile couldn't be written
+     */
+    public synchronized void writePprof(OutputStream out, long periodMicros) throws IOException {
+        final Writer writer = new OutputStreamWriter(out, UTF_8);
+        writer.write("--- symbol\nbinary=java\n");
+        for (int i = 0; i < frames.size(); i++) {
+            writer.write(String.format("0x%016x %s%n", address(i), frames.get(i)));
+        }
+        writer.write("---\n--- profile\n");
+        writer.flush();
+
+        // header: header count, header words, format version, sampling period, padding
+        writeWord(out, 0);
+        writeWord(out, 3);
+        writeWord(out, 0);
+        writeWord(out, periodMicros);
+        writeWord(out, 0);
+        writePprofSamples(out, root, new int[0]);
+        // trailer
+        writeWord(out, 0);
+        writeWord(out, 1);
+        writeWord(out, 0);
+        out.flush();
+    }
+
+    private void writePprofSamples(OutputStream out, Node node, int[] path) throws IOException {
+        if (node.count > 0 && path.length > 0) {
+            writeWord(out, node.count);
+            writeWord(out, path.length);
+            // innermost frame first
+            for (int i = path.length - 1; i >= 0; i--) {
+                writeWord(out, address(path[i]));
+            }
+        }
+        for (Node child : node.children()) {
+            final int[] childPath = new int[path.length + 1];
+            System.arraycopy(path, 0, childPath, 0, path.length);
+            childPath[path.length] = child.frame;
+            writePprofSamples(out, child, childPath);
+        }
+    }
+
+    private static long address(int frame) {
+        // pprof doesn't like address 0
+        return frame + 1;
+    }
+
+    private static void writeWord(OutputStream out, long word) throws IOException {
+        for (int i = 0; i < 8; i++) {
+            out.write((int) (word >>> (8 * i)));
+        }
+    }
+
+    private int lookup(StackTraceElement frame) {
+        final Integer id = frameIds.get(frame);
+        return id == null ? -1 : id;
+    }
+
+    private int intern(StackTraceElement frame) {
+        final Integer id = frameIds.get(frame);
+        if (id != null) {
+            return id;
+        }
+        final int created = frames.size();
+        frames.add(frame);
+        frameIds.put(frame, created);
+        return created;
+    }
+
+    private static class Node {
+        private final int frame;
+        private long count;
+        private Map<Integer, Node> children;
+
+        private Node(int frame) {
+            this.frame = frame;
+        }
+
+        private Node child(int frame) {
+            return children == null ? null : children.get(frame);
+        }
+
+        private Node addChild(int frame) {
+            if (children == null) {
+                // most nodes have a single child
+                children = new HashMap<Integer, Node>(2);
+            }
+            final Node child = new Node(frame);
+            children.put(frame, child);
+            return child;
+        }
+
+        private Iterable<Node> children() {
+            return children == null ? Collections.<Node>emptyList() : children.values();
+        }
+    }
+}
@@ -8,6 +8,13 @@ import java.lang.management.MonitorInfo;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * A convenience class for getting a thread dump.
@@ -21,6 +28,102 @@ public class ThreadDump {
         this.threadMXBean = threadMXBean;
     }
 
+    /**
+     * Returns a new set of {@link Options} for {@link #dump(OutputStream, Options)}, which dumps all
+     * threads with their full stacks.
+     *
+     * @return a new set of {@link Options}
+     */
+    public static Options options() {
+        return new Options();
+    }
+
+    /**
+     * Options for a streaming thread dump.
+     */
+    public static class Options {
+        private int chunkSize = 256;
+        private Pattern threadNames;
+        private Set<Thread.State> states = EnumSet.allOf(Thread.State.class);
+        private int maxDepth = Integer.MAX_VALUE;
+        private boolean collapse;
+
+        private Options() {
+        }
+
+        /**
+         * Fetch the information of at most the given number of threads at a time.
+         *
+         * @param chunkSize the number of threads per chunk
+         * @return {@code this}
+         */
+        public Options chunkSize(int chunkSize) {
+            if (chunkSize <= 0) {
+                throw new IllegalArgumentException("chunkSize must be positive");
+            }
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Only dump the threads whose names match the given pattern.
+         *
+         * @param threadNames a pattern for thread names, or {@code null} for all threads
+         * @return {@code this}
+         */
+        public Options threadNames(Pattern threadNames) {
+            this.threadNames = threadNames;
+            return this;
+        }
+
+        /**
+         * Only dump the threads in the given states.
+         *
+         * @param states the thread states
+         * @return {@code this}
+         */
+        public Options states(Set<Thread.State> states) {
+            this.states = EnumSet.copyOf(states);
+            return this;
+        }
+
+        /**
+         * Only fetch the given number of innermost frames of each stack. Limited stacks are fetched
+         * without the monitors and synchronizers each thread holds.
+         *
+         * @param maxDepth the maximum stack depth
+         * @return {@code this}
+         */
+        public Options maxDepth(int maxDepth) {
+            if (maxDepth < 0) {
+                throw new IllegalArgumentException("maxDepth must not be negative");
+            }
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * Dump threads with identical states and stacks once, with their names and number, after
+         * all the threads have been fetched. Held locks aren't dumped.
+         *
+         * @param collapse whether to collapse identical stacks
+         * @return {@code this}
+         */
+        public Options collapse(boolean collapse) {
+            this.collapse = collapse;
+            return this;
+        }
+
+        private boolean isFiltered() {
+            return threadNames != null || states.size() < Thread.State.values().length;
+        }
+
+        private boolean matches(ThreadInfo info) {
+            return states.contains(info.getThreadState()) &&
+                    (threadNames == null || threadNames.matcher(info.getThreadName()).matches());
+        }
+    }
+
     /**
      * Dumps all of the threads' current information to an output stream.
      *
@@ -31,65 +134,169 @@ public class ThreadDump {
         final PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, UTF_8));
 
         for (int ti = threads.length - 1; ti >= 0; ti--) {
-            final ThreadInfo t = threads[ti];
-            writer.printf("\"%s\" id=%d state=%s",
-                          t.getThreadName(),
-                          t.getThreadId(),
-                          t.getThreadState());
-            final LockInfo lock = t.getLockInfo();
-            if (lock != null && t.getThreadState() != Thread.State.BLOCKED) {
-                writer.printf("%n    - waiting on <0x%08x> (a %s)",
-                              lock.getIdentityHashCode(),
-                              lock.getClassName());
-                writer.printf("%n    - locked <0x%08x> (a %s)",
-                              lock.getIdentityHashCode(),
-                              lock.getClassName());
-            } else if (lock != null && t.getThreadState() == Thread.State.BLOCKED) {
-                writer.printf("%n    - waiting to lock <0x%08x> (a %s)",
-                              lock.getIdentityHashCode(),
-                              lock.getClassName());
-            }
+            writeThread(writer, threads[ti]);
+        }
 
-            if (t.isSuspended()) {
-                writer.print(" (suspended)");
-            }
+        writer.println();
+        writer.flush();
+    }
 
-            if (t.isInNative()) {
-                writer.print(" (running in native)");
-            }
+    /**
+     * Dumps the current information of the threads selected by the given options to an output
+     * stream. Unlike {@link #dump(OutputStream)}, the threads' information is fetched a chunk of
+     * threads at a time, and each chunk is written before the next one is fetched, so only one
+     * chunk of stacks is held in memory at once. Threads which start during the dump are missed.
+     *
+     * @param out     an output stream
+     * @param options the threads to dump, and how
+     */
+    public void dump(OutputStream out, Options options) {
+        final PrintWriter writer = new PrintWriter(new OutputStreamWriter(out, UTF_8));
+        final Map<List<Object>, CollapsedStack> collapsed = new LinkedHashMap<List<Object>, CollapsedStack>();
+        final boolean lockedMonitors = threadMXBean.isObjectMonitorUsageSupported();
+        final boolean lockedSynchronizers = threadMXBean.isSynchronizerUsageSupported();
 
-            writer.println();
-            if (t.getLockOwnerName() != null) {
-                writer.printf("     owned by %s id=%d%n", t.getLockOwnerName(), t.getLockOwnerId());
+        final long[] ids = threadMXBean.getAllThreadIds();
+        for (int start = 0; start < ids.length; start += options.chunkSize) {
+            long[] chunk = Arrays.copyOfRange(ids, start, Math.min(ids.length, start + options.chunkSize));
+            if (options.isFiltered()) {
+                // filter on names and states first, which doesn't need any stacks
+                chunk = matching(threadMXBean.getThreadInfo(chunk, 0), options);
+                if (chunk.length == 0) {
+                    continue;
+                }
             }
 
-            final StackTraceElement[] elements = t.getStackTrace();
-            final MonitorInfo[] monitors = t.getLockedMonitors();
+            final ThreadInfo[] threads;
+            if (options.maxDepth < Integer.MAX_VALUE || options.collapse) {
+                threads = threadMXBean.getThreadInfo(chunk, options.maxDepth);
+            } else {
+                threads = threadMXBean.getThreadInfo(chunk, lockedMonitors, lockedSynchronizers);
+            }
 
-            for (int i = 0; i < elements.length; i++) {
-                final StackTraceElement element = elements[i];
-                writer.printf("    at %s%n", element);
-                for (int j = 1; j < monitors.length; j++) {
-                    final MonitorInfo monitor = monitors[j];
-                    if (monitor.getLockedStackDepth() == i) {
-                        writer.printf("      - locked %s%n", monitor);
+            for (ThreadInfo t : threads) {
+                // threads which have died since, or changed state
+                if (t == null || !options.matches(t)) {
+                    continue;
+                }
+                if (options.collapse) {
+                    final List<Object> key = stackKey(t);
+                    CollapsedStack stack = collapsed.get(key);
+                    if (stack == null) {
+                        stack = new CollapsedStack(t.getThreadState(), t.getStackTrace());
+                        collapsed.put(key, stack);
                     }
+                    stack.threadNames.append(stack.count++ == 0 ? "" : ", ")
+                                     .append('"').append(t.getThreadName()).append('"');
+                } else {
+                    writeThread(writer, t);
                 }
             }
-            writer.println();
+            writer.flush();
+        }
 
-            final LockInfo[] locks = t.getLockedSynchronizers();
-            if (locks.length > 0) {
-                writer.printf("    Locked synchronizers: count = %d%n", locks.length);
-                for (LockInfo l : locks) {
-                    writer.printf("      - %s%n", l);
-                }
-                writer.println();
+        for (CollapsedStack stack : collapsed.values()) {
+            writer.printf("%d thread%s state=%s: %s%n",
+                          stack.count,
+                          stack.count == 1 ? "" : "s",
+                          stack.state,
+                          stack.threadNames);
+            for (StackTraceElement element : stack.elements) {
+                writer.printf("    at %s%n", element);
             }
+            writer.println();
         }
 
         writer.println();
         writer.flush();
     }
 
+    private static long[] matching(ThreadInfo[] threads, Options options) {
+        final long[] ids = new long[threads.length];
+        int count = 0;
+        for (ThreadInfo t : threads) {
+            if (t != null && options.matches(t)) {
+                ids[count++] = t.getThreadId();
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    private static List<Object> stackKey(ThreadInfo t) {
+        final StackTraceElement[] elements = t.getStackTrace();
+        final Object[] key = new Object[elements.length + 1];
+        key[0] = t.getThreadState();
+        System.arraycopy(elements, 0, key, 1, elements.length);
+        return Arrays.asList(key);
+    }
+
+    private static void writeThread(PrintWriter writer, ThreadInfo t) {
+        writer.printf("\"%s\" id=%d state=%s",
+                      t.getThreadName(),
+                      t.getThreadId(),
+                      t.getThreadState());
+        final LockInfo lock = t.getLockInfo();
+        if (lock != null && t.getThreadState() != Thread.State.BLOCKED) {
+            writer.printf("%n    - waiting on <0x%08x> (a %s)",
+                          lock.getIdentityHashCode(),
+                          lock.getClassName());
+            writer.printf("%n    - locked <0x%08x> (a %s)",
+                          lock.getIdentityHashCode(),
+                          lock.getClassName());
+        } else if (lock != null && t.getThreadState() == Thread.State.BLOCKED) {
+            writer.printf("%n    - waiting to lock <0x%08x> (a %s)",
+                          lock.getIdentityHashCode(),
+                          lock.getClassName());
+        }
+
+        if (t.isSuspended()) {
+            writer.print(" (suspended)");
+        }
+
+        if (t.isInNative()) {
+            writer.print(" (running in native)");
+        }
+
+        writer.println();
+        if (t.getLockOwnerName() != null) {
+            writer.printf("     owned by %s id=%d%n", t.getLockOwnerName(), t.getLockOwnerId());
+        }
+
+        final StackTraceElement[] elements = t.getStackTrace();
+        final MonitorInfo[] monitors = t.getLockedMonitors();
+
+        for (int i = 0; i < elements.length; i++) {
+            final StackTraceElement element = elements[i];
+            writer.printf("    at %s%n", element);
+            for (int j = 1; j < monitors.length; j++) {
+                final MonitorInfo monitor = monitors[j];
+                if (monitor.getLockedStackDepth() == i) {
+                    writer.printf("      - locked %s%n", monitor);
+                }
+            }
+        }
+        writer.println();
+
+        final LockInfo[] locks = t.getLockedSynchronizers();
+        if (locks.length > 0) {
+            writer.printf("    Locked synchronizers: count = %d%n", locks.length);
+            for (LockInfo l : locks) {
+                writer.printf("      - %s%n", l);
+            }
+            writer.println();
+        }
+    }
+
+    private static class CollapsedStack {
+        private final Thread.State state;
+        private final StackTraceElement[] elements;
+        private final StringBuilder threadNames;
+        private int count;
+
+        private CollapsedStack(Thread.State state, StackTraceElement[] elements) {
+            this.state = state;
+            this.elements = elements;
+            this.threadNames = new StringBuilder();
+        }
+    }
 }
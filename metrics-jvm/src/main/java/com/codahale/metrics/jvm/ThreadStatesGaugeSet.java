@@ -7,8 +7,13 @@ import com.codahale.metrics.MetricSet;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -16,14 +21,27 @@ import static com.codahale.metrics.MetricRegistry.name;
 
 /**
  * A set of gauges for the number of threads in their various states and deadlock detection.
+ * <p>
+ * All thread state gauges read from a single pass over the JVM's threads, which counts the threads
+ * in each state. Each gauge read takes a new pass; use {@link CachedThreadStatesGaugeSet} to share
+ * one pass between all gauges for an interval, which can also count the threads in each of a set of
+ * thread pools and report the threads which used the most CPU time since the previous pass.
  */
 public class ThreadStatesGaugeSet implements MetricSet {
 
     // do not compute stack traces.
     private final static int STACK_TRACE_DEPTH = 0;
 
+    private static final Thread.State[] STATES = Thread.State.values();
+
     private final ThreadMXBean threads;
     private final ThreadDeadlockDetector deadlockDetector;
+    private final String[] poolPrefixes;
+    private final int topCpuThreads;
+
+    // guarded by this
+    private Map<Long, Long> lastCpuTimes = Collections.emptyMap();
+    private long lastSampleTime;
 
     /**
      * Creates a new set of gauges using the default MXBeans.
@@ -40,24 +58,78 @@ public class ThreadStatesGaugeSet implements MetricSet {
      */
     public ThreadStatesGaugeSet(ThreadMXBean threads,
                                 ThreadDeadlockDetector deadlockDetector) {
+        this(threads, deadlockDetector, Collections.<String>emptyList(), 0);
+    }
+
+    /**
+     * Creates a new set of gauges using the given MXBean and detector, which also break the thread
+     * states down by thread pool and report the threads which use the most CPU time. Only for
+     * subclasses which share one pass between all gauges, since every gauge read takes a new pass
+     * otherwise.
+     * <p>
+     * For each pool prefix, there are {@code pools.<prefix>.count} and
+     * {@code pools.<prefix>.<state>.count} gauges for the threads whose names start with it. If
+     * {@code topCpuThreads} is positive, the {@code cpu.top} gauge returns the names and ids of
+     * that many threads which used the most CPU time between the last two passes, along with the
+     * fraction of a CPU they used, in descending order.
+     *
+     * @param threads          a thread MXBean
+     * @param deadlockDetector a deadlock detector
+     * @param poolPrefixes     the thread name prefixes of the thread pools to break down
+     * @param topCpuThreads    the number of threads to report CPU usage for, or {@code 0}
+     */
+    protected ThreadStatesGaugeSet(ThreadMXBean threads,
+                                   ThreadDeadlockDetector deadlockDetector,
+                                   Collection<String> poolPrefixes,
+                                   int topCpuThreads) {
         this.threads = threads;
         this.deadlockDetector = deadlockDetector;
+        this.poolPrefixes = poolPrefixes.toArray(new String[poolPrefixes.size()]);
+        this.topCpuThreads = topCpuThreads;
     }
 
     @Override
     public Map<String, Metric> getMetrics() {
         final Map<String, Metric> gauges = new HashMap<String, Metric>();
 
-        for (final Thread.State state : Thread.State.values()) {
+        for (final Thread.State state : STATES) {
             gauges.put(name(state.toString().toLowerCase(), "count"),
                        new Gauge<Object>() {
                            @Override
                            public Object getValue() {
-                               return getThreadCount(state);
+                               return getSample().stateCounts[state.ordinal()];
                            }
                        });
         }
 
+        for (int i = 0; i < poolPrefixes.length; i++) {
+            final int pool = i;
+            gauges.put(name("pools", poolPrefixes[pool], "count"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return getSample().poolCounts[pool][STATES.length];
+                }
+            });
+            for (final Thread.State state : STATES) {
+                gauges.put(name("pools", poolPrefixes[pool], state.toString().toLowerCase(), "count"),
+                           new Gauge<Integer>() {
+                               @Override
+                               public Integer getValue() {
+                                   return getSample().poolCounts[pool][state.ordinal()];
+                               }
+                           });
+            }
+        }
+
+        if (topCpuThreads > 0) {
+            gauges.put("cpu.top", new Gauge<Map<String, Double>>() {
+                @Override
+                public Map<String, Double> getValue() {
+                    return getSample().topCpu;
+                }
+            });
+        }
+
         gauges.put("count", new Gauge<Integer>() {
             @Override
             public Integer getValue() {
@@ -75,33 +147,128 @@ public class ThreadStatesGaugeSet implements MetricSet {
         gauges.put("deadlock.count", new Gauge<Integer>() {
             @Override
             public Integer getValue() {
-                return deadlockDetector.getDeadlockedThreads().size();
+                return getDeadlockedThreads().size();
             }
         });
 
         gauges.put("deadlocks", new Gauge<Set<String>>() {
             @Override
             public Set<String> getValue() {
-                return deadlockDetector.getDeadlockedThreads();
+                return getDeadlockedThreads();
             }
         });
 
         return Collections.unmodifiableMap(gauges);
     }
 
-    private int getThreadCount(Thread.State state) {
-        final ThreadInfo[] allThreads = getThreadInfo();
-        int count = 0;
-        for (ThreadInfo info : allThreads) {
-            if (info != null && info.getThreadState() == state) {
-                count++;
+    /**
+     * Returns the sample the gauges read from.
+     */
+    Sample getSample() {
+        return takeSample();
+    }
+
+    /**
+     * Returns the deadlocked threads the gauges read from.
+     */
+    Set<String> getDeadlockedThreads() {
+        return deadlockDetector.getDeadlockedThreads();
+    }
+
+    /**
+     * Takes a single pass over all threads.
+     */
+    Sample takeSample() {
+        final long[] ids = threads.getAllThreadIds();
+        final ThreadInfo[] infos = threads.getThreadInfo(ids, STACK_TRACE_DEPTH);
+        final int[] stateCounts = new int[STATES.length];
+        // the last column is the total for the pool
+        final int[][] poolCounts = new int[poolPrefixes.length][STATES.length + 1];
+        for (ThreadInfo info : infos) {
+            if (info == null) {
+                continue;
+            }
+            final int state = info.getThreadState().ordinal();
+            stateCounts[state]++;
+            if (poolPrefixes.length > 0) {
+                final String threadName = info.getThreadName();
+                for (int pool = 0; pool < poolPrefixes.length; pool++) {
+                    if (threadName != null && threadName.startsWith(poolPrefixes[pool])) {
+                        poolCounts[pool][state]++;
+                        poolCounts[pool][STATES.length]++;
+                    }
+                }
             }
         }
-        return count;
+        final Map<String, Double> topCpu = topCpuThreads > 0 ? sampleCpu(infos) :
+                Collections.<String, Double>emptyMap();
+        return new Sample(stateCounts, poolCounts, topCpu);
+    }
+
+    private synchronized Map<String, Double> sampleCpu(ThreadInfo[] infos) {
+        if (!threads.isThreadCpuTimeSupported() || !threads.isThreadCpuTimeEnabled()) {
+            return Collections.emptyMap();
+        }
+        final long now = System.nanoTime();
+        final long elapsed = now - lastSampleTime;
+        final Map<Long, Long> cpuTimes = new HashMap<Long, Long>(infos.length * 2);
+        final List<ThreadCpu> usages = new ArrayList<ThreadCpu>(infos.length);
+        for (ThreadInfo info : infos) {
+            if (info == null) {
+                continue;
+            }
+            final long cpuTime = threads.getThreadCpuTime(info.getThreadId());
+            if (cpuTime < 0) {
+                // the thread has died in the meantime
+                continue;
+            }
+            cpuTimes.put(info.getThreadId(), cpuTime);
+            final Long last = lastCpuTimes.get(info.getThreadId());
+            if (last != null && elapsed > 0) {
+                usages.add(new ThreadCpu(info.getThreadName() + " (" + info.getThreadId() + ")",
+                                         (double) (cpuTime - last) / elapsed));
+            }
+        }
+        this.lastCpuTimes = cpuTimes;
+        this.lastSampleTime = now;
+
+        Collections.sort(usages, ThreadCpu.BY_USAGE);
+        final Map<String, Double> top = new LinkedHashMap<String, Double>();
+        for (int i = 0; i < usages.size() && top.size() < topCpuThreads; i++) {
+            top.put(usages.get(i).name, usages.get(i).usage);
+        }
+        return Collections.unmodifiableMap(top);
     }
 
-    ThreadInfo[] getThreadInfo() {
-        return threads.getThreadInfo(threads.getAllThreadIds(), STACK_TRACE_DEPTH);
+    /**
+     * The result of a single pass over all threads.
+     */
+    static class Sample {
+        private final int[] stateCounts;
+        private final int[][] poolCounts;
+        private final Map<String, Double> topCpu;
+
+        private Sample(int[] stateCounts, int[][] poolCounts, Map<String, Double> topCpu) {
+            this.stateCounts = stateCounts;
+            this.poolCounts = poolCounts;
+            this.topCpu = topCpu;
+        }
     }
 
+    private static class ThreadCpu {
+        private static final Comparator<ThreadCpu> BY_USAGE = new Comparator<ThreadCpu>() {
+            @Override
+            public int compare(ThreadCpu a, ThreadCpu b) {
+                return Double.compare(b.usage, a.usage);
+            }
+        };
+
+        private final String name;
+        private final double usage;
+
+        private ThreadCpu(String name, double usage) {
+            this.name = name;
+            this.usage = usage;
+        }
+    }
 }
@@ -1,15 +1,22 @@
 package com.codahale.metrics.jvm;
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
 import org.junit.Before;
 import org.junit.Test;
 
+import javax.management.Attribute;
+import javax.management.AttributeList;
 import javax.management.InstanceNotFoundException;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class BufferPoolMetricSetTest {
@@ -47,6 +54,27 @@ public class BufferPoolMetricSetTest {
                               "direct.used");
     }
 
+    @Test
+    public void optionallySamplesEachPoolsAttributesInOneCall() throws Exception {
+        final BufferPoolMetricSet sampled = new BufferPoolMetricSet(mBeanServer, 1, TimeUnit.MINUTES);
+        final String[] attributes = { "Count", "MemoryUsed", "TotalCapacity" };
+        final AttributeList values = new AttributeList();
+        values.add(new Attribute("Count", 1L));
+        values.add(new Attribute("MemoryUsed", 2L));
+        values.add(new Attribute("TotalCapacity", 3L));
+        when(mBeanServer.getAttributes(direct, attributes)).thenReturn(values);
+        final Map<String, Metric> metrics = sampled.getMetrics();
+
+        assertThat(((Gauge) metrics.get("direct.count")).getValue())
+                .isEqualTo(1L);
+        assertThat(((Gauge) metrics.get("direct.used")).getValue())
+                .isEqualTo(2L);
+        assertThat(((Gauge) metrics.get("direct.capacity")).getValue())
+                .isEqualTo(3L);
+
+        verify(mBeanServer, times(1)).getAttributes(direct, attributes);
+    }
+
     @Test
     public void includesAGaugeForDirectCount() throws Exception {
         final Gauge gauge = (Gauge) buffers.getMetrics().get("direct.count");
@@ -0,0 +1,87 @@
+package com.codahale.metrics.jvm;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CachedThreadStatesGaugeSetTest {
+    private final ThreadMXBean threads = mock(ThreadMXBean.class);
+    private final ThreadDeadlockDetector detector = mock(ThreadDeadlockDetector.class);
+    private final CachedThreadStatesGaugeSet set = new CachedThreadStatesGaugeSet(threads, detector,
+                                                                                  Collections.singletonList("pool-"), 0,
+                                                                                  1, TimeUnit.HOURS,
+                                                                                  1, TimeUnit.HOURS);
+    private final long[] ids = new long[]{ 1, 2 };
+
+    private final ThreadInfo runnableThread = mock(ThreadInfo.class);
+    private final ThreadInfo waitingThread = mock(ThreadInfo.class);
+
+    @Before
+    public void setUp() throws Exception {
+        when(runnableThread.getThreadState()).thenReturn(Thread.State.RUNNABLE);
+        when(runnableThread.getThreadName()).thenReturn("pool-1-thread-1");
+        when(waitingThread.getThreadState()).thenReturn(Thread.State.WAITING);
+        when(waitingThread.getThreadName()).thenReturn("main");
+
+        when(threads.getAllThreadIds()).thenReturn(ids);
+        when(threads.getThreadInfo(ids, 0)).thenReturn(new ThreadInfo[]{ runnableThread, waitingThread });
+
+        when(detector.getDeadlockedThreads()).thenReturn(Collections.<String>emptySet());
+    }
+
+    @Test
+    public void sharesOnePassOverAllThreadsBetweenAllGauges() throws Exception {
+        final Map<String, Metric> metrics = set.getMetrics();
+
+        assertThat(((Gauge) metrics.get("runnable.count")).getValue())
+                .isEqualTo(1);
+        assertThat(((Gauge) metrics.get("waiting.count")).getValue())
+                .isEqualTo(1);
+        assertThat(((Gauge) metrics.get("blocked.count")).getValue())
+                .isEqualTo(0);
+        assertThat(((Gauge) metrics.get("pools.pool-.count")).getValue())
+                .isEqualTo(1);
+
+        verify(threads, times(1)).getThreadInfo(ids, 0);
+    }
+
+    @Test
+    public void looksForDeadlocksOnItsOwnInterval() throws Exception {
+        final Map<String, Metric> metrics = set.getMetrics();
+
+        assertThat(((Gauge) metrics.get("deadlock.count")).getValue())
+                .isEqualTo(0);
+        assertThat(((Gauge) metrics.get("deadlocks")).getValue())
+                .isEqualTo(Collections.emptySet());
+
+        verify(detector, times(1)).getDeadlockedThreads();
+    }
+
+    @Test
+    public void looksForDeadlocksLessOftenByDefault() throws Exception {
+        final CachedThreadStatesGaugeSet set = new CachedThreadStatesGaugeSet(threads, detector,
+                                                                              0, TimeUnit.SECONDS);
+        final Map<String, Metric> metrics = set.getMetrics();
+
+        ((Gauge) metrics.get("deadlock.count")).getValue();
+        ((Gauge) metrics.get("deadlock.count")).getValue();
+        ((Gauge) metrics.get("blocked.count")).getValue();
+        ((Gauge) metrics.get("blocked.count")).getValue();
+
+        verify(detector, times(1)).getDeadlockedThreads();
+        verify(threads, times(2)).getThreadInfo(ids, 0);
+    }
+}
@@ -0,0 +1,186 @@
+package com.codahale.metrics.jvm;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+public class GcNotificationMetricSetTest {
+    private static final CompositeType MEMORY_USAGE = compositeType("java.lang.management.MemoryUsage",
+                                                                    new String[]{ "init", "used", "committed", "max" },
+                                                                    new OpenType<?>[]{ SimpleType.LONG, SimpleType.LONG,
+                                                                            SimpleType.LONG, SimpleType.LONG });
+    private static final CompositeType POOL_USAGE = compositeType("pool usage",
+                                                                  new String[]{ "key", "value" },
+                                                                  new OpenType<?>[]{ SimpleType.STRING, MEMORY_USAGE });
+
+    private final GarbageCollectorMXBean young = mock(GarbageCollectorMXBean.class,
+                                                      withSettings().extraInterfaces(NotificationEmitter.class));
+    private final GarbageCollectorMXBean old = mock(GarbageCollectorMXBean.class);
+    private final MemoryPoolMXBean eden = mock(MemoryPoolMXBean.class);
+    private final MemoryPoolMXBean metaspace = mock(MemoryPoolMXBean.class);
+    private GcNotificationMetricSet metrics;
+    private NotificationListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        when(young.getName()).thenReturn("PS Scavenge");
+        when(old.getName()).thenReturn("PS MarkSweep");
+        when(old.getCollectionCount()).thenReturn(1L);
+        when(old.getCollectionTime()).thenReturn(2L);
+        when(eden.getName()).thenReturn("PS Eden Space");
+        when(eden.getCollectionUsage()).thenReturn(new MemoryUsage(0, 10, 100, 100));
+
+        metrics = new GcNotificationMetricSet(Arrays.asList(young, old), Arrays.asList(eden, metaspace));
+
+        final ArgumentCaptor<NotificationListener> captor = ArgumentCaptor.forClass(NotificationListener.class);
+        verify((NotificationEmitter) young).addNotificationListener(captor.capture(),
+                                                                    any(NotificationFilter.class),
+                                                                    any());
+        listener = captor.getValue();
+    }
+
+    @Test
+    public void fallsBackToGaugesForCollectorsWithoutNotifications() throws Exception {
+        assertThat(metrics.getMetrics().keySet())
+                .containsOnly("PS-Scavenge.pauses",
+                              "PS-MarkSweep.count",
+                              "PS-MarkSweep.time",
+                              "allocated",
+                              "promoted",
+                              "pools.PS-Eden-Space.after-gc");
+        assertThat(((Gauge) metrics.getMetrics().get("PS-MarkSweep.time")).getValue())
+                .isEqualTo(2L);
+    }
+
+    @Test
+    public void exposesPoolUsageAfterCollections() throws Exception {
+        assertThat(((Gauge) metrics.getMetrics().get("pools.PS-Eden-Space.after-gc")).getValue())
+                .isEqualTo(10L);
+    }
+
+    @Test
+    public void recordsEachCollection() throws Exception {
+        final MetricRegistry registry = new MetricRegistry();
+        metrics.recordCausesIn(registry, "jvm.gc");
+        final Map<String, Metric> sets = metrics.getMetrics();
+
+        listener.handleNotification(collection("PS Scavenge", "Allocation Failure", 12, 800, 0, 100, 150), null);
+        listener.handleNotification(collection("PS Scavenge", "Allocation Failure", 8, 900, 100, 150, 150), null);
+
+        final Timer pauses = (Timer) sets.get("PS-Scavenge.pauses");
+        assertThat(pauses.getCount())
+                .isEqualTo(2);
+        assertThat(pauses.getSnapshot().getMax())
+                .isEqualTo(TimeUnit.MILLISECONDS.toNanos(12));
+        assertThat(registry.timer("jvm.gc.PS-Scavenge.causes.Allocation-Failure").getCount())
+                .isEqualTo(2);
+        assertThat(((Meter) sets.get("allocated")).getCount())
+                .isEqualTo(800 + 900);
+        assertThat(((Meter) sets.get("promoted")).getCount())
+                .isEqualTo(50);
+    }
+
+    @Test
+    public void stopsListening() throws Exception {
+        metrics.stop();
+
+        verify((NotificationEmitter) young).removeNotificationListener(listener);
+    }
+
+    @Test
+    public void autoDiscoversTheMXBeans() throws Exception {
+        final GcNotificationMetricSet set = new GcNotificationMetricSet();
+        try {
+            assertThat(set.getMetrics().keySet())
+                    .isNotEmpty();
+        } finally {
+            set.stop();
+        }
+    }
+
+    private static Notification collection(String gcName, String cause, long duration,
+                                           long edenBefore, long edenAfter, long oldBefore, long oldAfter)
+            throws Exception {
+        final Map<String, MemoryUsage> before = new HashMap<String, MemoryUsage>();
+        before.put("PS Eden Space", new MemoryUsage(0, edenBefore, 1000, 1000));
+        before.put("PS Old Gen", new MemoryUsage(0, oldBefore, 1000, 1000));
+        final Map<String, MemoryUsage> after = new HashMap<String, MemoryUsage>();
+        after.put("PS Eden Space", new MemoryUsage(0, edenAfter, 1000, 1000));
+        after.put("PS Old Gen", new MemoryUsage(0, oldAfter, 1000, 1000));
+
+        final CompositeType infoType = compositeType("gc info",
+                                                     new String[]{ "duration", "memoryUsageBeforeGc", "memoryUsageAfterGc" },
+                                                     new OpenType<?>[]{ SimpleType.LONG, poolUsagesType(), poolUsagesType() });
+        final CompositeData info = new CompositeDataSupport(infoType,
+                                                            new String[]{ "duration", "memoryUsageBeforeGc", "memoryUsageAfterGc" },
+                                                            new Object[]{ duration, poolUsages(before), poolUsages(after) });
+
+        final CompositeType notificationType = compositeType("gc notification",
+                                                             new String[]{ "gcName", "gcAction", "gcCause", "gcInfo" },
+                                                             new OpenType<?>[]{ SimpleType.STRING, SimpleType.STRING,
+                                                                     SimpleType.STRING, infoType });
+        final Notification notification = new Notification("com.sun.management.gc.notification", gcName, 1);
+        notification.setUserData(new CompositeDataSupport(notificationType,
+                                                          new String[]{ "gcName", "gcAction", "gcCause", "gcInfo" },
+                                                          new Object[]{ gcName, "end of minor GC", cause, info }));
+        return notification;
+    }
+
+    private static TabularType poolUsagesType() throws Exception {
+        return new TabularType("pool usages", "pool usages", POOL_USAGE, new String[]{ "key" });
+    }
+
+    private static TabularDataSupport poolUsages(Map<String, MemoryUsage> usages) throws Exception {
+        final TabularDataSupport data = new TabularDataSupport(poolUsagesType());
+        for (Map.Entry<String, MemoryUsage> entry : usages.entrySet()) {
+            final MemoryUsage usage = entry.getValue();
+            final CompositeData value = new CompositeDataSupport(MEMORY_USAGE,
+                                                                 new String[]{ "init", "used", "committed", "max" },
+                                                                 new Object[]{ usage.getInit(), usage.getUsed(),
+                                                                         usage.getCommitted(), usage.getMax() });
+            data.put(new CompositeDataSupport(POOL_USAGE,
+                                              new String[]{ "key", "value" },
+                                              new Object[]{ entry.getKey(), value }));
+        }
+        return data;
+    }
+
+    private static CompositeType compositeType(String name, String[] items, OpenType<?>[] types) {
+        try {
+            return new CompositeType(name, name, items, items, types);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
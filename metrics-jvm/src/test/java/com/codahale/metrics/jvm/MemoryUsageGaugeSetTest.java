@@ -1,16 +1,26 @@
 package com.codahale.metrics.jvm;
 
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.lang.management.MemoryMXBean;
 import java.lang.management.MemoryPoolMXBean;
 import java.lang.management.MemoryUsage;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class MemoryUsageGaugeSetTest {
@@ -265,6 +275,70 @@ public class MemoryUsageGaugeSetTest {
                 .isEqualTo(290L);
     }
 
+    @Test
+    public void optionallySharesOneSampleOfEachMemoryUsageBetweenGauges() throws Exception {
+        final MemoryUsageGaugeSet sampled = new MemoryUsageGaugeSet(mxBean,
+                                                                    Arrays.asList(memoryPool, weirdMemoryPool),
+                                                                    1, TimeUnit.MINUTES);
+        final Map<String, Metric> metrics = sampled.getMetrics();
+
+        assertThat(((Gauge) metrics.get("heap.used")).getValue())
+                .isEqualTo(30L);
+        assertThat(((Gauge) metrics.get("heap.max")).getValue())
+                .isEqualTo(40L);
+        assertThat(((Gauge) metrics.get("total.used")).getValue())
+                .isEqualTo(33L);
+        assertThat(((Gauge) metrics.get("pools.Big-Pool.used")).getValue())
+                .isEqualTo(300L);
+        assertThat(((Gauge) metrics.get("pools.Big-Pool.committed")).getValue())
+                .isEqualTo(100L);
+
+        verify(mxBean, times(1)).getHeapMemoryUsage();
+        verify(mxBean, times(1)).getNonHeapMemoryUsage();
+        verify(memoryPool, times(1)).getUsage();
+    }
+
+    @Test
+    public void sharesTheFirstSampleBetweenConcurrentReads() throws Exception {
+        final MemoryUsageGaugeSet sampled = new MemoryUsageGaugeSet(mxBean, Arrays.asList(memoryPool),
+                                                                    1, TimeUnit.HOURS);
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch read = new CountDownLatch(1);
+        when(mxBean.getHeapMemoryUsage()).thenAnswer(new Answer<MemoryUsage>() {
+            private final AtomicBoolean first = new AtomicBoolean(true);
+
+            @Override
+            public MemoryUsage answer(InvocationOnMock invocation) throws Throwable {
+                if (first.compareAndSet(true, false)) {
+                    // hold the first load until the other thread has read
+                    loading.countDown();
+                    read.await(5, TimeUnit.SECONDS);
+                }
+                return heap;
+            }
+        });
+        final Gauge gauge = (Gauge) sampled.getMetrics().get("heap.used");
+        final AtomicReference<Object> firstValue = new AtomicReference<Object>();
+        final Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                firstValue.set(gauge.getValue());
+            }
+        });
+        first.start();
+        loading.await(5, TimeUnit.SECONDS);
+
+        try {
+            assertThat(gauge.getValue())
+                    .isEqualTo(30L);
+        } finally {
+            read.countDown();
+            first.join();
+        }
+        assertThat(firstValue.get())
+                .isEqualTo(30L);
+    }
+
     @Test
     public void autoDetectsMemoryUsageBeanAndMemoryPools() throws Exception {
         assertThat(new MemoryUsageGaugeSet().getMetrics().keySet())
@@ -0,0 +1,104 @@
+package com.codahale.metrics.jvm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SamplingProfilerTest {
+    private final ThreadMXBean threads = mock(ThreadMXBean.class);
+    private final ThreadInfo worker = mock(ThreadInfo.class);
+    private final ThreadInfo blocked = mock(ThreadInfo.class);
+    private final ThreadInfo other = mock(ThreadInfo.class);
+    private SamplingProfiler profiler;
+
+    @Before
+    public void setUp() throws Exception {
+        final StackTraceElement[] stack = {
+                new StackTraceElement("Worker", "run", "Worker.java", 2),
+                new StackTraceElement("Main", "main", "Main.java", 1)
+        };
+        when(worker.getThreadName()).thenReturn("worker-1");
+        when(worker.getThreadState()).thenReturn(Thread.State.RUNNABLE);
+        when(worker.getStackTrace()).thenReturn(stack);
+        when(blocked.getThreadName()).thenReturn("worker-2");
+        when(blocked.getThreadState()).thenReturn(Thread.State.BLOCKED);
+        when(blocked.getStackTrace()).thenReturn(stack);
+        when(other.getThreadName()).thenReturn("other");
+        when(other.getThreadState()).thenReturn(Thread.State.RUNNABLE);
+        when(other.getStackTrace()).thenReturn(stack);
+
+        when(threads.getAllThreadIds()).thenReturn(new long[]{ 1, 2, 3, 4 });
+        when(threads.getThreadInfo(any(long[].class), anyInt()))
+                .thenReturn(new ThreadInfo[]{ worker, blocked, other, null });
+
+        profiler = SamplingProfiler.builder()
+                                   .withThreads(threads)
+                                   .threadNames(Pattern.compile("worker-.*"))
+                                   .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        profiler.stop();
+    }
+
+    @Test
+    public void samplesMatchingThreadsForTheDuration() throws Exception {
+        final SamplingProfiler.Profile profile = profiler.start(50, TimeUnit.MILLISECONDS, 100,
+                                                                EnumSet.of(Thread.State.RUNNABLE),
+                                                                Pattern.compile("worker-.*"));
+
+        assertThat(profile.await(5, TimeUnit.SECONDS))
+                .isTrue();
+        assertThat(profile.getPeriodMicros())
+                .isEqualTo(10000);
+        // one of the four threads matches, for each of the five samples
+        assertThat(profile.getStacks().getSamples())
+                .isEqualTo(5);
+    }
+
+    @Test
+    public void filtersByState() throws Exception {
+        final SamplingProfiler.Profile profile = profiler.start(10, TimeUnit.MILLISECONDS, 100,
+                                                                EnumSet.of(Thread.State.BLOCKED), null);
+
+        assertThat(profile.await(5, TimeUnit.SECONDS))
+                .isTrue();
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        profile.getStacks().writeCollapsed(output);
+        assertThat(output.toString("UTF-8"))
+                .isEqualTo("Main.main;Worker.run 1\n");
+    }
+
+    @Test
+    public void stopsWhenCancelled() throws Exception {
+        final SamplingProfiler.Profile profile = profiler.start(1, TimeUnit.HOURS);
+        profile.cancel();
+
+        assertThat(profile.isDone())
+                .isTrue();
+        final long samples = profile.getStacks().getSamples();
+        Thread.sleep(50);
+        assertThat(profile.getStacks().getSamples())
+                .isLessThanOrEqualTo(samples + 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidFrequencies() throws Exception {
+        profiler.start(1, TimeUnit.SECONDS, 0, EnumSet.of(Thread.State.RUNNABLE), null);
+    }
+}
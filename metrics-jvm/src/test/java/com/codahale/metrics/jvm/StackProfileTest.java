@@ -0,0 +1,103 @@
+package com.codahale.metrics.jvm;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StackProfileTest {
+    private static final StackTraceElement MAIN = new StackTraceElement("Main", "main", "Main.java", 1);
+    private static final StackTraceElement RUN = new StackTraceElement("Worker", "run", "Worker.java", 2);
+    private static final StackTraceElement WAIT = new StackTraceElement("Worker", "await", "Worker.java", 3);
+
+    private final StackProfile profile = new StackProfile(10);
+
+    @Test
+    public void collapsesIdenticalStacks() throws Exception {
+        profile.add(new StackTraceElement[]{ RUN, MAIN });
+        profile.add(new StackTraceElement[]{ RUN, MAIN });
+        profile.add(new StackTraceElement[]{ WAIT, RUN, MAIN });
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        profile.writeCollapsed(output);
+
+        assertThat(output.toString("UTF-8").split("\n"))
+                .containsOnly("Main.main;Worker.run 2",
+                              "Main.main;Worker.run;Worker.await 1");
+        assertThat(profile.getSamples())
+                .isEqualTo(3);
+    }
+
+    @Test
+    public void countsSamplesAtTheDeepestNodeOnceFull() throws Exception {
+        final StackProfile small = new StackProfile(2);
+        small.add(new StackTraceElement[]{ RUN, MAIN });
+        small.add(new StackTraceElement[]{ WAIT, RUN, MAIN });
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        small.writeCollapsed(output);
+
+        assertThat(output.toString("UTF-8"))
+                .isEqualTo("Main.main;Worker.run 2\n");
+        assertThat(small.getTruncatedSamples())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void writesSamplesTruncatedAtTheRootOnTheirOwnLine() throws Exception {
+        final StackProfile small = new StackProfile(1);
+        small.add(new StackTraceElement[]{ MAIN });
+        small.add(new StackTraceElement[]{ RUN });
+        small.add(new StackTraceElement[]{ WAIT });
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        small.writeCollapsed(output);
+
+        assertThat(output.toString("UTF-8").split("\n"))
+                .containsExactly("[truncated] 2", "Main.main 1");
+        assertThat(small.getTruncatedSamples())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void doesNotInternFramesOnceFull() throws Exception {
+        final StackProfile small = new StackProfile(1);
+        small.add(new StackTraceElement[]{ MAIN });
+        small.add(new StackTraceElement[]{ RUN, MAIN });
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        small.writePprof(output, 10000);
+
+        assertThat(output.toString("ISO-8859-1"))
+                .contains("0x0000000000000001 Main.main(Main.java:1)")
+                .doesNotContain("Worker.run");
+    }
+
+    @Test
+    public void writesPprofProfiles() throws Exception {
+        profile.add(new StackTraceElement[]{ RUN, MAIN });
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        profile.writePprof(output, 10000);
+
+        final String text = output.toString("ISO-8859-1");
+        assertThat(text)
+                .startsWith("--- symbol\nbinary=java\n")
+                .contains("0x0000000000000001 Main.main(Main.java:1)")
+                .contains("0x0000000000000002 Worker.run(Worker.java:2)");
+
+        final int start = text.indexOf("--- profile\n") + "--- profile\n".length();
+        final ByteBuffer words = ByteBuffer.wrap(output.toByteArray(), start, output.size() - start)
+                                           .order(ByteOrder.LITTLE_ENDIAN);
+        final long[] expected = { 0, 3, 0, 10000, 0, 1, 2, 2, 1, 0, 1, 0 };
+        for (long word : expected) {
+            assertThat(words.getLong())
+                    .isEqualTo(word);
+        }
+        assertThat(words.hasRemaining())
+                .isFalse();
+    }
+}
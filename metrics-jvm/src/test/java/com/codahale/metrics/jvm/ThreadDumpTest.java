@@ -8,9 +8,13 @@ import java.lang.management.LockInfo;
 import java.lang.management.MonitorInfo;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.util.EnumSet;
+import java.util.regex.Pattern;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 // TODO: 3/12/13 <coda> -- improve test coverage for ThreadDump
@@ -20,6 +24,8 @@ public class ThreadDumpTest {
     private final ThreadDump threadDump = new ThreadDump(threadMXBean);
 
     private final ThreadInfo runnable = mock(ThreadInfo.class);
+    private final ThreadInfo waiting1 = mock(ThreadInfo.class);
+    private final ThreadInfo waiting2 = mock(ThreadInfo.class);
 
     @Before
     public void setUp() throws Exception {
@@ -35,6 +41,34 @@ public class ThreadDumpTest {
         when(threadMXBean.dumpAllThreads(true, true)).thenReturn(new ThreadInfo[]{
                 runnable
         });
+
+        final StackTraceElement wLine1 = new StackTraceElement("Object", "wait", "Object.java", 502);
+        final StackTraceElement wLine2 = new StackTraceElement("Pool", "take", "Pool.java", 10);
+        waiting(waiting1, "pool-1", 101L, wLine1, wLine2);
+        waiting(waiting2, "pool-2", 102L, wLine1, wLine2);
+
+        when(threadMXBean.getAllThreadIds()).thenReturn(new long[]{ 100L, 101L, 102L });
+        when(threadMXBean.getThreadInfo(new long[]{ 100L, 101L }, false, false))
+                .thenReturn(new ThreadInfo[]{ runnable, waiting1 });
+        when(threadMXBean.getThreadInfo(new long[]{ 102L }, false, false))
+                .thenReturn(new ThreadInfo[]{ waiting2 });
+        when(threadMXBean.getThreadInfo(new long[]{ 100L, 101L }, 0))
+                .thenReturn(new ThreadInfo[]{ runnable, waiting1 });
+        when(threadMXBean.getThreadInfo(new long[]{ 102L }, 0))
+                .thenReturn(new ThreadInfo[]{ waiting2 });
+        when(threadMXBean.getThreadInfo(new long[]{ 101L }, Integer.MAX_VALUE))
+                .thenReturn(new ThreadInfo[]{ waiting1 });
+        when(threadMXBean.getThreadInfo(new long[]{ 102L }, Integer.MAX_VALUE))
+                .thenReturn(new ThreadInfo[]{ waiting2 });
+    }
+
+    private static void waiting(ThreadInfo info, String name, long id, StackTraceElement... stack) {
+        when(info.getThreadName()).thenReturn(name);
+        when(info.getThreadId()).thenReturn(id);
+        when(info.getThreadState()).thenReturn(Thread.State.WAITING);
+        when(info.getStackTrace()).thenReturn(stack);
+        when(info.getLockedMonitors()).thenReturn(new MonitorInfo[]{ });
+        when(info.getLockedSynchronizers()).thenReturn(new LockInfo[]{ });
     }
 
     @Test
@@ -48,4 +82,42 @@ public class ThreadDumpTest {
                                                  "%n" +
                                                  "%n"));
     }
+
+    @Test
+    public void streamsThreadsInChunks() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        threadDump.dump(output, ThreadDump.options().chunkSize(2));
+
+        assertThat(output.toString())
+                .isEqualTo(String.format("\"runnable\" id=100 state=RUNNABLE%n" +
+                                                 "    at Blah.blee(Blah.java:100)%n" +
+                                                 "%n" +
+                                                 "\"pool-1\" id=101 state=WAITING%n" +
+                                                 "    at Object.wait(Object.java:502)%n" +
+                                                 "    at Pool.take(Pool.java:10)%n" +
+                                                 "%n" +
+                                                 "\"pool-2\" id=102 state=WAITING%n" +
+                                                 "    at Object.wait(Object.java:502)%n" +
+                                                 "    at Pool.take(Pool.java:10)%n" +
+                                                 "%n" +
+                                                 "%n"));
+        verify(threadMXBean, never()).dumpAllThreads(true, true);
+    }
+
+    @Test
+    public void collapsesIdenticalStacksOfMatchingThreads() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        threadDump.dump(output, ThreadDump.options()
+                                          .chunkSize(2)
+                                          .threadNames(Pattern.compile("pool-.*"))
+                                          .states(EnumSet.of(Thread.State.WAITING))
+                                          .collapse(true));
+
+        assertThat(output.toString())
+                .isEqualTo(String.format("2 threads state=WAITING: \"pool-1\", \"pool-2\"%n" +
+                                                 "    at Object.wait(Object.java:502)%n" +
+                                                 "    at Pool.take(Pool.java:10)%n" +
+                                                 "%n" +
+                                                 "%n"));
+    }
 }
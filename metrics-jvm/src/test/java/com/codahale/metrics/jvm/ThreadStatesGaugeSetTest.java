@@ -6,11 +6,16 @@ import org.junit.Test;
 
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ThreadStatesGaugeSetTest {
@@ -39,6 +44,13 @@ public class ThreadStatesGaugeSetTest {
         when(timedWaitingThread.getThreadState()).thenReturn(Thread.State.TIMED_WAITING);
         when(terminatedThread.getThreadState()).thenReturn(Thread.State.TERMINATED);
 
+        when(runnableThread.getThreadName()).thenReturn("pool-1-thread-1");
+        when(runnableThread.getThreadId()).thenReturn(2L);
+        when(waitingThread.getThreadName()).thenReturn("pool-1-thread-2");
+        when(waitingThread.getThreadId()).thenReturn(4L);
+        when(blockedThread.getThreadName()).thenReturn("qtp-1");
+        when(blockedThread.getThreadId()).thenReturn(3L);
+
         when(threads.getAllThreadIds()).thenReturn(ids);
         when(threads.getThreadInfo(ids, 0)).thenReturn(new ThreadInfo[]{
                 newThread, runnableThread, blockedThread,
@@ -111,6 +123,47 @@ public class ThreadStatesGaugeSetTest {
                 .isEqualTo(1);
     }
 
+    @Test
+    public void breaksThreadStatesDownByPool() throws Exception {
+        final ThreadStatesGaugeSet set = new CachedThreadStatesGaugeSet(threads, detector, Arrays.asList("pool-", "qtp"), 0,
+                                                                   0, TimeUnit.SECONDS, 0, TimeUnit.SECONDS);
+
+        assertThat(((Gauge) set.getMetrics().get("pools.pool-.count")).getValue())
+                .isEqualTo(2);
+        assertThat(((Gauge) set.getMetrics().get("pools.pool-.runnable.count")).getValue())
+                .isEqualTo(1);
+        assertThat(((Gauge) set.getMetrics().get("pools.pool-.blocked.count")).getValue())
+                .isEqualTo(0);
+        assertThat(((Gauge) set.getMetrics().get("pools.qtp.blocked.count")).getValue())
+                .isEqualTo(1);
+        assertThat(set.getMetrics().containsKey("cpu.top"))
+                .isFalse();
+    }
+
+    @Test
+    public void reportsTheThreadsWhichUseTheMostCpuTime() throws Exception {
+        when(threads.isThreadCpuTimeSupported()).thenReturn(true);
+        when(threads.isThreadCpuTimeEnabled()).thenReturn(true);
+        when(threads.getThreadCpuTime(2L)).thenReturn(0L, 50000000L);
+        when(threads.getThreadCpuTime(3L)).thenReturn(0L, 10000000L);
+        when(threads.getThreadCpuTime(4L)).thenReturn(0L, 0L);
+        final ThreadStatesGaugeSet set = new CachedThreadStatesGaugeSet(threads, detector, Arrays.<String>asList(), 2,
+                                                                   0, TimeUnit.SECONDS, 0, TimeUnit.SECONDS);
+        final Gauge top = (Gauge) set.getMetrics().get("cpu.top");
+
+        assertThat((Map) top.getValue())
+                .isEmpty();
+        assertThat(((Map<String, Double>) top.getValue()).keySet())
+                .containsExactly("pool-1-thread-1 (2)", "qtp-1 (3)");
+    }
+
+    @Test
+    public void takesASinglePassOverAllThreadsPerRead() throws Exception {
+        ((Gauge) gauges.getMetrics().get("blocked.count")).getValue();
+
+        verify(threads, times(1)).getThreadInfo(ids, 0);
+    }
+
     @Test
     public void autoDiscoversTheMXBeans() throws Exception {
         final ThreadStatesGaugeSet set = new ThreadStatesGaugeSet();
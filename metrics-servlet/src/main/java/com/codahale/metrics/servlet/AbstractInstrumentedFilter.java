@@ -3,25 +3,34 @@ package com.codahale.metrics.servlet;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RouteTimers;
 import com.codahale.metrics.Timer;
 
 import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
 /**
  * {@link Filter} implementation which captures request information and a breakdown of the response
  * codes being returned.
+ * <p>
+ * If the {@code route-templates} init parameter is given a comma-separated list of path templates,
+ * such as {@code /users/{id}}, requests are also timed per route by a {@link RouteTimers}. The
+ * templates are matched against the request URI, without the context path.
  */
 public abstract class AbstractInstrumentedFilter implements Filter {
     static final String METRIC_PREFIX = "name-prefix";
+    static final String ROUTE_TEMPLATES = "route-templates";
 
     private final String otherMetricName;
     private final Map<Integer, String> meterNamesByStatusCode;
@@ -34,7 +43,8 @@ public abstract class AbstractInstrumentedFilter implements Filter {
     private Meter errorsMeter;
     private Counter activeRequests;
     private Timer requestTimer;
-
+    // null unless route templates are configured
+    private RouteTimers routeTimers;
 
     /**
      * Creates a new instance of the filter.
@@ -79,6 +89,11 @@ public abstract class AbstractInstrumentedFilter implements Filter {
         this.requestTimer = metricsRegistry.timer(name(metricName,
                                                        "requests"));
 
+        final String templates = filterConfig.getInitParameter(ROUTE_TEMPLATES);
+        if (templates != null && !templates.trim().isEmpty()) {
+            this.routeTimers = new RouteTimers(metricsRegistry, metricName,
+                                               Arrays.asList(templates.trim().split("\\s*,\\s*")));
+        }
     }
 
     private MetricRegistry getMetricsFactory(FilterConfig filterConfig) {
@@ -105,6 +120,7 @@ public abstract class AbstractInstrumentedFilter implements Filter {
         final StatusExposingServletResponse wrappedResponse =
                 new StatusExposingServletResponse((HttpServletResponse) response);
         activeRequests.inc();
+        final Timer routeTimer = routeTimer(request);
         final Timer.Context context = requestTimer.time();
         boolean error = false;
         try {
@@ -120,9 +136,9 @@ public abstract class AbstractInstrumentedFilter implements Filter {
             throw e;
         } finally {
             if (!error && request.isAsyncStarted()) {
-                request.getAsyncContext().addListener(new AsyncResultListener(context));
+                request.getAsyncContext().addListener(new AsyncResultListener(context, routeTimer));
             } else {
-                context.stop();
+                stop(context, routeTimer);
                 activeRequests.dec();
                 if (error) {
                     errorsMeter.mark();
@@ -133,6 +149,24 @@ public abstract class AbstractInstrumentedFilter implements Filter {
         }
     }
 
+    private Timer routeTimer(ServletRequest request) {
+        if (routeTimers == null || !(request instanceof HttpServletRequest)) {
+            return null;
+        }
+        final HttpServletRequest httpRequest = (HttpServletRequest) request;
+        final String contextPath = httpRequest.getContextPath();
+        final String uri = httpRequest.getRequestURI();
+        return routeTimers.timer(contextPath != null && uri.startsWith(contextPath) ?
+                                         uri.substring(contextPath.length()) : uri);
+    }
+
+    private static void stop(Timer.Context context, Timer routeTimer) {
+        final long elapsed = context.stop();
+        if (routeTimer != null) {
+            routeTimer.update(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
     private void markMeterForStatusCode(int status) {
         final Meter metric = metersByStatusCode.get(status);
         if (metric != null) {
@@ -181,17 +215,19 @@ public abstract class AbstractInstrumentedFilter implements Filter {
 
     private class AsyncResultListener implements AsyncListener {
         private Timer.Context context;
+        private Timer routeTimer;
         private boolean done = false;
 
-        public AsyncResultListener(Timer.Context context) {
+        public AsyncResultListener(Timer.Context context, Timer routeTimer) {
             this.context = context;
+            this.routeTimer = routeTimer;
         }
 
         @Override
         public void onComplete(AsyncEvent event) throws IOException {
             if (!done) {
                 HttpServletResponse suppliedResponse = (HttpServletResponse) event.getSuppliedResponse();
-                context.stop();
+                stop(context, routeTimer);
                 activeRequests.dec();
                 markMeterForStatusCode(suppliedResponse.getStatus());
             }
@@ -199,7 +235,7 @@ public abstract class AbstractInstrumentedFilter implements Filter {
 
         @Override
         public void onTimeout(AsyncEvent event) throws IOException {
-            context.stop();
+            stop(context, routeTimer);
             activeRequests.dec();
             timeoutsMeter.mark();
             done = true;
@@ -207,7 +243,7 @@ public abstract class AbstractInstrumentedFilter implements Filter {
 
         @Override
         public void onError(AsyncEvent event) throws IOException {
-            context.stop();
+            stop(context, routeTimer);
             activeRequests.dec();
             errorsMeter.mark();
             done = true;
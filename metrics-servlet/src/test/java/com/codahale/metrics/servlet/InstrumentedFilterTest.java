@@ -0,0 +1,69 @@
+package com.codahale.metrics.servlet;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class InstrumentedFilterTest {
+    private final MetricRegistry registry = new MetricRegistry();
+    private final ServletContext servletContext = mock(ServletContext.class);
+    private final FilterConfig config = mock(FilterConfig.class);
+    private final FilterChain chain = mock(FilterChain.class);
+    private final InstrumentedFilter filter = new InstrumentedFilter();
+
+    @Before
+    public void setUp() throws Exception {
+        when(servletContext.getAttribute(InstrumentedFilter.REGISTRY_ATTRIBUTE)).thenReturn(registry);
+        when(config.getServletContext()).thenReturn(servletContext);
+        when(config.getInitParameter(AbstractInstrumentedFilter.METRIC_PREFIX)).thenReturn("app");
+    }
+
+    @Test
+    public void doesNotTimeRoutesByDefault() throws Exception {
+        filter.init(config);
+        filter.doFilter(request("/users/42"), mock(HttpServletResponse.class), chain);
+
+        assertThat(registry.getTimers().keySet())
+                .containsOnly("app.requests");
+        assertThat(registry.timer("app.requests").getCount())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void timesRequestsByRouteTemplate() throws Exception {
+        when(config.getInitParameter(AbstractInstrumentedFilter.ROUTE_TEMPLATES))
+                .thenReturn("/users/{id}, /users/{id}/orders");
+        filter.init(config);
+
+        filter.doFilter(request("/users/42"), mock(HttpServletResponse.class), chain);
+        filter.doFilter(request("/users/43"), mock(HttpServletResponse.class), chain);
+        filter.doFilter(request("/users/43/orders"), mock(HttpServletResponse.class), chain);
+        filter.doFilter(request("/orders/1"), mock(HttpServletResponse.class), chain);
+
+        assertThat(registry.timer("app.requests").getCount())
+                .isEqualTo(4);
+        assertThat(registry.timer("app.routes.users.{id}").getCount())
+                .isEqualTo(2);
+        assertThat(registry.timer("app.routes.users.{id}.orders").getCount())
+                .isEqualTo(1);
+        assertThat(registry.timer("app.other-routes").getCount())
+                .isEqualTo(1);
+    }
+
+    private HttpServletRequest request(String path) {
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getContextPath()).thenReturn("/ctx");
+        when(request.getRequestURI()).thenReturn("/ctx" + path);
+        return request;
+    }
+}
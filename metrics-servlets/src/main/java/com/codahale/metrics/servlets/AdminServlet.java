@@ -15,6 +15,7 @@ public class AdminServlet extends HttpServlet {
     public static final String DEFAULT_PING_URI = "/ping";
     public static final String DEFAULT_THREADS_URI = "/threads";
     public static final String DEFAULT_CPU_PROFILE_URI = "/pprof";
+    public static final String DEFAULT_PROMETHEUS_URI = "/prometheus";
 
     public static final String METRICS_URI_PARAM_KEY = "metrics-uri";
     public static final String PING_URI_PARAM_KEY = "ping-uri";
@@ -22,6 +23,7 @@ public class AdminServlet extends HttpServlet {
     public static final String HEALTHCHECK_URI_PARAM_KEY = "healthcheck-uri";
     public static final String SERVICE_NAME_PARAM_KEY= "service-name";
     public static final String CPU_PROFILE_URI_PARAM_KEY = "cpu-profile-uri";
+    public static final String PROMETHEUS_URI_PARAM_KEY = "prometheus-uri";
 
     private static final String TEMPLATE = String.format(
             "<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\"%n" +
@@ -39,6 +41,7 @@ public class AdminServlet extends HttpServlet {
                     "    <li><a href=\"{6}{7}?pretty=true\">Healthcheck</a></li>%n" +
                     "    <li><a href=\"{8}{9}\">CPU Profile</a></li>%n" +
                     "    <li><a href=\"{8}{9}?state=blocked\">CPU Contention</a></li>%n" +
+                    "    <li><a href=\"{11}{12}\">Prometheus</a></li>%n" +
                     "  </ul>%n" +
                     "</body>%n" +
                     "</html>"
@@ -51,11 +54,13 @@ public class AdminServlet extends HttpServlet {
     private transient PingServlet pingServlet;
     private transient ThreadDumpServlet threadDumpServlet;
     private transient CpuProfileServlet cpuProfileServlet;
+    private transient PrometheusServlet prometheusServlet;
     private transient String metricsUri;
     private transient String pingUri;
     private transient String threadsUri;
     private transient String healthcheckUri;
     private transient String cpuprofileUri;
+    private transient String prometheusUri;
     private transient String serviceName;
 
     @Override
@@ -77,14 +82,25 @@ public class AdminServlet extends HttpServlet {
         this.cpuProfileServlet = new CpuProfileServlet();
         cpuProfileServlet.init(config);
 
+        this.prometheusServlet = new PrometheusServlet();
+        prometheusServlet.init(config);
+
         this.metricsUri = getParam(config.getInitParameter(METRICS_URI_PARAM_KEY), DEFAULT_METRICS_URI);
         this.pingUri = getParam(config.getInitParameter(PING_URI_PARAM_KEY), DEFAULT_PING_URI);
         this.threadsUri = getParam(config.getInitParameter(THREADS_URI_PARAM_KEY), DEFAULT_THREADS_URI);
         this.healthcheckUri = getParam(config.getInitParameter(HEALTHCHECK_URI_PARAM_KEY), DEFAULT_HEALTHCHECK_URI);
         this.cpuprofileUri = getParam(config.getInitParameter(CPU_PROFILE_URI_PARAM_KEY), DEFAULT_CPU_PROFILE_URI);
+        this.prometheusUri = getParam(config.getInitParameter(PROMETHEUS_URI_PARAM_KEY), DEFAULT_PROMETHEUS_URI);
         this.serviceName = getParam(config.getInitParameter(SERVICE_NAME_PARAM_KEY), null);
     }
 
+    @Override
+    public void destroy() {
+        prometheusServlet.destroy();
+        cpuProfileServlet.destroy();
+        super.destroy();
+    }
+
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         final String path = req.getContextPath() + req.getServletPath();
@@ -96,7 +112,8 @@ public class AdminServlet extends HttpServlet {
         try {
             writer.println(MessageFormat.format(TEMPLATE, path, metricsUri, path, pingUri, path,
                                                 threadsUri, path, healthcheckUri, path, cpuprofileUri,
-                                                serviceName == null ? "" : " (" + serviceName + ")"));
+                                                serviceName == null ? "" : " (" + serviceName + ")",
+                                                path, prometheusUri));
         } finally {
             writer.close();
         }
@@ -117,6 +134,8 @@ public class AdminServlet extends HttpServlet {
             threadDumpServlet.service(req, resp);
         } else if (uri.equals(cpuprofileUri)) {
             cpuProfileServlet.service(req, resp);
+        } else if (uri.equals(prometheusUri)) {
+            prometheusServlet.service(req, resp);
         } else {
             resp.sendError(HttpServletResponse.SC_NOT_FOUND);
         }
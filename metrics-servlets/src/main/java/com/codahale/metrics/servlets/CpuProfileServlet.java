@@ -2,80 +2,240 @@ package com.codahale.metrics.servlets;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.io.PrintWriter;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import org.joda.time.Duration;
-import com.papertrail.profiler.CpuProfile;
+import com.codahale.metrics.jvm.SamplingProfiler;
 
 /**
- * An HTTP servlets which outputs a <a href="https://github.com/gperftools/gperftools">pprof</a> parseable response.
+ * An HTTP servlet which samples the JVM's threads for a while and outputs a
+ * <a href="https://github.com/gperftools/gperftools">pprof</a> parseable response, or collapsed
+ * stacks for flame graph tools.
+ * <p>
+ * Requests take the following parameters:
+ * <ul>
+ * <li>{@code duration}: how long to profile for, in seconds (default 10, at most 300)</li>
+ * <li>{@code frequency}: how many samples to take per second (default 100)</li>
+ * <li>{@code state}: a comma-separated list of the states of the threads to sample
+ * (default {@code runnable})</li>
+ * <li>{@code threads}: a regular expression for the names of the threads to sample</li>
+ * <li>{@code format}: {@code pprof} (the default) or {@code collapsed}</li>
+ * <li>{@code async}: if {@code true}, respond immediately with {@code 202 Accepted} and the ID of
+ * the profile, which can be downloaded with {@code ?id=<id>} once complete</li>
+ * <li>{@code cancel}: with {@code id}, if {@code true}, stop the profile and respond with the
+ * samples taken so far</li>
+ * </ul>
  */
 public class CpuProfileServlet extends HttpServlet {
     private static final long serialVersionUID = -668666696530287501L;
     private static final String CONTENT_TYPE = "pprof/raw";
+    private static final String COLLAPSED_CONTENT_TYPE = "text/plain";
     private static final String CACHE_CONTROL = "Cache-Control";
     private static final String NO_CACHE = "must-revalidate,no-cache,no-store";
-    private final Lock lock = new ReentrantLock();
+    private static final int MAX_RUNNING_PROFILES = 4;
+    private static final int MAX_STORED_PROFILES = 16;
+    private static final int MAX_DURATION = 300;
+
+    private transient SamplingProfiler profiler;
+    private transient Set<SamplingProfiler.Profile> running;
+    private transient Map<String, SamplingProfiler.Profile> profiles;
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        this.profiler = SamplingProfiler.builder().build();
+        this.running = new HashSet<SamplingProfiler.Profile>();
+        this.profiles = new LinkedHashMap<String, SamplingProfiler.Profile>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SamplingProfiler.Profile> eldest) {
+                return size() > MAX_STORED_PROFILES;
+            }
+        };
+    }
+
+    @Override
+    public void destroy() {
+        profiler.stop();
+        super.destroy();
+    }
 
     @Override
     protected void doGet(HttpServletRequest req,
                          HttpServletResponse resp) throws ServletException, IOException {
+        resp.setHeader(CACHE_CONTROL, NO_CACHE);
+        final boolean collapsed = "collapsed".equalsIgnoreCase(req.getParameter("format"));
 
-        int duration = 10;
-        if (req.getParameter("duration") != null) {
-            try {
-                duration = Integer.parseInt(req.getParameter("duration"));
-            } catch (NumberFormatException e) {
-                duration = 10;
+        final String id = req.getParameter("id");
+        if (id != null) {
+            final SamplingProfiler.Profile profile;
+            synchronized (profiles) {
+                profile = profiles.get(id);
+            }
+            if (profile == null) {
+                resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            if (Boolean.parseBoolean(req.getParameter("cancel"))) {
+                profile.cancel();
             }
+            if (!profile.isDone()) {
+                writeAccepted(req, resp, id);
+            } else {
+                writeProfile(resp, profile, collapsed);
+            }
+            return;
         }
 
-        int frequency = 100;
-        if (req.getParameter("frequency") != null) {
-            try {
-                frequency = Integer.parseInt(req.getParameter("frequency"));
-            } catch (NumberFormatException e) {
-                frequency = 100;
+        final int duration = Math.min(MAX_DURATION, getIntParameter(req, "duration", 10));
+        if (duration < 0) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "The duration must not be negative");
+            return;
+        }
+        final int frequency = Math.max(1, Math.min(1000, getIntParameter(req, "frequency", 100)));
+        final Set<Thread.State> states;
+        final Pattern threads;
+        try {
+            states = parseStates(req.getParameter("state"));
+            threads = req.getParameter("threads") == null ? null : Pattern.compile(req.getParameter("threads"));
+        } catch (IllegalArgumentException e) {
+            // also covers PatternSyntaxException
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
+        final SamplingProfiler.Profile profile = start(duration, frequency, states, threads);
+        if (profile == null) {
+            resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                           "Only " + MAX_RUNNING_PROFILES + " profiles may run at a time");
+            return;
+        }
+
+        if (Boolean.parseBoolean(req.getParameter("async"))) {
+            final String created = UUID.randomUUID().toString();
+            synchronized (profiles) {
+                profiles.put(created, profile);
             }
+            writeAccepted(req, resp, created);
+            return;
         }
 
-        final Thread.State state;
-        if ("blocked".equalsIgnoreCase(req.getParameter("state"))) {
-            state = Thread.State.BLOCKED;
+        try {
+            // the sampler may fall behind when a sample takes longer than the period
+            profile.await(duration * 2L + 1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            profile.cancel();
         }
-        else {
-            state = Thread.State.RUNNABLE;
+        writeProfile(resp, profile, collapsed);
+    }
+
+    protected void doProfile(OutputStream out, int duration, int frequency, Thread.State state) throws IOException {
+        if (duration < 0) {
+            throw new IllegalArgumentException("The duration must not be negative");
         }
+        final int capped = Math.min(MAX_DURATION, duration);
+        final SamplingProfiler.Profile profile = start(capped, frequency, EnumSet.of(state), null);
+        if (profile == null) {
+            throw new RuntimeException("Only " + MAX_RUNNING_PROFILES + " profiles may run at a time");
+        }
+        try {
+            profile.await(capped * 2L + 1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            profile.cancel();
+        }
+        profile.getStacks().writePprof(out, profile.getPeriodMicros());
+    }
+
+    private SamplingProfiler.Profile start(int duration, int frequency, Set<Thread.State> states,
+                                           Pattern threads) {
+        synchronized (running) {
+            final Iterator<SamplingProfiler.Profile> profiles = running.iterator();
+            while (profiles.hasNext()) {
+                if (profiles.next().isDone()) {
+                    profiles.remove();
+                }
+            }
+            if (running.size() >= MAX_RUNNING_PROFILES) {
+                return null;
+            }
+            final SamplingProfiler.Profile profile = profiler.start(duration, TimeUnit.SECONDS, frequency,
+                                                                    states, threads);
+            running.add(profile);
+            return profile;
+        }
+    }
+
+    private void writeAccepted(HttpServletRequest req, HttpServletResponse resp, String id) throws IOException {
+        resp.setStatus(HttpServletResponse.SC_ACCEPTED);
+        resp.setHeader("Location", req.getRequestURI() + "?id=" + id);
+        resp.setContentType(COLLAPSED_CONTENT_TYPE);
+        final PrintWriter writer = resp.getWriter();
+        try {
+            writer.println(id);
+        } finally {
+            writer.close();
+        }
+    }
 
+    private void writeProfile(HttpServletResponse resp, SamplingProfiler.Profile profile,
+                              boolean collapsed) throws IOException {
         resp.setStatus(HttpServletResponse.SC_OK);
-        resp.setHeader(CACHE_CONTROL, NO_CACHE);
-        resp.setContentType(CONTENT_TYPE);
+        resp.setContentType(collapsed ? COLLAPSED_CONTENT_TYPE : CONTENT_TYPE);
         final OutputStream output = resp.getOutputStream();
         try {
-            doProfile(output, duration, frequency, state);
+            if (collapsed) {
+                profile.getStacks().writeCollapsed(output);
+            } else {
+                profile.getStacks().writePprof(output, profile.getPeriodMicros());
+            }
         } finally {
             output.close();
         }
     }
 
-    protected void doProfile(OutputStream out, int duration, int frequency, Thread.State state) throws IOException {
-        if (lock.tryLock()) {
+    private static Set<Thread.State> parseStates(String param) {
+        if (param == null) {
+            return EnumSet.of(Thread.State.RUNNABLE);
+        }
+        final Set<Thread.State> states = EnumSet.noneOf(Thread.State.class);
+        for (String state : param.split(",")) {
+            final String trimmed = state.trim();
+            if (!trimmed.isEmpty()) {
+                states.add(Thread.State.valueOf(trimmed.toUpperCase(Locale.ENGLISH)));
+            }
+        }
+        if (states.isEmpty()) {
+            throw new IllegalArgumentException("No thread states given");
+        }
+        return states;
+    }
+
+    private static int getIntParameter(HttpServletRequest req, String name, int defaultValue) {
+        final String value = req.getParameter(name);
+        if (value != null) {
             try {
-                CpuProfile profile = CpuProfile.record(Duration.standardSeconds(duration),
-                        frequency, state);
-                if (profile == null) {
-                    throw new RuntimeException("could not create CpuProfile");
-                }
-                profile.writeGoogleProfile(out);
-                return;
-            } finally {
-                lock.unlock();
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return defaultValue;
             }
         }
-        throw new RuntimeException("Only one profile request may be active at a time");
+        return defaultValue;
     }
 }
@@ -15,7 +15,20 @@ import java.io.OutputStream;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.concurrent.ExecutorService;
-
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A servlet which runs the health checks in a given registry and returns their results as an
+ * {@code application/json} response.
+ * <p>
+ * By default, every request runs every health check. Setting the {@link #MAX_AGE} and/or
+ * {@link #TIMEOUT} init parameters (in milliseconds) switches to cached results instead: health
+ * checks run in parallel (on the {@link #HEALTH_CHECK_EXECUTOR} if there is one, or else on the
+ * registry's pool for cached runs), a result is reused until it's older than the max age,
+ * concurrent requests share a single run of each health check, and stale results are served while
+ * they are refreshed in the background. Health checks which don't finish within the timeout are
+ * reported as unhealthy. See {@link HealthCheckRegistry#runHealthChecks(long, long, TimeUnit)}.
+ */
 public class HealthCheckServlet extends HttpServlet {
     public static abstract class ContextListener implements ServletContextListener {
         /**
@@ -47,6 +60,8 @@ public class HealthCheckServlet extends HttpServlet {
 
     public static final String HEALTH_CHECK_REGISTRY = HealthCheckServlet.class.getCanonicalName() + ".registry";
     public static final String HEALTH_CHECK_EXECUTOR = HealthCheckServlet.class.getCanonicalName() + ".executor";
+    public static final String MAX_AGE = HealthCheckServlet.class.getCanonicalName() + ".maxAge";
+    public static final String TIMEOUT = HealthCheckServlet.class.getCanonicalName() + ".timeout";
 
     private static final long serialVersionUID = -8432996484889177321L;
     private static final String CONTENT_TYPE = "application/json";
@@ -54,6 +69,9 @@ public class HealthCheckServlet extends HttpServlet {
     private transient HealthCheckRegistry registry;
     private transient ExecutorService executorService;
     private transient ObjectMapper mapper;
+    private transient boolean cached;
+    private transient long maxAge;
+    private transient long timeout;
 
     public HealthCheckServlet() {
     }
@@ -75,12 +93,19 @@ public class HealthCheckServlet extends HttpServlet {
             }
         }
 
-        final Object executorAttr = config.getServletContext().getAttribute(HEALTH_CHECK_EXECUTOR);
+        final ServletContext context = config.getServletContext();
+        final Object executorAttr = context.getAttribute(HEALTH_CHECK_EXECUTOR);
         if (executorAttr instanceof ExecutorService) {
             this.executorService = (ExecutorService) executorAttr;
         }
 
         this.mapper = new ObjectMapper().registerModule(new HealthCheckModule());
+
+        final String maxAgeParam = context.getInitParameter(MAX_AGE);
+        final String timeoutParam = context.getInitParameter(TIMEOUT);
+        this.cached = maxAgeParam != null || timeoutParam != null;
+        this.maxAge = parseMillis(maxAgeParam);
+        this.timeout = parseMillis(timeoutParam);
     }
 
     @Override
@@ -122,12 +147,29 @@ public class HealthCheckServlet extends HttpServlet {
     }
 
     private SortedMap<String, HealthCheck.Result> runHealthChecks() {
+        if (cached) {
+            if (executorService == null) {
+                return registry.runHealthChecks(maxAge, timeout, TimeUnit.MILLISECONDS);
+            }
+            return registry.runHealthChecks(executorService, maxAge, timeout, TimeUnit.MILLISECONDS);
+        }
         if (executorService == null) {
             return registry.runHealthChecks();
         }
         return registry.runHealthChecks(executorService);
     }
 
+    private static long parseMillis(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
     private static boolean isAllHealthy(Map<String, HealthCheck.Result> results) {
         for (HealthCheck.Result result : results.values()) {
             if (!result.isHealthy()) {
@@ -1,9 +1,18 @@
 package com.codahale.metrics.servlets;
 
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
@@ -14,15 +23,53 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.codahale.metrics.json.MetricsModule;
+import com.codahale.metrics.wire.WireEncoder;
+import com.codahale.metrics.wire.WireFormat;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.util.JSONPObject;
 
 /**
  * A servlet which returns the metrics in a given registry as an {@code application/json} response.
+ * <p>
+ * Setting the {@link #STREAMING} init parameter to {@code true} writes each metric as the registry
+ * is walked instead of collecting sorted maps first, which keeps memory use and time-to-first-byte
+ * down for very large registries at the cost of unordered output. Setting {@link #GZIP} to
+ * {@code true} compresses the response for clients which accept {@code gzip}.
+ * <p>
+ * Setting {@link #CACHE_TTL} to a number of milliseconds renders each distinct query at most once
+ * per that period and serves the cached bytes in between, with an {@code ETag} which clients can
+ * revalidate with {@code If-None-Match}. Concurrent requests for a query share a single render.
+ * <p>
+ * Clients which send an {@code Accept} header with {@link WireFormat#CONTENT_TYPE} get the metrics
+ * in the compact binary format of {@code metrics-wire} instead of JSON, which is much cheaper to
+ * produce and to parse. The {@code fields} parameter and JSONP don't apply to it.
+ * <p>
+ * Setting the {@link #INSTRUMENTATION_REGISTRY} context attribute to a separate
+ * {@link MetricRegistry} records the cost of every render into it: a timer named
+ * {@code metrics.servlet.render}, a histogram of the uncompressed response size named
+ * {@code metrics.servlet.bytes} and a histogram of the registry's size named
+ * {@code metrics.servlet.registry}.
+ * <p>
+ * A request can narrow down the response with these parameters, which are applied before any
+ * metric's values are read:
+ * <ul>
+ * <li>{@code name}: a name prefix, or a glob with {@code *} and {@code ?} wildcards; may be repeated</li>
+ * <li>{@code type}: {@code gauges}, {@code counters}, {@code histograms}, {@code meters} or
+ * {@code timers}; may be repeated or comma-separated</li>
+ * <li>{@code fields}: a comma-separated list of the fields to write for each metric, e.g.
+ * {@code count,p99}</li>
+ * </ul>
  */
 public class MetricsServlet extends HttpServlet {
     /**
@@ -78,6 +125,14 @@ public class MetricsServlet extends HttpServlet {
             return MetricFilter.ALL;
         }
 
+        /**
+         * Returns a separate {@link MetricRegistry} into which the servlet records the cost of
+         * rendering the metrics, or {@code null} if it shouldn't.
+         */
+        protected MetricRegistry getInstrumentationRegistry() {
+            return null;
+        }
+
         @Override
         public void contextInitialized(ServletContextEvent event) {
             final ServletContext context = event.getServletContext();
@@ -95,6 +150,9 @@ public class MetricsServlet extends HttpServlet {
             if (getJsonpCallbackParameter() != null) {
                 context.setAttribute(CALLBACK_PARAM, getJsonpCallbackParameter());
             }
+            if (getInstrumentationRegistry() != null) {
+                context.setAttribute(INSTRUMENTATION_REGISTRY, getInstrumentationRegistry());
+            }
         }
 
         @Override
@@ -110,14 +168,76 @@ public class MetricsServlet extends HttpServlet {
     public static final String ALLOWED_ORIGIN = MetricsServlet.class.getCanonicalName() + ".allowedOrigin";
     public static final String METRIC_FILTER = MetricsServlet.class.getCanonicalName() + ".metricFilter";
     public static final String CALLBACK_PARAM = MetricsServlet.class.getCanonicalName() + ".jsonpCallback";
+    public static final String STREAMING = MetricsServlet.class.getCanonicalName() + ".streaming";
+    public static final String GZIP = MetricsServlet.class.getCanonicalName() + ".gzip";
+    public static final String CACHE_TTL = MetricsServlet.class.getCanonicalName() + ".cacheTtl";
+    public static final String INSTRUMENTATION_REGISTRY = MetricsServlet.class.getCanonicalName() + ".instrumentationRegistry";
+
+    /**
+     * A {@link MetricFilter} for the {@code name} and {@code type} request parameters.
+     */
+    private static class QueryFilter implements MetricFilter {
+        private final List<String> prefixes;
+        private final List<Pattern> globs;
+        private final Set<Class<? extends Metric>> types;
+
+        private QueryFilter(List<String> prefixes, List<Pattern> globs, Set<Class<? extends Metric>> types) {
+            this.prefixes = prefixes;
+            this.globs = globs;
+            this.types = types;
+        }
+
+        @Override
+        public boolean matches(String name, Metric metric) {
+            return matchesType(metric) && matchesName(name);
+        }
+
+        private boolean matchesType(Metric metric) {
+            if (types.isEmpty()) {
+                return true;
+            }
+            for (Class<? extends Metric> type : types) {
+                if (type.isInstance(metric)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matchesName(String name) {
+            if (prefixes.isEmpty() && globs.isEmpty()) {
+                return true;
+            }
+            for (String prefix : prefixes) {
+                if (name.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            for (Pattern glob : globs) {
+                if (glob.matcher(name).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
 
     private static final long serialVersionUID = 1049773947734939602L;
     private static final String CONTENT_TYPE = "application/json";
+    private static final int MAX_CACHED_QUERIES = 100;
 
     private String allowedOrigin;
     private String jsonpParamName;
+    private boolean gzip;
     private transient MetricRegistry registry;
+    private transient MetricFilter filter;
+    private transient TimeUnit rateUnit;
+    private transient TimeUnit durationUnit;
     private transient ObjectMapper mapper;
+    private transient ResponseCache cache;
+    private transient Timer renders;
+    private transient Histogram renderedBytes;
+    private transient Histogram registrySizes;
 
     public MetricsServlet() {
     }
@@ -140,52 +260,314 @@ public class MetricsServlet extends HttpServlet {
             }
         }
 
-        final TimeUnit rateUnit = parseTimeUnit(context.getInitParameter(RATE_UNIT),
-                                                TimeUnit.SECONDS);
-        final TimeUnit durationUnit = parseTimeUnit(context.getInitParameter(DURATION_UNIT),
-                                                    TimeUnit.SECONDS);
+        this.rateUnit = parseTimeUnit(context.getInitParameter(RATE_UNIT), TimeUnit.SECONDS);
+        this.durationUnit = parseTimeUnit(context.getInitParameter(DURATION_UNIT), TimeUnit.SECONDS);
         final boolean showSamples = Boolean.parseBoolean(context.getInitParameter(SHOW_SAMPLES));
-        MetricFilter filter = (MetricFilter) context.getAttribute(METRIC_FILTER);
-        if (filter == null) {
-          filter = MetricFilter.ALL;
-        }
+        final boolean streaming = Boolean.parseBoolean(context.getInitParameter(STREAMING));
+        final MetricFilter filter = (MetricFilter) context.getAttribute(METRIC_FILTER);
+        this.filter = filter == null ? MetricFilter.ALL : filter;
         this.mapper = new ObjectMapper().registerModule(new MetricsModule(rateUnit,
                                                                           durationUnit,
                                                                           showSamples,
-                                                                          filter));
+                                                                          this.filter,
+                                                                          streaming));
 
         this.allowedOrigin = context.getInitParameter(ALLOWED_ORIGIN);
         this.jsonpParamName = context.getInitParameter(CALLBACK_PARAM);
+        this.gzip = Boolean.parseBoolean(context.getInitParameter(GZIP));
+
+        final long cacheTtl = parseLong(context.getInitParameter(CACHE_TTL), 0);
+        if (cacheTtl > 0) {
+            this.cache = new ResponseCache(TimeUnit.MILLISECONDS.toNanos(cacheTtl),
+                                           MAX_CACHED_QUERIES,
+                                           Clock.defaultClock());
+        }
+
+        final Object instrumentationAttr = context.getAttribute(INSTRUMENTATION_REGISTRY);
+        if (instrumentationAttr instanceof MetricRegistry) {
+            if (instrumentationAttr == registry) {
+                // every render would change what is rendered
+                throw new ServletException("The instrumentation registry must not be the one being served.");
+            }
+            final MetricRegistry instrumentation = (MetricRegistry) instrumentationAttr;
+            this.renders = instrumentation.timer(MetricRegistry.name("metrics", "servlet", "render"));
+            this.renderedBytes = instrumentation.histogram(MetricRegistry.name("metrics", "servlet", "bytes"));
+            this.registrySizes = instrumentation.histogram(MetricRegistry.name("metrics", "servlet", "registry"));
+        }
     }
 
     @Override
     protected void doGet(HttpServletRequest req,
                          HttpServletResponse resp) throws ServletException, IOException {
-        resp.setContentType(CONTENT_TYPE);
+        resp.setContentType(acceptsWire(req) ? WireFormat.CONTENT_TYPE : CONTENT_TYPE);
         if (allowedOrigin != null) {
             resp.setHeader("Access-Control-Allow-Origin", allowedOrigin);
         }
+        // the response depends on Accept for the format, and on Accept-Encoding if it may be gzipped
+        resp.setHeader("Vary", gzip ? "Accept, Accept-Encoding" : "Accept");
+
+        if (cache != null) {
+            writeCachedResponse(req, resp);
+            return;
+        }
+
         resp.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
         resp.setStatus(HttpServletResponse.SC_OK);
 
-        final OutputStream output = resp.getOutputStream();
+        OutputStream output = resp.getOutputStream();
+        if (gzip && acceptsGzip(req)) {
+            resp.setHeader("Content-Encoding", "gzip");
+            output = new GZIPOutputStream(output);
+        }
         try {
-            if (jsonpParamName != null && req.getParameter(jsonpParamName) != null) {
-                getWriter(req).writeValue(output, new JSONPObject(req.getParameter(jsonpParamName), registry));
-            } else {
-                getWriter(req).writeValue(output, registry);
+            writeMetrics(req, output);
+        } finally {
+            output.close();
+        }
+    }
+
+    private void writeCachedResponse(final HttpServletRequest req,
+                                     HttpServletResponse resp) throws IOException {
+        final String query = req.getQueryString();
+        final String key = (acceptsWire(req) ? "wire:" : "") + (query == null ? "" : query);
+        final ResponseCache.Response cached = cache.get(key,
+                                                        new Callable<ResponseCache.Response>() {
+            @Override
+            public ResponseCache.Response call() throws Exception {
+                final ByteArrayOutputStream output = new ByteArrayOutputStream();
+                writeMetrics(req, output);
+                return new ResponseCache.Response(output.toByteArray(), gzip);
             }
+        });
+
+        // clients may keep the response, but have to revalidate it every time
+        resp.setHeader("Cache-Control", "must-revalidate,no-cache");
+        resp.setHeader("ETag", cached.getEtag());
+        if (matchesEtag(req.getHeader("If-None-Match"), cached.getEtag())) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        resp.setStatus(HttpServletResponse.SC_OK);
+        byte[] body = cached.getBody();
+        if (gzip && acceptsGzip(req)) {
+            resp.setHeader("Content-Encoding", "gzip");
+            body = cached.getGzippedBody();
+        }
+        resp.setContentLength(body.length);
+        final OutputStream output = resp.getOutputStream();
+        try {
+            output.write(body);
         } finally {
             output.close();
         }
     }
 
+    private void writeMetrics(HttpServletRequest req, OutputStream output) throws IOException {
+        if (renders == null) {
+            render(req, output);
+            return;
+        }
+        final CountingOutputStream counting = new CountingOutputStream(output);
+        final Timer.Context context = renders.time();
+        try {
+            render(req, counting);
+        } finally {
+            context.stop();
+            renderedBytes.update(counting.count);
+            registrySizes.update(registry.getMetrics().size());
+        }
+    }
+
+    private void render(HttpServletRequest req, OutputStream output) throws IOException {
+        if (acceptsWire(req)) {
+            final MetricFilter queryFilter = parseQueryFilter(req);
+            final WireEncoder encoder = new WireEncoder(rateUnit, durationUnit, false);
+            encoder.encode(System.currentTimeMillis(),
+                           registry,
+                           queryFilter == null ? filter : new BothFilter(filter, queryFilter));
+            encoder.writeTo(output);
+        } else if (jsonpParamName != null && req.getParameter(jsonpParamName) != null) {
+            getWriter(req).writeValue(output, new JSONPObject(req.getParameter(jsonpParamName), registry));
+        } else {
+            getWriter(req).writeValue(output, registry);
+        }
+    }
+
+    private static boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            final String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(etag) || trimmed.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private ObjectWriter getWriter(HttpServletRequest request) {
         final boolean prettyPrint = Boolean.parseBoolean(request.getParameter("pretty"));
-        if (prettyPrint) {
-            return mapper.writerWithDefaultPrettyPrinter();
+        ObjectWriter writer = prettyPrint ? mapper.writerWithDefaultPrettyPrinter() : mapper.writer();
+
+        final MetricFilter filter = parseQueryFilter(request);
+        if (filter != null) {
+            writer = writer.withAttribute(MetricsModule.FILTER_KEY, filter);
+        }
+        final String fields = request.getParameter("fields");
+        if (fields != null) {
+            writer = writer.withAttribute(MetricsModule.FIELDS_KEY, new HashSet<String>(splitValues(fields)));
+        }
+        return writer;
+    }
+
+    private static MetricFilter parseQueryFilter(HttpServletRequest request) {
+        final String[] names = request.getParameterValues("name");
+        final String[] types = request.getParameterValues("type");
+        if (names == null && types == null) {
+            return null;
+        }
+
+        final List<String> prefixes = new ArrayList<String>();
+        final List<Pattern> globs = new ArrayList<Pattern>();
+        if (names != null) {
+            for (String name : names) {
+                if (name.indexOf('*') >= 0 || name.indexOf('?') >= 0) {
+                    globs.add(compileGlob(name));
+                } else {
+                    prefixes.add(name);
+                }
+            }
+        }
+
+        final Set<Class<? extends Metric>> metricTypes = new HashSet<Class<? extends Metric>>();
+        if (types != null) {
+            for (String values : types) {
+                for (String type : splitValues(values)) {
+                    metricTypes.add(parseMetricType(type));
+                }
+            }
+        }
+        return new QueryFilter(prefixes, globs, metricTypes);
+    }
+
+    private static Class<? extends Metric> parseMetricType(String type) {
+        final String singular = type.toLowerCase(Locale.US).replaceFirst("s$", "");
+        if ("gauge".equals(singular)) {
+            return Gauge.class;
+        } else if ("counter".equals(singular)) {
+            return Counter.class;
+        } else if ("histogram".equals(singular)) {
+            return Histogram.class;
+        } else if ("meter".equals(singular)) {
+            return Meter.class;
+        } else if ("timer".equals(singular)) {
+            return Timer.class;
+        }
+        // an unknown type matches nothing rather than everything
+        return UnknownMetric.class;
+    }
+
+    private static Pattern compileGlob(String glob) {
+        final StringBuilder regex = new StringBuilder();
+        int start = 0;
+        for (int i = 0; i < glob.length(); i++) {
+            final char c = glob.charAt(i);
+            if (c == '*' || c == '?') {
+                if (i > start) {
+                    regex.append(Pattern.quote(glob.substring(start, i)));
+                }
+                regex.append(c == '*' ? ".*" : ".");
+                start = i + 1;
+            }
+        }
+        if (start < glob.length()) {
+            regex.append(Pattern.quote(glob.substring(start)));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static List<String> splitValues(String values) {
+        final List<String> result = new ArrayList<String>();
+        for (String value : values.split(",")) {
+            final String trimmed = value.trim();
+            if (!trimmed.isEmpty()) {
+                result.add(trimmed);
+            }
+        }
+        return result;
+    }
+
+    private interface UnknownMetric extends Metric {
+    }
+
+    /**
+     * Matches metrics which match both of the given filters.
+     */
+    private static class BothFilter implements MetricFilter {
+        private final MetricFilter first;
+        private final MetricFilter second;
+
+        private BothFilter(MetricFilter first, MetricFilter second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean matches(String name, Metric metric) {
+            return first.matches(name, metric) && second.matches(name, metric);
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static boolean acceptsWire(HttpServletRequest request) {
+        final String accept = request.getHeader("Accept");
+        return accept != null && accept.contains(WireFormat.CONTENT_TYPE);
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        final String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            final String[] parts = coding.trim().split(";");
+            if ("gzip".equalsIgnoreCase(parts[0].trim())) {
+                return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
         }
-        return mapper.writer();
     }
 
     private TimeUnit parseTimeUnit(String value, TimeUnit defaultValue) {
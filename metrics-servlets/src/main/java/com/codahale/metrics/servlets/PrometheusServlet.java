@@ -0,0 +1,380 @@
+package com.codahale.metrics.servlets;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricRegistryListener;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A servlet which returns the metrics in a given registry in the Prometheus text exposition format.
+ * <p>
+ * The registry is written as it is walked. Metric names are sanitized into Prometheus names when
+ * the metrics are added to the registry, and the result is kept until they're removed. Counters
+ * and gauges are exposed as gauges (counters can be decremented), meters as counters named
+ * {@code <name>_total}, and histograms and timers as summaries with the usual quantiles; timer
+ * values are in seconds, named {@code <name>_seconds}. A summary's {@code _sum} is estimated as
+ * its snapshot's mean times its count.
+ * <p>
+ * Different metric names can sanitize to the same Prometheus names, which would make Prometheus
+ * reject the whole scrape, so a metric whose names (including a summary's {@code _count} and
+ * {@code _sum}) are already taken by a metric which was added earlier is skipped and logged,
+ * until that metric is removed. Of the metrics which are already in the registry when the servlet
+ * starts, the first one in the registry's order wins.
+ * <p>
+ * The servlet uses the same {@link MetricsServlet#METRICS_REGISTRY} and
+ * {@link MetricsServlet#METRIC_FILTER} servlet context attributes as {@link MetricsServlet}.
+ *
+ * @see <a href="https://prometheus.io/docs/instrumenting/exposition_formats/">Exposition formats</a>
+ */
+public class PrometheusServlet extends HttpServlet {
+    private static final long serialVersionUID = -3577213582125563457L;
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double SECONDS_PER_NANO = 1.0 / 1000000000L;
+
+    /**
+     * The sanitized name, the names of the samples and the {@code HELP} and {@code TYPE} lines of a
+     * metric.
+     */
+    private static class Family {
+        private final String name;
+        private final String[] sampleNames;
+        private final String header;
+
+        private Family(String name, String[] sampleNames, String header) {
+            this.name = name;
+            this.sampleNames = sampleNames;
+            this.header = header;
+        }
+    }
+
+    /**
+     * Keeps the families of the metrics in the registry, and which metric owns each sample name.
+     */
+    private class FamilyTracker implements MetricRegistryListener {
+        // sample name to the name of the metric which owns it
+        private final Map<String, String> owners = new HashMap<String, String>();
+        // families whose sample names are owned by other metrics
+        private final Map<String, Family> colliding = new HashMap<String, Family>();
+
+        @Override
+        public void onGaugeAdded(String name, Gauge<?> gauge) {
+            added(name, gauge);
+        }
+
+        @Override
+        public void onGaugeRemoved(String name) {
+            removed(name);
+        }
+
+        @Override
+        public void onCounterAdded(String name, Counter counter) {
+            added(name, counter);
+        }
+
+        @Override
+        public void onCounterRemoved(String name) {
+            removed(name);
+        }
+
+        @Override
+        public void onHistogramAdded(String name, Histogram histogram) {
+            added(name, histogram);
+        }
+
+        @Override
+        public void onHistogramRemoved(String name) {
+            removed(name);
+        }
+
+        @Override
+        public void onMeterAdded(String name, Meter meter) {
+            added(name, meter);
+        }
+
+        @Override
+        public void onMeterRemoved(String name) {
+            removed(name);
+        }
+
+        @Override
+        public void onTimerAdded(String name, Timer timer) {
+            added(name, timer);
+        }
+
+        @Override
+        public void onTimerRemoved(String name) {
+            removed(name);
+        }
+
+        private synchronized void added(String name, Metric metric) {
+            if (!filter.matches(name, metric)) {
+                return;
+            }
+            final Family family = createFamily(name, metric);
+            final String owner = owner(family);
+            if (owner == null) {
+                claim(name, family);
+            } else {
+                colliding.put(name, family);
+                log("Not writing " + name + ": its Prometheus names are taken by " + owner);
+            }
+        }
+
+        private synchronized void removed(String name) {
+            colliding.remove(name);
+            final Family family = families.remove(name);
+            if (family == null) {
+                return;
+            }
+            for (String sampleName : family.sampleNames) {
+                owners.remove(sampleName);
+            }
+            // the names may be free for a metric which was skipped
+            final Iterator<Map.Entry<String, Family>> skipped = colliding.entrySet().iterator();
+            while (skipped.hasNext()) {
+                final Map.Entry<String, Family> entry = skipped.next();
+                if (owner(entry.getValue()) == null) {
+                    skipped.remove();
+                    claim(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+
+        private String owner(Family family) {
+            for (String sampleName : family.sampleNames) {
+                final String owner = owners.get(sampleName);
+                if (owner != null) {
+                    return owner;
+                }
+            }
+            return null;
+        }
+
+        private void claim(String name, Family family) {
+            for (String sampleName : family.sampleNames) {
+                owners.put(sampleName, name);
+            }
+            families.put(name, family);
+        }
+    }
+
+    private transient MetricRegistry registry;
+    private transient MetricFilter filter;
+    // the families of the metrics to write, by metric name
+    private transient ConcurrentMap<String, Family> families;
+    private transient MetricRegistryListener tracker;
+
+    public PrometheusServlet() {
+    }
+
+    public PrometheusServlet(MetricRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+
+        final ServletContext context = config.getServletContext();
+        if (null == registry) {
+            final Object registryAttr = context.getAttribute(MetricsServlet.METRICS_REGISTRY);
+            if (registryAttr instanceof MetricRegistry) {
+                this.registry = (MetricRegistry) registryAttr;
+            } else {
+                throw new ServletException("Couldn't find a MetricRegistry instance.");
+            }
+        }
+
+        final Object filterAttr = context.getAttribute(MetricsServlet.METRIC_FILTER);
+        this.filter = filterAttr instanceof MetricFilter ? (MetricFilter) filterAttr : MetricFilter.ALL;
+        this.families = new ConcurrentHashMap<String, Family>();
+        this.tracker = new FamilyTracker();
+        registry.addListener(tracker);
+    }
+
+    @Override
+    public void destroy() {
+        if (registry != null && tracker != null) {
+            registry.removeListener(tracker);
+        }
+        super.destroy();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req,
+                         HttpServletResponse resp) throws ServletException, IOException {
+        resp.setContentType(CONTENT_TYPE);
+        resp.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+        resp.setStatus(HttpServletResponse.SC_OK);
+
+        final Writer writer = resp.getWriter();
+        try {
+            for (Map.Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+                // filtered out, colliding, or only just added
+                final Family family = families.get(entry.getKey());
+                if (family != null) {
+                    writeMetric(writer, family, entry.getValue());
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void writeMetric(Writer writer, Family family, Metric metric) throws IOException {
+        if (metric instanceof Gauge) {
+            final Object value;
+            try {
+                value = ((Gauge<?>) metric).getValue();
+            } catch (RuntimeException e) {
+                return;
+            }
+            final double number;
+            if (value instanceof Number) {
+                number = ((Number) value).doubleValue();
+            } else if (value instanceof Boolean) {
+                number = ((Boolean) value) ? 1 : 0;
+            } else {
+                return;
+            }
+            writer.write(family.header);
+            writeSample(writer, family.name, null, number);
+        } else if (metric instanceof Counter) {
+            writer.write(family.header);
+            writeSample(writer, family.name, ((Counter) metric).getCount());
+        } else if (metric instanceof Histogram) {
+            final Histogram histogram = (Histogram) metric;
+            writer.write(family.header);
+            writeSummary(writer, family.name, histogram.getSnapshot(), 1, histogram.getCount());
+        } else if (metric instanceof Meter) {
+            writer.write(family.header);
+            writeSample(writer, family.name, ((Meter) metric).getCount());
+        } else if (metric instanceof Timer) {
+            final Timer timer = (Timer) metric;
+            writer.write(family.header);
+            writeSummary(writer, family.name, timer.getSnapshot(), SECONDS_PER_NANO, timer.getCount());
+        }
+    }
+
+    private static Family createFamily(String name, Metric metric) {
+        final String sanitized = sanitize(name);
+        final String familyName;
+        final String type;
+        final String kind;
+        if (metric instanceof Gauge) {
+            familyName = sanitized;
+            type = "gauge";
+            kind = "Gauge";
+        } else if (metric instanceof Counter) {
+            familyName = sanitized;
+            type = "gauge";
+            kind = "Counter";
+        } else if (metric instanceof Histogram) {
+            familyName = sanitized;
+            type = "summary";
+            kind = "Histogram";
+        } else if (metric instanceof Meter) {
+            familyName = sanitized + "_total";
+            type = "counter";
+            kind = "Meter";
+        } else {
+            familyName = sanitized + "_seconds";
+            type = "summary";
+            kind = "Timer";
+        }
+
+        final String help = "# HELP " + familyName + " Generated from " + kind + " " + escapeHelp(name) + '\n';
+        final String typeLine = "# TYPE " + familyName + ' ' + type + '\n';
+        final String[] sampleNames = "summary".equals(type) ?
+                new String[]{familyName, familyName + "_count", familyName + "_sum"} :
+                new String[]{familyName};
+        return new Family(familyName, sampleNames, help + typeLine);
+    }
+
+    private static void writeSummary(Writer writer,
+                                     String name,
+                                     Snapshot snapshot,
+                                     double factor,
+                                     long count) throws IOException {
+        writeSample(writer, name, "0.5", snapshot.getMedian() * factor);
+        writeSample(writer, name, "0.75", snapshot.get75thPercentile() * factor);
+        writeSample(writer, name, "0.95", snapshot.get95thPercentile() * factor);
+        writeSample(writer, name, "0.98", snapshot.get98thPercentile() * factor);
+        writeSample(writer, name, "0.99", snapshot.get99thPercentile() * factor);
+        writeSample(writer, name, "0.999", snapshot.get999thPercentile() * factor);
+        writeSample(writer, name + "_count", count);
+        writeSample(writer, name + "_sum", null, snapshot.getMean() * count * factor);
+    }
+
+    private static void writeSample(Writer writer, String name, String quantile, double value) throws IOException {
+        writer.write(name);
+        if (quantile != null) {
+            writer.write("{quantile=\"");
+            writer.write(quantile);
+            writer.write("\"}");
+        }
+        writer.write(' ');
+        writer.write(formatValue(value));
+        writer.write('\n');
+    }
+
+    private static void writeSample(Writer writer, String name, long value) throws IOException {
+        writer.write(name);
+        writer.write(' ');
+        writer.write(Long.toString(value));
+        writer.write('\n');
+    }
+
+    private static String formatValue(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        } else if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * Turns a metric name into a valid Prometheus name, replacing invalid characters with
+     * underscores.
+     */
+    static String sanitize(String name) {
+        final StringBuilder builder = new StringBuilder(name.length() + 1);
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':' ||
+                    (c >= '0' && c <= '9' && i > 0)) {
+                builder.append(c);
+            } else if (c >= '0' && c <= '9') {
+                builder.append('_').append(c);
+            } else {
+                builder.append('_');
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String escapeHelp(String text) {
+        return text.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+}
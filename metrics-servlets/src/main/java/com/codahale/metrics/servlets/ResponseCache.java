@@ -0,0 +1,163 @@
+package com.codahale.metrics.servlets;
+
+import com.codahale.metrics.Clock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caches rendered responses for a short time, keyed by e.g. the request's query string.
+ * <p>
+ * Concurrent requests for a key which isn't cached share a single render. Failed renders are not
+ * cached. Once {@code maxEntries} keys are cached, requests for other keys are rendered without
+ * being cached until some of the entries expire.
+ */
+class ResponseCache {
+    /**
+     * A rendered response body, along with its gzipped form (if asked for) and an entity tag.
+     */
+    static class Response {
+        private final byte[] body;
+        private final byte[] gzippedBody;
+        private final String etag;
+
+        Response(byte[] body, boolean gzip) throws IOException {
+            this.body = body;
+            this.gzippedBody = gzip ? gzip(body) : null;
+            final CRC32 crc = new CRC32();
+            crc.update(body);
+            this.etag = "\"" + Long.toHexString(crc.getValue()) + '-' + Integer.toHexString(body.length) + '"';
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+
+        byte[] getGzippedBody() {
+            return gzippedBody;
+        }
+
+        String getEtag() {
+            return etag;
+        }
+
+        private static byte[] gzip(byte[] body) throws IOException {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4 + 64);
+            final GZIPOutputStream output = new GZIPOutputStream(bytes);
+            try {
+                output.write(body);
+            } finally {
+                output.close();
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    private static class Entry {
+        private final FutureTask<Response> task;
+        private final long renderedAt;
+
+        private Entry(Callable<Response> renderer, long renderedAt) {
+            this.task = new FutureTask<Response>(renderer);
+            this.renderedAt = renderedAt;
+        }
+    }
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Clock clock;
+    private final ConcurrentMap<String, Entry> entries;
+
+    ResponseCache(long ttlNanos, int maxEntries, Clock clock) {
+        this.ttlNanos = ttlNanos;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        this.entries = new ConcurrentHashMap<String, Entry>();
+    }
+
+    /**
+     * Returns the cached response for the given key, rendering it if there is no fresh one.
+     */
+    Response get(String key, Callable<Response> renderer) throws IOException {
+        final long now = clock.getTick();
+        Entry entry = entries.get(key);
+        if (entry != null && isExpired(entry, now)) {
+            entries.remove(key, entry);
+            entry = null;
+        }
+
+        if (entry == null) {
+            if (entries.size() >= maxEntries) {
+                removeExpired(now);
+            }
+            final Entry created = new Entry(renderer, now);
+            if (entries.size() >= maxEntries) {
+                created.task.run();
+                return await(created);
+            }
+            entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                entry = created;
+                created.task.run();
+            }
+        }
+
+        try {
+            return await(entry);
+        } catch (IOException e) {
+            entries.remove(key, entry);
+            throw e;
+        } catch (RuntimeException e) {
+            entries.remove(key, entry);
+            throw e;
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return entry.task.isDone() && now - entry.renderedAt >= ttlNanos;
+    }
+
+    private void removeExpired(long now) {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (isExpired(iterator.next(), now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static Response await(Entry entry) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return entry.task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -9,10 +9,23 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.management.ManagementFactory;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
 
 /**
  * An HTTP servlets which outputs a {@code text/plain} dump of all threads in
  * the VM. Only responds to {@code GET} requests.
+ * <p>
+ * Requests with any of the following parameters get a streaming dump instead, which fetches and
+ * writes a chunk of threads at a time (see {@link ThreadDump#dump(OutputStream, ThreadDump.Options)}):
+ * <ul>
+ * <li>{@code threads}: a regular expression for the names of the threads to dump</li>
+ * <li>{@code state}: a comma-separated list of the states of the threads to dump</li>
+ * <li>{@code depth}: the maximum number of frames of each stack to dump</li>
+ * <li>{@code collapse}: if {@code true}, dump identical stacks once</li>
+ * </ul>
  */
 public class ThreadDumpServlet extends HttpServlet {
 
@@ -41,11 +54,54 @@ public class ThreadDumpServlet extends HttpServlet {
             resp.getWriter().println("Sorry your runtime environment does not allow to dump threads.");
             return;
         }
+
+        final ThreadDump.Options options;
+        try {
+            options = getOptions(req);
+        } catch (IllegalArgumentException e) {
+            // also covers PatternSyntaxException
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+
         final OutputStream output = resp.getOutputStream();
         try {
-            threadDump.dump(output);
+            if (options == null) {
+                threadDump.dump(output);
+            } else {
+                threadDump.dump(output, options);
+            }
         } finally {
             output.close();
         }
     }
+
+    private static ThreadDump.Options getOptions(HttpServletRequest req) {
+        final String threads = req.getParameter("threads");
+        final String state = req.getParameter("state");
+        final String depth = req.getParameter("depth");
+        final String collapse = req.getParameter("collapse");
+        if (threads == null && state == null && depth == null && collapse == null) {
+            return null;
+        }
+
+        final ThreadDump.Options options = ThreadDump.options();
+        if (threads != null) {
+            options.threadNames(Pattern.compile(threads));
+        }
+        if (state != null) {
+            final Set<Thread.State> states = EnumSet.noneOf(Thread.State.class);
+            for (String name : state.split(",")) {
+                if (!name.trim().isEmpty()) {
+                    states.add(Thread.State.valueOf(name.trim().toUpperCase(Locale.ENGLISH)));
+                }
+            }
+            options.states(states);
+        }
+        if (depth != null) {
+            // NumberFormatException is an IllegalArgumentException
+            options.maxDepth(Integer.parseInt(depth));
+        }
+        return options.collapse(Boolean.parseBoolean(collapse));
+    }
 }
@@ -52,6 +52,7 @@ public class AdminServletTest extends AbstractServletTest {
                                 "    <li><a href=\"/context/admin/healthcheck?pretty=true\">Healthcheck</a></li>%n" +
                                 "    <li><a href=\"/context/admin/pprof\">CPU Profile</a></li>%n" +
                                 "    <li><a href=\"/context/admin/pprof?state=blocked\">CPU Contention</a></li>%n" +
+                                "    <li><a href=\"/context/admin/prometheus\">Prometheus</a></li>%n" +
                                 "  </ul>%n" +
                                 "</body>%n" +
                                 "</html>%n"
@@ -40,4 +40,81 @@ public class CpuProfileServletTest extends AbstractServletTest {
                 .isEqualTo("must-revalidate,no-cache,no-store");
 
     }
+
+    @Test
+    public void returnsCollapsedStacks() throws Exception {
+        request.setURI("/pprof?duration=1&format=collapsed&state=runnable,waiting");
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.get(HttpHeader.CONTENT_TYPE))
+                .startsWith("text/plain");
+    }
+
+    @Test
+    public void returnsProfilesAsynchronously() throws Exception {
+        request.setURI("/pprof?duration=1&async=true");
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(202);
+        final String id = response.getContent().trim();
+        assertThat(response.get(HttpHeader.LOCATION))
+                .endsWith("/pprof?id=" + id);
+
+        request.setURI("/pprof?id=" + id);
+        processRequest();
+        assertThat(response.getStatus())
+                .isEqualTo(202);
+
+        Thread.sleep(2000);
+        processRequest();
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.get(HttpHeader.CONTENT_TYPE))
+                .isEqualTo("pprof/raw");
+    }
+
+    @Test
+    public void returns404ForUnknownProfiles() throws Exception {
+        request.setURI("/pprof?id=unknown");
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(404);
+    }
+
+    @Test
+    public void returns400ForUnknownStates() throws Exception {
+        request.setURI("/pprof?duration=1&state=sleeping");
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(400);
+    }
+
+    @Test
+    public void returns400ForNegativeDurations() throws Exception {
+        request.setURI("/pprof?duration=-1");
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(400);
+    }
+
+    @Test
+    public void cancelsAsynchronousProfiles() throws Exception {
+        request.setURI("/pprof?duration=60&async=true&state=runnable,waiting,timed_waiting");
+        processRequest();
+        final String id = response.getContent().trim();
+
+        request.setURI("/pprof?id=" + id + "&cancel=true&format=collapsed");
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.get(HttpHeader.CONTENT_TYPE))
+                .startsWith("text/plain");
+    }
 }
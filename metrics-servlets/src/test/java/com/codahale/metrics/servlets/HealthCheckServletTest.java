@@ -12,6 +12,7 @@ import static org.mockito.Mockito.*;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
@@ -23,8 +24,11 @@ public class HealthCheckServletTest extends AbstractServletTest {
     private final HealthCheckRegistry registry = new HealthCheckRegistry();
     private final ExecutorService threadPool = Executors.newCachedThreadPool();
 
+    private ServletTester tester;
+
     @Override
     protected void setUp(ServletTester tester) {
+        this.tester = tester;
         tester.addServlet(HealthCheckServlet.class, "/healthchecks");
         tester.setAttribute("com.codahale.metrics.servlets.HealthCheckServlet.registry", registry);
         tester.setAttribute("com.codahale.metrics.servlets.HealthCheckServlet.executor", threadPool);
@@ -73,6 +77,29 @@ public class HealthCheckServletTest extends AbstractServletTest {
                 .isEqualTo("application/json");
     }
 
+    @Test
+    public void optionallyCachesResults() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        registry.register("fun", new HealthCheck() {
+            @Override
+            protected Result check() throws Exception {
+                return Result.healthy("run " + runs.incrementAndGet());
+            }
+        });
+        tester.getContext().setInitParameter("com.codahale.metrics.servlets.HealthCheckServlet.maxAge", "60000");
+        tester.getContext().setInitParameter("com.codahale.metrics.servlets.HealthCheckServlet.timeout", "1000");
+
+        processRequest();
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.getContent())
+                .isEqualTo("{\"fun\":{\"healthy\":true,\"message\":\"run 1\"}}");
+        assertThat(runs.get())
+                .isEqualTo(1);
+    }
+
     @Test
     public void returnsA500IfAnyHealthChecksAreUnhealthy() throws Exception {
         registry.register("fun", new HealthCheck() {
@@ -1,13 +1,17 @@
 package com.codahale.metrics.servlets;
 
 import com.codahale.metrics.*;
+import com.codahale.metrics.wire.WireDecoder;
 
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.servlet.ServletTester;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
@@ -219,6 +223,149 @@ public class MetricsServletTest extends AbstractServletTest {
                 .isEqualTo("application/json");
     }
 
+    @Test
+    public void narrowsTheResponseDownByNameTypeAndFields() throws Exception {
+        registry.counter("t.counter").inc();
+        request.setURI("/metrics?name=t*&name=c&type=timers,counters&fields=count");
+
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.getContent())
+                .isEqualTo("{" +
+                                   "\"version\":\"3.1.3\"," +
+                                   "\"gauges\":{}," +
+                                   "\"counters\":{\"c\":{\"count\":1},\"t.counter\":{\"count\":1}}," +
+                                   "\"histograms\":{}," +
+                                   "\"meters\":{}," +
+                                   "\"timers\":{\"t\":{\"count\":1}}}");
+    }
+
+    @Test
+    public void anUnknownTypeMatchesNothing() throws Exception {
+        request.setURI("/metrics?type=widgets");
+
+        processRequest();
+
+        assertThat(response.getContent())
+                .isEqualTo("{" +
+                                   "\"version\":\"3.1.3\"," +
+                                   "\"gauges\":{}," +
+                                   "\"counters\":{}," +
+                                   "\"histograms\":{}," +
+                                   "\"meters\":{}," +
+                                   "\"timers\":{}}");
+    }
+
+    @Test
+    public void optionallyCachesResponsesWithAnEtag() throws Exception {
+        tester.getContext().setInitParameter("com.codahale.metrics.servlets.MetricsServlet.cacheTtl", "60000");
+        request.setURI("/metrics?type=counters");
+
+        processRequest();
+        final String etag = response.get("ETag");
+        final String content = response.getContent();
+
+        registry.counter("c").inc();
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.get("ETag"))
+                .isNotNull()
+                .isEqualTo(etag);
+        assertThat(response.getContent())
+                .isEqualTo(content)
+                .contains("\"c\":{\"count\":1}");
+
+        request.setHeader("If-None-Match", etag);
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(304);
+
+        request.setURI("/metrics?type=counters&pretty=false");
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.getContent())
+                .contains("\"c\":{\"count\":2}");
+    }
+
+    @Test
+    public void returnsTheWireFormatToClientsWhichAcceptIt() throws Exception {
+        request.setHeader("Accept", "application/x-metrics-wire");
+        request.setURI("/metrics?type=counters,gauges");
+
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.get(HttpHeader.CONTENT_TYPE))
+                .isEqualTo("application/x-metrics-wire");
+
+        final WireDecoder decoder = new WireDecoder(new ByteArrayInputStream(response.getContentBytes()));
+        final WireDecoder.SnapshotVisitor visitor = mock(WireDecoder.SnapshotVisitor.class);
+        assertThat(decoder.readSnapshot(visitor))
+                .isPositive();
+        verify(visitor).gauge("g1", 100.0);
+        verify(visitor).counter("c", 1);
+        assertThat(decoder.readSnapshot(visitor))
+                .isEqualTo(-1);
+    }
+
+    @Test
+    public void optionallyRecordsTheCostOfRenderingIntoASeparateRegistry() throws Exception {
+        final MetricRegistry instrumentation = new MetricRegistry();
+        tester.getContext().setAttribute("com.codahale.metrics.servlets.MetricsServlet.instrumentationRegistry",
+                                         instrumentation);
+
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(instrumentation.timer("metrics.servlet.render").getCount())
+                .isEqualTo(1);
+        assertThat(instrumentation.histogram("metrics.servlet.bytes").getSnapshot().getMax())
+                .isEqualTo(response.getContentBytes().length);
+        assertThat(instrumentation.histogram("metrics.servlet.registry").getSnapshot().getMax())
+                .isEqualTo(5);
+    }
+
+    @Test
+    public void optionallyStreamsAndCompressesTheJson() throws Exception {
+        tester.getContext().setInitParameter("com.codahale.metrics.servlets.MetricsServlet.streaming", "true");
+        tester.getContext().setInitParameter("com.codahale.metrics.servlets.MetricsServlet.gzip", "true");
+        request.setHeader("Accept-Encoding", "deflate, gzip");
+
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.get("Content-Encoding"))
+                .isEqualTo("gzip");
+        assertThat(response.get("Vary"))
+                .isEqualTo("Accept, Accept-Encoding");
+        assertThat(gunzip(response.getContentBytes()))
+                .startsWith("{\"version\":\"3.1.3\",\"gauges\":{\"g1\":{\"value\":100}},\"counters\":{\"c\":{\"count\":1}},")
+                .contains("\"timers\":{\"t\":{\"count\":1,");
+    }
+
+    @Test
+    public void doesNotCompressTheJsonForClientsWhichDoNotAcceptGzip() throws Exception {
+        tester.getContext().setInitParameter("com.codahale.metrics.servlets.MetricsServlet.gzip", "true");
+        request.setHeader("Accept-Encoding", "gzip;q=0");
+
+        processRequest();
+
+        assertThat(response.get("Content-Encoding"))
+                .isNull();
+        assertThat(response.getContent())
+                .startsWith("{\"version\":\"3.1.3\"");
+    }
+
     @Test
     public void constructorWithRegistryAsArgumentIsUsedInPreferenceOverServletConfig() throws Exception {
         final MetricRegistry metricRegistry = mock(MetricRegistry.class);
@@ -260,4 +407,15 @@ public class MetricsServletTest extends AbstractServletTest {
         final MetricsServlet metricsServlet = new MetricsServlet(null);
         metricsServlet.init(servletConfig);
     }
+
+    private static String gunzip(byte[] bytes) throws Exception {
+        final GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toString("UTF-8");
+    }
 }
@@ -0,0 +1,179 @@
+package com.codahale.metrics.servlets;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.servlet.ServletTester;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PrometheusServletTest extends AbstractServletTest {
+    private final Clock clock = mock(Clock.class);
+    private final MetricRegistry registry = new MetricRegistry();
+
+    @Override
+    protected void setUp(ServletTester tester) {
+        tester.setAttribute("com.codahale.metrics.servlets.MetricsServlet.registry", registry);
+        tester.addServlet(PrometheusServlet.class, "/prometheus");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        when(clock.getTick()).thenReturn(100L, 200L, 300L, 400L);
+
+        registry.register("g1", new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return 100L;
+            }
+        });
+        registry.register("g2", new Gauge<String>() {
+            @Override
+            public String getValue() {
+                return "not a number";
+            }
+        });
+        registry.counter("c").inc();
+        registry.histogram("h").update(1);
+        registry.register("m", new Meter(clock)).mark();
+        registry.register("t", new Timer(new ExponentiallyDecayingReservoir(), clock))
+                .update(1, TimeUnit.SECONDS);
+
+        request.setMethod("GET");
+        request.setURI("/prometheus");
+        request.setVersion("HTTP/1.0");
+    }
+
+    @Test
+    public void returnsA200() throws Exception {
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.get(HttpHeader.CONTENT_TYPE))
+                .isEqualTo("text/plain; version=0.0.4; charset=utf-8");
+    }
+
+    @Test
+    public void writesGaugesAndCountersAsGauges() throws Exception {
+        processRequest();
+
+        assertThat(response.getContent())
+                .contains("# HELP g1 Generated from Gauge g1\n" +
+                                  "# TYPE g1 gauge\n" +
+                                  "g1 100.0\n")
+                .contains("# HELP c Generated from Counter c\n" +
+                                  "# TYPE c gauge\n" +
+                                  "c 1\n")
+                .doesNotContain("g2");
+    }
+
+    @Test
+    public void writesMetersAsCounters() throws Exception {
+        processRequest();
+
+        assertThat(response.getContent())
+                .contains("# HELP m_total Generated from Meter m\n" +
+                                  "# TYPE m_total counter\n" +
+                                  "m_total 1\n");
+    }
+
+    @Test
+    public void writesHistogramsAndTimersAsSummaries() throws Exception {
+        processRequest();
+
+        assertThat(response.getContent())
+                .contains("# HELP h Generated from Histogram h\n" +
+                                  "# TYPE h summary\n" +
+                                  "h{quantile=\"0.5\"} 1.0\n" +
+                                  "h{quantile=\"0.75\"} 1.0\n" +
+                                  "h{quantile=\"0.95\"} 1.0\n" +
+                                  "h{quantile=\"0.98\"} 1.0\n" +
+                                  "h{quantile=\"0.99\"} 1.0\n" +
+                                  "h{quantile=\"0.999\"} 1.0\n" +
+                                  "h_count 1\n" +
+                                  "h_sum 1.0\n")
+                .contains("# HELP t_seconds Generated from Timer t\n" +
+                                  "# TYPE t_seconds summary\n" +
+                                  "t_seconds{quantile=\"0.5\"} 1.0\n" +
+                                  "t_seconds{quantile=\"0.75\"} 1.0\n" +
+                                  "t_seconds{quantile=\"0.95\"} 1.0\n" +
+                                  "t_seconds{quantile=\"0.98\"} 1.0\n" +
+                                  "t_seconds{quantile=\"0.99\"} 1.0\n" +
+                                  "t_seconds{quantile=\"0.999\"} 1.0\n" +
+                                  "t_seconds_count 1\n" +
+                                  "t_seconds_sum 1.0\n");
+    }
+
+    @Test
+    public void sanitizesMetricNames() throws Exception {
+        registry.counter("com.example.Thing-requests.2xx").inc(2);
+        registry.counter("5xx").inc(3);
+
+        processRequest();
+
+        assertThat(response.getContent())
+                .contains("# HELP com_example_Thing_requests_2xx Generated from Counter com.example.Thing-requests.2xx\n" +
+                                  "# TYPE com_example_Thing_requests_2xx gauge\n" +
+                                  "com_example_Thing_requests_2xx 2\n")
+                .contains("_5xx 3\n");
+    }
+
+    @Test
+    public void stopsWritingRemovedMetrics() throws Exception {
+        processRequest();
+        assertThat(response.getContent()).contains("m_total 1\n");
+
+        registry.remove("m");
+        registry.counter("m").inc(5);
+
+        processRequest();
+        assertThat(response.getContent())
+                .doesNotContain("m_total")
+                .contains("# TYPE m gauge\n" +
+                                  "m 5\n");
+    }
+
+    @Test
+    public void skipsMetricsWhoseNamesCollide() throws Exception {
+        // start the servlet, so that it sees the metrics being added in order
+        processRequest();
+        registry.counter("a.b").inc(1);
+        registry.counter("a-b").inc(2);
+        registry.counter("h.count").inc(3);
+
+        processRequest();
+
+        assertThat(response.getContent())
+                .contains("a_b 1\n")
+                .doesNotContain("a_b 2\n")
+                .contains("h_count 1\n")
+                .doesNotContain("h_count 3\n")
+                .doesNotContain("Generated from Counter a-b")
+                .doesNotContain("Generated from Counter h.count");
+    }
+
+    @Test
+    public void writesSkippedMetricsOnceTheirNamesAreFree() throws Exception {
+        processRequest();
+        registry.counter("a.b").inc(1);
+        registry.counter("a-b").inc(2);
+        registry.remove("a.b");
+
+        processRequest();
+
+        assertThat(response.getContent())
+                .contains("# HELP a_b Generated from Counter a-b\n")
+                .contains("a_b 2\n");
+    }
+}
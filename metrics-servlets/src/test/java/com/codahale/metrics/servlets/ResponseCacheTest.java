@@ -0,0 +1,129 @@
+package com.codahale.metrics.servlets;
+
+import com.codahale.metrics.Clock;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ResponseCacheTest {
+    private final Clock clock = mock(Clock.class);
+    private final AtomicInteger renders = new AtomicInteger();
+    private final Callable<ResponseCache.Response> renderer = new Callable<ResponseCache.Response>() {
+        @Override
+        public ResponseCache.Response call() throws Exception {
+            return new ResponseCache.Response(("render " + renders.incrementAndGet()).getBytes("UTF-8"), true);
+        }
+    };
+
+    @Test
+    public void rendersOncePerTtl() throws Exception {
+        final ResponseCache cache = new ResponseCache(100, 10, clock);
+        when(clock.getTick()).thenReturn(0L, 50L, 100L);
+
+        assertThat(body(cache.get("a", renderer))).isEqualTo("render 1");
+        assertThat(body(cache.get("a", renderer))).isEqualTo("render 1");
+        assertThat(body(cache.get("a", renderer))).isEqualTo("render 2");
+    }
+
+    @Test
+    public void cachesEachKeySeparately() throws Exception {
+        final ResponseCache cache = new ResponseCache(100, 10, clock);
+
+        assertThat(body(cache.get("a", renderer))).isEqualTo("render 1");
+        assertThat(body(cache.get("b", renderer))).isEqualTo("render 2");
+        assertThat(body(cache.get("a", renderer))).isEqualTo("render 1");
+    }
+
+    @Test
+    public void doesNotCacheBeyondMaxEntries() throws Exception {
+        final ResponseCache cache = new ResponseCache(100, 1, clock);
+
+        assertThat(body(cache.get("a", renderer))).isEqualTo("render 1");
+        assertThat(body(cache.get("b", renderer))).isEqualTo("render 2");
+        assertThat(body(cache.get("b", renderer))).isEqualTo("render 3");
+        assertThat(body(cache.get("a", renderer))).isEqualTo("render 1");
+    }
+
+    @Test
+    public void doesNotCacheFailures() throws Exception {
+        final ResponseCache cache = new ResponseCache(100, 10, clock);
+        try {
+            cache.get("a", new Callable<ResponseCache.Response>() {
+                @Override
+                public ResponseCache.Response call() throws Exception {
+                    throw new IOException("oh no");
+                }
+            });
+            failBecauseExceptionWasNotThrown(IOException.class);
+        } catch (IOException e) {
+            assertThat(e).hasMessage("oh no");
+        }
+
+        assertThat(body(cache.get("a", renderer))).isEqualTo("render 1");
+    }
+
+    @Test
+    public void sharesASingleRenderBetweenConcurrentRequests() throws Exception {
+        final ResponseCache cache = new ResponseCache(TimeUnit.MINUTES.toNanos(1), 10, clock);
+        final CountDownLatch rendering = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<ResponseCache.Response> slowRenderer = new Callable<ResponseCache.Response>() {
+            @Override
+            public ResponseCache.Response call() throws Exception {
+                rendering.countDown();
+                release.await();
+                return renderer.call();
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Callable<ResponseCache.Response> request = new Callable<ResponseCache.Response>() {
+                @Override
+                public ResponseCache.Response call() throws Exception {
+                    return cache.get("a", slowRenderer);
+                }
+            };
+            final Future<ResponseCache.Response> first = executor.submit(request);
+            rendering.await();
+            final Future<ResponseCache.Response> second = executor.submit(request);
+            release.countDown();
+
+            assertThat(body(first.get())).isEqualTo("render 1");
+            assertThat(body(second.get())).isEqualTo("render 1");
+            assertThat(renders.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void gzipsTheBodyAndTagsItByContent() throws Exception {
+        final ResponseCache.Response response = new ResponseCache.Response("hello".getBytes("UTF-8"), true);
+        final ResponseCache.Response same = new ResponseCache.Response("hello".getBytes("UTF-8"), false);
+
+        final GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(response.getGzippedBody()));
+        final byte[] buffer = new byte[16];
+        assertThat(new String(buffer, 0, input.read(buffer), "UTF-8")).isEqualTo("hello");
+        assertThat(response.getEtag()).isEqualTo(same.getEtag()).startsWith("\"").endsWith("\"");
+        assertThat(same.getGzippedBody()).isNull();
+    }
+
+    private static String body(ResponseCache.Response response) throws Exception {
+        return new String(response.getBody(), "UTF-8");
+    }
+}
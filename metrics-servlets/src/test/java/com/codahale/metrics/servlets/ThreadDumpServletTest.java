@@ -46,4 +46,34 @@ public class ThreadDumpServletTest extends AbstractServletTest {
                 .isEqualTo("must-revalidate,no-cache,no-store");
 
     }
+
+    @Test
+    public void filtersThreadsByNameAndState() throws Exception {
+        request.setURI("/threads?threads=Fin.*&state=waiting&depth=1");
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.getContent())
+                .contains("\"Finalizer\"")
+                .doesNotContain("Reference Handler");
+    }
+
+    @Test
+    public void collapsesIdenticalStacks() throws Exception {
+        request.setURI("/threads?collapse=true&threads=Finalizer");
+        processRequest();
+
+        assertThat(response.getContent())
+                .startsWith("1 thread state=WAITING: \"Finalizer\"");
+    }
+
+    @Test
+    public void returns400ForUnknownStates() throws Exception {
+        request.setURI("/threads?state=sleeping");
+        processRequest();
+
+        assertThat(response.getStatus())
+                .isEqualTo(400);
+    }
 }
@@ -0,0 +1,238 @@
+package com.codahale.metrics.wire;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a stream written by {@link WireEncoder}, one snapshot at a time.
+ * <p>
+ * Counts are always handed to the visitor as totals, even if the stream carries deltas. The arrays
+ * passed to the visitor are reused between calls. Instances are not thread-safe.
+ */
+public class WireDecoder {
+    /**
+     * Receives the metrics of a snapshot.
+     * <p>
+     * Histogram and timer snapshots hold {@link WireFormat#SNAPSHOT_FIELDS} values: min, max,
+     * mean, stddev, p50, p75, p95, p98, p99 and p999. Rates hold {@link WireFormat#RATE_FIELDS}
+     * values: the mean, 1-minute, 5-minute and 15-minute rates.
+     */
+    public interface SnapshotVisitor {
+        void gauge(String name, double value);
+
+        void counter(String name, long count);
+
+        void histogram(String name, long count, double[] snapshot);
+
+        void meter(String name, long count, double[] rates);
+
+        void timer(String name, long count, double[] snapshot, double[] rates);
+    }
+
+    private static final TimeUnit[] UNITS = TimeUnit.values();
+
+    private final InputStream input;
+    private final List<String> names;
+    private final double[] snapshot;
+    private final double[] rates;
+    private long[] lastCounts;
+    private long lastTimestamp;
+    private boolean headerRead;
+    private boolean deltaCounts;
+    private TimeUnit rateUnit;
+    private TimeUnit durationUnit;
+
+    public WireDecoder(InputStream input) {
+        this.input = input;
+        this.names = new ArrayList<String>();
+        this.snapshot = new double[WireFormat.SNAPSHOT_FIELDS];
+        this.rates = new double[WireFormat.RATE_FIELDS];
+        this.lastCounts = new long[64];
+    }
+
+    /**
+     * Reads the next snapshot, passing its metrics to the given visitor.
+     *
+     * @return the snapshot's timestamp, or {@code -1} if the stream ended before the snapshot
+     * @throws IOException if the stream can't be read, is malformed or ends within a snapshot
+     */
+    public long readSnapshot(SnapshotVisitor visitor) throws IOException {
+        if (!headerRead) {
+            final int first = input.read();
+            if (first < 0) {
+                return -1;
+            }
+            readHeader(first);
+        }
+
+        final int first = input.read();
+        if (first < 0) {
+            return -1;
+        }
+        final long timestamp = lastTimestamp + zigZag(readVarint(first));
+        lastTimestamp = timestamp;
+
+        while (true) {
+            final long key = readVarint(readByte());
+            if (key == 0) {
+                return timestamp;
+            }
+            final int id = (int) (key >>> WireFormat.TYPE_BITS);
+            final String name = name(id);
+            switch ((int) (key & WireFormat.TYPE_MASK)) {
+                case WireFormat.GAUGE:
+                    visitor.gauge(name, readDouble());
+                    break;
+                case WireFormat.COUNTER:
+                    visitor.counter(name, readCount(id));
+                    break;
+                case WireFormat.HISTOGRAM: {
+                    final long count = readCount(id);
+                    readDoubles(snapshot);
+                    visitor.histogram(name, count, snapshot);
+                    break;
+                }
+                case WireFormat.METER: {
+                    final long count = readCount(id);
+                    readDoubles(rates);
+                    visitor.meter(name, count, rates);
+                    break;
+                }
+                case WireFormat.TIMER: {
+                    final long count = readCount(id);
+                    readDoubles(snapshot);
+                    readDoubles(rates);
+                    visitor.timer(name, count, snapshot, rates);
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown metric type in key " + key);
+            }
+        }
+    }
+
+    /**
+     * Returns the unit of time rates are per, once the header has been read.
+     */
+    public TimeUnit getRateUnit() {
+        return rateUnit;
+    }
+
+    /**
+     * Returns the unit of time durations are in, once the header has been read.
+     */
+    public TimeUnit getDurationUnit() {
+        return durationUnit;
+    }
+
+    private void readHeader(int first) throws IOException {
+        if (first != WireFormat.MAGIC_0 || readByte() != WireFormat.MAGIC_1) {
+            throw new IOException("Not a metrics wire stream");
+        }
+        final int version = readByte();
+        if (version != WireFormat.VERSION) {
+            throw new IOException("Unsupported version " + version);
+        }
+        this.deltaCounts = (readByte() & WireFormat.FLAG_DELTA_COUNTS) != 0;
+        this.rateUnit = unit(readByte());
+        this.durationUnit = unit(readByte());
+        this.headerRead = true;
+    }
+
+    private String name(int id) throws IOException {
+        if (id <= names.size()) {
+            if (id < 1) {
+                throw new IOException("Invalid name id " + id);
+            }
+            return names.get(id - 1);
+        }
+        if (id != names.size() + 1) {
+            throw new IOException("Name id " + id + " out of sequence");
+        }
+        final long length = readVarint(readByte());
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Name too long");
+        }
+        final byte[] bytes = new byte[(int) length];
+        readFully(bytes);
+        final String name = new String(bytes, WireFormat.UTF_8);
+        names.add(name);
+        return name;
+    }
+
+    private long readCount(int id) throws IOException {
+        final long value = zigZag(readVarint(readByte()));
+        if (!deltaCounts) {
+            return value;
+        }
+        if (id >= lastCounts.length) {
+            lastCounts = Arrays.copyOf(lastCounts, Math.max(id + 1, lastCounts.length * 2));
+        }
+        lastCounts[id] += value;
+        return lastCounts[id];
+    }
+
+    private void readDoubles(double[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = readDouble();
+        }
+    }
+
+    private double readDouble() throws IOException {
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits |= ((long) readByte()) << (8 * i);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    private long readVarint(int first) throws IOException {
+        long value = first & 0x7F;
+        int b = first;
+        int shift = 7;
+        while ((b & 0x80) != 0) {
+            if (shift > 63) {
+                throw new IOException("Malformed varint");
+            }
+            b = readByte();
+            value |= ((long) (b & 0x7F)) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    private int readByte() throws IOException {
+        final int b = input.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private void readFully(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            final int read = input.read(bytes, offset, bytes.length - offset);
+            if (read < 0) {
+                throw new EOFException();
+            }
+            offset += read;
+        }
+    }
+
+    private static long zigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static TimeUnit unit(int ordinal) throws IOException {
+        if (ordinal >= UNITS.length) {
+            throw new IOException("Unknown time unit " + ordinal);
+        }
+        return UNITS[ordinal];
+    }
+}
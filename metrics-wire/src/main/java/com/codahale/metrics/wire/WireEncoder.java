@@ -0,0 +1,308 @@
+package com.codahale.metrics.wire;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes snapshots of metrics into the binary format described by {@link WireFormat}.
+ * <p>
+ * An encoder is the sending end of one stream (a connection, a file or a single response): it
+ * remembers which names it has already sent and, if asked to, the counts of the previous snapshot.
+ * Snapshots are encoded into an internal buffer, which is written out and cleared by
+ * {@link #writeTo(OutputStream)} or {@link #writeTo(WritableByteChannel)}. If the bytes don't
+ * reach the other end, call {@link #reset()} before encoding for a new stream.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class WireEncoder {
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private final TimeUnit rateUnit;
+    private final TimeUnit durationUnit;
+    private final double rateFactor;
+    private final double durationFactor;
+    private final boolean deltaCounts;
+    private final Map<String, Integer> names;
+
+    private byte[] buffer;
+    private int position;
+    private long[] lastCounts;
+    private long lastTimestamp;
+    private boolean headerWritten;
+
+    /**
+     * @param rateUnit     the unit of time rates are per
+     * @param durationUnit the unit of time durations are in
+     * @param deltaCounts  whether counts are sent as the difference to the previous snapshot
+     */
+    public WireEncoder(TimeUnit rateUnit, TimeUnit durationUnit, boolean deltaCounts) {
+        this.rateUnit = rateUnit;
+        this.durationUnit = durationUnit;
+        this.rateFactor = rateUnit.toSeconds(1);
+        this.durationFactor = 1.0 / durationUnit.toNanos(1);
+        this.deltaCounts = deltaCounts;
+        this.names = new HashMap<String, Integer>();
+        this.buffer = new byte[INITIAL_CAPACITY];
+        this.lastCounts = new long[64];
+    }
+
+    /**
+     * Encodes a snapshot of the given metrics, as passed to a
+     * {@link com.codahale.metrics.ScheduledReporter}.
+     */
+    public void encode(long timestamp,
+                       SortedMap<String, Gauge> gauges,
+                       SortedMap<String, Counter> counters,
+                       SortedMap<String, Histogram> histograms,
+                       SortedMap<String, Meter> meters,
+                       SortedMap<String, Timer> timers) {
+        beginSnapshot(timestamp);
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            writeGauge(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            writeCounter(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            writeHistogram(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Meter> entry : meters.entrySet()) {
+            writeMeter(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            writeTimer(entry.getKey(), entry.getValue());
+        }
+        endSnapshot();
+    }
+
+    /**
+     * Encodes a snapshot of the metrics in the given registry which match the given filter, walking
+     * the registry once without sorting it.
+     */
+    public void encode(long timestamp, MetricRegistry registry, MetricFilter filter) {
+        beginSnapshot(timestamp);
+        for (Map.Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+            final String name = entry.getKey();
+            final Metric metric = entry.getValue();
+            if (!filter.matches(name, metric)) {
+                continue;
+            }
+            if (metric instanceof Gauge) {
+                writeGauge(name, (Gauge) metric);
+            } else if (metric instanceof Counter) {
+                writeCounter(name, (Counter) metric);
+            } else if (metric instanceof Histogram) {
+                writeHistogram(name, (Histogram) metric);
+            } else if (metric instanceof Meter) {
+                writeMeter(name, (Meter) metric);
+            } else if (metric instanceof Timer) {
+                writeTimer(name, (Timer) metric);
+            }
+        }
+        endSnapshot();
+    }
+
+    /**
+     * Returns the number of encoded bytes which haven't been written out yet.
+     */
+    public int size() {
+        return position;
+    }
+
+    /**
+     * Writes out and clears the encoded bytes.
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        output.write(buffer, 0, position);
+        position = 0;
+    }
+
+    /**
+     * Writes out and clears the encoded bytes, blocking until the channel has taken all of them.
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        final ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, position);
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        position = 0;
+    }
+
+    /**
+     * Forgets the names sent and the previous snapshot, and drops any encoded bytes, so that the
+     * next snapshot starts a new stream.
+     */
+    public void reset() {
+        names.clear();
+        Arrays.fill(lastCounts, 0);
+        lastTimestamp = 0;
+        headerWritten = false;
+        position = 0;
+    }
+
+    private void beginSnapshot(long timestamp) {
+        if (!headerWritten) {
+            ensureCapacity(5);
+            buffer[position++] = WireFormat.MAGIC_0;
+            buffer[position++] = WireFormat.MAGIC_1;
+            buffer[position++] = WireFormat.VERSION;
+            buffer[position++] = (byte) (deltaCounts ? WireFormat.FLAG_DELTA_COUNTS : 0);
+            writeByte(rateUnit.ordinal());
+            writeByte(durationUnit.ordinal());
+            headerWritten = true;
+        }
+        writeSignedVarint(timestamp - lastTimestamp);
+        lastTimestamp = timestamp;
+    }
+
+    private void endSnapshot() {
+        writeByte(0);
+    }
+
+    private void writeGauge(String name, Gauge gauge) {
+        final Object value;
+        try {
+            value = gauge.getValue();
+        } catch (RuntimeException e) {
+            return;
+        }
+        final double number;
+        if (value instanceof Number) {
+            number = ((Number) value).doubleValue();
+        } else if (value instanceof Boolean) {
+            number = ((Boolean) value) ? 1 : 0;
+        } else {
+            return;
+        }
+        writeKey(name, WireFormat.GAUGE);
+        writeDouble(number);
+    }
+
+    private void writeCounter(String name, Counter counter) {
+        final int id = writeKey(name, WireFormat.COUNTER);
+        writeCount(id, counter.getCount());
+    }
+
+    private void writeHistogram(String name, Histogram histogram) {
+        final int id = writeKey(name, WireFormat.HISTOGRAM);
+        writeCount(id, histogram.getCount());
+        writeSnapshot(histogram.getSnapshot(), 1);
+    }
+
+    private void writeMeter(String name, Meter meter) {
+        final int id = writeKey(name, WireFormat.METER);
+        writeCount(id, meter.getCount());
+        writeRates(meter);
+    }
+
+    private void writeTimer(String name, Timer timer) {
+        final int id = writeKey(name, WireFormat.TIMER);
+        writeCount(id, timer.getCount());
+        writeSnapshot(timer.getSnapshot(), durationFactor);
+        writeRates(timer);
+    }
+
+    private void writeSnapshot(Snapshot snapshot, double factor) {
+        writeDouble(snapshot.getMin() * factor);
+        writeDouble(snapshot.getMax() * factor);
+        writeDouble(snapshot.getMean() * factor);
+        writeDouble(snapshot.getStdDev() * factor);
+        writeDouble(snapshot.getMedian() * factor);
+        writeDouble(snapshot.get75thPercentile() * factor);
+        writeDouble(snapshot.get95thPercentile() * factor);
+        writeDouble(snapshot.get98thPercentile() * factor);
+        writeDouble(snapshot.get99thPercentile() * factor);
+        writeDouble(snapshot.get999thPercentile() * factor);
+    }
+
+    private void writeRates(Metered metered) {
+        writeDouble(metered.getMeanRate() * rateFactor);
+        writeDouble(metered.getOneMinuteRate() * rateFactor);
+        writeDouble(metered.getFiveMinuteRate() * rateFactor);
+        writeDouble(metered.getFifteenMinuteRate() * rateFactor);
+    }
+
+    /**
+     * Writes the key of a metric, along with its name if it hasn't been sent yet, and returns the
+     * name's id.
+     */
+    private int writeKey(String name, int type) {
+        final Integer known = names.get(name);
+        if (known != null) {
+            writeVarint(((long) known << WireFormat.TYPE_BITS) | type);
+            return known;
+        }
+
+        final int id = names.size() + 1;
+        names.put(name, id);
+        writeVarint(((long) id << WireFormat.TYPE_BITS) | type);
+        final byte[] bytes = name.getBytes(WireFormat.UTF_8);
+        writeVarint(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+        return id;
+    }
+
+    private void writeCount(int id, long count) {
+        if (deltaCounts) {
+            if (id >= lastCounts.length) {
+                lastCounts = Arrays.copyOf(lastCounts, Math.max(id + 1, lastCounts.length * 2));
+            }
+            writeSignedVarint(count - lastCounts[id]);
+            lastCounts[id] = count;
+        } else {
+            writeSignedVarint(count);
+        }
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeSignedVarint(long value) {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeDouble(double value) {
+        ensureCapacity(8);
+        final long bits = Double.doubleToRawLongBits(value);
+        for (int i = 0; i < 8; i++) {
+            buffer[position++] = (byte) (bits >>> (8 * i));
+        }
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (position + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(position + bytes, buffer.length * 2));
+        }
+    }
+}
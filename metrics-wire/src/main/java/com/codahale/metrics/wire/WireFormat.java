@@ -0,0 +1,65 @@
+package com.codahale.metrics.wire;
+
+import java.nio.charset.Charset;
+
+/**
+ * Constants describing the binary wire format.
+ * <p>
+ * A stream starts with a header, followed by any number of snapshots of a registry:
+ * <pre>
+ * byte[2] magic, {@code 'M' 'W'}
+ * byte    version
+ * byte    flags; bit 0 is set if counts are deltas against the previous snapshot
+ * byte    the ordinal of the {@link java.util.concurrent.TimeUnit} rates are per
+ * byte    the ordinal of the {@link java.util.concurrent.TimeUnit} durations are in
+ * </pre>
+ * Each snapshot is a zig-zag varint timestamp, in milliseconds since the epoch and relative to the
+ * timestamp of the previous snapshot (or zero), followed by the snapshot's metrics and a single
+ * {@code 0} byte. Each metric starts with a varint key of {@code (name id << 3) | type}. Names
+ * are numbered from 1 in order of appearance; when a key carries the next unused id, it is followed
+ * by the name as a varint length and UTF-8 bytes, so every name crosses the wire once per stream.
+ * The rest of a metric depends on its type:
+ * <pre>
+ * gauge      fixed64 value
+ * counter    zig-zag varint count
+ * histogram  zig-zag varint count, fixed64 min, max, mean, stddev, p50, p75, p95, p98, p99, p999
+ * meter      zig-zag varint count, fixed64 mean rate, m1 rate, m5 rate, m15 rate
+ * timer      zig-zag varint count, the ten histogram fields, then the four meter fields
+ * </pre>
+ * Varints are little-endian base 128, as in Protocol Buffers, and fixed64 values are the
+ * little-endian IEEE 754 bits of a double.
+ */
+public final class WireFormat {
+    /**
+     * The content type of the format.
+     */
+    public static final String CONTENT_TYPE = "application/x-metrics-wire";
+
+    static final byte MAGIC_0 = 'M';
+    static final byte MAGIC_1 = 'W';
+    static final byte VERSION = 1;
+    static final int FLAG_DELTA_COUNTS = 1;
+
+    static final int GAUGE = 1;
+    static final int COUNTER = 2;
+    static final int HISTOGRAM = 3;
+    static final int METER = 4;
+    static final int TIMER = 5;
+    static final int TYPE_BITS = 3;
+    static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+    /**
+     * The number of fixed64 fields of a histogram snapshot.
+     */
+    public static final int SNAPSHOT_FIELDS = 10;
+
+    /**
+     * The number of fixed64 fields of a set of rates.
+     */
+    public static final int RATE_FIELDS = 4;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private WireFormat() {
+    }
+}
@@ -0,0 +1,319 @@
+package com.codahale.metrics.wire;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.util.SortedMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A reporter which writes each report to an {@link OutputStream} or a channel (e.g. a
+ * {@link java.nio.channels.SocketChannel}) in the compact binary format described by
+ * {@link WireFormat}, to be read back with {@link WireDecoder}.
+ * <p>
+ * The stream starts with a header on the first report, and each metric name is written only the
+ * first time it is reported. Optionally, counts are written as the difference to the previous
+ * report, which keeps them to a byte or two for most metrics. Each report is handed to the stream
+ * or channel in a single write.
+ * <p>
+ * A reader can't find its place again in a stream which lost part of a report, so once a report
+ * fails the reporter stops writing to that stream. A reporter built with a {@link StreamFactory}
+ * closes the stream and opens a new one, with a fresh header and names, for the next report; any
+ * other reporter drops all further reports. Streams and channels passed to the builder are never
+ * closed by the reporter.
+ */
+public class WireReporter extends ScheduledReporter {
+    /**
+     * Returns a new {@link Builder} for {@link WireReporter}.
+     *
+     * @param registry the registry to report
+     * @return a {@link Builder} instance for a {@link WireReporter}
+     */
+    public static Builder forRegistry(MetricRegistry registry) {
+        return new Builder(registry);
+    }
+
+    /**
+     * Opens the streams a {@link WireReporter} writes to: one when the reporter first reports, and
+     * another each time writing a report fails. A channel can be wrapped with
+     * {@link java.nio.channels.Channels#newOutputStream(WritableByteChannel)}.
+     */
+    public interface StreamFactory {
+        /**
+         * Opens a new stream, e.g. by connecting to the aggregator.
+         *
+         * @return the stream to write to
+         * @throws IOException if the stream can't be opened
+         */
+        OutputStream open() throws IOException;
+    }
+
+    /**
+     * A builder for {@link WireReporter} instances. Defaults to using the default clock, converting
+     * rates to events/second, converting durations to milliseconds, not filtering metrics, and
+     * writing counts in full.
+     */
+    public static class Builder {
+        private final MetricRegistry registry;
+        private Clock clock;
+        private TimeUnit rateUnit;
+        private TimeUnit durationUnit;
+        private MetricFilter filter;
+        private ScheduledExecutorService executor;
+        private boolean shutdownExecutorOnStop;
+        private boolean deltaCounts;
+
+        private Builder(MetricRegistry registry) {
+            this.registry = registry;
+            this.clock = Clock.defaultClock();
+            this.rateUnit = TimeUnit.SECONDS;
+            this.durationUnit = TimeUnit.MILLISECONDS;
+            this.filter = MetricFilter.ALL;
+            this.executor = null;
+            this.shutdownExecutorOnStop = true;
+            this.deltaCounts = false;
+        }
+
+        /**
+         * Specifies whether or not, the executor (used for reporting) will be stopped with same time with reporter.
+         * Default value is true.
+         * Setting this parameter to false, has the sense in combining with providing external managed executor via {@link #scheduleOn(ScheduledExecutorService)}.
+         *
+         * @param shutdownExecutorOnStop if true, then executor will be stopped in same time with this reporter
+         * @return {@code this}
+         */
+        public Builder shutdownExecutorOnStop(boolean shutdownExecutorOnStop) {
+            this.shutdownExecutorOnStop = shutdownExecutorOnStop;
+            return this;
+        }
+
+        /**
+         * Specifies the executor to use while scheduling reporting of metrics.
+         * Default value is null.
+         * Null value leads to executor will be auto created on start.
+         *
+         * @param executor the executor to use while scheduling reporting of metrics.
+         * @return {@code this}
+         */
+        public Builder scheduleOn(ScheduledExecutorService executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Use the given {@link Clock} instance for the time.
+         *
+         * @param clock a {@link Clock} instance
+         * @return {@code this}
+         */
+        public Builder withClock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Convert rates to the given time unit.
+         *
+         * @param rateUnit a unit of time
+         * @return {@code this}
+         */
+        public Builder convertRatesTo(TimeUnit rateUnit) {
+            this.rateUnit = rateUnit;
+            return this;
+        }
+
+        /**
+         * Convert durations to the given time unit.
+         *
+         * @param durationUnit a unit of time
+         * @return {@code this}
+         */
+        public Builder convertDurationsTo(TimeUnit durationUnit) {
+            this.durationUnit = durationUnit;
+            return this;
+        }
+
+        /**
+         * Only report metrics which match the given filter.
+         *
+         * @param filter a {@link MetricFilter}
+         * @return {@code this}
+         */
+        public Builder filter(MetricFilter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * Write counts as the difference to the previous report rather than in full.
+         *
+         * @param deltaCounts whether to write counts as deltas
+         * @return {@code this}
+         */
+        public Builder deltaCounts(boolean deltaCounts) {
+            this.deltaCounts = deltaCounts;
+            return this;
+        }
+
+        /**
+         * Builds a {@link WireReporter} with the given properties, writing to the given stream.
+         *
+         * @param output the stream to write to
+         * @return a {@link WireReporter}
+         */
+        public WireReporter build(OutputStream output) {
+            return new WireReporter(registry, output, null, null, clock, rateUnit, durationUnit,
+                                    filter, executor, shutdownExecutorOnStop, deltaCounts);
+        }
+
+        /**
+         * Builds a {@link WireReporter} with the given properties, writing to the given channel,
+         * which must be in blocking mode.
+         *
+         * @param channel the channel to write to
+         * @return a {@link WireReporter}
+         */
+        public WireReporter build(WritableByteChannel channel) {
+            return new WireReporter(registry, null, channel, null, clock, rateUnit, durationUnit,
+                                    filter, executor, shutdownExecutorOnStop, deltaCounts);
+        }
+
+        /**
+         * Builds a {@link WireReporter} with the given properties, writing to streams opened by the
+         * given factory, which is asked for a new stream after each failed report.
+         *
+         * @param factory the factory opening the streams to write to
+         * @return a {@link WireReporter}
+         */
+        public WireReporter build(StreamFactory factory) {
+            return new WireReporter(registry, null, null, factory, clock, rateUnit, durationUnit,
+                                    filter, executor, shutdownExecutorOnStop, deltaCounts);
+        }
+    }
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WireReporter.class);
+
+    private final StreamFactory factory;
+    private final Clock clock;
+    private final WireEncoder encoder;
+    private OutputStream output;
+    private WritableByteChannel channel;
+    private boolean failed;
+
+    private WireReporter(MetricRegistry registry,
+                         OutputStream output,
+                         WritableByteChannel channel,
+                         StreamFactory factory,
+                         Clock clock,
+                         TimeUnit rateUnit,
+                         TimeUnit durationUnit,
+                         MetricFilter filter,
+                         ScheduledExecutorService executor,
+                         boolean shutdownExecutorOnStop,
+                         boolean deltaCounts) {
+        super(registry, "wire-reporter", filter, rateUnit, durationUnit, executor, shutdownExecutorOnStop);
+        this.output = output;
+        this.channel = channel;
+        this.factory = factory;
+        this.clock = clock;
+        this.encoder = new WireEncoder(rateUnit, durationUnit, deltaCounts);
+    }
+
+    @Override
+    public synchronized void report(SortedMap<String, Gauge> gauges,
+                                    SortedMap<String, Counter> counters,
+                                    SortedMap<String, Histogram> histograms,
+                                    SortedMap<String, Meter> meters,
+                                    SortedMap<String, Timer> timers) {
+        final int count = gauges.size() + counters.size() + histograms.size() + meters.size() + timers.size();
+        if (!open()) {
+            recordDropped(count);
+            return;
+        }
+        try {
+            encoder.encode(clock.getTime(), gauges, counters, histograms, meters, timers);
+            final int size = encoder.size();
+            if (channel != null) {
+                encoder.writeTo(channel);
+            } else {
+                encoder.writeTo(output);
+                output.flush();
+            }
+            recordBytes(size);
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write metrics", e);
+            fail();
+            recordDropped(count);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to encode metrics", e);
+            fail();
+            recordDropped(count);
+        }
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        synchronized (this) {
+            if (factory != null) {
+                closeOutput();
+            }
+        }
+    }
+
+    /**
+     * Returns whether there's a stream to write to, opening one with the factory if needed.
+     */
+    private boolean open() {
+        if (output != null || channel != null) {
+            return !failed;
+        }
+        if (factory == null) {
+            return false;
+        }
+        try {
+            output = factory.open();
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Unable to open a stream for metrics", e);
+            return false;
+        }
+    }
+
+    /**
+     * Gives up on the current stream, whose reader may have been left part-way through a report.
+     */
+    private void fail() {
+        encoder.reset();
+        if (factory != null) {
+            closeOutput();
+        } else {
+            failed = true;
+            LOGGER.warn("Not writing any further metrics to the stream");
+        }
+    }
+
+    private void closeOutput() {
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                LOGGER.debug("Unable to close the stream", e);
+            }
+            output = null;
+        }
+    }
+}
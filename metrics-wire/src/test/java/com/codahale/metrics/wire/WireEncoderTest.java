@@ -0,0 +1,192 @@
+package com.codahale.metrics.wire;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class WireEncoderTest {
+    private static class RecordingVisitor implements WireDecoder.SnapshotVisitor {
+        private final List<String> events = new ArrayList<String>();
+
+        @Override
+        public void gauge(String name, double value) {
+            events.add("gauge " + name + " " + value);
+        }
+
+        @Override
+        public void counter(String name, long count) {
+            events.add("counter " + name + " " + count);
+        }
+
+        @Override
+        public void histogram(String name, long count, double[] snapshot) {
+            events.add("histogram " + name + " " + count + " " + snapshot[0] + ".." + snapshot[1]);
+        }
+
+        @Override
+        public void meter(String name, long count, double[] rates) {
+            events.add("meter " + name + " " + count);
+        }
+
+        @Override
+        public void timer(String name, long count, double[] snapshot, double[] rates) {
+            events.add("timer " + name + " " + count + " " + snapshot[0] + ".." + snapshot[1]);
+        }
+    }
+
+    private final Clock clock = mock(Clock.class);
+    private final MetricRegistry registry = new MetricRegistry();
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Before
+    public void setUp() throws Exception {
+        when(clock.getTick()).thenReturn(0L);
+
+        registry.register("gauge", new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                return 1.5;
+            }
+        });
+        registry.register("not-a-number", new Gauge<String>() {
+            @Override
+            public String getValue() {
+                return "value";
+            }
+        });
+        registry.counter("counter").inc(3);
+        registry.histogram("histogram").update(7);
+        registry.register("meter", new Meter(clock)).mark(2);
+        registry.register("timer", new Timer(new ExponentiallyDecayingReservoir(), clock))
+                .update(250, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void roundTripsASnapshot() throws Exception {
+        final WireEncoder encoder = new WireEncoder(TimeUnit.SECONDS, TimeUnit.MILLISECONDS, false);
+        encoder.encode(1000, registry, MetricFilter.ALL);
+        encoder.writeTo(output);
+
+        final WireDecoder decoder = decoder();
+        final RecordingVisitor visitor = new RecordingVisitor();
+
+        assertThat(decoder.readSnapshot(visitor))
+                .isEqualTo(1000);
+        assertThat(decoder.getRateUnit())
+                .isEqualTo(TimeUnit.SECONDS);
+        assertThat(decoder.getDurationUnit())
+                .isEqualTo(TimeUnit.MILLISECONDS);
+        assertThat(visitor.events)
+                .containsOnly("gauge gauge 1.5",
+                              "counter counter 3",
+                              "histogram histogram 1 7.0..7.0",
+                              "meter meter 2",
+                              "timer timer 1 250.0..250.0");
+        assertThat(decoder.readSnapshot(visitor))
+                .isEqualTo(-1);
+    }
+
+    @Test
+    public void sendsEachNameOnce() throws Exception {
+        final WireEncoder encoder = new WireEncoder(TimeUnit.SECONDS, TimeUnit.MILLISECONDS, false);
+        encoder.encode(1000, registry, MetricFilter.ALL);
+        final int first = encoder.size();
+        encoder.writeTo(output);
+        encoder.encode(2000, registry, MetricFilter.ALL);
+        final int second = encoder.size();
+        encoder.writeTo(output);
+
+        assertThat(second)
+                .isLessThan(first - "histogram".length());
+
+        final WireDecoder decoder = decoder();
+        final RecordingVisitor visitor = new RecordingVisitor();
+        assertThat(decoder.readSnapshot(visitor))
+                .isEqualTo(1000);
+        assertThat(decoder.readSnapshot(visitor))
+                .isEqualTo(2000);
+        assertThat(visitor.events.subList(5, 10))
+                .containsOnly("gauge gauge 1.5",
+                              "counter counter 3",
+                              "histogram histogram 1 7.0..7.0",
+                              "meter meter 2",
+                              "timer timer 1 250.0..250.0");
+    }
+
+    @Test
+    public void optionallyEncodesCountsAsDeltas() throws Exception {
+        final WireEncoder encoder = new WireEncoder(TimeUnit.SECONDS, TimeUnit.MILLISECONDS, true);
+        registry.counter("counter").inc(1000000);
+        encoder.encode(1000, registry, MetricFilter.ALL);
+        encoder.writeTo(output);
+        registry.counter("counter").inc();
+        encoder.encode(2000, registry, MetricFilter.ALL);
+        encoder.writeTo(output);
+
+        final WireDecoder decoder = decoder();
+        final RecordingVisitor visitor = new RecordingVisitor();
+        decoder.readSnapshot(visitor);
+        decoder.readSnapshot(visitor);
+
+        assertThat(visitor.events)
+                .contains("counter counter 1000003", "counter counter 1000004");
+    }
+
+    @Test
+    public void startsANewStreamAfterAReset() throws Exception {
+        final WireEncoder encoder = new WireEncoder(TimeUnit.SECONDS, TimeUnit.MILLISECONDS, false);
+        encoder.encode(1000, registry, MetricFilter.ALL);
+        encoder.reset();
+
+        assertThat(encoder.size())
+                .isZero();
+
+        encoder.encode(2000, registry, MetricFilter.ALL);
+        encoder.writeTo(output);
+
+        final RecordingVisitor visitor = new RecordingVisitor();
+        assertThat(decoder().readSnapshot(visitor))
+                .isEqualTo(2000);
+        assertThat(visitor.events)
+                .hasSize(5);
+    }
+
+    @Test
+    public void failsOnATruncatedSnapshot() throws Exception {
+        final WireEncoder encoder = new WireEncoder(TimeUnit.SECONDS, TimeUnit.MILLISECONDS, false);
+        encoder.encode(1000, registry, MetricFilter.ALL);
+        encoder.writeTo(output);
+        final byte[] bytes = output.toByteArray();
+
+        final WireDecoder decoder = new WireDecoder(new ByteArrayInputStream(bytes, 0, bytes.length - 1));
+        try {
+            decoder.readSnapshot(new RecordingVisitor());
+            failBecauseExceptionWasNotThrown(EOFException.class);
+        } catch (IOException e) {
+            assertThat(e).isInstanceOf(EOFException.class);
+        }
+    }
+
+    private WireDecoder decoder() {
+        return new WireDecoder(new ByteArrayInputStream(output.toByteArray()));
+    }
+}
@@ -0,0 +1,185 @@
+package com.codahale.metrics.wire;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WireReporterTest {
+    private final MetricRegistry registry = mock(MetricRegistry.class);
+    private final Clock clock = mock(Clock.class);
+    private final WireDecoder.SnapshotVisitor visitor = mock(WireDecoder.SnapshotVisitor.class);
+
+    @Test
+    public void writesEachReportToTheStream() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final WireReporter reporter = WireReporter.forRegistry(registry)
+                                                  .withClock(clock)
+                                                  .deltaCounts(true)
+                                                  .build(output);
+        final Counter counter = mock(Counter.class);
+        when(counter.getCount()).thenReturn(100L, 150L);
+        when(clock.getTime()).thenReturn(1000L, 2000L);
+
+        reporter.report(this.<Gauge>map(), map("counter", counter), this.<Histogram>map(),
+                        this.<Meter>map(), this.<Timer>map());
+        reporter.report(this.<Gauge>map(), map("counter", counter), this.<Histogram>map(),
+                        this.<Meter>map(), this.<Timer>map());
+
+        final WireDecoder decoder = new WireDecoder(new ByteArrayInputStream(output.toByteArray()));
+        assertThat(decoder.readSnapshot(visitor))
+                .isEqualTo(1000);
+        assertThat(decoder.readSnapshot(visitor))
+                .isEqualTo(2000);
+        verify(visitor).counter("counter", 100);
+        verify(visitor).counter("counter", 150);
+    }
+
+    @Test
+    public void writesToChannels() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final WireReporter reporter = WireReporter.forRegistry(registry)
+                                                  .withClock(clock)
+                                                  .build(Channels.newChannel(output));
+        when(clock.getTime()).thenReturn(1000L);
+
+        reporter.report(map("gauge", gauge(2)), this.<Counter>map(), this.<Histogram>map(),
+                        this.<Meter>map(), this.<Timer>map());
+
+        final WireDecoder decoder = new WireDecoder(new ByteArrayInputStream(output.toByteArray()));
+        assertThat(decoder.readSnapshot(visitor))
+                .isEqualTo(1000);
+        verify(visitor).gauge("gauge", 2.0);
+    }
+
+    @Test
+    public void stopsWritingToAStreamAfterAFailedWrite() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final WireReporter reporter = WireReporter.forRegistry(registry)
+                                                  .withClock(clock)
+                                                  .build(new FlakyStream(output, 2));
+        when(clock.getTime()).thenReturn(1000L, 2000L, 3000L);
+
+        for (int i = 1; i <= 3; i++) {
+            reporter.report(map("gauge", gauge(i)), this.<Counter>map(), this.<Histogram>map(),
+                            this.<Meter>map(), this.<Timer>map());
+        }
+
+        final WireDecoder decoder = new WireDecoder(new ByteArrayInputStream(output.toByteArray()));
+        assertThat(decoder.readSnapshot(visitor))
+                .isEqualTo(1000);
+        verify(visitor).gauge("gauge", 1.0);
+        try {
+            decoder.readSnapshot(visitor);
+            failBecauseExceptionWasNotThrown(EOFException.class);
+        } catch (EOFException e) {
+            // the second report was cut short, and nothing was written after it
+        }
+        verify(visitor, never()).gauge("gauge", 3.0);
+    }
+
+    @Test
+    public void opensANewStreamAfterAFailedWrite() throws Exception {
+        final ByteArrayOutputStream first = new ByteArrayOutputStream();
+        final ByteArrayOutputStream second = new ByteArrayOutputStream();
+        final FlakyStream flaky = new FlakyStream(first, 2);
+        final WireReporter.StreamFactory factory = mock(WireReporter.StreamFactory.class);
+        when(factory.open()).thenReturn(flaky, second);
+        final WireReporter reporter = WireReporter.forRegistry(registry)
+                                                  .withClock(clock)
+                                                  .deltaCounts(true)
+                                                  .build(factory);
+        final Counter counter = mock(Counter.class);
+        when(counter.getCount()).thenReturn(100L, 150L, 170L);
+        when(clock.getTime()).thenReturn(1000L, 2000L, 3000L);
+
+        for (int i = 0; i < 3; i++) {
+            reporter.report(this.<Gauge>map(), map("counter", counter), this.<Histogram>map(),
+                            this.<Meter>map(), this.<Timer>map());
+        }
+
+        assertThat(flaky.closed)
+                .isTrue();
+        final WireDecoder decoder = new WireDecoder(new ByteArrayInputStream(first.toByteArray()));
+        assertThat(decoder.readSnapshot(visitor))
+                .isEqualTo(1000);
+        verify(visitor).counter("counter", 100);
+
+        final WireDecoder next = new WireDecoder(new ByteArrayInputStream(second.toByteArray()));
+        assertThat(next.readSnapshot(visitor))
+                .isEqualTo(3000);
+        verify(visitor).counter("counter", 170);
+        assertThat(next.readSnapshot(visitor))
+                .isEqualTo(-1);
+    }
+
+    /**
+     * Fails the given write after passing on half of its bytes.
+     */
+    private static class FlakyStream extends OutputStream {
+        private final OutputStream output;
+        private final int failingWrite;
+        private int writes;
+        private boolean closed;
+
+        private FlakyStream(OutputStream output, int failingWrite) {
+            this.output = output;
+            this.failingWrite = failingWrite;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            output.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (++writes == failingWrite) {
+                output.write(b, off, len / 2);
+                throw new IOException("broken pipe");
+            }
+            output.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private <T> SortedMap<String, T> map() {
+        return new TreeMap<String, T>();
+    }
+
+    private <T> SortedMap<String, T> map(String name, T metric) {
+        final TreeMap<String, T> map = new TreeMap<String, T>();
+        map.put(name, metric);
+        return map;
+    }
+
+    private <T> Gauge gauge(T value) {
+        final Gauge gauge = mock(Gauge.class);
+        when(gauge.getValue()).thenReturn(value);
+        return gauge;
+    }
+}